@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+
+/**
+ * Creates the in-process loner cache shared by the benchmarks in this package.
+ * The cache is not a member of any distributed system so that the numbers
+ * reported by a benchmark only include the local code path being measured.
+ */
+final class BenchmarkCache {
+
+  /** Size of the off-heap memory made available to benchmarks that need it. */
+  static final String OFF_HEAP_MEMORY_SIZE = "256m";
+
+  private BenchmarkCache() {
+  }
+
+  static Cache create(boolean pdxReadSerialized) {
+    return new CacheFactory()
+        .set(DistributionConfig.MCAST_PORT_NAME, "0")
+        .set(DistributionConfig.LOCATORS_NAME, "")
+        .set(DistributionConfig.LOG_LEVEL_NAME, "warning")
+        .set(DistributionConfig.OFF_HEAP_MEMORY_SIZE_NAME, OFF_HEAP_MEMORY_SIZE)
+        .setPdxReadSerialized(pdxReadSerialized)
+        .create();
+  }
+}
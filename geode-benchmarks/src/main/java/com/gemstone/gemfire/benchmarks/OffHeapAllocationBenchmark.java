@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocatorImpl;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
+
+/**
+ * Measures an allocate/release cycle through the off-heap
+ * {@link MemoryAllocator}, which exercises the tiny free lists for
+ * small sizes and the huge chunk set for sizes above
+ * {@link com.gemstone.gemfire.internal.offheap.FreeListManager#MAX_TINY}.
+ * The contended variant runs the same cycle from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OffHeapAllocationBenchmark {
+
+  @Param({ "32", "1024", "262144" })
+  public int chunkSize;
+
+  private Cache cache;
+  private MemoryAllocator allocator;
+
+  @Setup(Level.Trial)
+  public void createAllocator() {
+    this.cache = BenchmarkCache.create(false);
+    this.allocator = MemoryAllocatorImpl.getAllocator();
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() {
+    this.cache.close();
+  }
+
+  @Benchmark
+  public void allocateAndRelease() {
+    StoredObject so = this.allocator.allocate(this.chunkSize);
+    so.release();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void allocateAndReleaseContended() {
+    StoredObject so = this.allocator.allocate(this.chunkSize);
+    so.release();
+  }
+}
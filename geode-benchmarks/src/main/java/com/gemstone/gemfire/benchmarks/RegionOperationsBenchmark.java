@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+
+/**
+ * Measures {@link Region#put} and {@link Region#get} on a local region
+ * whose values are stored either on the heap or off-heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RegionOperationsBenchmark {
+
+  private static final int KEY_COUNT = 10000;
+
+  @Param({ "heap", "offheap" })
+  public String storage;
+
+  @Param({ "64", "4096" })
+  public int valueSize;
+
+  private Cache cache;
+  private Region<Integer, byte[]> region;
+  private byte[] value;
+
+  @Setup(Level.Trial)
+  public void createRegion() {
+    this.cache = BenchmarkCache.create(false);
+    this.region = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.LOCAL)
+        .setOffHeap("offheap".equals(this.storage))
+        .create("benchmark");
+    this.value = new byte[this.valueSize];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      this.region.put(i, this.value);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() {
+    this.cache.close();
+  }
+
+  @Benchmark
+  public Object put() {
+    return this.region.put(ThreadLocalRandom.current().nextInt(KEY_COUNT), this.value);
+  }
+
+  @Benchmark
+  public Object get() {
+    return this.region.get(ThreadLocalRandom.current().nextInt(KEY_COUNT));
+  }
+}
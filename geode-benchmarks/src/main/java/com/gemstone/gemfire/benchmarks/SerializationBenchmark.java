@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.pdx.PdxReader;
+import com.gemstone.gemfire.pdx.PdxSerializable;
+import com.gemstone.gemfire.pdx.PdxWriter;
+
+/**
+ * Measures {@link DataSerializer#writeObject(Object, DataOutput)} into a
+ * {@link HeapDataOutputStream} for the same domain object implemented as
+ * a {@link DataSerializable} and as a {@link PdxSerializable}, as well as
+ * deserialization of the resulting bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({ "DataSerializable", "PDX" })
+  public String format;
+
+  private Cache cache;
+  private Object value;
+  private byte[] serializedValue;
+
+  @Setup(Level.Trial)
+  public void createValue() throws IOException {
+    this.cache = BenchmarkCache.create(false);
+    if ("PDX".equals(this.format)) {
+      this.value = new PdxPosition(42L, "GEODE", 1000, 3.1415d);
+    } else {
+      this.value = new DataSerializablePosition(42L, "GEODE", 1000, 3.1415d);
+    }
+    this.serializedValue = BlobHelper.serializeToBlob(this.value);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() {
+    this.cache.close();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    HeapDataOutputStream hdos = new HeapDataOutputStream(Version.CURRENT);
+    DataSerializer.writeObject(this.value, hdos);
+    return hdos.toByteArray();
+  }
+
+  @Benchmark
+  public Object deserialize() throws IOException, ClassNotFoundException {
+    return BlobHelper.deserializeBlob(this.serializedValue);
+  }
+
+  public static class DataSerializablePosition implements DataSerializable {
+    private long id;
+    private String secId;
+    private int quantity;
+    private double price;
+
+    public DataSerializablePosition() {
+    }
+
+    DataSerializablePosition(long id, String secId, int quantity, double price) {
+      this.id = id;
+      this.secId = secId;
+      this.quantity = quantity;
+      this.price = price;
+    }
+
+    @Override
+    public void toData(DataOutput out) throws IOException {
+      out.writeLong(this.id);
+      DataSerializer.writeString(this.secId, out);
+      out.writeInt(this.quantity);
+      out.writeDouble(this.price);
+    }
+
+    @Override
+    public void fromData(DataInput in) throws IOException, ClassNotFoundException {
+      this.id = in.readLong();
+      this.secId = DataSerializer.readString(in);
+      this.quantity = in.readInt();
+      this.price = in.readDouble();
+    }
+  }
+
+  public static class PdxPosition implements PdxSerializable {
+    private long id;
+    private String secId;
+    private int quantity;
+    private double price;
+
+    public PdxPosition() {
+    }
+
+    PdxPosition(long id, String secId, int quantity, double price) {
+      this.id = id;
+      this.secId = secId;
+      this.quantity = quantity;
+      this.price = price;
+    }
+
+    @Override
+    public void toData(PdxWriter writer) {
+      writer.writeLong("id", this.id);
+      writer.writeString("secId", this.secId);
+      writer.writeInt("quantity", this.quantity);
+      writer.writeDouble("price", this.price);
+    }
+
+    @Override
+    public void fromData(PdxReader reader) {
+      this.id = reader.readLong("id");
+      this.secId = reader.readString("secId");
+      this.quantity = reader.readInt("quantity");
+      this.price = reader.readDouble("price");
+    }
+  }
+}
@@ -198,6 +198,23 @@ public interface DiskStore {
    * @since 8.0
    */
   public float getDiskUsageCriticalPercentage();
+
+  /**
+   * Returns true if values are read back from oplogs that are no longer being
+   * written to through a memory mapping of the oplog file.
+   * 
+   * @return the memoryMappedReads setting
+   */
+  public boolean getMemoryMappedReads();
+
+  /**
+   * Returns true if this disk store's oplog files are opened for synchronous
+   * data writes and their written pages are dropped from the file system
+   * cache.
+   * 
+   * @return the syncWrites setting
+   */
+  public boolean getSyncWrites();
   
   /**
    * Sets the value of the disk usage warning percentage.
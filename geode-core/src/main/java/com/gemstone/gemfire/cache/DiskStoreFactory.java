@@ -109,6 +109,18 @@ public interface DiskStoreFactory
    * <p>Current value: <code>99</code>.
    */
   public static final float DEFAULT_DISK_USAGE_CRITICAL_PERCENTAGE = 99;
+
+  /**
+   * The default memory mapped reads setting.
+   * <p>Current value: <code>false</code>.
+   */
+  public static final boolean DEFAULT_MEMORY_MAPPED_READS = false;
+
+  /**
+   * The default sync writes setting.
+   * <p>Current value: <code>false</code>.
+   */
+  public static final boolean DEFAULT_SYNC_WRITES = false;
   
   /** 
    * Set to <code>true</code> to cause the disk files to be automatically compacted.
@@ -229,6 +241,31 @@ public interface DiskStoreFactory
    */
   public DiskStoreFactory setDiskUsageCriticalPercentage(float criticalPercent);
 
+  /**
+   * Set to <code>true</code> to read values back from oplogs that are no longer
+   * being written to through a read-only memory mapping of the oplog file
+   * instead of seeking and reading the file. This can substantially reduce the
+   * latency of faulting overflowed or recovered values in from disk at the
+   * cost of virtual address space.
+   * 
+   * @param memoryMappedReads whether to use memory mapped reads
+   * @return a reference to <code>this</code>
+   */
+  public DiskStoreFactory setMemoryMappedReads(boolean memoryMappedReads);
+
+  /**
+   * Set to <code>true</code> to open this disk store's oplog files for
+   * synchronous data writes (<code>O_DSYNC</code>) so that each write to an
+   * oplog file completes only once its data is on the storage device. On Linux
+   * the written pages are then also dropped from the file system cache, so
+   * that oplog writes do not push other data out of it. This is independent of
+   * whether regions write to the disk store synchronously.
+   * 
+   * @param syncWrites whether to open oplog files for synchronous data writes
+   * @return a reference to <code>this</code>
+   */
+  public DiskStoreFactory setSyncWrites(boolean syncWrites);
+
   /**
    * Create a new disk store or find an existing one. In either case the returned disk store's
    * configuration will be the same as this factory's configuration.
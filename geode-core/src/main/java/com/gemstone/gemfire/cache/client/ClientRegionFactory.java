@@ -303,6 +303,29 @@ public interface ClientRegionFactory<K,V> {
    * @since 8.0
    */
   public ClientRegionFactory<K,V> setCompressor(Compressor compressor);
+
+  /**
+   * Makes the region a near cache of at most the given number of megabytes.
+   * Entries read from the server are kept locally and evicted, least
+   * recently used first, once the limit is reached. The region registers
+   * interest in the keys it has read, receiving only invalidates for them, so
+   * that the server does not send the values of keys the client holds, or
+   * events for keys it has never read.
+   * <p>
+   * Registering interest in a key fetches its value again, so that an update
+   * made between the read and the registration is not missed. Every key read
+   * from the server therefore has its value sent to the client twice.
+   * <p>
+   * Requires a region shortcut that caches values, such as
+   * {@link ClientRegionShortcut#CACHING_PROXY}, and a pool with subscriptions
+   * enabled. Replaces any eviction attributes set on this factory.
+   *
+   * @param maximumMegabytes the maximum size of the locally cached values
+   * @return a reference to this ClientRegionFactory object
+   * @throws IllegalArgumentException if <code>maximumMegabytes</code> is not positive
+   * @since Geode 1.0
+   */
+  public ClientRegionFactory<K,V> setNearCache(int maximumMegabytes);
   
   /**
    * Creates a region in the {@link ClientCache} using
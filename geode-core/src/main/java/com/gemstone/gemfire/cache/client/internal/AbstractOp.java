@@ -19,6 +19,9 @@ package com.gemstone.gemfire.cache.client.internal;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 
 import org.apache.logging.log4j.Logger;
 
@@ -153,6 +156,7 @@ public abstract class AbstractOp implements Op {
    * @throws Exception if the execute failed
    */
   protected Object attemptReadResponse(Connection cnx) throws Exception {
+    this.responseRead = false;
     Message msg = createResponseMessage();
     if (msg != null) {
       msg.setComms(cnx.getSocket(), cnx.getInputStream(),
@@ -161,6 +165,7 @@ public abstract class AbstractOp implements Op {
         try {
           return processResponse(msg, cnx);
         } finally {
+          this.responseRead = ((ChunkedMessage)msg).isLastChunk();
           msg.unsetComms();
           // TODO (ashetkar) Handle the case when we fail to read the connection id.
           processSecureBytes(cnx, msg);
@@ -168,6 +173,7 @@ public abstract class AbstractOp implements Op {
       } else {
         try {
           msg.recv();
+          this.responseRead = true;
         } finally {
           msg.unsetComms();
           processSecureBytes(cnx, msg);
@@ -175,6 +181,7 @@ public abstract class AbstractOp implements Op {
         return processResponse(msg, cnx);
       }
     } else {
+      this.responseRead = true;
       return null;
     }
   }
@@ -358,6 +365,12 @@ public abstract class AbstractOp implements Op {
    * Set to true if this attempt timed out
    */
   protected boolean timedOut;
+  /**
+   * Set by {@link #attemptReadResponse} once the whole response has been read
+   * from the connection. An exception thrown after that came from processing
+   * a complete reply, so the connection can still be used by other ops.
+   */
+  protected boolean responseRead;
 
   /* (non-Javadoc)
    * @see com.gemstone.gemfire.cache.client.internal.Op#attempt(com.gemstone.gemfire.cache.client.internal.Connection)
@@ -389,6 +402,64 @@ public abstract class AbstractOp implements Op {
       endAttempt(cnx.getStats(), start);
     }
   }
+
+  /**
+   * Like {@link #attempt(Connection)} but sends and reads through the given
+   * pipeline so that other ops can use its connection while this op waits
+   * for its response.
+   */
+  Object attemptPipelined(ConnectionPipeline pipeline) throws Exception {
+    this.failed = true;
+    this.timedOut = false;
+    ConnectionStats stats = pipeline.getConnection().getStats();
+    long start = startAttempt(stats);
+    try {
+      long ticket;
+      try {
+        ticket = pipeline.send(this);
+        this.failed = false;
+      } finally {
+        endSendAttempt(stats, start);
+      }
+      this.failed = true;
+      try {
+        Object result = pipeline.readResponse(this, ticket);
+        this.failed = false;
+        return result;
+      } catch (SocketTimeoutException ste) {
+        this.failed = false;
+        this.timedOut = true;
+        throw ste;
+      }
+    } finally {
+      endAttempt(stats, start);
+    }
+  }
+  /**
+   * Like {@link #attemptPipelined(ConnectionPipeline)} but does not wait for
+   * the response; it is read by a task run by the given executor.
+   *
+   * @return a future completed with the op's result
+   */
+  CompletableFuture<Object> attemptPipelinedAsync(ConnectionPipeline pipeline, Executor readExecutor) throws Exception {
+    final ConnectionStats stats = pipeline.getConnection().getStats();
+    final long start = startAttempt(stats);
+    CompletableFuture<Object> result;
+    try {
+      result = pipeline.sendAsync(this, readExecutor);
+    } catch (Exception e) {
+      endSendAttempt(stats, start);
+      endAttempt(stats, start);
+      throw e;
+    }
+    endSendAttempt(stats, start);
+    return result.whenComplete(new BiConsumer<Object, Throwable>() {
+      public void accept(Object value, Throwable failure) {
+        endAttempt(stats, start);
+      }
+    });
+  }
+
   protected final boolean hasFailed() {
     return this.failed;
   }
@@ -433,4 +504,15 @@ public abstract class AbstractOp implements Op {
   public boolean isGatewaySenderOp() {
     return false;
   }
+
+  /**
+   * Subclasses for AbstractOp should override this method to return true if
+   * the operation can share a pipelined connection with other operations.
+   * Such an operation must read exactly one response (or none) and must not
+   * change the connection, for example its socket timeout.
+   * @see ConnectionPipeline
+   */
+  protected boolean isPipelinable() {
+    return false;
+  }
 }
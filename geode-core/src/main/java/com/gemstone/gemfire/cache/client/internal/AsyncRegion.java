@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.gemstone.gemfire.SystemFailure;
+import com.gemstone.gemfire.cache.DataPolicy;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.execute.Execution;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.TXManagerImpl;
+import com.gemstone.gemfire.internal.cache.Token;
+
+/**
+ * Asynchronous operations on a client region. Each operation returns a
+ * future instead of making the calling thread wait for the server.
+ * <p>
+ * Gets on a {@link DataPolicy#EMPTY} region without a cache loader are sent
+ * by the calling thread and, when the pool has pipelined connections, their
+ * responses are read by a few pool threads so many gets can be in progress
+ * without a thread each. Such gets do not update the region's statistics.
+ * Other operations are run by the pool's async threads, see
+ * {@link PoolImpl#ASYNC_THREADS}, using the region's usual synchronous
+ * methods. Operations in a transaction are run by the calling thread.
+ *
+ * @since Geode 1.0
+ */
+public class AsyncRegion<K,V> {
+  private final LocalRegion region;
+  private final PoolImpl pool;
+
+  /**
+   * @throws IllegalArgumentException if the region is not a client region
+   */
+  public AsyncRegion(Region<K,V> region) {
+    if (!(region instanceof LocalRegion) || ((LocalRegion)region).getServerProxy() == null
+        || !(((LocalRegion)region).getServerProxy().getPool() instanceof PoolImpl)) {
+      throw new IllegalArgumentException("Region " + region.getFullPath() + " is not a client region that uses a pool");
+    }
+    this.region = (LocalRegion)region;
+    this.pool = (PoolImpl)this.region.getServerProxy().getPool();
+  }
+
+  public Region<K,V> getRegion() {
+    return this.region;
+  }
+
+  /**
+   * Gets the value of the given key.
+   * @see Region#get(Object)
+   */
+  @SuppressWarnings("unchecked")
+  public CompletableFuture<V> get(final K key) {
+    if (isGetSentDirectly()) {
+      this.region.checkReadiness();
+      return this.region.getServerProxy().getAsync(key, null).thenApply(new Function<Object, V>() {
+        public V apply(Object value) {
+          return Token.isInvalidOrRemoved(value) ? null : (V)value;
+        }
+      });
+    }
+    return supply(new Callable<V>() {
+      public V call() {
+        return (V)region.get(key);
+      }
+    });
+  }
+
+  /**
+   * Puts the given value.
+   * @see Region#put(Object, Object)
+   */
+  @SuppressWarnings("unchecked")
+  public CompletableFuture<V> put(final K key, final V value) {
+    return supply(new Callable<V>() {
+      public V call() {
+        return (V)region.put(key, value);
+      }
+    });
+  }
+
+  /**
+   * Destroys the given key.
+   * @see Region#destroy(Object)
+   */
+  @SuppressWarnings("unchecked")
+  public CompletableFuture<V> destroy(final K key) {
+    return supply(new Callable<V>() {
+      public V call() {
+        return (V)region.destroy(key);
+      }
+    });
+  }
+
+  /**
+   * Executes the given function with the given execution, which is usually
+   * created with {@link com.gemstone.gemfire.cache.execute.FunctionService#onRegion}.
+   *
+   * @return a future completed with the result of the execution's result
+   *         collector
+   * @see Execution#execute(String)
+   */
+  public CompletableFuture<Object> executeFunction(final Execution execution, final String functionId) {
+    return supply(new Callable<Object>() {
+      public Object call() {
+        return execution.execute(functionId).getResult();
+      }
+    });
+  }
+
+  private boolean isGetSentDirectly() {
+    return this.region.getDataPolicy() == DataPolicy.EMPTY
+        && this.region.getAttributes().getCacheLoader() == null;
+  }
+
+  private <T> CompletableFuture<T> supply(final Callable<T> task) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    if (TXManagerImpl.getCurrentTXUniqueId() != TXManagerImpl.NOTX) {
+      // the transaction is only known to the calling thread
+      run(task, result);
+      return result;
+    }
+    try {
+      this.pool.getAsyncExecutor().execute(new Runnable() {
+        public void run() {
+          AsyncRegion.run(task, result);
+        }
+      });
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private static <T> void run(Callable<T> task, CompletableFuture<T> result) {
+    try {
+      result.complete(task.call());
+    } catch (VirtualMachineError err) {
+      SystemFailure.initiateFailure(err);
+      throw err;
+    } catch (Throwable t) {
+      SystemFailure.checkFailure();
+      result.completeExceptionally(t);
+    }
+  }
+}
@@ -195,6 +195,7 @@ public class AuthenticateUserOp {
 
     @Override
     protected Object attemptReadResponse(Connection cnx) throws Exception {
+      this.responseRead = false;
       Message msg = createResponseMessage();
       if (msg != null) {
         msg.setComms(cnx.getSocket(), cnx.getInputStream(),
@@ -203,12 +204,14 @@ public class AuthenticateUserOp {
           try {
             return processResponse(cnx, msg);
           } finally {
+            this.responseRead = ((ChunkedMessage)msg).isLastChunk();
             msg.unsetComms();
             processSecureBytes(cnx, msg);
           }
         } else {
           try {
             msg.recv();
+            this.responseRead = true;
           } finally {
             msg.unsetComms();
             processSecureBytes(cnx, msg);
@@ -216,6 +219,7 @@ public class AuthenticateUserOp {
           return processResponse(cnx, msg);
         }
       } else {
+        this.responseRead = true;
         return null;
       }
     }
@@ -19,6 +19,7 @@ package com.gemstone.gemfire.cache.client.internal;
 import com.gemstone.gemfire.cache.AttributesFactory;
 import com.gemstone.gemfire.cache.CacheListener;
 import com.gemstone.gemfire.cache.CustomExpiry;
+import com.gemstone.gemfire.cache.EvictionAction;
 import com.gemstone.gemfire.cache.EvictionAttributes;
 import com.gemstone.gemfire.cache.ExpirationAttributes;
 import com.gemstone.gemfire.cache.InterestPolicy;
@@ -30,6 +31,7 @@ import com.gemstone.gemfire.cache.SubscriptionAttributes;
 import com.gemstone.gemfire.cache.client.ClientRegionFactory;
 import com.gemstone.gemfire.cache.client.ClientRegionShortcut;
 import com.gemstone.gemfire.cache.client.Pool;
+import com.gemstone.gemfire.cache.client.PoolManager;
 import com.gemstone.gemfire.compression.Compressor;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
@@ -46,6 +48,11 @@ public class ClientRegionFactoryImpl<K,V> implements ClientRegionFactory<K,V>
   private final AttributesFactory<K,V> attrsFactory;
   private final GemFireCacheImpl cache;
 
+  /**
+   * The size limit of a near cache region, zero if the region is not a near cache.
+   */
+  private int nearCacheMegabytes;
+
   /**
    * Constructs a ClientRegionFactory by creating a DistributedSystem and a Cache. If
    * no DistributedSystem exists it creates a loner DistributedSystem,
@@ -225,6 +232,14 @@ public class ClientRegionFactoryImpl<K,V> implements ClientRegionFactory<K,V>
     return this;
   }
 
+  public ClientRegionFactory<K,V> setNearCache(int maximumMegabytes) {
+    if (maximumMegabytes <= 0) {
+      throw new IllegalArgumentException("maximumMegabytes must be positive but was " + maximumMegabytes);
+    }
+    this.nearCacheMegabytes = maximumMegabytes;
+    return this;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Region<K,V> create(String name) throws RegionExistsException {
@@ -252,9 +267,33 @@ public class ClientRegionFactoryImpl<K,V> implements ClientRegionFactory<K,V>
         }
       }
     }
+    if (this.nearCacheMegabytes > 0) {
+      ra = createNearCacheAttributes(ra);
+    }
     return ra;
   }
 
+  /**
+   * Adds the LRU and the key tracking of a near cache to the given attributes.
+   * A new tracker is used for each region created.
+   */
+  private RegionAttributes<K,V> createNearCacheAttributes(RegionAttributes<K,V> ra) {
+    if (!ra.getDataPolicy().withStorage()) {
+      throw new IllegalStateException("A near cache requires a region shortcut that caches values but the data policy was "
+          + ra.getDataPolicy());
+    }
+    Pool pool = PoolManager.find(ra.getPoolName());
+    if (pool == null || !pool.getSubscriptionEnabled()) {
+      throw new IllegalStateException("A near cache requires a pool with subscriptions enabled but pool "
+          + ra.getPoolName() + " does not have them enabled");
+    }
+    AttributesFactory<K,V> af = new AttributesFactory<K,V>(ra);
+    af.setEvictionAttributes(EvictionAttributes.createLRUMemoryAttributes(this.nearCacheMegabytes, null,
+        EvictionAction.LOCAL_DESTROY));
+    af.addCacheListener(new NearCacheKeyTracker<K,V>((InternalPool)pool));
+    return af.create();
+  }
+
   //  public ClientRegionFactory<K, V> addParallelGatewaySenderId(
 //      String parallelGatewaySenderId) {
 //    this.attrsFactory.addParallelGatewaySenderId(parallelGatewaySenderId);
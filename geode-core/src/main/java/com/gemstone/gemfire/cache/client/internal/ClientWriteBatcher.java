@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.InternalGemFireException;
+import com.gemstone.gemfire.cache.Operation;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Collects puts and destroys done on a client region into putAll and
+ * removeAll batches so that many small writes share one round trip. Each
+ * write returns a future that completes once the batch containing it has
+ * been applied.
+ * <p>
+ * If the region is partitioned and its pool has single hop enabled, writes
+ * are batched per server hosting the key's bucket, so each batch is sent to
+ * one server. A batch is sent once it has {@link #MAX_BATCH_SIZE} keys or
+ * {@link #LINGER_MS} milliseconds after its first write, whichever is first.
+ * <p>
+ * Batches are sent, one at a time, by a single thread in the order they were
+ * completed. A batch only holds puts or only destroys; a write of the other
+ * kind sends the current batch for that server first. A write of a key that
+ * is waiting in the batch for another server, which happens while the
+ * bucket locations are being fetched or after a bucket moved, sends that
+ * batch first too. Writes to a key are therefore applied in the order they
+ * were made. The same thread completes
+ * the futures, so callbacks on them delay the batches that follow.
+ *
+ * @since Geode 1.0
+ */
+public class ClientWriteBatcher<K,V> {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The maximum number of keys in a batch.
+   */
+  public static final int MAX_BATCH_SIZE = Integer.getInteger("gemfire.ClientWriteBatcher.MAX_BATCH_SIZE", 1000);
+
+  /**
+   * The maximum number of milliseconds a write waits for more writes to join
+   * its batch.
+   */
+  public static final long LINGER_MS = Long.getLong("gemfire.ClientWriteBatcher.LINGER_MS", 5L);
+
+  private final Region<K,V> region;
+  private final ClientMetadataService metadataService;
+  private final int maxBatchSize;
+  private final long lingerMillis;
+  private final ScheduledThreadPoolExecutor sender;
+
+  /**
+   * The thread of the sender, which also completes the writes' futures.
+   */
+  private volatile Thread senderThread;
+
+  /**
+   * The batches being filled, by server. The null key is used for writes that
+   * can go to any server. Guarded by this.
+   */
+  private final Map<ServerLocation, Batch> batches = new HashMap<ServerLocation, Batch>();
+
+  /**
+   * The batch being filled that holds each key. Guarded by this.
+   */
+  private final Map<K, Batch> pendingKeys = new HashMap<K, Batch>();
+
+  /**
+   * Guarded by this.
+   */
+  private boolean closed;
+
+  /**
+   * Creates a batcher for the given client region using the default batch
+   * size and linger time.
+   */
+  public ClientWriteBatcher(Region<K,V> region) {
+    this(region, MAX_BATCH_SIZE, LINGER_MS);
+  }
+
+  /**
+   * Creates a batcher for the given client region.
+   *
+   * @param maxBatchSize the maximum number of keys in a batch
+   * @param lingerMillis the maximum time a write waits for its batch to fill
+   * @throws IllegalArgumentException if the region does not use a pool
+   */
+  public ClientWriteBatcher(Region<K,V> region, int maxBatchSize, long lingerMillis) {
+    this(region, getMetadataService(region), maxBatchSize, lingerMillis);
+  }
+
+  ClientWriteBatcher(Region<K,V> region, ClientMetadataService metadataService, int maxBatchSize, long lingerMillis) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive but was " + maxBatchSize);
+    }
+    this.region = region;
+    this.metadataService = metadataService;
+    this.maxBatchSize = maxBatchSize;
+    this.lingerMillis = lingerMillis;
+    final String threadName = "ClientWriteBatcher-" + region.getName();
+    this.sender = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread result = new Thread(r, threadName);
+        result.setDaemon(true);
+        senderThread = result;
+        return result;
+      }
+    });
+    this.sender.setRemoveOnCancelPolicy(true);
+  }
+
+  private static ClientMetadataService getMetadataService(Region<?,?> region) {
+    if (!(region instanceof LocalRegion) || ((LocalRegion)region).getServerProxy() == null) {
+      throw new IllegalArgumentException("Region " + region.getFullPath() + " is not a client region that uses a pool");
+    }
+    LocalRegion lr = (LocalRegion)region;
+    if (!lr.getServerProxy().getPool().getPRSingleHopEnabled()) {
+      return null;
+    }
+    return ((GemFireCacheImpl)lr.getCache()).getClientMetadataService();
+  }
+
+  /**
+   * Puts the given value into the region as part of a batch.
+   *
+   * @return a future that completes once the put has been applied
+   */
+  public CompletableFuture<Void> put(K key, V value) {
+    return add(key, value, false);
+  }
+
+  /**
+   * Destroys the given key as part of a batch. Unlike {@link Region#destroy}
+   * destroying a key that does not exist is not an error.
+   *
+   * @return a future that completes once the destroy has been applied
+   */
+  public CompletableFuture<Void> destroy(K key) {
+    return add(key, null, true);
+  }
+
+  private CompletableFuture<Void> add(K key, V value, boolean destroys) {
+    if (key == null) {
+      throw new NullPointerException("key must not be null");
+    }
+    ServerLocation server = getServer(key, value, destroys);
+    CompletableFuture<Void> result = new CompletableFuture<Void>();
+    synchronized (this) {
+      if (this.closed) {
+        throw new IllegalStateException("ClientWriteBatcher for " + this.region.getFullPath() + " has been closed");
+      }
+      Batch batch = this.batches.get(server);
+      Batch pending = this.pendingKeys.get(key);
+      if (pending != null && pending != batch) {
+        // the key was routed to another server
+        send(pending);
+      }
+      if (batch != null && batch.destroys != destroys) {
+        send(batch);
+        batch = null;
+      }
+      if (batch == null) {
+        batch = new Batch(server, destroys);
+        this.batches.put(server, batch);
+        batch.scheduleLinger();
+      }
+      batch.add(key, value, result);
+      this.pendingKeys.put(key, batch);
+      if (batch.size() >= this.maxBatchSize) {
+        send(batch);
+      }
+    }
+    return result;
+  }
+
+  ServerLocation getServer(K key, V value, boolean destroys) {
+    if (this.metadataService == null) {
+      return null;
+    }
+    return this.metadataService.getBucketServerLocation(this.region,
+        destroys ? Operation.DESTROY : Operation.UPDATE, key, value, null);
+  }
+
+  /**
+   * Removes the given batch from the batches being filled and queues it to be
+   * sent. Must be called while synchronized on this so batches are queued in
+   * the order they were completed.
+   */
+  private void send(final Batch batch) {
+    removeFromBatches(batch);
+    batch.cancelLinger();
+    this.sender.execute(new Runnable() {
+      public void run() {
+        batch.send();
+      }
+    });
+  }
+
+  /**
+   * Removes the given batch from the batches being filled. Must be called
+   * while synchronized on this.
+   */
+  private void removeFromBatches(Batch batch) {
+    this.batches.remove(batch.server);
+    this.pendingKeys.keySet().removeAll(batch.entries.keySet());
+  }
+
+  /**
+   * Sends all batches being filled and waits for all batches to be applied.
+   * When called from a callback of a write's future, which runs on the
+   * thread sending the batches, the batches are sent but not waited for.
+   */
+  public void flush() {
+    Future<?> done;
+    synchronized (this) {
+      for (Batch batch : new ArrayList<Batch>(this.batches.values())) {
+        send(batch);
+      }
+      if (Thread.currentThread() == this.senderThread) {
+        // the sender runs the batches once this callback returns
+        return;
+      }
+      done = this.sender.submit(new Runnable() {
+        public void run() {
+        }
+      });
+    }
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          done.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new InternalGemFireException(e);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Sends all pending writes and stops this batcher. Writes made after close
+   * fail with an {@link IllegalStateException}. Like {@link #flush} it does
+   * not wait for the writes when called from a callback of a write's future.
+   */
+  public void close() {
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+    }
+    flush();
+    this.sender.shutdown();
+  }
+
+  /**
+   * The writes of one kind for one server.
+   */
+  private class Batch {
+    final ServerLocation server;
+    final boolean destroys;
+    final Map<K,V> entries = new LinkedHashMap<K,V>();
+    final List<CompletableFuture<Void>> results = new ArrayList<CompletableFuture<Void>>();
+    ScheduledFuture<?> linger;
+
+    Batch(ServerLocation server, boolean destroys) {
+      this.server = server;
+      this.destroys = destroys;
+    }
+
+    void add(K key, V value, CompletableFuture<Void> result) {
+      this.entries.put(key, value);
+      this.results.add(result);
+    }
+
+    int size() {
+      return this.entries.size();
+    }
+
+    void scheduleLinger() {
+      this.linger = sender.schedule(new Runnable() {
+        public void run() {
+          lingerExpired();
+        }
+      }, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void cancelLinger() {
+      if (this.linger != null) {
+        this.linger.cancel(false);
+      }
+    }
+
+    private void lingerExpired() {
+      synchronized (ClientWriteBatcher.this) {
+        if (batches.get(this.server) != this) {
+          // already queued to be sent
+          return;
+        }
+        removeFromBatches(this);
+      }
+      // batches queued after this one are run by the sender after this returns
+      send();
+    }
+
+    void send() {
+      try {
+        if (this.destroys) {
+          region.removeAll(this.entries.keySet());
+        } else {
+          region.putAll(this.entries);
+        }
+      } catch (RuntimeException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Batch of {} writes to {} failed", size(), region.getFullPath(), e);
+        }
+        for (CompletableFuture<Void> result : this.results) {
+          result.completeExceptionally(e);
+        }
+        return;
+      }
+      for (CompletableFuture<Void> result : this.results) {
+        result.complete(null);
+      }
+    }
+  }
+}
@@ -24,6 +24,8 @@ import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.Logger;
@@ -34,6 +36,7 @@ import com.gemstone.gemfire.ForcedDisconnectException;
 import com.gemstone.gemfire.cache.client.internal.ExecuteFunctionOp.ExecuteFunctionOpImpl;
 import com.gemstone.gemfire.cache.client.internal.ExecuteRegionFunctionOp.ExecuteRegionFunctionOpImpl;
 import com.gemstone.gemfire.cache.client.internal.ExecuteRegionFunctionSingleHopOp.ExecuteRegionFunctionSingleHopOpImpl;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManagerImpl;
 import com.gemstone.gemfire.cache.wan.GatewaySender;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.distributed.internal.ServerLocation;
@@ -51,7 +54,8 @@ import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
  * 
  * The execute  method of this class is synchronized to
  * prevent two ops from using the client to server connection
- *  at the same time.
+ *  at the same time, unless pipelining has been enabled in which
+ *  case ops are sent and read through a {@link ConnectionPipeline}.
  * @since 5.7
  *
  */
@@ -84,6 +88,8 @@ public class ConnectionImpl implements Connection {
 
   private HandShake handShake;
 
+  private volatile ConnectionPipeline pipeline;
+
   public ConnectionImpl(InternalDistributedSystem ds, CancelCriterion cancelCriterion) {
 //    this.cancelCriterion = cancelCriterion;
     this.ds = ds;
@@ -204,6 +210,24 @@ public class ConnectionImpl implements Connection {
       this.commBufferForAsyncRead = null;
       ServerConnection.releaseCommBuffer(bb);
     }
+    ConnectionPipeline p = this.pipeline;
+    if (p != null) {
+      p.releaseBuffer();
+    }
+  }
+
+  /**
+   * Lets ops that are executed on this connection from now on be in progress
+   * at the same time. Must be called before the connection is shared.
+   */
+  void enablePipelining() throws SocketException {
+    if (this.pipeline == null) {
+      this.pipeline = new ConnectionPipeline(this);
+    }
+  }
+
+  boolean isPipelined() {
+    return this.pipeline != null;
   }
 
   public ByteBuffer getCommBuffer() throws SocketException {
@@ -259,6 +283,19 @@ public class ConnectionImpl implements Connection {
       endpoint.updateLastExecute();
       return result;
     }
+    // only short request/response ops tell how quickly the server answers,
+    // and only latency aware connection selection asks
+    long start = ConnectionManagerImpl.isLatencyAware()
+        && (op instanceof AbstractOp) && ((AbstractOp)op).isPipelinable() ? System.nanoTime() : 0;
+    ConnectionPipeline p = this.pipeline;
+    if (p != null && (op instanceof AbstractOp)) {
+      result = ((AbstractOp)op).attemptPipelined(p);
+      endpoint.updateLastExecute();
+      if (start != 0) {
+        endpoint.recordLatency(System.nanoTime() - start);
+      }
+      return result;
+    }
     synchronized (this) {
       if (op instanceof ExecuteFunctionOpImpl
           || op instanceof ExecuteRegionFunctionOpImpl
@@ -272,11 +309,31 @@ public class ConnectionImpl implements Connection {
       }
     }
     endpoint.updateLastExecute();
+    if (start != 0) {
+      endpoint.recordLatency(System.nanoTime() - start);
+    }
     return result;
 
   }
   
   
+  /**
+   * Sends the given op without waiting for its response, which is read by a
+   * task run by the given executor.
+   *
+   * @return a future completed with the op's result, or null if this
+   *         connection is not pipelined
+   */
+  CompletableFuture<Object> executeAsync(AbstractOp op, Executor readExecutor) throws Exception {
+    ConnectionPipeline p = this.pipeline;
+    if (p == null) {
+      return null;
+    }
+    CompletableFuture<Object> result = op.attemptPipelinedAsync(p, readExecutor);
+    endpoint.updateLastExecute();
+    return result;
+  }
+
   public static void loadEmergencyClasses() {
     //do nothing
   }
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionDestroyedException;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerConnection;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerQueueStatus;
+
+/**
+ * Lets many ops be in progress on one client to server connection at the
+ * same time. Ops send their request as soon as no other op is sending and
+ * then wait for their turn to read their response. A server connection
+ * processes the requests it reads one at a time and replies in the same
+ * order, so the n-th response read belongs to the n-th request sent.
+ * <p>
+ * Requests are sent using the connection's comm buffer and responses are read
+ * using a second buffer owned by the pipeline, so that sending and reading
+ * can happen at the same time.
+ * <p>
+ * Ops sent with {@link #sendAsync} do not wait for their response. Their
+ * responses are read, in order, by a single task at a time that completes
+ * their futures, so no thread is tied up per op.
+ * <p>
+ * If any op fails while sending or reading, the stream can no longer be
+ * trusted and all ops waiting on the pipeline fail with a
+ * {@link ConnectionDestroyedException}. An exception thrown after an op has
+ * read its whole response, such as a {@code ServerOperationException}
+ * reporting a failure on the server, only fails that op.
+ *
+ * @since Geode 1.0
+ */
+class ConnectionPipeline {
+  private final ConnectionImpl cnx;
+  private final Connection readView;
+  private final Object sendLock = new Object();
+  private final Object readLock = new Object();
+
+  private volatile ByteBuffer readBuffer;
+
+  /**
+   * The ticket of the next request sent. Guarded by sendLock.
+   */
+  private long nextTicket;
+
+  /**
+   * The ticket of the request whose response is read next. Guarded by readLock.
+   */
+  private long readTurn;
+
+  /**
+   * The exception that broke this pipeline. Guarded by readLock.
+   */
+  private Exception failure;
+
+  /**
+   * Ops sent by {@link #sendAsync} whose responses have not been read, in the
+   * order they were sent. Guarded by sendLock.
+   */
+  private final ArrayDeque<AsyncResponse> asyncResponses = new ArrayDeque<AsyncResponse>();
+
+  /**
+   * True while a task is reading the responses in asyncResponses. Guarded by
+   * sendLock.
+   */
+  private boolean asyncReaderRunning;
+
+  ConnectionPipeline(ConnectionImpl cnx) throws SocketException {
+    this.cnx = cnx;
+    this.readBuffer = ServerConnection.allocateCommBuffer(cnx.getCommBuffer().capacity(), cnx.getSocket());
+    this.readView = new ReadView();
+  }
+
+  ConnectionImpl getConnection() {
+    return this.cnx;
+  }
+
+  /**
+   * Sends the given op's request.
+   *
+   * @return the ticket to pass to {@link #readResponse}
+   */
+  long send(AbstractOp op) throws Exception {
+    synchronized (this.sendLock) {
+      checkFailure();
+      try {
+        op.attemptSend(this.cnx);
+      } catch (Exception e) {
+        fail(e);
+        throw e;
+      }
+      return this.nextTicket++;
+    }
+  }
+
+  /**
+   * Sends the given op's request without waiting for its response. The
+   * response is read by a task run by the given executor.
+   *
+   * @return a future completed with the op's result by the reading task.
+   *         Anything run when it completes must not wait for this pipeline,
+   *         so callers should hand the result to another thread.
+   */
+  CompletableFuture<Object> sendAsync(AbstractOp op, Executor readExecutor) throws Exception {
+    AsyncResponse response;
+    synchronized (this.sendLock) {
+      // queued while holding the send lock so responses are queued in ticket order
+      response = new AsyncResponse(op, send(op));
+      this.asyncResponses.add(response);
+      if (this.asyncReaderRunning) {
+        return response.result;
+      }
+      this.asyncReaderRunning = true;
+    }
+    try {
+      readExecutor.execute(new Runnable() {
+        public void run() {
+          readAsyncResponses();
+        }
+      });
+    } catch (RuntimeException e) {
+      // responses can not be left unread; fail the pipeline
+      fail(e);
+      readAsyncResponses();
+    }
+    return response.result;
+  }
+
+  private void readAsyncResponses() {
+    while (true) {
+      AsyncResponse response;
+      synchronized (this.sendLock) {
+        response = this.asyncResponses.poll();
+        if (response == null) {
+          this.asyncReaderRunning = false;
+          return;
+        }
+      }
+      try {
+        response.result.complete(readResponse(response.op, response.ticket));
+      } catch (Exception e) {
+        response.result.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Waits for the responses to all requests sent before the given ticket to be
+   * read and then reads the response of the given op.
+   */
+  Object readResponse(AbstractOp op, long ticket) throws Exception {
+    boolean interrupted = false;
+    synchronized (this.readLock) {
+      // Leaving before our response is read would hand it to the next op,
+      // so keep waiting if interrupted; the socket read timeout bounds the wait.
+      while (this.readTurn != ticket && this.failure == null) {
+        try {
+          this.readLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      checkFailure();
+      try {
+        return op.attemptReadResponse(this.readView);
+      } catch (Exception e) {
+        if (!op.responseRead || e instanceof IOException) {
+          fail(e);
+        }
+        throw e;
+      }
+    } finally {
+      synchronized (this.readLock) {
+        this.readTurn++;
+        this.readLock.notifyAll();
+      }
+    }
+  }
+
+  private void checkFailure() {
+    synchronized (this.readLock) {
+      if (this.failure != null) {
+        throw new ConnectionDestroyedException("pipelined connection " + this.cnx + " failed", this.failure);
+      }
+    }
+  }
+
+  private void fail(Exception e) {
+    synchronized (this.readLock) {
+      if (this.failure == null) {
+        this.failure = e;
+      }
+      this.readLock.notifyAll();
+    }
+  }
+
+  /**
+   * Releases the buffer used to read responses. Called once the connection has
+   * been destroyed.
+   */
+  void releaseBuffer() {
+    ByteBuffer bb = this.readBuffer;
+    if (bb != null) {
+      this.readBuffer = null;
+      ServerConnection.releaseCommBuffer(bb);
+    }
+  }
+
+  private static class AsyncResponse {
+    final AbstractOp op;
+    final long ticket;
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+    AsyncResponse(AbstractOp op, long ticket) {
+      this.op = op;
+      this.ticket = ticket;
+    }
+  }
+
+  /**
+   * The connection as seen by an op reading its response. Only differs from
+   * the connection by using the pipeline's read buffer.
+   */
+  private class ReadView implements Connection {
+    public Socket getSocket() {
+      return cnx.getSocket();
+    }
+
+    public ByteBuffer getCommBuffer() throws SocketException {
+      ByteBuffer bb = readBuffer;
+      if (bb == null || cnx.isDestroyed()) {
+        throw new SocketException("socket was closed");
+      }
+      return bb;
+    }
+
+    public ConnectionStats getStats() {
+      return cnx.getStats();
+    }
+
+    public void destroy() {
+      cnx.destroy();
+    }
+
+    public boolean isDestroyed() {
+      return cnx.isDestroyed();
+    }
+
+    public void close(boolean keepAlive) throws Exception {
+      cnx.close(keepAlive);
+    }
+
+    public ServerLocation getServer() {
+      return cnx.getServer();
+    }
+
+    public Endpoint getEndpoint() {
+      return cnx.getEndpoint();
+    }
+
+    public ServerQueueStatus getQueueStatus() {
+      return cnx.getQueueStatus();
+    }
+
+    public Object execute(Op op) throws Exception {
+      throw new IllegalStateException("ops can not be executed while reading a response");
+    }
+
+    public void emergencyClose() {
+      cnx.emergencyClose();
+    }
+
+    public short getWanSiteVersion() {
+      return cnx.getWanSiteVersion();
+    }
+
+    public void setWanSiteVersion(short wanSiteVersion) {
+      cnx.setWanSiteVersion(wanSiteVersion);
+    }
+
+    public int getDistributedSystemId() {
+      return cnx.getDistributedSystemId();
+    }
+
+    public OutputStream getOutputStream() {
+      return cnx.getOutputStream();
+    }
+
+    public InputStream getInputStream() {
+      return cnx.getInputStream();
+    }
+
+    public void setConnectionID(long id) {
+      cnx.setConnectionID(id);
+    }
+
+    public long getConnectionID() {
+      return cnx.getConnectionID();
+    }
+
+    @Override
+    public String toString() {
+      return cnx.toString();
+    }
+  }
+}
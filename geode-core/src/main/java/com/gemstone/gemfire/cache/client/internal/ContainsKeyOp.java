@@ -70,6 +70,11 @@ public class ContainsKeyOp {
     protected Object processResponse(Message msg) throws Exception {
       return processObjResponse(msg, "containsKey");
     }
+    @Override
+    protected boolean isPipelinable() {
+      return true;
+    }
+
     @Override
     protected boolean isErrorResponse(int msgType) {
       return msgType == MessageType.CONTAINS_KEY_DATA_ERROR;
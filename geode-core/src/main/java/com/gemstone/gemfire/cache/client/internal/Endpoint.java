@@ -16,12 +16,15 @@
  */
 package com.gemstone.gemfire.cache.client.internal;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.gemstone.gemfire.distributed.DistributedMember;
 import com.gemstone.gemfire.distributed.DistributedSystem;
 import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.internal.util.DecayingAverage;
 
 /**
  * Represents a server. Keeps track of information about the specific server
@@ -32,6 +35,9 @@ public class Endpoint {
   
   private AtomicLong lastExecute = new AtomicLong();
   private AtomicInteger references = new AtomicInteger();
+  private final LongAdder finishedRequests = new LongAdder();
+  private final LongAdder finishedRequestNanos = new LongAdder();
+  private final DecayingAverage latency = new DecayingAverage(0.2, TimeUnit.SECONDS.toNanos(10));
   private final ServerLocation location;
   private final ConnectionStats stats;
   private final EndpointManagerImpl manager;
@@ -52,6 +58,30 @@ public class Endpoint {
     this.lastExecute.set(System.nanoTime());
   }
 
+  /**
+   * Records how long the server took to answer a request. The time is only
+   * added up here and folded into the moving average when it is read.
+   */
+  public void recordLatency(long nanos) {
+    this.finishedRequests.increment();
+    this.finishedRequestNanos.add(nanos);
+  }
+
+  /**
+   * Returns the moving average of the time the server took to answer a
+   * request, in nanoseconds. The requests finished since the previous call
+   * count as one sample of their mean time.
+   */
+  public double getLatencyNanos() {
+    long now = System.nanoTime();
+    long count = this.finishedRequests.sumThenReset();
+    long nanos = this.finishedRequestNanos.sumThenReset();
+    if (count > 0) {
+      this.latency.record((double) nanos / count, now);
+    }
+    return this.latency.get(now);
+  }
+
   private long getLastExecute() {
     return lastExecute.get();
   }
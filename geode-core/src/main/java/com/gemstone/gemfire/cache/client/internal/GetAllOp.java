@@ -44,6 +44,15 @@ import com.gemstone.gemfire.internal.logging.LogService;
 public class GetAllOp {
   
   private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The maximum number of keys sent to a server in one getAll message. A
+   * getAll of more keys sends them in several messages, one after another,
+   * so neither side has to hold a message for all of the keys. The client
+   * still holds all of the values it gets. Zero means all of the keys for a
+   * server are sent in one message.
+   */
+  static final int MAX_KEYS_PER_MESSAGE = Integer.getInteger("gemfire.GetAllOp.MAX_KEYS_PER_MESSAGE", 10000);
   
   /**
    * Does a region getAll on a server using connections from the given pool
@@ -58,14 +67,14 @@ public class GetAllOp {
                                                List keys,
                                                Object callback)
   {
-    AbstractOp op = new GetAllOpImpl(region, keys, callback);
+    AbstractOp op = createOp(region, keys, callback);
     op.initMessagePart();
     return ((VersionedObjectList)pool.execute(op)).setKeys(keys);
   }
   
   public static VersionedObjectList execute(ExecutablePool pool,
       Region region, List keys, int retryAttempts, Object callback) {
-    AbstractOp op = new GetAllOpImpl(region.getFullPath(), keys, callback);
+    AbstractOp op = createOp(region.getFullPath(), keys, callback);
     ClientMetadataService cms = ((LocalRegion)region).getCache()
         .getClientMetadataService();
 
@@ -121,6 +130,17 @@ public class GetAllOp {
   private GetAllOp() {
     // no instances allowed
   }
+
+  /**
+   * Creates an op that gets the given keys in messages of at most
+   * {@link #MAX_KEYS_PER_MESSAGE} keys.
+   */
+  static GetAllOpImpl createOp(String region, List keys, Object callback) {
+    if (MAX_KEYS_PER_MESSAGE > 0 && keys.size() > MAX_KEYS_PER_MESSAGE) {
+      return new ChunkedGetAllOpImpl(region, keys, callback, MAX_KEYS_PER_MESSAGE);
+    }
+    return new GetAllOpImpl(region, keys, callback);
+  }
   
   static List constructGetAllTasks(String region,
       final Map<ServerLocation, HashSet> serverToFilterMap, final PoolImpl pool, final Object callback) {
@@ -133,7 +153,7 @@ public class GetAllOp {
     }
     for (ServerLocation server : servers) {
       Set filterSet = serverToFilterMap.get(server);
-      AbstractOp getAllOp = new GetAllOpImpl(region, new ArrayList(filterSet), callback);
+      AbstractOp getAllOp = createOp(region, new ArrayList(filterSet), callback);
 
       SingleHopOperationCallable task = new SingleHopOperationCallable(
           new ServerLocation(server.getHostName(), server.getPort()), pool,
@@ -238,4 +258,98 @@ public class GetAllOp {
       stats.endGetAll(start, hasTimedOut(), hasFailed());
     }
   }
+
+  /**
+   * A getAll that sends its keys in several messages, one after another on
+   * the connection it is attempted on. The results of each message are
+   * added to the result as they are read. If any message fails the whole op
+   * fails and is retried like any other getAll. The getAll is counted once
+   * in the connection stats however many messages it sends.
+   * <p>
+   * This bounds the size of each message, not the memory the client needs:
+   * the values of all of the keys are still held in one result before the
+   * getAll returns. PutAll messages are not split at all.
+   */
+  static class ChunkedGetAllOpImpl extends GetAllOpImpl {
+    private final String region;
+    private final Object callback;
+    private final int keysPerMessage;
+
+    public ChunkedGetAllOpImpl(String region, List keys, Object callback, int keysPerMessage) {
+      super(region, keys, callback);
+      this.region = region;
+      this.callback = callback;
+      this.keysPerMessage = keysPerMessage;
+    }
+
+    @Override
+    protected void initMessagePart() {
+      // each message is created when it is sent
+    }
+
+    @Override
+    public Object attempt(Connection cnx) throws Exception {
+      this.failed = true;
+      this.timedOut = false;
+      ConnectionStats stats = cnx.getStats();
+      long start = startAttempt(stats);
+      try {
+        List keys = getKeyList();
+        VersionedObjectList result = null;
+        for (int from = 0; from < keys.size(); from += this.keysPerMessage) {
+          int to = Math.min(keys.size(), from + this.keysPerMessage);
+          GetAllOpImpl chunk = createChunkOp(keys.subList(from, to));
+          VersionedObjectList chunkResult;
+          try {
+            chunkResult = (VersionedObjectList)chunk.attempt(cnx);
+          } finally {
+            this.failed = chunk.hasFailed();
+            this.timedOut = chunk.hasTimedOut();
+          }
+          if (result == null) {
+            result = chunkResult;
+          } else {
+            result.addAll(chunkResult);
+          }
+        }
+        return result;
+      } finally {
+        // each message is sent after the response to the one before it has
+        // been read, so the send part of the getAll ends with the getAll
+        endSendAttempt(stats, start);
+        endAttempt(stats, start);
+      }
+    }
+
+    /**
+     * Creates the op that sends one message with the given keys. Tests
+     * override this.
+     */
+    GetAllOpImpl createChunkOp(List keys) {
+      GetAllOpImpl chunk = new GetAllChunkOpImpl(this.region, keys, this.callback);
+      chunk.initMessagePart();
+      return chunk;
+    }
+  }
+
+  /**
+   * One message of a {@link ChunkedGetAllOpImpl}. It leaves the connection
+   * stats to the chunked op.
+   */
+  static class GetAllChunkOpImpl extends GetAllOpImpl {
+    public GetAllChunkOpImpl(String region, List keys, Object callback) {
+      super(region, keys, callback);
+    }
+
+    @Override
+    protected long startAttempt(ConnectionStats stats) {
+      return 0;
+    }
+    @Override
+    protected void endSendAttempt(ConnectionStats stats, long start) {
+    }
+    @Override
+    protected void endAttempt(ConnectionStats stats, long start) {
+    }
+  }
 }
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.cache.EntryEvent;
+import com.gemstone.gemfire.cache.EntryNotFoundException;
+import com.gemstone.gemfire.cache.InterestResultPolicy;
+import com.gemstone.gemfire.cache.Operation;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionEvent;
+import com.gemstone.gemfire.cache.util.CacheListenerAdapter;
+import com.gemstone.gemfire.internal.cache.EntryEventImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Keeps the interest of a near cache region in step with the keys it holds.
+ * Keys loaded from a server are registered, in batches, with interest that
+ * only receives invalidates; keys evicted by the region's LRU are
+ * unregistered. This way the server queues only carry the keys the client
+ * has read, without their values.
+ * <p>
+ * Keys are registered with {@link InterestResultPolicy#KEYS_VALUES} so that an
+ * update made between a key being read and its interest being registered is
+ * not missed. The cost is that the value of every key read is sent by the
+ * server twice, once for the read and once for the registration. If
+ * registration fails the keys are invalidated locally so they are read from
+ * the server, and registered, again.
+ * <p>
+ * Interest is changed by a thread of the tracker's own, so that the round
+ * trips to the server do not hold up the pool's background tasks. The thread
+ * exits when no keys have been read or evicted for a while.
+ *
+ * @since Geode 1.0
+ */
+class NearCacheKeyTracker<K,V> extends CacheListenerAdapter<K,V> {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of milliseconds to wait for more keys before registering
+   * interest in the keys read so far.
+   */
+  static final long BATCH_DELAY_MS = Long.getLong("gemfire.NearCache.BATCH_DELAY_MS", 10L);
+
+  /**
+   * The number of milliseconds the interest thread waits for more work
+   * before it exits.
+   */
+  private static final long THREAD_KEEP_ALIVE_MS = 60 * 1000;
+
+  /**
+   * Keys that have been registered, or are waiting to be.
+   */
+  private final Map<Object, Boolean> tracked = new ConcurrentHashMap<Object, Boolean>();
+
+  /**
+   * Keys waiting for their interest to change. True means register and false
+   * means unregister; the last change made to a key wins.
+   */
+  private final Map<Object, Boolean> pending = new ConcurrentHashMap<Object, Boolean>();
+
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final ScheduledExecutorService executor;
+
+  private volatile LocalRegion region;
+
+  NearCacheKeyTracker(InternalPool pool) {
+    this(createExecutor(pool.getName()), null);
+  }
+
+  /**
+   * @param executor runs the interest changes
+   * @param region the tracked region, null to use the region of the first
+   *          event received
+   */
+  NearCacheKeyTracker(ScheduledExecutorService executor, LocalRegion region) {
+    this.executor = executor;
+    this.region = region;
+  }
+
+  private static ScheduledExecutorService createExecutor(final String poolName) {
+    ScheduledThreadPoolExecutor result = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Near Cache Interest Processor for pool " + poolName);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    result.setKeepAliveTime(THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+    result.allowCoreThreadTimeOut(true);
+    result.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    return result;
+  }
+
+  @Override
+  public void afterCreate(EntryEvent<K,V> event) {
+    loaded(event);
+  }
+
+  @Override
+  public void afterUpdate(EntryEvent<K,V> event) {
+    loaded(event);
+  }
+
+  @Override
+  public void afterDestroy(EntryEvent<K,V> event) {
+    // a destroy from the server leaves the interest in place for the next read
+    if (event.getOperation().isEviction() || event.getOperation() == Operation.LOCAL_DESTROY) {
+      Object key = event.getKey();
+      if (this.tracked.remove(key) != null) {
+        changeInterest(event, key, Boolean.FALSE);
+      }
+    }
+  }
+
+  @Override
+  public void afterRegionDestroy(RegionEvent<K,V> event) {
+    // interest goes away with the region
+    this.tracked.clear();
+    this.pending.clear();
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+  private void loaded(EntryEvent<K,V> event) {
+    if (!event.getOperation().isLocalLoad() || !((EntryEventImpl)event).isFromServer()) {
+      return;
+    }
+    Object key = event.getKey();
+    if (this.tracked.put(key, Boolean.TRUE) == null) {
+      changeInterest(event, key, Boolean.TRUE);
+    }
+  }
+
+  private void changeInterest(EntryEvent<K,V> event, Object key, Boolean register) {
+    this.pending.put(key, register);
+    if (this.region == null) {
+      this.region = (LocalRegion)event.getRegion();
+    }
+    if (this.flushScheduled.compareAndSet(false, true)) {
+      try {
+        this.executor.schedule(new Runnable() {
+          public void run() {
+            flush();
+          }
+        }, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // the region is closing
+        this.flushScheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Registers and unregisters the interest of all pending keys.
+   */
+  void flush() {
+    this.flushScheduled.set(false);
+    List<Object> register = new ArrayList<Object>();
+    List<Object> unregister = new ArrayList<Object>();
+    for (Map.Entry<Object, Boolean> entry : this.pending.entrySet()) {
+      Boolean change = entry.getValue();
+      if (this.pending.remove(entry.getKey(), change)) {
+        (change.booleanValue() ? register : unregister).add(entry.getKey());
+      }
+    }
+    LocalRegion r = this.region;
+    if (r == null || r.isDestroyed()) {
+      return;
+    }
+    if (!unregister.isEmpty()) {
+      try {
+        r.unregisterInterest(unregister);
+      } catch (RuntimeException e) {
+        // the server drops the interest when this client's queue goes away
+        if (logger.isDebugEnabled()) {
+          logger.debug("Unable to unregister near cache interest in {} keys of {}", unregister.size(), r.getFullPath(), e);
+        }
+      }
+    }
+    if (!register.isEmpty()) {
+      try {
+        r.registerInterest(register, InterestResultPolicy.KEYS_VALUES, false, false);
+      } catch (RuntimeException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Unable to register near cache interest in {} keys of {}", register.size(), r.getFullPath(), e);
+        }
+        forget(r, register);
+      }
+    }
+  }
+
+  /**
+   * Invalidates keys whose interest could not be registered since their values
+   * would no longer be kept up to date.
+   */
+  private void forget(Region<?,?> r, List<Object> keys) {
+    for (Object key : keys) {
+      this.tracked.remove(key);
+      try {
+        r.localInvalidate(key);
+      } catch (EntryNotFoundException ignore) {
+      } catch (RuntimeException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Unable to invalidate near cache key {} of {}", key, r.getFullPath(), e);
+        }
+      }
+    }
+  }
+}
@@ -28,6 +28,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
 
 import org.apache.logging.log4j.Logger;
 
@@ -37,6 +42,7 @@ import com.gemstone.gemfire.CopyException;
 import com.gemstone.gemfire.GemFireException;
 import com.gemstone.gemfire.GemFireIOException;
 import com.gemstone.gemfire.SerializationException;
+import com.gemstone.gemfire.SystemFailure;
 import com.gemstone.gemfire.cache.CacheRuntimeException;
 import com.gemstone.gemfire.cache.RegionDestroyedException;
 import com.gemstone.gemfire.cache.SynchronizationCommitConflictException;
@@ -78,11 +84,18 @@ public class OpExecutorImpl implements ExecutablePool {
   
   private static final boolean TRY_SERVERS_ONCE = Boolean.getBoolean("gemfire.PoolImpl.TRY_SERVERS_ONCE");
   private static final int TX_RETRY_ATTEMPT = Integer.getInteger("gemfire.txRetryAttempt", 500);
+  /**
+   * The number of connections, to any server and to each server for single
+   * hop, that are shared by pipelinable ops. Zero, the default, disables
+   * pipelining.
+   */
+  private static final int PIPELINED_CONNECTIONS = Integer.getInteger("gemfire.PoolImpl.PIPELINED_CONNECTIONS", 0);
   
   private final ConnectionManager connectionManager;
   private final int retryAttempts;
   private final long serverTimeout;
   private final boolean threadLocalConnections;
+  private final PipelinedConnections pipelinedConnections;
   private final ThreadLocal<Connection> localConnection = new ThreadLocal<Connection>();
   /**
    * maps serverLocations to Connections when threadLocalConnections is enabled with single-hop.
@@ -117,12 +130,133 @@ public class OpExecutorImpl implements ExecutablePool {
     this.threadLocalConnections = threadLocalConnections;
     this.cancelCriterion = cancelCriterion;
     this.pool = pool;
+    if (PIPELINED_CONNECTIONS > 0) {
+      this.pipelinedConnections = new PipelinedConnections(manager, PIPELINED_CONNECTIONS, serverTimeout);
+    } else {
+      this.pipelinedConnections = null;
+    }
   }  
   
   public Object execute(Op op) {
     return execute(op, retryAttempts);
   }
   
+  /**
+   * Executes the given op without making the calling thread wait for its
+   * result. A pipelinable op is sent on a shared connection by the calling
+   * thread and its response is read by a task run by readExecutor. Other ops,
+   * and ops whose shared connection fails, are executed, with the usual
+   * retries, by a task run by executor. The returned future is always
+   * completed by the calling thread or by executor, never by the thread that
+   * reads responses, so callbacks on it may execute ops on this pool.
+   * <p>
+   * Ops in a transaction or with server affinity depend on the calling
+   * thread's state so they are executed by the calling thread.
+   *
+   * @return a future completed with the op's result
+   */
+  public CompletableFuture<Object> executeAsync(final Op op, Executor readExecutor, final Executor executor) {
+    if (this.serverAffinity.get() || TXManagerImpl.getCurrentTXUniqueId() != TXManagerImpl.NOTX) {
+      CompletableFuture<Object> result = new CompletableFuture<Object>();
+      try {
+        result.complete(execute(op));
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      return result;
+    }
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+    if (isPipelinable(op)) {
+      final Connection shared = this.pipelinedConnections.getConnection();
+      Connection impl = shared == null ? null : this.connectionManager.getConnection(shared);
+      if (impl instanceof ConnectionImpl) {
+        CompletableFuture<Object> pending;
+        try {
+          pending = ((ConnectionImpl)impl).executeAsync((AbstractOp)op, readExecutor);
+        } catch (Exception e) {
+          retryAsync(op, shared, e, executor, result);
+          return result;
+        }
+        if (pending != null) {
+          pending.whenComplete(new BiConsumer<Object, Throwable>() {
+            public void accept(final Object value, final Throwable failure) {
+              // runs on the thread reading the pipeline; complete the
+              // caller's future on another thread so that its callbacks can
+              // not block the reads they may be waiting for
+              runLater(executor, new Runnable() {
+                public void run() {
+                  if (failure == null) {
+                    result.complete(value);
+                  } else {
+                    retryAsync(op, shared, failure, executor, result);
+                  }
+                }
+              });
+            }
+          });
+          return result;
+        }
+      }
+    }
+    executeLater(op, executor, result);
+    return result;
+  }
+
+  /**
+   * Handles an op that failed on a shared connection like {@link #execute}
+   * does, retrying it on a connection of its own if it can be retried.
+   */
+  private void retryAsync(Op op, Connection shared, Throwable failure, Executor executor,
+      CompletableFuture<Object> result) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    if (!(failure instanceof Exception)) {
+      result.completeExceptionally(failure);
+      return;
+    }
+    try {
+      handleException(failure, shared, 0, this.retryAttempts == 0);
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+      return;
+    }
+    ((AbstractOp)op).getMessage().setIsRetry();
+    executeLater(op, executor, result);
+  }
+
+  /**
+   * Runs the given task with the given executor, or with the calling thread
+   * if the executor no longer accepts tasks because the pool is closing.
+   */
+  private static void runLater(Executor executor, Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.run();
+    }
+  }
+
+  private void executeLater(final Op op, Executor executor, final CompletableFuture<Object> result) {
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            result.complete(execute(op));
+          } catch (VirtualMachineError err) {
+            SystemFailure.initiateFailure(err);
+            throw err;
+          } catch (Throwable t) {
+            SystemFailure.checkFailure();
+            result.completeExceptionally(t);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
   public Object execute(Op op, int retries) {
     if (this.serverAffinity.get()) {
       ServerLocation loc = this.affinityServerLocation.get();
@@ -135,6 +269,22 @@ public class OpExecutorImpl implements ExecutablePool {
       }
       return executeWithServerAffinity(loc, op);
     }
+    if (isPipelinable(op)) {
+      Connection shared = this.pipelinedConnections.getConnection();
+      if (shared != null) {
+        try {
+          return executeWithPossibleReAuthentication(shared, op);
+        } catch (Exception e) {
+          // throws if the op should not be retried; otherwise
+          // retry it on a connection of its own
+          handleException(e, shared, 0, retries == 0);
+          ((AbstractOp)op).getMessage().setIsRetry();
+          if (retries > 0) {
+            retries--;
+          }
+        }
+      }
+    }
     boolean success = false;
     
     Set attemptedServers = new HashSet();
@@ -349,6 +499,7 @@ public class OpExecutorImpl implements ExecutablePool {
     ServerLocation server = p_server;
     boolean returnCnx = true;
     boolean pingOp = (op instanceof PingOp.PingOpImpl);
+    boolean sharedCnx = false;
     Connection conn = null;
     if (pingOp) {
       // currently for pings we prefer to queue clientToServer cnx so that we will
@@ -367,6 +518,13 @@ public class OpExecutorImpl implements ExecutablePool {
         }
       }
     }
+    if (conn == null && isPipelinable(op)) {
+      conn = this.pipelinedConnections.getConnection(server, onlyUseExistingCnx);
+      if (conn != null) {
+        returnCnx = false;
+        sharedCnx = true;
+      }
+    }
     if (conn == null) {
       if (useThreadLocalConnection(op, pingOp)) {
         // no need to set threadLocal to null while the op is in progress since
@@ -395,7 +553,7 @@ public class OpExecutorImpl implements ExecutablePool {
         }
         this.affinityServerLocation.set(conn.getServer());
       }
-      if (useThreadLocalConnection(op, pingOp)) {
+      if (!sharedCnx && useThreadLocalConnection(op, pingOp)) {
         this.connectionManager.passivate(conn, success);
         setThreadLocalConnectionForSingleHop(server, conn);
       }
@@ -405,6 +563,17 @@ public class OpExecutorImpl implements ExecutablePool {
     }
   }
 
+  /**
+   * Returns true if the given op should be executed on a shared, pipelined
+   * connection. Ops that are part of a transaction are not pipelined.
+   */
+  private boolean isPipelinable(Op op) {
+    return this.pipelinedConnections != null
+        && (op instanceof AbstractOp)
+        && ((AbstractOp)op).isPipelinable()
+        && TXManagerImpl.getCurrentTXUniqueId() == TXManagerImpl.NOTX;
+  }
+
   private boolean useThreadLocalConnection(Op op, boolean pingOp) {
     return threadLocalConnections && !pingOp && op.useThreadLocalConnection();
   }
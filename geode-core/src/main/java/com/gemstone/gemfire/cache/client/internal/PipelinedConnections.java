@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManager;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * A small set of pool connections that are borrowed once and then shared, in
+ * round robin order, by all threads executing pipelinable ops. Each shared
+ * connection has pipelining enabled so many ops can be in progress on it at
+ * the same time.
+ * <p>
+ * Connections to any server are used by load balanced ops. Single hop ops use
+ * a separate set of connections per server. A shared connection that has been
+ * destroyed is returned to the pool and replaced the next time its slot is
+ * used.
+ *
+ * @since Geode 1.0
+ */
+class PipelinedConnections {
+  private static final Logger logger = LogService.getLogger();
+
+  private final ConnectionManager connectionManager;
+  private final int size;
+  private final long serverTimeout;
+  private final Slots anyServer;
+  private final ConcurrentMap<ServerLocation, Slots> byServer = new ConcurrentHashMap<ServerLocation, Slots>();
+
+  /**
+   * Set once a server that requires credentials is seen. Credentials are
+   * exchanged per op on a connection, so such connections can not be shared.
+   */
+  private volatile boolean disabled;
+
+  PipelinedConnections(ConnectionManager connectionManager, int size, long serverTimeout) {
+    this.connectionManager = connectionManager;
+    this.size = size;
+    this.serverTimeout = serverTimeout;
+    this.anyServer = new Slots();
+  }
+
+  /**
+   * Returns a shared connection to any server.
+   * @return null if connections can not be shared
+   */
+  Connection getConnection() {
+    return get(this.anyServer, null, false);
+  }
+
+  /**
+   * Returns a shared connection to the given server.
+   * @return null if connections can not be shared
+   */
+  Connection getConnection(ServerLocation server, boolean onlyUseExistingCnx) {
+    Slots slots = this.byServer.get(server);
+    if (slots == null) {
+      slots = new Slots();
+      Slots existing = this.byServer.putIfAbsent(server, slots);
+      if (existing != null) {
+        slots = existing;
+      }
+    }
+    return get(slots, server, onlyUseExistingCnx);
+  }
+
+  private Connection get(Slots slots, ServerLocation server, boolean onlyUseExistingCnx) {
+    if (this.disabled) {
+      return null;
+    }
+    int idx = (slots.next.getAndIncrement() & Integer.MAX_VALUE) % this.size;
+    Connection cnx = slots.connections.get(idx);
+    if (cnx != null && !cnx.isDestroyed()) {
+      return cnx;
+    }
+    synchronized (slots) {
+      cnx = slots.connections.get(idx);
+      if (cnx != null && !cnx.isDestroyed()) {
+        return cnx;
+      }
+      if (cnx != null) {
+        slots.connections.set(idx, null);
+        this.connectionManager.returnConnection(cnx);
+      }
+      if (server == null) {
+        cnx = this.connectionManager.borrowConnection(this.serverTimeout);
+      } else {
+        cnx = this.connectionManager.borrowConnection(server, this.serverTimeout, onlyUseExistingCnx);
+      }
+      if (!enablePipelining(cnx)) {
+        this.connectionManager.returnConnection(cnx);
+        return null;
+      }
+      slots.connections.set(idx, cnx);
+      return cnx;
+    }
+  }
+
+  private boolean enablePipelining(Connection cnx) {
+    if (cnx.getServer().getRequiresCredentials()) {
+      this.disabled = true;
+      return false;
+    }
+    Connection impl = this.connectionManager.getConnection(cnx);
+    if (!(impl instanceof ConnectionImpl)) {
+      return false;
+    }
+    try {
+      ((ConnectionImpl)impl).enablePipelining();
+    } catch (SocketException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not enable pipelining on {}", cnx, e);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private class Slots {
+    final AtomicReferenceArray<Connection> connections = new AtomicReferenceArray<Connection>(size);
+    final AtomicInteger next = new AtomicInteger();
+  }
+}
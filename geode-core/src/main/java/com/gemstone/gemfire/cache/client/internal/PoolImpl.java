@@ -25,9 +25,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -86,6 +91,10 @@ public class PoolImpl implements InternalPool {
   public static final long SHUTDOWN_TIMEOUT = Long.getLong("gemfire.PoolImpl.SHUTDOWN_TIMEOUT", 30000).longValue();
   public static final int BACKGROUND_TASK_POOL_SIZE = Integer.getInteger("gemfire.PoolImpl.BACKGROUND_TASK_POOL_SIZE", 20).intValue();
   public static final int BACKGROUND_TASK_POOL_KEEP_ALIVE = Integer.getInteger("gemfire.PoolImpl.BACKGROUND_TASK_POOL_KEEP_ALIVE", 1000).intValue();
+  /**
+   * The number of threads that run async ops that can not be pipelined.
+   */
+  public static final int ASYNC_THREADS = Integer.getInteger("gemfire.PoolImpl.ASYNC_THREADS", 16).intValue();
   //For durable client tests only. Connection Sources read this flag
   //and return an empty list of servers.
   public volatile static boolean TEST_DURABLE_IS_NET_DOWN = false;
@@ -123,6 +132,17 @@ public class PoolImpl implements InternalPool {
   protected volatile boolean destroyed;
   private final PoolStats stats;
   private ScheduledExecutorService backgroundProcessor; 
+  /**
+   * Runs async ops that can not be pipelined. Created on first use.
+   * Guarded by this.
+   */
+  private ThreadPoolExecutor asyncExecutor;
+  /**
+   * Reads the responses of pipelined async ops. Runs at most one task per
+   * shared connection so it does not need a bound. Created on first use.
+   * Guarded by this.
+   */
+  private ThreadPoolExecutor asyncReadExecutor;
   private final OpExecutorImpl executor;
   private final RegisterInterestTracker riTracker = new RegisterInterestTracker();
   private final InternalDistributedSystem dsys; 
@@ -541,6 +561,15 @@ public class PoolImpl implements InternalPool {
         logger.error(LocalizedMessage.create(LocalizedStrings.PoolImpl_INTERRUPTED_WHILE_STOPPING_BACKGROUNDPROCESSOR), e);
       }
 
+      synchronized (this) {
+        if (this.asyncExecutor != null) {
+          this.asyncExecutor.shutdown();
+        }
+        if (this.asyncReadExecutor != null) {
+          this.asyncReadExecutor.shutdown();
+        }
+      }
+
       try {
         if (this.source != null) {
           this.source.stop();
@@ -714,6 +743,62 @@ public class PoolImpl implements InternalPool {
     return executor.execute(op);
   }
 
+  /**
+   * Execute the given op on the servers that this pool connects to without
+   * making the calling thread wait for its result.
+   * @param op the operation to execute
+   * @return a future completed with the result of execution
+   * @see OpExecutorImpl#executeAsync
+   */
+  public CompletableFuture<Object> executeAsync(Op op) {
+    if (this.multiuserSecureModeEnabled) {
+      // the user's credentials are only known to the calling thread
+      CompletableFuture<Object> result = new CompletableFuture<Object>();
+      try {
+        result.complete(execute(op));
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      return result;
+    }
+    authenticateIfRequired(op);
+    return executor.executeAsync(op, getAsyncReadExecutor(), getAsyncExecutor());
+  }
+
+  /**
+   * Returns the executor used to run async operations that have to wait for
+   * their result.
+   */
+  public synchronized Executor getAsyncExecutor() {
+    if (this.asyncExecutor == null) {
+      this.asyncExecutor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS,
+          BACKGROUND_TASK_POOL_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), createAsyncThreadFactory("poolAsync-" + getName() + "-"));
+      this.asyncExecutor.allowCoreThreadTimeOut(true);
+    }
+    return this.asyncExecutor;
+  }
+
+  private synchronized Executor getAsyncReadExecutor() {
+    if (this.asyncReadExecutor == null) {
+      this.asyncReadExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+          BACKGROUND_TASK_POOL_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+          new SynchronousQueue<Runnable>(), createAsyncThreadFactory("poolAsyncReader-" + getName() + "-"));
+    }
+    return this.asyncReadExecutor;
+  }
+
+  private static ThreadFactory createAsyncThreadFactory(final String threadName) {
+    return new ThreadFactory() {
+      AtomicInteger threadNum = new AtomicInteger();
+      public Thread newThread(final Runnable r) {
+        Thread result = new Thread(r, threadName + threadNum.incrementAndGet());
+        result.setDaemon(true);
+        return result;
+      }
+    };
+  }
+
   /**
    * Execute the given op on the servers that this pool connects to.
    * This method is responsible for retrying the op if an attempt fails.
@@ -480,6 +480,11 @@ public class PutOp {
       return ret;
     }
 
+    @Override
+    protected boolean isPipelinable() {
+      return true;
+    }
+
     @Override
     protected boolean isErrorResponse(int msgType) {
       return msgType == MessageType.PUT_DATA_ERROR;
@@ -516,6 +521,7 @@ public class PutOp {
     @Override
     protected Object attemptReadResponse(Connection cnx) throws Exception
     {
+      this.responseRead = false;
       Message msg = createResponseMessage();
       if (msg != null) {
         msg.setComms(cnx.getSocket(), cnx.getInputStream(), cnx
@@ -525,6 +531,7 @@ public class PutOp {
             return processResponse(msg, cnx);
           }
           finally {
+            this.responseRead = ((ChunkedMessage)msg).isLastChunk();
             msg.unsetComms();
             processSecureBytes(cnx, msg);
           }
@@ -532,6 +539,7 @@ public class PutOp {
         else {
           try {
             msg.recv();
+            this.responseRead = true;
           }
           finally {
             msg.unsetComms();
@@ -541,6 +549,7 @@ public class PutOp {
         }
       }
       else {
+        this.responseRead = true;
         return null;
       }
     }
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.Logger;
 
@@ -112,7 +113,25 @@ public class ServerRegionProxy extends ServerProxy implements ServerRegionDataAc
     return GetOp.execute(this.pool, this.region, key, callbackArg, this.pool.getPRSingleHopEnabled(), clientEvent);
   }
 
-  
+
+  /**
+   * Does a get on the server without making the calling thread wait for the
+   * result.
+   * @return a future completed with the value from the server
+   */
+  public CompletableFuture<Object> getAsync(Object key, Object callbackArg) {
+    recordTXOperation(ServerRegionOperation.GET, key, callbackArg);
+    if (!(this.pool instanceof PoolImpl)) {
+      CompletableFuture<Object> result = new CompletableFuture<Object>();
+      try {
+        result.complete(get(key, callbackArg, null));
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      return result;
+    }
+    return GetOp.executeAsync((PoolImpl)this.pool, this.region, key, callbackArg);
+  }
   
   public int size() {
     return SizeOp.execute(this.pool, this.regionName);
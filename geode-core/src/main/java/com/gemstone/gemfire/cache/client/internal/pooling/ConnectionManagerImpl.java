@@ -73,6 +73,22 @@ public class ConnectionManagerImpl implements ConnectionManager {
   private static final Logger logger = LogService.getLogger();
   
   static long AQUIRE_TIMEOUT = Long.getLong("gemfire.ConnectionManager.AQUIRE_TIMEOUT", 10 * 1000).longValue();
+  /**
+   * The number of most recently used idle connections that are compared
+   * when borrowing a connection. The one whose server has answered fastest
+   * recently is borrowed. Zero or one borrows the most recently used
+   * connection.
+   */
+  static int LATENCY_AWARE_CANDIDATES = Integer.getInteger("gemfire.ConnectionManager.LATENCY_AWARE_CANDIDATES", 0).intValue();
+
+  /**
+   * Returns true if connections are borrowed by how fast their server
+   * answers, so request times need to be recorded on the {@link Endpoint}.
+   */
+  public static boolean isLatencyAware() {
+    return LATENCY_AWARE_CANDIDATES > 1;
+  }
+
   private final String poolName;
   private final PoolStats poolStats;
   protected final long prefillRetry; // ms // make this an int
@@ -160,6 +176,31 @@ public class ConnectionManagerImpl implements ConnectionManager {
     };
   }
   
+  /**
+   * Removes the idle connection to borrow. Must be called while holding
+   * the lock with at least one available connection.
+   */
+  private PooledConnection removeAvailableConnection() {
+    if (LATENCY_AWARE_CANDIDATES <= 1 || availableConnections.size() == 1) {
+      return (PooledConnection) availableConnections.removeFirst();
+    }
+    // servers that have not been used lately look fast because their
+    // average decays, so they are tried again
+    PooledConnection fastest = null;
+    double fastestLatency = Double.MAX_VALUE;
+    int candidates = 0;
+    for (Iterator itr = availableConnections.iterator(); itr.hasNext() && candidates < LATENCY_AWARE_CANDIDATES; candidates++) {
+      PooledConnection candidate = (PooledConnection) itr.next();
+      double latency = candidate.getEndpoint().getLatencyNanos();
+      if (latency < fastestLatency) {
+        fastest = candidate;
+        fastestLatency = latency;
+      }
+    }
+    availableConnections.remove(fastest);
+    return fastest;
+  }
+
   /* (non-Javadoc)
    * @see com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManager#borrowConnection(long)
    */
@@ -195,7 +236,7 @@ public class ConnectionManagerImpl implements ConnectionManager {
       }
 
       while (!availableConnections.isEmpty()) {
-        PooledConnection connection = (PooledConnection) availableConnections.removeFirst();
+        PooledConnection connection = removeAvailableConnection();
         try {
           connection.activate();
           return connection;
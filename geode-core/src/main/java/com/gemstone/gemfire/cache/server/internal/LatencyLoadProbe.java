@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.server.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Properties;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.cache.server.ServerLoad;
+import com.gemstone.gemfire.cache.server.ServerLoadProbeAdapter;
+import com.gemstone.gemfire.cache.server.ServerMetrics;
+import com.gemstone.gemfire.internal.cache.xmlcache.Declarable2;
+
+/**
+ * A load probe which returns load as a function of the number of
+ * connections to the bridge server, the number of requests it is
+ * processing and how long it has recently taken to process a request.
+ * 
+ * Like {@link ConnectionCountProbe} the connection load is relative to the
+ * max connections for this server, but requests in progress count as
+ * extra connections and the load is multiplied by
+ * <code>1 + averageRequestTime / referenceRequestTime</code>. A server
+ * that is slow to answer, for example because of garbage collection or a
+ * busy host, therefore looks more loaded to the locators and is given
+ * fewer new connections until it recovers.
+ * 
+ * The reference request time defaults to
+ * {@link #REFERENCE_REQUEST_MILLIS} and can be set with the
+ * <code>reference-request-millis</code> property when the probe is declared
+ * in cache.xml.
+ * 
+ * The queue load is reported simply as the number of queues
+ * hosted by this bridge server.
+ * 
+ * @since Geode 1.0
+ */
+public class LatencyLoadProbe extends ServerLoadProbeAdapter implements
+    Declarable2, DataSerializable {
+
+  private static final long serialVersionUID = 3496215796123858370L;
+
+  public static final String REFERENCE_REQUEST_MILLIS_PROPERTY = "reference-request-millis";
+
+  /**
+   * The request time at which a server's connection load is doubled.
+   */
+  public static final long REFERENCE_REQUEST_MILLIS = Long.getLong("gemfire.LatencyLoadProbe.REFERENCE_REQUEST_MILLIS", 10L);
+
+  private long referenceRequestMillis = REFERENCE_REQUEST_MILLIS;
+
+  /**
+   * Get a loads object representing the number of connections and the
+   * request latency of this bridge server
+   */
+  public ServerLoad getLoad(ServerMetrics metrics) {
+    int connections = metrics.getConnectionCount();
+    float latencyFactor = 1;
+    if (metrics instanceof ServerMetricsImpl) {
+      ServerMetricsImpl impl = (ServerMetricsImpl) metrics;
+      connections += impl.getRequestsInProgress();
+      latencyFactor += (float) (impl.getAverageRequestNanos() / (this.referenceRequestMillis * 1000000.0));
+    }
+    float load = connections * latencyFactor / (float) metrics.getMaxConnections();
+    int queueLoad = metrics.getSubscriptionConnectionCount();
+    float loadPerConnection = latencyFactor / (float) metrics.getMaxConnections();
+
+    return new ServerLoad(load, loadPerConnection, queueLoad, 1);
+  }
+
+  public Properties getConfig() {
+    Properties props = new Properties();
+    props.setProperty(REFERENCE_REQUEST_MILLIS_PROPERTY, String.valueOf(this.referenceRequestMillis));
+    return props;
+  }
+
+  public void init(Properties props) {
+    String value = props.getProperty(REFERENCE_REQUEST_MILLIS_PROPERTY);
+    if (value != null) {
+      long millis = Long.parseLong(value.trim());
+      if (millis <= 0) {
+        throw new IllegalArgumentException(REFERENCE_REQUEST_MILLIS_PROPERTY + " must be positive but was " + millis);
+      }
+      this.referenceRequestMillis = millis;
+    }
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other != null && this.getClass().equals(other.getClass())
+        && this.referenceRequestMillis == ((LatencyLoadProbe) other).referenceRequestMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (this.referenceRequestMillis ^ (this.referenceRequestMillis >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyLoadProbe[referenceRequestMillis=" + this.referenceRequestMillis + "]";
+  }
+
+  public void fromData(DataInput in) throws IOException, ClassNotFoundException {
+    this.referenceRequestMillis = in.readLong();
+  }
+
+  public void toData(DataOutput out) throws IOException {
+    out.writeLong(this.referenceRequestMillis);
+  }
+}
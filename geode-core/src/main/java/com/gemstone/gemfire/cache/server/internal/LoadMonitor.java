@@ -58,7 +58,8 @@ public class LoadMonitor implements ConnectionListener {
   public LoadMonitor(ServerLoadProbe probe, int maxConnections,
       long pollInterval, int forceUpdateFrequency, CacheServerAdvisor advisor) {
     this.probe = probe;
-    this.metrics = new ServerMetricsImpl(maxConnections);
+    this.metrics = new ServerMetricsImpl(maxConnections,
+        probe instanceof LatencyLoadProbe);
     this.pollingThread = new PollingThread(pollInterval, forceUpdateFrequency);
     lastLoad = getLoad();
     this.advisor = advisor;
@@ -131,6 +132,14 @@ public class LoadMonitor implements ConnectionListener {
     metrics.decQueueCount();
   }
 
+  public void requestStarted() {
+    metrics.requestStarted();
+  }
+
+  public void requestFinished(long nanos) {
+    metrics.requestFinished(nanos);
+  }
+
   protected ServerLoad getLoad() {
     ServerLoad load = this.probe.getLoad(metrics);
     if(load == null) {
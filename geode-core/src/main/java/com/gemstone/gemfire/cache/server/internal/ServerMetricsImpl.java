@@ -16,9 +16,12 @@
  */
 package com.gemstone.gemfire.cache.server.internal;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.gemstone.gemfire.cache.server.ServerMetrics;
+import com.gemstone.gemfire.internal.util.DecayingAverage;
 
 /**
  * Metrics describing the load on a  bridge server.
@@ -29,10 +32,28 @@ public class ServerMetricsImpl implements ServerMetrics {
   private final AtomicInteger clientCount = new AtomicInteger();
   private final AtomicInteger connectionCount = new AtomicInteger();
   private final AtomicInteger queueCount = new AtomicInteger();
+  private final AtomicInteger requestsInProgress = new AtomicInteger();
+  /**
+   * Request times are summed up without locking and folded into the moving
+   * average, one sample per poll, when the average is read.
+   */
+  private final LongAdder finishedRequests = new LongAdder();
+  private final LongAdder finishedRequestNanos = new LongAdder();
+  private final DecayingAverage requestNanos = new DecayingAverage(0.5, TimeUnit.SECONDS.toNanos(10));
+  private final boolean recordRequestNanos;
   private final int maxConnections;
   
   public ServerMetricsImpl(int maxConnections) {
+    this(maxConnections, true);
+  }
+
+  /**
+   * @param recordRequestNanos whether to keep the average request time,
+   *          which only the {@link LatencyLoadProbe} needs
+   */
+  public ServerMetricsImpl(int maxConnections, boolean recordRequestNanos) {
     this.maxConnections = maxConnections;
+    this.recordRequestNanos = recordRequestNanos;
   }
 
   public int getClientCount() {
@@ -74,5 +95,39 @@ public class ServerMetricsImpl implements ServerMetrics {
   public void decQueueCount() {
     queueCount.decrementAndGet();
   }
+
+  public void requestStarted() {
+    requestsInProgress.incrementAndGet();
+  }
+
+  public void requestFinished(long nanos) {
+    requestsInProgress.decrementAndGet();
+    if (recordRequestNanos) {
+      finishedRequests.increment();
+      finishedRequestNanos.add(nanos);
+    }
+  }
+
+  /**
+   * Returns the number of client requests currently being processed.
+   */
+  public int getRequestsInProgress() {
+    return requestsInProgress.get();
+  }
+
+  /**
+   * Returns the moving average of the time it took to process a client
+   * request, in nanoseconds. The requests finished since the last call
+   * count as one sample of their mean time.
+   */
+  public double getAverageRequestNanos() {
+    long now = System.nanoTime();
+    long count = finishedRequests.sumThenReset();
+    long nanos = finishedRequestNanos.sumThenReset();
+    if (count > 0) {
+      requestNanos.record((double) nanos / count, now);
+    }
+    return requestNanos.get(now);
+  }
   
 }
@@ -152,6 +152,11 @@ public interface DMStats {
   public void incBatchCopyTime(long start);
   public void incBatchWaitTime(long start);
   public void incBatchFlushTime(long start);
+  /**
+   * Records a socket write of the given number of messages that were
+   * coalesced while another write to the same member was in progress.
+   */
+  public void incCoalescedWrites(int messages, int bytes);
   /**
    * Increments the total number of nanoseconds spent scheduling messages to be processed.
    */
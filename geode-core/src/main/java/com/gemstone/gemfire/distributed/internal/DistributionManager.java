@@ -92,6 +92,7 @@ import com.gemstone.gemfire.internal.tcp.Connection;
 import com.gemstone.gemfire.internal.tcp.ConnectionTable;
 import com.gemstone.gemfire.internal.tcp.ReenteredConnectException;
 import com.gemstone.gemfire.internal.util.concurrent.StoppableReentrantLock;
+import com.gemstone.gemfire.internal.util.concurrent.VirtualThreads;
 
 /**
  * The <code>DistributionManager</code> uses a {@link
@@ -421,12 +422,12 @@ public class DistributionManager
   protected LoggingThreadGroup threadGroup;
   
   /** Message processing thread pool */
-  private ThreadPoolExecutor threadPool;
+  private ExecutorService threadPool;
 
   /** High Priority processing thread pool, used for initializing messages
    *  such as UpdateAttributes and CreateRegion messages
    */
-  private ThreadPoolExecutor highPriorityPool;
+  private ExecutorService highPriorityPool;
   
   /** Waiting Pool, used for messages that may have to wait on something.
    *  Use this separate pool with an unbounded queue so that waiting
@@ -434,7 +435,7 @@ public class DistributionManager
    *  Used for threads that will most likely have to wait for a region to be
    *  finished initializing before it can proceed
    */
-  private ThreadPoolExecutor waitingPool;
+  private ExecutorService waitingPool;
   
   private ThreadPoolExecutor prMetaDataCleanupThreadPool;
   
@@ -443,10 +444,16 @@ public class DistributionManager
    * {@link com.gemstone.gemfire.internal.cache.DistributedCacheOperation}s </b>
    * @see #SERIAL_EXECUTOR
    */
-  private ThreadPoolExecutor partitionedRegionThread;
-  private ThreadPoolExecutor partitionedRegionPool;
+  private ExecutorService partitionedRegionThread;
+  private ExecutorService partitionedRegionPool;
   private ThreadPoolExecutor functionExecutionThread;
-  private ThreadPoolExecutor functionExecutionPool;
+  private ExecutorService functionExecutionPool;
+
+  /**
+   * Runs the thread pool, high priority pool and partitioned region executor
+   * if {@link WorkStealingMessageScheduler#ENABLED}; otherwise null.
+   */
+  private WorkStealingMessageScheduler messageScheduler;
 
   /** Message processing executor for serial, ordered, messages. */
   private ThreadPoolExecutor serialThread;
@@ -908,7 +915,17 @@ public class DistributionManager
           this.stats.getViewProcessorHelper(), tf);
     }
 
-    {
+    if (WorkStealingMessageScheduler.ENABLED) {
+      // enough threads for the standard and partitioned region lanes to each
+      // have their maximum, so neither can starve the other
+      this.messageScheduler = new WorkStealingMessageScheduler(system,
+          MAX_THREADS + Math.max(1, MAX_PR_THREADS), this.stats);
+    }
+
+    if (this.messageScheduler != null) {
+      this.threadPool = this.messageScheduler.createLane("standard", false, MAX_THREADS,
+          INCOMING_QUEUE_LIMIT, this.stats.getNormalPoolHelper());
+    } else {
       BlockingQueue poolQueue;
       if (INCOMING_QUEUE_LIMIT == 0) {
         poolQueue = new OverflowQueueWithDMStats(this.stats.getOverflowQueueHelper());
@@ -945,7 +962,10 @@ public class DistributionManager
     }
 
 
-    {
+    if (this.messageScheduler != null) {
+      this.highPriorityPool = this.messageScheduler.createLane("highPriority", true, MAX_THREADS,
+          INCOMING_QUEUE_LIMIT, this.stats.getHighPriorityPoolHelper());
+    } else {
       BlockingQueue poolQueue;
       if (INCOMING_QUEUE_LIMIT == 0) {
         poolQueue = new OverflowQueueWithDMStats(this.stats.getHighPriorityQueueHelper());
@@ -999,23 +1019,32 @@ public class DistributionManager
                   }
                 }
               };
-            Thread thread = new Thread(group, r, 
-                                       LocalizedStrings.DistributionManager_POOLED_WAITING_MESSAGE_PROCESSOR.toLocalizedString() + (next++));
+            String name = LocalizedStrings.DistributionManager_POOLED_WAITING_MESSAGE_PROCESSOR.toLocalizedString() + (next++);
+            if (VirtualThreads.isEnabled()) {
+              return VirtualThreads.newThread(r, name);
+            }
+            Thread thread = new Thread(group, r, name);
             thread.setDaemon(true);
             return thread;
           }
         };
-      BlockingQueue poolQueue;
-      if (MAX_WAITING_THREADS == Integer.MAX_VALUE) {
-        // no need for a queue since we have infinite threads
-        poolQueue = new SynchronousQueue();
+      if (VirtualThreads.isEnabled()) {
+        // waiting messages mostly block so give each its own virtual thread
+        this.waitingPool = new ThreadPerTaskExecutorWithDMStats(tf,
+            Integer.MAX_VALUE, this.stats.getWaitingPoolHelper());
       } else {
-        poolQueue = new OverflowQueueWithDMStats(this.stats.getWaitingQueueHelper());
+        BlockingQueue poolQueue;
+        if (MAX_WAITING_THREADS == Integer.MAX_VALUE) {
+          // no need for a queue since we have infinite threads
+          poolQueue = new SynchronousQueue();
+        } else {
+          poolQueue = new OverflowQueueWithDMStats(this.stats.getWaitingQueueHelper());
+        }
+        this.waitingPool = new PooledExecutorWithDMStats(poolQueue,
+                                                         MAX_WAITING_THREADS,
+                                                         this.stats.getWaitingPoolHelper(),
+                                                         tf);
       }
-      this.waitingPool = new PooledExecutorWithDMStats(poolQueue,
-                                                       MAX_WAITING_THREADS,
-                                                       this.stats.getWaitingPoolHelper(),
-                                                       tf);
     }
     
     {
@@ -1051,7 +1080,16 @@ public class DistributionManager
                                                        tf);
     }
 
-    {
+    if (this.messageScheduler != null) {
+      // a single partitioned region thread keeps the messages in order
+      ExecutorService lane = this.messageScheduler.createLane("partitionedRegion", false,
+          Math.max(1, MAX_PR_THREADS), INCOMING_QUEUE_LIMIT, this.stats.getPartitionedRegionPoolHelper());
+      if (MAX_PR_THREADS > 1) {
+        this.partitionedRegionPool = lane;
+      } else {
+        this.partitionedRegionThread = lane;
+      }
+    } else {
       BlockingQueue poolQueue;
       if (INCOMING_QUEUE_LIMIT == 0) {
         poolQueue = new OverflowQueueWithDMStats(this.stats.getPartitionedRegionQueueHelper());
@@ -1119,14 +1157,21 @@ public class DistributionManager
                 }
               }
             };
-          Thread thread = new Thread(group, r, 
-                                     "Function Execution Processor" + (next++));
+          String name = "Function Execution Processor" + (next++);
+          if (VirtualThreads.isEnabled()) {
+            return VirtualThreads.newThread(r, name);
+          }
+          Thread thread = new Thread(group, r, name);
           thread.setDaemon(true);
           return thread;
         }
       };
       
-      if(MAX_FE_THREADS > 1){
+      if (MAX_FE_THREADS > 1 && VirtualThreads.isEnabled()) {
+        // functions that block on other members no longer hold a pool thread
+        this.functionExecutionPool = new ThreadPerTaskExecutorWithDMStats(tf,
+            Integer.MAX_VALUE, this.stats.getFunctionExecutionPoolHelper());
+      } else if(MAX_FE_THREADS > 1){
         this.functionExecutionPool = new FunctionExecutionPooledExecutor(poolQueue, 
             MAX_FE_THREADS, this.stats.getFunctionExecutionPoolHelper(), tf,true /*for fn exec*/);
       } else {
@@ -2020,6 +2065,9 @@ public class DistributionManager
     if (es != null) {
       es.shutdown();
     }
+    if (this.messageScheduler != null) {
+      this.messageScheduler.shutdown();
+    }
     
     Thread th = this.memberEventThread;
     if (th != null)
@@ -2120,12 +2168,12 @@ public class DistributionManager
    * @param tpe
    * @return true if executor is still active
    */
-  private boolean executorAlive(ThreadPoolExecutor tpe, String name)
+  private boolean executorAlive(ExecutorService tpe, String name)
   {
     if (tpe == null) {
       return false;
     } else {
-      int ac = tpe.getActiveCount();
+      int ac = getActiveCount(tpe);
 //      boolean result = tpe.getActiveCount() > 0;
       if (ac > 0) {
         if (logger.isDebugEnabled()) {
@@ -2138,6 +2186,21 @@ public class DistributionManager
     }
   }
   
+  /**
+   * Returns the number of threads running tasks of the given executor, which
+   * is a ThreadPoolExecutor, a lane of the message scheduler or a thread per
+   * task executor.
+   */
+  static int getActiveCount(ExecutorService executor) {
+    if (executor instanceof WorkStealingMessageScheduler.Lane) {
+      return ((WorkStealingMessageScheduler.Lane)executor).getActiveCount();
+    }
+    if (executor instanceof ThreadPerTaskExecutorWithDMStats) {
+      return ((ThreadPerTaskExecutorWithDMStats)executor).getActiveCount();
+    }
+    return ((ThreadPoolExecutor)executor).getActiveCount();
+  }
+
   /**
    * Wait for the ancillary queues to exit.  Kills them if they are
    * still around.
@@ -2236,6 +2299,9 @@ public class DistributionManager
     if (this.threadPool != null) {
       this.threadPool.shutdownNow();
     }
+    if (this.messageScheduler != null) {
+      this.messageScheduler.shutdownNow();
+    }
     
     Thread th = this.memberEventThread;
     if (th != null) {
@@ -2290,6 +2356,9 @@ public class DistributionManager
       // ABSOLUTELY ESSENTIAL that we close the distribution channel!
       try {
         // For safety, but channel close in a finally AFTER this...
+        if (this.messageScheduler != null) {
+          this.messageScheduler.close();
+        }
         if (this.stats != null) {
           this.stats.close();
           try { Thread.sleep(100); } 
@@ -146,6 +146,10 @@ public class DistributionStats implements DMStats {
   private final static int batchWaitTimeId;
   private final static int batchFlushTimeId;
 
+  private final static int coalescedWritesId;
+  private final static int coalescedMessagesId;
+  private final static int coalescedBytesId;
+
   private final static int threadOwnedReceiversId;
   private final static int threadOwnedReceiversId2;
 
@@ -467,6 +471,10 @@ public class DistributionStats implements DMStats {
         f.createLongCounter("batchCopyTime", "Total amount of time, in nanoseconds, spent copying messages for batched transmission", "nanoseconds"),
         f.createLongCounter("batchFlushTime", "Total amount of time, in nanoseconds, spent flushing batched messages to the network", "nanoseconds"),
 
+        f.createIntCounter("coalescedWrites", "Total number of socket writes that sent messages coalesced while another write to the same member was in progress.", "writes"),
+        f.createLongCounter("coalescedMessages", "Total number of messages sent in coalesced socket writes. Divide by coalescedWrites for the average batch size.", "messages"),
+        f.createLongCounter("coalescedBytes", "Total number of bytes sent in coalesced socket writes.", "bytes"),
+
         f.createIntGauge("asyncSocketWritesInProgress", "Current number of non-blocking socket write calls in progress.", "writes"),
         f.createIntCounter("asyncSocketWrites", "Total number of non-blocking socket write calls completed.", "writes"),
         f.createIntCounter("asyncSocketWriteRetries", "Total number of retries needed to write a single block of data using non-blocking socket write calls.", "writes"),
@@ -656,6 +664,10 @@ public class DistributionStats implements DMStats {
     batchWaitTimeId = type.nameToId("batchWaitTime");
     batchFlushTimeId = type.nameToId("batchFlushTime");
 
+    coalescedWritesId = type.nameToId("coalescedWrites");
+    coalescedMessagesId = type.nameToId("coalescedMessages");
+    coalescedBytesId = type.nameToId("coalescedBytes");
+
     asyncSocketWritesInProgressId = type.nameToId("asyncSocketWritesInProgress");
     asyncSocketWritesId = type.nameToId("asyncSocketWrites");
     asyncSocketWriteRetriesId = type.nameToId("asyncSocketWriteRetries");
@@ -1722,6 +1734,17 @@ public class DistributionStats implements DMStats {
       stats.incLong(batchFlushTimeId, getStatTime()-start);
     }
   }
+  public void incCoalescedWrites(int messages, int bytes) {
+    stats.incInt(coalescedWritesId, 1);
+    stats.incLong(coalescedMessagesId, messages);
+    stats.incLong(coalescedBytesId, bytes);
+  }
+  public int getCoalescedWrites() {
+    return stats.getInt(coalescedWritesId);
+  }
+  public long getCoalescedMessages() {
+    return stats.getLong(coalescedMessagesId);
+  }
   public void incUcastRetransmits() {
     stats.incInt(ucastRetransmitsId, 1);
   }
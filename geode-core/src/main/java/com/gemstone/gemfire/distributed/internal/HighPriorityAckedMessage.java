@@ -22,7 +22,7 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.logging.log4j.Logger;
 
@@ -165,8 +165,8 @@ public final class HighPriorityAckedMessage extends HighPriorityDistributionMess
       Assert.assertTrue(this.id != null);
       // wait 10 seconds for the high priority queue to drain
       long endTime = System.currentTimeMillis() + 10000;
-      ThreadPoolExecutor pool = (ThreadPoolExecutor)dm.getHighPriorityThreadPool();
-      while (pool.getActiveCount() > 1 && System.currentTimeMillis() < endTime) {
+      ExecutorService pool = dm.getHighPriorityThreadPool();
+      while (DistributionManager.getActiveCount(pool) > 1 && System.currentTimeMillis() < endTime) {
         boolean interrupted = Thread.interrupted();
         try { 
           Thread.sleep(500); }
@@ -180,11 +180,11 @@ public final class HighPriorityAckedMessage extends HighPriorityDistributionMess
           if (interrupted) Thread.currentThread().interrupt();
         }
       }
-      if (pool.getActiveCount() > 1) {
+      if (DistributionManager.getActiveCount(pool) > 1) {
         
         logger.warn(LocalizedMessage.create(
             LocalizedStrings.HighPriorityAckedMessage_0_THERE_ARE_STILL_1_OTHER_THREADS_ACTIVE_IN_THE_HIGH_PRIORITY_THREAD_POOL,
-            new Object[] {this, Integer.valueOf(pool.getActiveCount()-1)}));
+            new Object[] {this, Integer.valueOf(DistributionManager.getActiveCount(pool)-1)}));
       }
       ReplyMessage.send(getSender(), processorId, null, dm);
       break;
@@ -440,6 +440,8 @@ public class LonerDistributionManager implements DM {
     @Override
     public void incBatchFlushTime(long start) {}
     @Override
+    public void incCoalescedWrites(int messages, int bytes) {}
+    @Override
     public void incUcastWriteBytes(int bytesWritten) {}
     @Override
     public void incMcastWriteBytes(int bytesWritten) {}
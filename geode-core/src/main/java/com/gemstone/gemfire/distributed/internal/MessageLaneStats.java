@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.distributed.internal;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * Class <code>MessageLaneStats</code> tracks GemFire statistics related to
+ * one lane of a {@link WorkStealingMessageScheduler}.
+ *
+ * @since Geode 1.0
+ */
+public class MessageLaneStats {
+
+  /** The <code>StatisticsType</code> of the statistics */
+  private static final StatisticsType _type;
+
+  /** Name of the queue size statistic */
+  private static final String QUEUE_SIZE = "queueSize";
+  /** Name of the active tasks statistic */
+  private static final String ACTIVE_TASKS = "activeTasks";
+  /** Name of the completed tasks statistic */
+  private static final String COMPLETED_TASKS = "completedTasks";
+  /** Name of the queue time statistic */
+  private static final String QUEUE_TIME = "queueTime";
+  /** Name of the processing time statistic */
+  private static final String PROCESSING_TIME = "processingTime";
+
+  /** Id of the queue size statistic */
+  private static final int _queueSizeId;
+  /** Id of the active tasks statistic */
+  private static final int _activeTasksId;
+  /** Id of the completed tasks statistic */
+  private static final int _completedTasksId;
+  /** Id of the queue time statistic */
+  private static final int _queueTimeId;
+  /** Id of the processing time statistic */
+  private static final int _processingTimeId;
+
+  /**
+   * Static initializer to create and initialize the <code>StatisticsType</code>
+   */
+  static {
+    String statName = "MessageLaneStatistics";
+
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    _type = f.createType(statName, statName,
+       new StatisticDescriptor[] {
+            f.createIntGauge
+             (QUEUE_SIZE,
+              "Number of messages queued in the lane waiting for a thread.",
+              "messages"),
+
+            f.createIntGauge
+             (ACTIVE_TASKS,
+              "Number of messages of the lane currently being processed.",
+              "messages"),
+
+            f.createLongCounter
+             (COMPLETED_TASKS,
+              "Number of messages of the lane that have been processed.",
+              "messages"),
+
+            f.createLongCounter
+             (QUEUE_TIME,
+              "Total time messages of the lane waited in its queue before being processed.",
+              "nanoseconds"),
+
+            f.createLongCounter
+             (PROCESSING_TIME,
+              "Total time spent processing messages of the lane.",
+              "nanoseconds"),
+       });
+
+    // Initialize id fields
+    _queueSizeId = _type.nameToId(QUEUE_SIZE);
+    _activeTasksId = _type.nameToId(ACTIVE_TASKS);
+    _completedTasksId = _type.nameToId(COMPLETED_TASKS);
+    _queueTimeId = _type.nameToId(QUEUE_TIME);
+    _processingTimeId = _type.nameToId(PROCESSING_TIME);
+  }
+
+  //////////////////////  Instance Fields  //////////////////////
+
+  /** The <code>Statistics</code> instance to which most behavior is delegated */
+  private final Statistics _stats;
+
+  ///////////////////////  Constructors  ///////////////////////
+
+  /**
+   * Constructor.
+   *
+   * @param factory The <code>StatisticsFactory</code> which creates the
+   * <code>Statistics</code> instance
+   * @param name The name of the lane
+   */
+  public MessageLaneStats(StatisticsFactory factory, String name) {
+    this._stats = factory.createAtomicStatistics(_type, "messageLaneStats-" + name);
+  }
+
+  /////////////////////  Instance Methods  /////////////////////
+
+  /**
+   * Closes the <code>MessageLaneStats</code>.
+   */
+  public void close() {
+    this._stats.close();
+  }
+
+  public int getQueueSize() {
+    return this._stats.getInt(_queueSizeId);
+  }
+
+  public int getActiveTasks() {
+    return this._stats.getInt(_activeTasksId);
+  }
+
+  public long getCompletedTasks() {
+    return this._stats.getLong(_completedTasksId);
+  }
+
+  public long getQueueTime() {
+    return this._stats.getLong(_queueTimeId);
+  }
+
+  public long getProcessingTime() {
+    return this._stats.getLong(_processingTimeId);
+  }
+
+  public void incQueueSize(int delta) {
+    this._stats.incInt(_queueSizeId, delta);
+  }
+
+  /**
+   * Records that a queued message has started being processed.
+   */
+  public void startTask(long queueNanos) {
+    this._stats.incInt(_queueSizeId, -1);
+    this._stats.incInt(_activeTasksId, 1);
+    this._stats.incLong(_queueTimeId, queueNanos);
+  }
+
+  public void endTask(long processingNanos) {
+    this._stats.incInt(_activeTasksId, -1);
+    this._stats.incLong(_completedTasksId, 1);
+    this._stats.incLong(_processingTimeId, processingNanos);
+  }
+}
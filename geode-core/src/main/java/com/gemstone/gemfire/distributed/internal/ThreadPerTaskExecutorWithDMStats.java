@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.distributed.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor with stat support that runs each task in a new thread. Meant
+ * for virtual threads, see
+ * {@link com.gemstone.gemfire.internal.util.concurrent.VirtualThreads},
+ * which make a thread per task cheaper than queuing tasks for a pool of
+ * threads that mostly block.
+ */
+public class ThreadPerTaskExecutorWithDMStats extends AbstractExecutorService {
+  private final ThreadFactory threadFactory;
+  private final int maxThreads;
+  private final PoolStatHelper stats;
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+  private volatile boolean shutdown;
+
+  /**
+   * @param threadFactory creates the thread of each task
+   * @param maxThreads the number of tasks that can run at once; tasks
+   *          executed beyond that are rejected
+   * @param stats notified of each task run; may be null
+   */
+  public ThreadPerTaskExecutorWithDMStats(ThreadFactory threadFactory, int maxThreads, PoolStatHelper stats) {
+    this.threadFactory = threadFactory;
+    this.maxThreads = maxThreads;
+    this.stats = stats;
+  }
+
+  public void execute(final Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    if (this.shutdown) {
+      throw new RejectedExecutionException("Executor has been shut down");
+    }
+    if (this.activeCount.incrementAndGet() > this.maxThreads) {
+      taskDone();
+      throw new RejectedExecutionException("Executor already has " + this.maxThreads + " running tasks");
+    }
+    Thread thread;
+    try {
+      thread = this.threadFactory.newThread(new Runnable() {
+        public void run() {
+          if (stats != null) {
+            stats.startJob();
+          }
+          try {
+            command.run();
+          } finally {
+            if (stats != null) {
+              stats.endJob();
+            }
+            threads.remove(Thread.currentThread());
+            taskDone();
+          }
+        }
+      });
+      this.threads.add(thread);
+      thread.start();
+    } catch (RuntimeException e) {
+      taskDone();
+      throw new RejectedExecutionException(e);
+    }
+  }
+
+  private void taskDone() {
+    if (this.activeCount.decrementAndGet() == 0 && this.shutdown) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of tasks currently running.
+   */
+  public int getActiveCount() {
+    return this.activeCount.get();
+  }
+
+  public void shutdown() {
+    this.shutdown = true;
+    if (this.activeCount.get() == 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Shuts down this executor and interrupts the running tasks. Since tasks
+   * are never queued none are returned.
+   */
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    for (Thread thread : this.threads) {
+      thread.interrupt();
+    }
+    return Collections.emptyList();
+  }
+
+  public boolean isShutdown() {
+    return this.shutdown;
+  }
+
+  public boolean isTerminated() {
+    return this.shutdown && this.activeCount.get() == 0;
+  }
+
+  public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long end = System.nanoTime() + unit.toNanos(timeout);
+    while (!isTerminated()) {
+      long remaining = end - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+}
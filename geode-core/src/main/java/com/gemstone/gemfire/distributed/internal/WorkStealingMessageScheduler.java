@@ -0,0 +1,555 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.distributed.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.CancelException;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.SystemFailure;
+import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
+import com.gemstone.gemfire.internal.tcp.Connection;
+import com.gemstone.gemfire.internal.tcp.ConnectionTable;
+
+/**
+ * Processes distribution messages with work-stealing thread pools instead of
+ * one thread pool per kind of message. Each kind of message is sent to a
+ * {@link Lane}, an executor with its own stats, and the lanes of a priority
+ * share the threads of one {@link ForkJoinPool}. A pool only creates threads
+ * while it has more work than running threads and lets idle threads exit,
+ * so threads move to whichever lane is busy instead of each pool needing
+ * its own tuned thread count. High priority lanes have their own pool so
+ * their messages never wait behind normal ones.
+ * <p>
+ * Each lane has a maximum number of threads. A lane never has more messages
+ * in its pool than that; the rest wait in the lane until one of its messages
+ * is done. If the parallelism of a pool is at least the sum of the maximum
+ * threads of its lanes, every lane has its threads reserved, so messages of
+ * one lane that block, for example waiting for a reply, cannot starve
+ * another lane of threads.
+ * <p>
+ * A serial lane, one with a maximum of one thread, processes its messages
+ * one at a time in the order they were executed, like a single threaded
+ * executor, but without a thread of its own.
+ * <p>
+ * Used by the {@link DistributionManager} if {@link #ENABLED} is true.
+ *
+ * @since Geode 1.0
+ */
+public class WorkStealingMessageScheduler {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * If true the distribution manager processes standard, high priority and
+   * partitioned region messages with a work-stealing scheduler.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("gemfire.DistributionManager.WORK_STEALING_SCHEDULER");
+
+  /** The maximum parallelism of a ForkJoinPool */
+  private static final int MAX_PARALLELISM = 0x7fff;
+
+  /**
+   * The maximum number of messages a serial lane processes before letting
+   * other lanes use its thread.
+   */
+  private static final int SERIAL_BATCH_SIZE = 100;
+
+  private final ForkJoinPool normalPool;
+  private final ForkJoinPool highPriorityPool;
+  private final StatisticsFactory statisticsFactory;
+  private final List<Lane> lanes = new CopyOnWriteArrayList<Lane>();
+
+  /**
+   * @param statisticsFactory creates the stats of each lane; may be null
+   * @param maxThreads the maximum number of threads of each priority; should
+   *          be at least the sum of the maximum threads of the lanes of a
+   *          priority
+   * @param dmStats the stats that count processing threads; may be null
+   */
+  public WorkStealingMessageScheduler(StatisticsFactory statisticsFactory, int maxThreads, DistributionStats dmStats) {
+    this.statisticsFactory = statisticsFactory;
+    int parallelism = Math.max(1, Math.min(maxThreads, MAX_PARALLELISM));
+    // asyncMode so each thread processes the messages it queues in FIFO order
+    this.normalPool = new ForkJoinPool(parallelism, new WorkerFactory("Pooled Message Processor ", dmStats, false), null, true);
+    this.highPriorityPool = new ForkJoinPool(parallelism, new WorkerFactory("Pooled High Priority Message Processor ", dmStats, true), null, true);
+  }
+
+  /**
+   * Creates a new lane.
+   *
+   * @param name the name of the lane's stats
+   * @param highPriority whether the lane uses the high priority threads
+   * @param maxThreads the maximum number of messages of the lane processed
+   *          at a time, 1 for a serial lane, or 0 for no limit
+   * @param maxQueued the number of messages that can be queued before
+   *          execute waits for the lane to catch up, or 0 for no limit
+   * @param poolHelper notified of each message processed; may be null
+   */
+  public Lane createLane(String name, boolean highPriority, int maxThreads, int maxQueued, PoolStatHelper poolHelper) {
+    MessageLaneStats stats = this.statisticsFactory == null ? null : new MessageLaneStats(this.statisticsFactory, name);
+    Lane result = new Lane(name, highPriority ? this.highPriorityPool : this.normalPool, maxThreads, maxQueued, poolHelper, stats);
+    this.lanes.add(result);
+    return result;
+  }
+
+  /**
+   * Stops the lanes from accepting new messages. Messages already executed
+   * are still processed.
+   */
+  public void shutdown() {
+    for (Lane lane : this.lanes) {
+      lane.shutdown();
+    }
+    this.normalPool.shutdown();
+    this.highPriorityPool.shutdown();
+  }
+
+  /**
+   * Stops the lanes and drops the messages they have not started to process.
+   */
+  public void shutdownNow() {
+    for (Lane lane : this.lanes) {
+      lane.shutdownNow();
+    }
+    this.normalPool.shutdownNow();
+    this.highPriorityPool.shutdownNow();
+  }
+
+  /**
+   * Closes the stats of the lanes. Called after the lanes have terminated.
+   */
+  public void close() {
+    for (Lane lane : this.lanes) {
+      lane.closeStats();
+    }
+  }
+
+  private static class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    private final String namePrefix;
+    private final DistributionStats dmStats;
+    private final boolean highPriority;
+    private final AtomicInteger next = new AtomicInteger();
+
+    WorkerFactory(String namePrefix, DistributionStats dmStats, boolean highPriority) {
+      this.namePrefix = namePrefix;
+      this.dmStats = dmStats;
+      this.highPriority = highPriority;
+    }
+
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread result = new Worker(pool, this);
+      result.setName(this.namePrefix + this.next.getAndIncrement());
+      result.setDaemon(true);
+      return result;
+    }
+
+    void threadStarted() {
+      if (this.dmStats == null) {
+        return;
+      }
+      if (this.highPriority) {
+        this.dmStats.incHighPriorityThreadStarts();
+        this.dmStats.incHighPriorityThreads(1);
+      } else {
+        this.dmStats.incProcessingThreadStarts();
+        this.dmStats.incNumProcessingThreads(1);
+      }
+    }
+
+    void threadStopped() {
+      if (this.dmStats == null) {
+        return;
+      }
+      if (this.highPriority) {
+        this.dmStats.incHighPriorityThreads(-1);
+      } else {
+        this.dmStats.incNumProcessingThreads(-1);
+      }
+    }
+  }
+
+  private static class Worker extends ForkJoinWorkerThread {
+    private final WorkerFactory factory;
+
+    Worker(ForkJoinPool pool, WorkerFactory factory) {
+      super(pool);
+      this.factory = factory;
+    }
+
+    @Override
+    protected void onStart() {
+      super.onStart();
+      this.factory.threadStarted();
+      ConnectionTable.threadWantsSharedResources();
+      Connection.makeReaderThread();
+    }
+
+    @Override
+    protected void onTermination(Throwable exception) {
+      try {
+        ConnectionTable.releaseThreadsSockets();
+        this.factory.threadStopped();
+      } finally {
+        super.onTermination(exception);
+      }
+    }
+  }
+
+  /**
+   * An executor for one kind of message.
+   */
+  public static class Lane extends AbstractExecutorService {
+    private final String name;
+    private final ForkJoinPool pool;
+    private final boolean serial;
+    private final int maxThreads;
+    private final Semaphore queuePermits;
+    private final PoolStatHelper poolHelper;
+    private final MessageLaneStats stats;
+
+    /** The number of tasks executed that have not finished. Guards termination. */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile boolean shutdown;
+    private volatile boolean stopped;
+
+    /**
+     * The tasks waiting for a thread of this lane. The tasks of a serial lane
+     * are processed by at most one drainer at a time; the tasks of a bounded
+     * lane are given to the pool as its tasks in the pool finish.
+     */
+    private final ConcurrentLinkedQueue<Task> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    /** The number of tasks of a bounded lane given to the pool and not done */
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final Runnable drainer = new Runnable() {
+      public void run() {
+        drain();
+      }
+    };
+
+    Lane(String name, ForkJoinPool pool, int maxThreads, int maxQueued, PoolStatHelper poolHelper, MessageLaneStats stats) {
+      this.name = name;
+      this.pool = pool;
+      this.serial = maxThreads == 1;
+      this.maxThreads = maxThreads;
+      this.queuePermits = maxQueued > 0 ? new Semaphore(maxQueued) : null;
+      this.poolHelper = poolHelper;
+      this.stats = stats;
+      this.queue = maxThreads > 0 ? new ConcurrentLinkedQueue<Task>() : null;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * Returns the number of messages of this lane being processed.
+     */
+    public int getActiveCount() {
+      return this.active.get();
+    }
+
+    public void execute(Runnable command) {
+      if (command == null) {
+        throw new NullPointerException();
+      }
+      if (this.shutdown) {
+        throw new RejectedExecutionException("Message lane " + this.name + " has been shut down");
+      }
+      if (this.queuePermits != null) {
+        this.queuePermits.acquireUninterruptibly();
+      }
+      Task task = new Task(command);
+      this.pending.incrementAndGet();
+      if (this.stats != null) {
+        this.stats.incQueueSize(1);
+      }
+      try {
+        if (this.serial) {
+          this.queue.offer(task);
+          scheduleDrain();
+        } else if (this.queue != null) {
+          this.queue.offer(task);
+          scheduleQueued();
+        } else {
+          this.pool.execute(task);
+        }
+      } catch (RejectedExecutionException e) {
+        if (this.queue == null || this.queue.remove(task)) {
+          task.dequeued();
+          taskDone();
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * Gives queued tasks of a bounded lane to the pool while the lane has
+     * fewer than its maximum threads' worth of tasks in the pool.
+     */
+    private void scheduleQueued() {
+      for (;;) {
+        int count = this.scheduled.get();
+        if (count >= this.maxThreads) {
+          // the task that takes the count below the maximum schedules the next one
+          return;
+        }
+        if (!this.scheduled.compareAndSet(count, count + 1)) {
+          continue;
+        }
+        Task task = this.queue.poll();
+        if (task == null) {
+          this.scheduled.decrementAndGet();
+          if (this.queue.isEmpty()) {
+            return;
+          }
+          // a task was queued by a thread that saw the lane at its maximum
+          continue;
+        }
+        try {
+          this.pool.execute(task);
+        } catch (RejectedExecutionException e) {
+          // the pool was shut down
+          this.scheduled.decrementAndGet();
+          task.dequeued();
+          taskDone();
+          dropQueue(null);
+          throw e;
+        }
+      }
+    }
+
+    private void scheduledTaskDone() {
+      this.scheduled.decrementAndGet();
+      if (!this.queue.isEmpty()) {
+        try {
+          scheduleQueued();
+        } catch (RejectedExecutionException e) {
+          // the pool was shut down and the queue dropped
+        }
+      }
+    }
+
+    private void scheduleDrain() {
+      if (this.draining.compareAndSet(false, true)) {
+        try {
+          this.pool.execute(this.drainer);
+        } catch (RejectedExecutionException e) {
+          this.draining.set(false);
+          throw e;
+        }
+      }
+    }
+
+    private void drain() {
+      try {
+        for (int i = 0; i < SERIAL_BATCH_SIZE; i++) {
+          Task task = this.queue.poll();
+          if (task == null) {
+            break;
+          }
+          task.run();
+        }
+      } finally {
+        this.draining.set(false);
+      }
+      if (!this.queue.isEmpty()) {
+        try {
+          scheduleDrain();
+        } catch (RejectedExecutionException e) {
+          // the pool was shut down
+          dropQueue(null);
+        }
+      }
+    }
+
+    private void dropQueue(List<Runnable> dropped) {
+      Task task;
+      while ((task = this.queue.poll()) != null) {
+        if (dropped != null) {
+          dropped.add(task.command);
+        }
+        task.dequeued();
+        taskDone();
+      }
+    }
+
+    private void taskDone() {
+      if (this.queuePermits != null) {
+        this.queuePermits.release();
+      }
+      if (this.pending.decrementAndGet() == 0 && this.shutdown) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    public void shutdown() {
+      this.shutdown = true;
+      if (this.pending.get() == 0) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Shuts down this lane. Messages waiting in the lane are returned;
+     * messages queued in the pool are dropped when their turn comes.
+     */
+    public List<Runnable> shutdownNow() {
+      this.stopped = true;
+      shutdown();
+      if (this.queue == null) {
+        return Collections.emptyList();
+      }
+      List<Runnable> result = new ArrayList<Runnable>();
+      dropQueue(result);
+      return result;
+    }
+
+    public boolean isShutdown() {
+      return this.shutdown;
+    }
+
+    public boolean isTerminated() {
+      return this.shutdown && this.pending.get() == 0;
+    }
+
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long end = System.nanoTime() + unit.toNanos(timeout);
+      while (!isTerminated()) {
+        long remaining = end - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return true;
+    }
+
+    void closeStats() {
+      if (this.stats != null) {
+        this.stats.close();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Lane[" + this.name + "; pending=" + this.pending.get() + "; active=" + this.active.get() + "]";
+    }
+
+    private class Task implements Runnable {
+      final Runnable command;
+      final long queuedNanos = System.nanoTime();
+
+      Task(Runnable command) {
+        this.command = command;
+      }
+
+      void dequeued() {
+        if (stats != null) {
+          stats.incQueueSize(-1);
+        }
+      }
+
+      public void run() {
+        if (stopped) {
+          dequeued();
+          done();
+          return;
+        }
+        long start = System.nanoTime();
+        if (stats != null) {
+          stats.startTask(start - this.queuedNanos);
+        }
+        active.incrementAndGet();
+        if (poolHelper != null) {
+          poolHelper.startJob();
+        }
+        try {
+          runCommand();
+        } finally {
+          if (poolHelper != null) {
+            poolHelper.endJob();
+          }
+          active.decrementAndGet();
+          if (stats != null) {
+            stats.endTask(System.nanoTime() - start);
+          }
+          done();
+        }
+      }
+
+      private void done() {
+        taskDone();
+        if (!serial && queue != null) {
+          scheduledTaskDone();
+        }
+      }
+
+      private void runCommand() {
+        try {
+          this.command.run();
+        }
+        catch (CancelException e) {
+          if (logger.isTraceEnabled()) {
+            logger.trace("Caught shutdown exception", e);
+          }
+        }
+        catch (VirtualMachineError err) {
+          SystemFailure.initiateFailure(err);
+          // If this ever returns, rethrow the error.  We're poisoned
+          // now, so don't let this thread continue.
+          throw err;
+        }
+        catch (Throwable t) {
+          // Whenever you catch Error or Throwable, you must also
+          // catch VirtualMachineError (see above).  However, there is
+          // _still_ a possibility that you are dealing with a cascading
+          // error condition, so you also need to check to see if the JVM
+          // is still usable:
+          SystemFailure.checkFailure();
+          if (shutdown) {
+            logger.debug("Caught unusual exception during shutdown: {}", t.getMessage(), t);
+          }
+          else {
+            logger.warn(LocalizedMessage.create(LocalizedStrings.DistributionManager_TASK_FAILED_WITH_EXCEPTION), t);
+          }
+        }
+      }
+    }
+  }
+}
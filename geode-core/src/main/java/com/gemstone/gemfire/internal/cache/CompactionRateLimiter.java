@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+/**
+ * Limits the rate at which an oplog compactor copies live values forward so
+ * that compaction does not use all of the disk bandwidth. Values are copied in
+ * chunks of {@link #CHUNK_BYTES}; once a chunk has been copied the compactor
+ * pauses long enough for that chunk to not exceed {@link #BYTES_PER_SECOND}.
+ * The compactor does the pausing itself so that it can give up its locks
+ * instead of pausing while other threads wait for them.
+ * <p>
+ * Instances are only used by the single thread doing a compaction.
+ *
+ * @since Geode 1.0
+ */
+class CompactionRateLimiter {
+  /**
+   * The maximum number of bytes per second that compaction will copy. Zero,
+   * the default, means compaction is not rate limited. Not final so that tests
+   * can change it.
+   */
+  static volatile long BYTES_PER_SECOND = Long.getLong("gemfire.disk.COMPACTION_BYTES_PER_SECOND", 0L);
+
+  /**
+   * The number of bytes copied between checks of the rate. Not final so that
+   * tests can change it.
+   */
+  static volatile int CHUNK_BYTES = Integer.getInteger("gemfire.disk.COMPACTION_CHUNK_BYTES", 1024 * 1024);
+
+  private final long bytesPerSecond;
+  private final long chunkBytes;
+  private long chunkStart;
+  private long bytesInChunk;
+
+  CompactionRateLimiter() {
+    this(BYTES_PER_SECOND, CHUNK_BYTES);
+  }
+
+  CompactionRateLimiter(long bytesPerSecond, long chunkBytes) {
+    this.bytesPerSecond = bytesPerSecond;
+    this.chunkBytes = chunkBytes;
+    this.chunkStart = System.nanoTime();
+  }
+
+  boolean isLimited() {
+    return this.bytesPerSecond > 0;
+  }
+
+  /**
+   * Records that the given number of bytes have been copied forward. If that
+   * completes a chunk then returns how long the caller must pause for copying
+   * the chunk to take at least as long as the rate allows. The next chunk
+   * starts once that pause is over.
+   *
+   * @return the number of nanoseconds to pause; zero if copying can go on
+   */
+  long copied(int bytes) {
+    if (!isLimited()) {
+      return 0;
+    }
+    this.bytesInChunk += bytes;
+    if (this.bytesInChunk < this.chunkBytes) {
+      return 0;
+    }
+    long minNanos = (this.bytesInChunk * 1000000000L) / this.bytesPerSecond;
+    long now = System.nanoTime();
+    long pauseNanos = Math.max(0, minNanos - (now - this.chunkStart));
+    this.chunkStart = now + pauseNanos;
+    this.bytesInChunk = 0;
+    return pauseNanos;
+  }
+}
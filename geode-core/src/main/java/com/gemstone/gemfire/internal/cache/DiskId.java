@@ -80,6 +80,44 @@ public abstract class DiskId
   public static final long MAX_OPLOG_ID =      0x007FFFFFFFFFFFFFL;
   public static final long OPLOG_ID_SIGN_BIT = 0x0080000000000000L;
   public static final long USER_BITS_SHIFT = 24 + 32;
+
+  /**
+   * If true then disk stores whose oplog offsets fit in an int use packed
+   * DiskIds that keep the oplog offset in the same long as the oplog id and
+   * user bits. This saves eight bytes per entry but limits oplog ids to
+   * {@link #MAX_PACKED_OPLOG_ID}, so a disk store only creates them while its
+   * oplog ids are no higher than {@link #PACKED_OPLOG_ID_LIMIT}.
+   */
+  static final boolean PACKED_DISK_IDS = Boolean.getBoolean("gemfire.disk.PACKED_DISK_IDS");
+
+  /**
+   * Bit masks used by packed DiskIds. The user bits stay in the most
+   * significant byte, the oplog id (with its sign in the highest bit) is held
+   * in the next three bytes and the oplog offset in the lowest four bytes.
+   */
+  static final long PACKED_OPLOG_ID_MASK = 0x007FFFFF00000000L;
+  static final long PACKED_OFFSET_MASK =   0x00000000FFFFFFFFL;
+  static final long MAX_PACKED_OPLOG_ID =  0x00000000007FFFFFL;
+  static final int PACKED_OPLOG_ID_SHIFT = 32;
+
+  /**
+   * The highest oplog id a disk store may have reached and still create
+   * packed DiskIds. Half of the packed oplog id space is kept free so that
+   * packed DiskIds created before this id is passed can still be moved to
+   * the oplogs created after it.
+   */
+  static final long PACKED_OPLOG_ID_LIMIT = MAX_PACKED_OPLOG_ID / 2;
+
+  /**
+   * Returns true if a disk store with the given max oplog size (in megabytes)
+   * whose highest oplog id is <code>highestOplogId</code> may create packed
+   * DiskIds.
+   */
+  static boolean canUsePackedDiskIds(long maxOplogSize, long highestOplogId) {
+    return maxOplogSize * 1024 * 1024 <= Integer.MAX_VALUE
+        && highestOplogId <= PACKED_OPLOG_ID_LIMIT;
+  }
+
   /**
    * @return Returns the oplog id.
    */
@@ -268,7 +306,39 @@ public abstract class DiskId
   static DiskId createDiskId(long maxOplogSize,
                              boolean isPersistenceType,
                              boolean needsLinkedList) {
+    return createDiskId(maxOplogSize, isPersistenceType, needsLinkedList, false);
+  }
+
+  /**
+   * Creates appropriate instance of DiskId like
+   * {@link #createDiskId(long, boolean, boolean)} does, but creates a packed
+   * DiskId if <code>packed</code> is true and the oplog offsets fit in it.
+   * 
+   * @param packed
+   *          true if the disk store allows packed DiskIds; see
+   *          {@link DiskStoreImpl#usePackedDiskIds()}
+   * @return the disk-id instance created.
+   */
+  static DiskId createDiskId(long maxOplogSize,
+                             boolean isPersistenceType,
+                             boolean needsLinkedList,
+                             boolean packed) {
     long bytes = maxOplogSize * 1024 * 1024;
+    if (packed && bytes <= Integer.MAX_VALUE) {
+      if (isPersistenceType) {
+        if (needsLinkedList) {
+          return new PackedPersistence();
+        } else {
+          return new PackedPersistenceNoLL();
+        }
+      } else {
+        if (needsLinkedList) {
+          return new PackedOverflowOnly();
+        } else {
+          return new PackedOverflowOnlyNoLL();
+        }
+      }
+    }
     if (bytes > Integer.MAX_VALUE) {
       if (isPersistenceType) {
         if (needsLinkedList) {
@@ -419,6 +489,62 @@ public abstract class DiskId
     }
   }
 
+  /**
+   * Inner class implementation of DiskId which stores the offset in oplog in
+   * the low four bytes of the id field instead of in a field of its own.
+   * The offset is read and written while synchronized on this DiskId, like
+   * the oplog id it shares the id field with.
+   */
+  protected static abstract class PackedIntOffsetDiskId extends DiskId
+  {
+    @Override
+    synchronized long getOplogId() {
+      long oplogId = (super.id & PACKED_OPLOG_ID_MASK) >>> PACKED_OPLOG_ID_SHIFT;
+      if ((super.id & OPLOG_ID_SIGN_BIT) != 0) {
+        oplogId = -1L * oplogId;
+      }
+      return oplogId;
+    }
+
+    @Override
+    synchronized long setOplogId(long oplogId) {
+      long result = getOplogId();
+      long opId = oplogId;
+      if (oplogId < 0) {
+        opId = -1 * oplogId;
+      }
+      // disk stores stop creating packed DiskIds at PACKED_OPLOG_ID_LIMIT
+      // which leaves room for the oplogs the existing ones move to
+      assert opId <= MAX_PACKED_OPLOG_ID : "Oplog id " + oplogId + " does not fit in a packed DiskId";
+      opId <<= PACKED_OPLOG_ID_SHIFT;
+      if (oplogId < 0) {
+        opId |= OPLOG_ID_SIGN_BIT;
+      }
+      super.id = (super.id & (USER_BITS_MASK | PACKED_OFFSET_MASK)) | opId;
+      return result;
+    }
+
+    /**
+     * @return the offset in oplog where the entry is stored (returned as long)
+     */
+    @Override
+    synchronized long getOffsetInOplog() {
+      // sign extend so that -1 (no value on disk) reads back as -1
+      return (long)(int)(super.id & PACKED_OFFSET_MASK);
+    }
+
+    /**
+     * Setter for oplog offset of an entry
+     * 
+     * @param offsetInOplog -
+     *          offset in oplog where the entry is stored.
+     */
+    @Override
+    synchronized void setOffsetInOplog(long offsetInOplog) {
+      super.id = (super.id & ~PACKED_OFFSET_MASK) | (offsetInOplog & PACKED_OFFSET_MASK);
+    }
+  }
+
   protected static class OverflowOnlyWithIntOffsetNoLL extends
       IntOplogOffsetDiskId
   {
@@ -721,5 +847,152 @@ public abstract class DiskId
       this.next = v;
     }
   }
-}
 
+  protected static class PackedOverflowOnlyNoLL extends
+      PackedIntOffsetDiskId
+  {
+    PackedOverflowOnlyNoLL() {
+      markForWriting();
+    }
+
+    @Override
+    long getKeyId() {
+      throw new UnsupportedOperationException(LocalizedStrings.DiskId_FOR_OVERFLOW_ONLY_MODE_THE_KEYID_SHOULD_NOT_BE_QUERIED.toLocalizedString());
+    }
+
+    @Override
+    void setKeyId(long keyId) {
+      throw new UnsupportedOperationException(LocalizedStrings.DiskId_FOR_OVERFLOW_ONLY_MODE_THE_KEYID_SHOULD_NOT_BE_SET.toLocalizedString());
+    }
+
+    @Override
+    boolean isKeyIdNegative() {
+      return false;
+    }
+
+    @Override
+    void markForWriting() {
+      this.valueLength |= 0x80000000;
+    }
+    @Override
+    void unmarkForWriting() {
+      this.valueLength &= 0x7fffffff;
+    }
+
+    @Override
+    boolean needsToBeWritten() {
+      return (this.valueLength & 0x80000000) != 0;
+    }
+  }
+  final protected static class PackedOverflowOnly extends
+      PackedOverflowOnlyNoLL
+  {
+    /**
+     * Used by DiskRegion for compaction
+     * @since prPersistSprint1
+     */
+    private DiskEntry prev;
+    /**
+     * Used by DiskRegion for compaction
+     * @since prPersistSprint1
+     */
+    private DiskEntry next;
+
+    @Override
+    public DiskEntry getPrev() {
+      return this.prev;
+    }
+    @Override
+    public DiskEntry getNext() {
+      return this.next;
+    }
+    @Override
+    public void setPrev(DiskEntry v) {
+      this.prev = v;
+    }
+    @Override
+    public void setNext(DiskEntry v) {
+      this.next = v;
+    }
+  }
+
+  protected static class PackedPersistenceNoLL extends
+      PackedIntOffsetDiskId
+  {
+    /** unique entry identifier * */
+    private long keyId;
+
+    @Override
+    long getKeyId() {
+      return keyId;
+    }
+
+    @Override
+    void setKeyId(long keyId) {
+      this.keyId = keyId;
+    }
+
+    @Override
+    boolean isKeyIdNegative() {
+      return this.keyId < 0;
+    }
+
+    @Override
+    void markForWriting() {
+      if (this.keyId > DiskRegion.INVALID_ID) {
+        this.setKeyId(- this.keyId);
+      }
+    }
+    @Override
+    void unmarkForWriting() {
+      if (this.keyId < DiskRegion.INVALID_ID) {
+        this.setKeyId(- this.keyId);
+      }
+    }
+
+    @Override
+    boolean needsToBeWritten() {
+      return this.keyId <= DiskRegion.INVALID_ID;
+    }
+
+    @Override
+    public String toString() {
+      StringBuffer temp = new StringBuffer("Oplog Key ID = ");
+      temp.append(this.keyId);
+      temp.append("; ");
+      temp.append(super.toString());
+      return temp.toString();
+    }
+  }
+  final protected static class PackedPersistence extends
+      PackedPersistenceNoLL
+  {
+    /**
+     * Used by DiskRegion for compaction
+     * @since prPersistSprint1
+     */
+    private DiskEntry prev;
+    /**
+     * Used by DiskRegion for compaction
+     * @since prPersistSprint1
+     */
+    private DiskEntry next;
+
+    @Override
+    public DiskEntry getPrev() {
+      return this.prev;
+    }
+    @Override
+    public DiskEntry getNext() {
+      return this.next;
+    }
+    @Override
+    public void setPrev(DiskEntry v) {
+      this.prev = v;
+    }
+    @Override
+    public void setNext(DiskEntry v) {
+      this.next = v;
+    }
+  }
+}
@@ -40,6 +40,8 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
   public int compactionThreshold;
   public int queueSize;
   public int writeBufferSize;
+  public boolean memoryMappedReads;
+  public boolean syncWrites;
 
   public long maxOplogSizeInBytes;
   public long timeInterval;
@@ -61,6 +63,8 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
     this.maxOplogSizeInBytes = DiskStoreFactory.DEFAULT_MAX_OPLOG_SIZE * (1024*1024);
     this.timeInterval = DiskStoreFactory.DEFAULT_TIME_INTERVAL;
     this.writeBufferSize = DiskStoreFactory.DEFAULT_WRITE_BUFFER_SIZE;
+    this.memoryMappedReads = DiskStoreFactory.DEFAULT_MEMORY_MAPPED_READS;
+    this.syncWrites = DiskStoreFactory.DEFAULT_SYNC_WRITES;
     this.queueSize = DiskStoreFactory.DEFAULT_QUEUE_SIZE;
     this.diskDirs = DiskStoreFactory.DEFAULT_DISK_DIRS;
     this.diskDirSizes = DiskStoreFactory.DEFAULT_DISK_DIR_SIZES;
@@ -154,6 +158,20 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
     return this.writeBufferSize;
   }
 
+  /* (non-Javadoc)
+   * @see com.gemstone.gemfire.cache.DiskStore#getMemoryMappedReads()
+   */
+  public boolean getMemoryMappedReads() {
+    return this.memoryMappedReads;
+  }
+
+  /* (non-Javadoc)
+   * @see com.gemstone.gemfire.cache.DiskStore#getSyncWrites()
+   */
+  public boolean getSyncWrites() {
+    return this.syncWrites;
+  }
+
   public void flush() {
     // nothing needed
   }
@@ -56,6 +56,8 @@ public class DiskStoreFactoryImpl implements DiskStoreFactory
     setMaxOplogSizeInBytes(attrs.getMaxOplogSizeInBytes());
     setTimeInterval(attrs.getTimeInterval());
     setWriteBufferSize(attrs.getWriteBufferSize());
+    setMemoryMappedReads(attrs.getMemoryMappedReads());
+    setSyncWrites(attrs.getSyncWrites());
     setQueueSize(attrs.getQueueSize());
     setDiskDirs(cloneArray(attrs.getDiskDirs()));
     setDiskDirsAndSizes(cloneArray(attrs.getDiskDirs()), cloneArray(attrs.getDiskDirSizes()));
@@ -271,6 +273,16 @@ public class DiskStoreFactoryImpl implements DiskStoreFactory
     this.attrs.writeBufferSize = writeBufferSize;
     return this;
   }
+
+  public DiskStoreFactory setMemoryMappedReads(boolean memoryMappedReads) {
+    this.attrs.memoryMappedReads = memoryMappedReads;
+    return this;
+  }
+
+  public DiskStoreFactory setSyncWrites(boolean syncWrites) {
+    this.attrs.syncWrites = syncWrites;
+    return this;
+  }
   // used by hyda
   public DiskStoreAttributes getDiskStoreAttributes() {
     return this.attrs;
@@ -55,6 +55,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -418,6 +420,8 @@ public class DiskStoreImpl implements DiskStore {
     this.timeInterval = props.getTimeInterval();
     this.queueSize = props.getQueueSize();
     this.writeBufferSize = props.getWriteBufferSize();
+    this.memoryMappedReads = props.getMemoryMappedReads();
+    this.syncWrites = props.getSyncWrites();
     this.diskDirs = props.getDiskDirs();
     this.diskDirSizes = props.getDiskDirSizes();
     this.warningPercent = props.getDiskUsageWarningPercentage();
@@ -548,6 +552,12 @@ public class DiskStoreImpl implements DiskStore {
     if (getWriteBufferSize() != props.getWriteBufferSize()) {
       logger.debug("WriteBufferSize {} != {}", getWriteBufferSize(), props.getWriteBufferSize());
     }
+    if (getMemoryMappedReads() != props.getMemoryMappedReads()) {
+      logger.debug("MemoryMappedReads {} != {}", getMemoryMappedReads(), props.getMemoryMappedReads());
+    }
+    if (getSyncWrites() != props.getSyncWrites()) {
+      logger.debug("SyncWrites {} != {}", getSyncWrites(), props.getSyncWrites());
+    }
     if (!Arrays.equals(getDiskDirs(), props.getDiskDirs())) {
       if (logger.isDebugEnabled()) {
         logger.debug("DiskDirs {} != {}", Arrays.toString(getDiskDirs()), Arrays.toString(props.getDiskDirs()));
@@ -567,6 +577,8 @@ public class DiskStoreImpl implements DiskStore {
         && getQueueSize() == props.getQueueSize()
         && getTimeInterval() == props.getTimeInterval()
         && getWriteBufferSize() == props.getWriteBufferSize()
+        && getMemoryMappedReads() == props.getMemoryMappedReads()
+        && getSyncWrites() == props.getSyncWrites()
         && Arrays.equals(getDiskDirs(), props.getDiskDirs())
         && Arrays.equals(getDiskDirSizes(), props.getDiskDirSizes());
   }
@@ -2866,6 +2878,12 @@ public class DiskStoreImpl implements DiskStore {
    */
   final AtomicLong undeletedOplogSize = new AtomicLong();
 
+  /**
+   * The longest a throttled compactor pauses before checking whether another
+   * thread is waiting for its locks.
+   */
+  private static final long COMPACTION_PAUSE_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
   /**
    * Compacts oplogs
    * 
@@ -2877,6 +2895,11 @@ public class DiskStoreImpl implements DiskStore {
     private volatile boolean compactorEnabled;
     private volatile boolean scheduled;
     private CompactableOplog[] scheduledOplogs;
+    /**
+     * limits the rate of the compaction in progress; only used by the
+     * compactor thread
+     */
+    private CompactionRateLimiter rateLimiter;
     /**
      * used to keep track of the Thread currently invoking run on this compactor
      */
@@ -2967,6 +2990,7 @@ public class DiskStoreImpl implements DiskStore {
       int totalCount = 0;
       long compactionStart = getStats().startCompaction();
       long start = System.nanoTime();
+      this.rateLimiter = new CompactionRateLimiter();
       try {
         for (int i = 0; i < oplogs.length && keepCompactorRunning() /*
                                                                      * @todo &&
@@ -3105,6 +3129,63 @@ public class DiskStoreImpl implements DiskStore {
     boolean keepCompactorRunning() {
       return this.compactorEnabled || this.compactionCompletionRequired;
     }
+
+    /**
+     * Called by an oplog being compacted each time it has copied a live value
+     * forward. Must not be called while holding an entry lock since it may
+     * pause to keep compaction under its rate limit.
+     * <p>
+     * The compactor holds the compactor read lock and the given oplog lock
+     * while it pauses, so the pause is cut short once another thread waits
+     * for either of them or the compactor is stopped. The oplog must then stop
+     * compacting and release its locks. Since it still has live values it is
+     * compacted again by a later run.
+     *
+     * @return false if the oplog should stop compacting now
+     */
+    boolean copiedForward(int bytes, ReentrantLock oplogLock) {
+      getStats().incCompactedBytes(bytes);
+      long pauseNanos = this.rateLimiter.copied(bytes);
+      if (pauseNanos <= 0) {
+        return true;
+      }
+      long start = System.nanoTime();
+      try {
+        return pause(start + pauseNanos, oplogLock);
+      } finally {
+        getStats().incCompactionThrottleTime(System.nanoTime() - start);
+      }
+    }
+
+    /**
+     * Pauses until the given time unless another thread wants a lock held by
+     * the compactor.
+     *
+     * @return false if the pause was cut short and compaction should yield
+     */
+    private boolean pause(long endNanos, ReentrantLock oplogLock) {
+      while (true) {
+        if (shouldYield(oplogLock)) {
+          return false;
+        }
+        long remaining = endNanos - System.nanoTime();
+        if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+          return true;
+        }
+        LockSupport.parkNanos(Math.min(remaining, COMPACTION_PAUSE_SLICE_NANOS));
+      }
+    }
+
+    private boolean shouldYield(ReentrantLock oplogLock) {
+      if (!keepCompactorRunning()) {
+        return true;
+      }
+      if (this.compactionCompletionRequired) {
+        // must finish the oplogs it started even if others are waiting
+        return false;
+      }
+      return compactorLock.hasQueuedThreads() || oplogLock.hasQueuedThreads();
+    }
   }
 
   /**
@@ -3507,6 +3588,8 @@ public class DiskStoreImpl implements DiskStore {
   private final long timeInterval;
   private final int queueSize;
   private final int writeBufferSize;
+  private final boolean memoryMappedReads;
+  private final boolean syncWrites;
   private final File[] diskDirs;
   private final int[] diskDirSizes;
   private volatile float warningPercent;
@@ -3545,6 +3628,14 @@ public class DiskStoreImpl implements DiskStore {
     return this.writeBufferSize;
   }
 
+  public boolean getMemoryMappedReads() {
+    return this.memoryMappedReads;
+  }
+
+  public boolean getSyncWrites() {
+    return this.syncWrites;
+  }
+
   public File[] getDiskDirs() {
     return this.diskDirs;
   }
@@ -4584,6 +4675,20 @@ public class DiskStoreImpl implements DiskStore {
     return isCompactionPossible() || couldHaveKrf();
   }
 
+  /**
+   * Returns true if entries of this disk store should be given packed
+   * DiskIds. Once the oplog ids of this disk store pass
+   * {@link DiskId#PACKED_OPLOG_ID_LIMIT} new entries get unpacked DiskIds,
+   * which is also what a disk store recovered with such ids does from the
+   * start.
+   */
+  public boolean usePackedDiskIds() {
+    return DiskId.PACKED_DISK_IDS
+        && DiskId.canUsePackedDiskIds(getMaxOplogSize(),
+            Math.max(this.persistentOplogs.getHighestOplogId(),
+                this.overflowOplogs.getHighestOplogId()));
+  }
+
   /**
    * 
    * @return true if KRF files are used on this disk store's oplogs
@@ -57,6 +57,21 @@ public class DiskStoreStats {
   private static final int oplogRecoveriesId;
   private static final int oplogRecoveryTimeId;
   private static final int oplogRecoveredBytesId;
+  private static final int oplogsAwaitingRecoveryId;
+  private static final int recoveryReadAheadBytesId;
+  private static final int compactedBytesId;
+  private static final int compactionThrottleTimeId;
+  private static final int groupCommitsId;
+  private static final int groupCommitWritesId;
+  private static final int groupCommitTimeId;
+  private static final int groupCommitBatchSize1Id;
+  private static final int groupCommitBatchSize2To7Id;
+  private static final int groupCommitBatchSize8To63Id;
+  private static final int groupCommitBatchSize64OrMoreId;
+  private static final int groupCommitTimeUnder100MicrosId;
+  private static final int groupCommitTimeUnder1MillisId;
+  private static final int groupCommitTimeUnder10MillisId;
+  private static final int groupCommitTime10MillisOrMoreId;
   private static final int bytesReadId;
   private static final int removesId;
   private static final int removeTimeId;
@@ -150,6 +165,21 @@ public class DiskStoreStats {
          f.createIntCounter("oplogRecoveries", oplogRecoveriesDesc, "ops"),
          f.createLongCounter("oplogRecoveryTime", oplogRecoveryTimeDesc, "nanoseconds"),
          f.createLongCounter("oplogRecoveredBytes", oplogRecoveredBytesDesc, "bytes"),
+         f.createIntGauge("oplogsAwaitingRecovery", "The current number of oplogs that a recovery in progress still has to read", "oplogs"),
+         f.createLongCounter("compactedBytes", "The total number of bytes of live values copied forward by oplog compaction", "bytes"),
+         f.createLongCounter("compactionThrottleTime", "The total amount of time oplog compaction spent sleeping to stay under gemfire.disk.COMPACTION_BYTES_PER_SECOND", "nanoseconds"),
+         f.createIntCounter("groupCommits", "The total number of group commits done for synchronous writes", "commits"),
+         f.createLongCounter("groupCommitWrites", "The total number of synchronous writes flushed by group commits", "writes"),
+         f.createLongCounter("groupCommitTime", "The total amount of time spent flushing group commits", "nanoseconds"),
+         f.createIntCounter("groupCommitBatchSize1", "The number of group commits that flushed a single write", "commits"),
+         f.createIntCounter("groupCommitBatchSize2To7", "The number of group commits that flushed 2 to 7 writes", "commits"),
+         f.createIntCounter("groupCommitBatchSize8To63", "The number of group commits that flushed 8 to 63 writes", "commits"),
+         f.createIntCounter("groupCommitBatchSize64OrMore", "The number of group commits that flushed 64 or more writes", "commits"),
+         f.createIntCounter("groupCommitTimeUnder100Micros", "The number of group commits that took less than 100 microseconds", "commits"),
+         f.createIntCounter("groupCommitTimeUnder1Millis", "The number of group commits that took 100 microseconds to 1 millisecond", "commits"),
+         f.createIntCounter("groupCommitTimeUnder10Millis", "The number of group commits that took 1 to 10 milliseconds", "commits"),
+         f.createIntCounter("groupCommitTime10MillisOrMore", "The number of group commits that took 10 milliseconds or more", "commits"),
+         f.createLongCounter("recoveryReadAheadBytes", "The total number of bytes read from oplog files by recovery read ahead threads before recovery needed them", "bytes"),
          f.createLongCounter("removes", removesDesc, "ops"),
          f.createLongCounter("removeTime", removeTimeDesc, "nanoseconds"),
          f.createIntGauge("queueSize", queueSizeDesc, "entries"),
@@ -201,6 +231,21 @@ public class DiskStoreStats {
     oplogRecoveriesId = type.nameToId("oplogRecoveries");
     oplogRecoveryTimeId = type.nameToId("oplogRecoveryTime");
     oplogRecoveredBytesId = type.nameToId("oplogRecoveredBytes");
+    oplogsAwaitingRecoveryId = type.nameToId("oplogsAwaitingRecovery");
+    recoveryReadAheadBytesId = type.nameToId("recoveryReadAheadBytes");
+    compactedBytesId = type.nameToId("compactedBytes");
+    compactionThrottleTimeId = type.nameToId("compactionThrottleTime");
+    groupCommitsId = type.nameToId("groupCommits");
+    groupCommitWritesId = type.nameToId("groupCommitWrites");
+    groupCommitTimeId = type.nameToId("groupCommitTime");
+    groupCommitBatchSize1Id = type.nameToId("groupCommitBatchSize1");
+    groupCommitBatchSize2To7Id = type.nameToId("groupCommitBatchSize2To7");
+    groupCommitBatchSize8To63Id = type.nameToId("groupCommitBatchSize8To63");
+    groupCommitBatchSize64OrMoreId = type.nameToId("groupCommitBatchSize64OrMore");
+    groupCommitTimeUnder100MicrosId = type.nameToId("groupCommitTimeUnder100Micros");
+    groupCommitTimeUnder1MillisId = type.nameToId("groupCommitTimeUnder1Millis");
+    groupCommitTimeUnder10MillisId = type.nameToId("groupCommitTimeUnder10Millis");
+    groupCommitTime10MillisOrMoreId = type.nameToId("groupCommitTime10MillisOrMore");
     removesId = type.nameToId("removes");
     removeTimeId = type.nameToId("removeTime");
     queueSizeId = type.nameToId("queueSize");
@@ -440,6 +485,55 @@ public class DiskStoreStats {
     this.stats.incLong(oplogRecoveryTimeId, end - start);
     this.stats.incLong(oplogRecoveredBytesId, bytesRead);
   }
+  public void incOplogsAwaitingRecovery(int delta) {
+    this.stats.incInt(oplogsAwaitingRecoveryId, delta);
+  }
+  public void incRecoveryReadAheadBytes(long delta) {
+    this.stats.incLong(recoveryReadAheadBytesId, delta);
+  }
+  /**
+   * Invoked before a group commit flushes synchronous writes.
+   *
+   * @return The timestamp that marks the start of the commit
+   */
+  public long startGroupCommit() {
+    return DistributionStats.getStatTime();
+  }
+
+  /**
+   * Invoked after a group commit has flushed the given number of synchronous
+   * writes. The commit times are only kept when clock stats are enabled.
+   *
+   * @param start
+   *        The time at which the commit started
+   */
+  public void endGroupCommit(long start, int batchSize) {
+    this.stats.incInt(groupCommitsId, 1);
+    this.stats.incLong(groupCommitWritesId, batchSize);
+    if (batchSize == 1) {
+      this.stats.incInt(groupCommitBatchSize1Id, 1);
+    } else if (batchSize < 8) {
+      this.stats.incInt(groupCommitBatchSize2To7Id, 1);
+    } else if (batchSize < 64) {
+      this.stats.incInt(groupCommitBatchSize8To63Id, 1);
+    } else {
+      this.stats.incInt(groupCommitBatchSize64OrMoreId, 1);
+    }
+    if (!DistributionStats.enableClockStats) {
+      return;
+    }
+    long elapsed = DistributionStats.getStatTime() - start;
+    this.stats.incLong(groupCommitTimeId, elapsed);
+    if (elapsed < 100000L) {
+      this.stats.incInt(groupCommitTimeUnder100MicrosId, 1);
+    } else if (elapsed < 1000000L) {
+      this.stats.incInt(groupCommitTimeUnder1MillisId, 1);
+    } else if (elapsed < 10000000L) {
+      this.stats.incInt(groupCommitTimeUnder10MillisId, 1);
+    } else {
+      this.stats.incInt(groupCommitTime10MillisOrMoreId, 1);
+    }
+  }
   public void incRecoveredEntryCreates() {
     this.stats.incLong(recoveredEntryCreatesId, 1);
   }
@@ -500,6 +594,15 @@ public class DiskStoreStats {
     this.stats.incLong(compactInsertsId, 1);
     this.stats.incLong(compactInsertTimeId, getStatTime()-start);
   }
+  public void incCompactedBytes(long bytes) {
+    this.stats.incLong(compactedBytesId, bytes);
+  }
+  public long getCompactedBytes() {
+    return this.stats.getLong(compactedBytesId);
+  }
+  public void incCompactionThrottleTime(long nanos) {
+    this.stats.incLong(compactionThrottleTimeId, nanos);
+  }
   public void endCompactionUpdate(long start) {
     this.stats.incLong(compactUpdatesId, 1);
     this.stats.incLong(compactUpdateTimeId, getStatTime()-start);
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+/**
+ * Lets the synchronous writers of an oplog share the flush of their records.
+ * Each writer buffers its record under the oplog lock, takes the next
+ * sequence number and then calls {@link #await} after releasing the lock.
+ * The first waiter becomes the leader and flushes everything that has been
+ * buffered so far; writers that buffer records while it does so are flushed
+ * together by the next leader.
+ * <p>
+ * If the leader's flush fails the leader throws and one of the waiting
+ * writers becomes the next leader and tries again.
+ *
+ * @since Geode 1.0
+ */
+abstract class GroupCommit {
+  private long committedSeq;
+  private boolean inProgress;
+
+  /**
+   * Returns the sequence number of the last record buffered. Called by the
+   * leader before it flushes.
+   */
+  protected abstract long getLastSeq();
+
+  /**
+   * Flushes all buffered records and forces them to disk if the oplog does
+   * synchronous writes.
+   */
+  protected abstract void flush();
+
+  /**
+   * Called by the leader before it flushes. Returns the start time that is
+   * later passed to {@link #committed}.
+   */
+  protected abstract long startCommit();
+
+  /**
+   * Called by the leader after its flush committed the given number of
+   * records.
+   */
+  protected abstract void committed(long start, int batchSize);
+
+  /**
+   * Waits until the record with the given sequence number has been flushed,
+   * flushing it if no other writer is doing so. Must not be called while
+   * holding the oplog lock.
+   */
+  void await(long seq) {
+    boolean interrupted = false;
+    try {
+      synchronized (this) {
+        while (this.committedSeq < seq) {
+          if (!this.inProgress) {
+            this.inProgress = true;
+            break;
+          }
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (this.committedSeq >= seq) {
+          return;
+        }
+      }
+      // we are the leader
+      final long start = startCommit();
+      long committed = -1;
+      try {
+        long leaderSeq = getLastSeq();
+        flush();
+        committed = leaderSeq;
+      } finally {
+        int batchSize = 0;
+        synchronized (this) {
+          if (committed > this.committedSeq) {
+            batchSize = (int) (committed - this.committedSeq);
+            this.committedSeq = committed;
+          }
+          this.inProgress = false;
+          notifyAll();
+        }
+        if (batchSize > 0) {
+          committed(start, batchSize);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -54,7 +54,6 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Logger;
@@ -190,6 +189,26 @@ public final class Oplog implements CompactableOplog, Flushable {
    */
   private static final boolean SYNC_WRITES = Boolean.getBoolean("gemfire.syncWrites");
 
+  /**
+   * The size of the file system cache pages dropped once written by a disk
+   * store configured with sync writes.
+   */
+  private static final int CACHE_PAGE_SIZE = 4096;
+
+  /**
+   * Set once dropping written pages from the file system cache has failed, for
+   * example because the platform does not support it, so it is not tried again.
+   */
+  private static volatile boolean dropFileCacheUnsupported;
+
+  /**
+   * This system property makes synchronous creates, modifies and removes
+   * buffer their record and then wait for a single flush (and force if sync
+   * writes are enabled) done on behalf of every writer that buffered a
+   * record on the same oplog in the meantime.
+   */
+  static final boolean GROUP_COMMIT = Boolean.getBoolean("gemfire.disk.GROUP_COMMIT");
+
   /**
    * The HighWaterMark of recentValues.
    */
@@ -555,6 +574,46 @@ public final class Oplog implements CompactableOplog, Flushable {
    * cause a switch of oplogs
    */
   final Object lock = new Object();
+
+  /**
+   * Sequence number of the last synchronous record buffered for group commit.
+   * Guarded by lock.
+   */
+  private long syncWriteSeq;
+  /**
+   * Shares the flushes of synchronous writes when GROUP_COMMIT is set.
+   */
+  private final GroupCommit groupCommit = new GroupCommit() {
+    @Override
+    protected long getLastSeq() {
+      synchronized (lock) {
+        return syncWriteSeq;
+      }
+    }
+
+    @Override
+    protected void flush() {
+      flushAll(false);
+    }
+
+    @Override
+    protected long startCommit() {
+      return getStats().startGroupCommit();
+    }
+
+    @Override
+    protected void committed(long start, int batchSize) {
+      getStats().endGroupCommit(start, batchSize);
+    }
+  };
+  /**
+   * True if drf records have been written to the drf channel but not forced
+   * yet. With group commit several synchronous records are written before
+   * they are forced, so the drf is forced before later crf bytes are written
+   * to keep a drf record on disk before any crf record that follows it.
+   * Guarded by lock.
+   */
+  private boolean drfUnforced;
   final ByteBuffer[] bbArray = new ByteBuffer[2];
 
   private boolean lockedForKRFcreate = false;
@@ -1108,7 +1167,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
     this.crf.f = f;
     preblow(this.crf, getMaxCrfSize());
-    this.crf.raf = new UninterruptibleRandomAccessFile(f, SYNC_WRITES ? "rwd" : "rw");
+    this.crf.raf = new UninterruptibleRandomAccessFile(f, isSyncWrites() ? "rwd" : "rw");
     this.crf.RAFClosed = false;
     oplogSet.crfCreate(this.oplogId);
     this.crf.writeBuf = allocateWriteBuf(prevOlf);
@@ -1128,6 +1187,42 @@ public final class Oplog implements CompactableOplog, Flushable {
     this.maxCrfSize += this.crf.currSize;
   }
 
+  /**
+   * Returns true if this oplog's files are opened for synchronous data writes,
+   * either because of the gemfire.syncWrites system property or because its
+   * disk store was configured with sync writes.
+   */
+  private boolean isSyncWrites() {
+    return SYNC_WRITES || getParent().getSyncWrites();
+  }
+
+  /**
+   * Drops the bytes written to the given file since the last call from the
+   * file system cache, so that a disk store configured with sync writes does
+   * not fill the cache with oplog data it rarely reads back. Every write to
+   * such a file is synchronous, so the pages are clean and can be dropped. The
+   * last partial page is kept until it is full. Caller must hold lock.
+   */
+  private void dropWrittenFromCache(OplogFile olf) throws IOException {
+    if (dropFileCacheUnsupported || !getParent().getSyncWrites()) {
+      return;
+    }
+    final long start = olf.cacheDroppedTo;
+    final long end = olf.channel.position();
+    if (end - start < CACHE_PAGE_SIZE) {
+      return;
+    }
+    try {
+      NativeCalls.getInstance().dropFileCache(olf.raf.getFD(), start, end - start);
+      olf.cacheDroppedTo = end & ~(CACHE_PAGE_SIZE - 1L);
+    } catch (UnsupportedOperationException e) {
+      dropFileCacheUnsupported = true;
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not drop oplog pages from the file system cache because: {}", e.getMessage(), e);
+      }
+    }
+  }
+
   private static ByteBuffer allocateWriteBuf(OplogFile prevOlf) {
     if (prevOlf != null && prevOlf.writeBuf != null) {
       ByteBuffer result = prevOlf.writeBuf;
@@ -1150,7 +1245,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       logger.debug("Creating operation log file {}", f);
     }
     preblow(this.drf, getMaxDrfSize());
-    this.drf.raf = new UninterruptibleRandomAccessFile(f, SYNC_WRITES ? "rwd" : "rw");
+    this.drf.raf = new UninterruptibleRandomAccessFile(f, isSyncWrites() ? "rwd" : "rw");
     this.drf.RAFClosed = false;
     this.oplogSet.drfCreate(this.oplogId);
     this.drf.writeBuf = allocateWriteBuf(prevOlf);
@@ -3339,6 +3434,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         this.crf.RAFClosed = true;
         this.stats.decOpenOplogs();
       }
+      unmapCrf();
       this.closed = true;
     }
     synchronized (this.lock/* drf */) {
@@ -3599,6 +3695,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitSeq = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicCreate KRF_DEBUG");
@@ -3665,7 +3762,10 @@ public final class Oplog implements CompactableOplog, Flushable {
         id.setOplogId(getOplogId());
         // do the io while holding lock so that switch can set doneAppending
         // Write the data to the opLog for the synch mode
-        startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+        startPosForSynchOp = writeOpLogBytes(this.crf, async, !GROUP_COMMIT);
+        if (!async && GROUP_COMMIT) {
+          commitSeq = ++this.syncWriteSeq;
+        }
         // if (this.crf.currSize != startPosForSynchOp) {
         // assert false;
         // }
@@ -3723,6 +3823,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(this != getOplogSet().getChild());
       getOplogSet().getChild().basicCreate(dr, entry, value, userBits, async);
     } else {
+      if (commitSeq != 0) {
+        this.groupCommit.await(commitSeq);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -4258,6 +4361,31 @@ public final class Oplog implements CompactableOplog, Flushable {
     return new File(this.diskFile.getPath() + KRF_FILE_EXT);
   }
 
+  /**
+   * Returns the drf of this oplog. Used to read it ahead of recovery.
+   */
+  File getDrfFile() {
+    return this.drf.f;
+  }
+
+  /**
+   * Returns the file that {@link #recoverCrf} will read for this oplog: its krf
+   * if it has one and recovery will use it, otherwise its crf. Returns null if
+   * this oplog has no crf. Used to read it ahead of recovery.
+   */
+  File getCrfRecoveryFile(boolean recoverValuesSync) {
+    if (this.crf.f == null) {
+      return null;
+    }
+    if (!recoverValuesSync && !(getParent().isOffline() && !getParent().FORCE_KRF_RECOVERY)) {
+      File krf = new File(this.drf.f.getParentFile(), oplogSet.getPrefix() + getParent().getName() + "_" + this.oplogId + KRF_FILE_EXT);
+      if (krf.exists()) {
+        return krf;
+      }
+    }
+    return this.crf.f;
+  }
+
   public List<KRFEntry> getSortedLiveEntries(Collection<DiskRegionInfo> targetRegions) {
     int tlc = (int) this.totalLiveCount.get();
     if (tlc <= 0) {
@@ -4635,6 +4763,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1L;
+    long commitSeq = 0;
     int adjustment = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
@@ -4665,7 +4794,10 @@ public final class Oplog implements CompactableOplog, Flushable {
           long oldOplogId;
           // do the io while holding lock so that switch can set doneAppending
           // Write the data to the opLog for the synch mode
-          startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.crf, async, !GROUP_COMMIT);
+          if (!async && GROUP_COMMIT) {
+            commitSeq = ++this.syncWriteSeq;
+          }
           this.crf.currSize = temp;
           startPosForSynchOp += getOpStateValueOffset();
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
@@ -4739,6 +4871,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicModify(dr, entry, value, userBits, async, calledByCompactor);
     } else {
+      if (commitSeq != 0) {
+        this.groupCommit.await(commitSeq);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5067,6 +5202,7 @@ public final class Oplog implements CompactableOplog, Flushable {
 
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitSeq = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
@@ -5112,7 +5248,10 @@ public final class Oplog implements CompactableOplog, Flushable {
           // before we flush the crf.
           // However we can't have removes by async if we are doing a sync write
           // because we might be killed right after we do this write.
-          startPosForSynchOp = writeOpLogBytes(this.drf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.drf, async, !GROUP_COMMIT);
+          if (!async && GROUP_COMMIT) {
+            commitSeq = ++this.syncWriteSeq;
+          }
           setHasDeletes(true);
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
             logger.debug("basicRemove: id=<{}> key=<{}> drId={} oplog#{}", abs(id.getKeyId()), entry.getKey(), dr.getId(),
@@ -5152,6 +5291,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicRemove(dr, entry, async, isClear);
     } else {
+      if (commitSeq != 0) {
+        this.groupCommit.await(commitSeq);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5207,6 +5349,9 @@ public final class Oplog implements CompactableOplog, Flushable {
         }
         ByteBuffer bb = olf.writeBuf;
         if (bb != null && bb.position() != 0) {
+          if (olf == this.crf) {
+            forceDrfBeforeCrf();
+          }
           bb.flip();
           int flushed = 0;
           do {
@@ -5216,10 +5361,18 @@ public final class Oplog implements CompactableOplog, Flushable {
           // 41201
           olf.bytesFlushed += flushed;
           bb.clear();
+          if (olf == this.drf) {
+            this.drfUnforced = true;
+          }
+          dropWrittenFromCache(olf);
+        }
+        if (doSync && olf == this.drf && isSyncWrites()) {
+          // forced below
+          this.drfUnforced = false;
         }
       }
       if (doSync) {
-        if (SYNC_WRITES) {
+        if (isSyncWrites()) {
           // Synch Meta Data as well as content
           olf.channel.force(true);
         }
@@ -5239,6 +5392,9 @@ public final class Oplog implements CompactableOplog, Flushable {
         if (olf.RAFClosed) {
           return;
         }
+        if (olf == this.crf) {
+          forceDrfBeforeCrf();
+        }
         this.bbArray[0] = b1;
         this.bbArray[1] = b2;
         b1.flip();
@@ -5248,6 +5404,10 @@ public final class Oplog implements CompactableOplog, Flushable {
         // update bytesFlushed after entire writeBuffer is flushed to fix bug 41201
         olf.bytesFlushed += flushed;
         b1.clear();
+        if (olf == this.drf) {
+          this.drfUnforced = true;
+        }
+        dropWrittenFromCache(olf);
       }
     } catch (ClosedChannelException ignore) {
       // It is possible for a channel to be closed when our code does not
@@ -5258,6 +5418,19 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
   
+  /**
+   * Forces drf records that were written without being forced before the
+   * caller writes crf bytes. Only needed with group commit since otherwise
+   * every synchronous record is forced as soon as it is written. Caller must
+   * hold lock.
+   */
+  private void forceDrfBeforeCrf() throws IOException {
+    if (GROUP_COMMIT && this.drfUnforced && isSyncWrites() && !this.drf.RAFClosed) {
+      this.drfUnforced = false;
+      this.drf.channel.force(true);
+    }
+  }
+
   public final void flushAll() {
     flushAll(false);
   }
@@ -5480,6 +5653,77 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  /**
+   * Returns a read-only mapping of the crf or null if this oplog can not be
+   * read through a mapping. The mapping is created the first time it is asked
+   * for after this oplog is done appending.
+   */
+  private OplogFileMapping getMappedCrf() throws IOException {
+    OplogFileMapping result = this.crf.mapping; // volatile read
+    if (result == null) {
+      synchronized (this.lock/* crf */) {
+        result = this.crf.mapping;
+        if (result == null) {
+          if (!this.doneAppending || this.closed || this.crf.mapDisabled || this.crf.f == null
+              || this.crf.bytesFlushed > Integer.MAX_VALUE) {
+            return null;
+          }
+          result = OplogFileMapping.map(this.crf.f, this.crf.bytesFlushed);
+          this.crf.mapping = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the current mapping of the crf, or null if it is not mapped. For
+   * tests.
+   */
+  OplogFileMapping getCrfMapping() {
+    return this.crf.mapping;
+  }
+
+  /**
+   * Unmaps the crf, if it is mapped, once the reads in progress are done, and
+   * keeps it from being mapped again.
+   */
+  private void unmapCrf() {
+    synchronized (this.lock/* crf */) {
+      this.crf.mapDisabled = true;
+      OplogFileMapping mapping = this.crf.mapping;
+      if (mapping != null) {
+        this.crf.mapping = null;
+        mapping.unmap();
+      }
+    }
+  }
+
+  /**
+   * Reads the value from the mapping of the crf without seeking or holding the
+   * oplog lock.
+   * 
+   * @return null if the value can not be read from a mapping
+   */
+  private BytesAndBits attemptMappedGet(long offsetInOplog, int valueLength, byte userBits) throws IOException {
+    OplogFileMapping mapping = getMappedCrf();
+    if (mapping == null) {
+      return null;
+    }
+    byte[] valueBytes = mapping.read(offsetInOplog, valueLength);
+    if (valueBytes == null) {
+      return null;
+    }
+    this.stats.incOplogReads();
+    BytesAndBits bb = new BytesAndBits(valueBytes, userBits);
+    // also set the product version for an older product
+    final Version version = getProductVersionIfOld();
+    if (version != null) {
+      bb.setVersion(version);
+    }
+    return bb;
+  }
+
   /**
    * Asif: Extracts the Value byte array & UserBit from the OpLog
    * 
@@ -5508,6 +5752,12 @@ public final class Oplog implements CompactableOplog, Flushable {
       if (offsetInOplog == -1)
         return null;
       try {
+        if (getParent().getMemoryMappedReads()) {
+          bb = attemptMappedGet(offsetInOplog, valueLength, userBits);
+          if (bb != null) {
+            return bb;
+          }
+        }
         for (;;) {
           dr.getCancelCriterion().checkCancelInProgress(null);
           boolean interrupted = Thread.interrupted();
@@ -5712,6 +5962,8 @@ public final class Oplog implements CompactableOplog, Flushable {
   }
 
   public void deleteCRFFileOnly() {
+    // a mapped file can not be deleted on Windows
+    unmapCrf();
     deleteFile(this.crf);
     // replace .crf at the end with .krf
     if (this.crf.f != null) {
@@ -5877,6 +6129,23 @@ public final class Oplog implements CompactableOplog, Flushable {
     // }
   }
 
+  /**
+   * Returns the fraction of the records written to this oplog that still hold
+   * the most recent value of their entry. Oplogs with the lowest ratio free the
+   * most space for the least copying when compacted.
+   */
+  double getLiveRatio() {
+    long total = this.totalCount.get();
+    if (total <= 0) {
+      return 0.0;
+    }
+    long live = this.totalLiveCount.get();
+    if (live < 0) {
+      live = 0;
+    }
+    return (double) live / total;
+  }
+
   boolean needsCompaction() {
     if (!isCompactionPossible())
       return false;
@@ -6041,7 +6310,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     this.compacting = true;
   }
 
-  private final Lock compactorLock = new ReentrantLock();
+  private final ReentrantLock compactorLock = new ReentrantLock();
 
   private void lockCompactor() {
     this.compactorLock.lock();
@@ -6055,6 +6324,11 @@ public final class Oplog implements CompactableOplog, Flushable {
    * Copy any live entries last stored in this oplog to the current oplog. No
    * need to copy deletes in the drf. Backup only needs them until all the older
    * crfs are empty.
+   * <p>
+   * A throttled compaction may stop part way through to release its locks to
+   * another thread. The oplog then keeps the entries that were not copied yet
+   * and, since it still needs compaction, is compacted again by the next run
+   * of the compactor, which copies the rest.
    */
   public int compact(OplogCompactor compactor) {
     if (!needsCompaction()) {
@@ -6088,10 +6362,14 @@ public final class Oplog implements CompactableOplog, Flushable {
                                  */!compactor.keepCompactorRunning();
         int totalCount = 0;
         for (DiskRegionInfo dri : this.regionMap.values()) {
+          if (compactFailed) {
+            break;
+          }
           final DiskRegionView dr = dri.getDiskRegion();
           if (dr == null)
             continue;
           boolean didCompact = false;
+          int copiedBytes = 0;
           while ((de = dri.getNextLiveEntry()) != null) {
             if (/*
                  * getParent().getOwner().isDestroyed ||
@@ -6131,12 +6409,19 @@ public final class Oplog implements CompactableOplog, Flushable {
                   getOplogSet().getChild().copyForwardModifyForCompact(dr, de, wrapper);
                   // the did's oplogId will now be set to the current active oplog
                   didCompact = true;
+                  copiedBytes = did.getValueLength();
                 }
               } // did
             } // de
             if (didCompact) {
               totalCount++;
               getStats().endCompactionUpdate(opStart);
+              // done outside of the entry lock since it may pause
+              if (!compactor.copiedForward(copiedBytes, this.compactorLock)) {
+                // another thread wants our locks; compact the rest later
+                compactFailed = true;
+                break;
+              }
               opStart = getStats().getStatTime();
               // Asif: Check if the value byte array happens to be any of the
               // constant
@@ -6410,6 +6695,12 @@ public final class Oplog implements CompactableOplog, Flushable {
     public long currSize;
     public long bytesFlushed;
     public boolean unpreblown;
+    /** read-only mapping of the file; only set once appending is done */
+    public volatile OplogFileMapping mapping;
+    /** set once the file is closed or about to be deleted so it is not mapped again */
+    public boolean mapDisabled;
+    /** the offset up to which written pages were dropped from the file system cache */
+    public long cacheDroppedTo;
   }
 
   private static class KRFile {
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * A read-only mapping of an oplog file that is unmapped when the oplog is
+ * done with it instead of whenever the garbage collector finds the buffer.
+ * Until a file is unmapped it can not be deleted on Windows, and on other
+ * platforms its disk space and pages are held on to after it is deleted.
+ * <p>
+ * {@link #read} copies bytes out of the mapping. {@link #unmap} stops new
+ * reads and unmaps the file once the reads in progress are done, so a read
+ * never touches memory that has been unmapped.
+ * 
+ * @since Geode 1.0
+ */
+final class OplogFileMapping {
+  private static final Logger logger = LogService.getLogger();
+
+  /** Set in {@link #readers} once {@link #unmap} has been called */
+  private static final int UNMAPPED = Integer.MIN_VALUE;
+
+  /**
+   * sun.misc.Unsafe.invokeCleaner, which unmaps a buffer on Java 9 and later,
+   * or null on Java 8 where the buffer's own cleaner is used.
+   */
+  private static final Method INVOKE_CLEANER;
+  private static final Object UNSAFE;
+  static {
+    Method invokeCleaner = null;
+    Object unsafe = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+    } catch (Exception e) {
+      invokeCleaner = null;
+      unsafe = null;
+    }
+    INVOKE_CLEANER = invokeCleaner;
+    UNSAFE = unsafe;
+  }
+
+  private final MappedByteBuffer buffer;
+
+  /** The number of reads in progress, plus UNMAPPED once unmap has been called */
+  private final AtomicInteger readers = new AtomicInteger();
+
+  private OplogFileMapping(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Maps the first size bytes of the given file.
+   */
+  static OplogFileMapping map(File file, long size) throws IOException {
+    // the mapping stays valid after the file it was created from is closed
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      return new OplogFileMapping(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Returns a copy of length bytes of the file starting at offset, or null
+   * if this mapping does not hold them or has been unmapped.
+   */
+  byte[] read(long offset, int length) {
+    if (offset < 0 || (offset + length) > this.buffer.limit()) {
+      return null;
+    }
+    if (!startRead()) {
+      return null;
+    }
+    try {
+      ByteBuffer src = this.buffer.duplicate();
+      src.position((int) offset);
+      byte[] result = new byte[length];
+      src.get(result);
+      return result;
+    } finally {
+      endRead();
+    }
+  }
+
+  /**
+   * Stops new reads and unmaps the file as soon as no read is in progress.
+   */
+  void unmap() {
+    while (true) {
+      int count = this.readers.get();
+      if ((count & UNMAPPED) != 0) {
+        return;
+      }
+      if (this.readers.compareAndSet(count, count | UNMAPPED)) {
+        if (count == 0) {
+          clean();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns true once {@link #unmap} has been called.
+   */
+  boolean isUnmapped() {
+    return (this.readers.get() & UNMAPPED) != 0;
+  }
+
+  private boolean startRead() {
+    while (true) {
+      int count = this.readers.get();
+      if ((count & UNMAPPED) != 0) {
+        return false;
+      }
+      if (this.readers.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void endRead() {
+    if (this.readers.decrementAndGet() == UNMAPPED) {
+      // the last read after unmap was called
+      clean();
+    }
+  }
+
+  private void clean() {
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, this.buffer);
+      } else {
+        Method cleanerMethod = this.buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(this.buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    } catch (Exception e) {
+      // the garbage collector unmaps it once the buffer is unreachable
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not unmap oplog file because: {}", e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
+
+/**
+ * Reads the files of the oplogs being recovered ahead of
+ * {@link PersistentOplogSet} so that recovery finds them in the file system
+ * cache. One reader thread is started per disk directory so the directories
+ * are read concurrently while recovery applies the oplogs, one at a time and
+ * in the order that keeps the newest record of each entry.
+ * <p>
+ * Each reader stays at most {@link #READ_AHEAD_FILES} files ahead of recovery
+ * in its directory. Recovery must call {@link #drfRecovered} and
+ * {@link #crfRecovered} for every oplog it was started with, in the same order
+ * it recovers them.
+ *
+ * @since Geode 1.0
+ */
+class OplogRecoveryReadAhead {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of files each reader may read before recovery has caught up
+   * with them. Zero disables read ahead.
+   */
+  static final int READ_AHEAD_FILES = Integer.getInteger("gemfire.disk.RECOVERY_READ_AHEAD_FILES", 4);
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final DiskStoreStats stats;
+  private final Map<Integer, DirReader> readers = new LinkedHashMap<Integer, DirReader>();
+  private final List<Thread> threads = new ArrayList<Thread>();
+
+  /**
+   * Starts reading ahead the drfs and then the crfs (or krfs) of the given
+   * oplogs, in iteration order.
+   *
+   * @return null if read ahead is disabled or there is nothing to read
+   */
+  static OplogRecoveryReadAhead start(DiskStoreImpl parent, Collection<Oplog> oplogs, boolean recoverValuesSync) {
+    if (READ_AHEAD_FILES <= 0 || oplogs.isEmpty()) {
+      return null;
+    }
+    OplogRecoveryReadAhead result = new OplogRecoveryReadAhead(parent.getStats());
+    for (Oplog oplog : oplogs) {
+      result.addFile(getDirIndex(oplog), oplog.getDrfFile());
+    }
+    for (Oplog oplog : oplogs) {
+      result.addFile(getDirIndex(oplog), oplog.getCrfRecoveryFile(recoverValuesSync));
+    }
+    result.startThreads(parent.getName());
+    return result;
+  }
+
+  OplogRecoveryReadAhead(DiskStoreStats stats) {
+    this.stats = stats;
+  }
+
+  private static int getDirIndex(Oplog oplog) {
+    return oplog.getDirectoryHolder().getArrayIndex();
+  }
+
+  /**
+   * Adds the given file, which may be null, to the files read ahead in the
+   * given disk directory. Must be called before {@link #startThreads}.
+   */
+  void addFile(int dirIndex, File f) {
+    Integer dir = Integer.valueOf(dirIndex);
+    DirReader reader = this.readers.get(dir);
+    if (reader == null) {
+      reader = new DirReader();
+      this.readers.put(dir, reader);
+    }
+    reader.files.add(f);
+  }
+
+  void startThreads(String diskStoreName) {
+    ThreadGroup group = LoggingThreadGroup.createThreadGroup("Oplog Recovery Read Ahead Thread Group", logger);
+    for (Map.Entry<Integer, DirReader> me : this.readers.entrySet()) {
+      Thread thread = new Thread(group, me.getValue(), "Oplog Recovery Read Ahead for " + diskStoreName + " dir " + me.getKey());
+      thread.setDaemon(true);
+      thread.start();
+      this.threads.add(thread);
+    }
+  }
+
+  /**
+   * Called by recovery after it has read the drf of the given oplog.
+   */
+  void drfRecovered(Oplog oplog) {
+    fileRecovered(getDirIndex(oplog));
+  }
+
+  /**
+   * Called by recovery after it has read the crf or krf of the given oplog.
+   */
+  void crfRecovered(Oplog oplog) {
+    fileRecovered(getDirIndex(oplog));
+  }
+
+  /**
+   * Lets the reader of the given disk directory read one more file.
+   */
+  void fileRecovered(int dirIndex) {
+    DirReader reader = this.readers.get(Integer.valueOf(dirIndex));
+    if (reader != null) {
+      reader.permits.release();
+    }
+  }
+
+  /**
+   * Stops all the readers and waits for them to exit.
+   */
+  void stop() {
+    for (Thread thread : this.threads) {
+      thread.interrupt();
+    }
+    boolean interrupted = false;
+    for (Thread thread : this.threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reads the files of one disk directory in recovery order. A null file is
+   * a placeholder for an oplog without one so that permits stay balanced.
+   */
+  private class DirReader implements Runnable {
+    final List<File> files = new ArrayList<File>();
+    final Semaphore permits = new Semaphore(READ_AHEAD_FILES);
+
+    public void run() {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      try {
+        for (File f : this.files) {
+          this.permits.acquire();
+          if (f != null && !readFile(f, buffer)) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        // recovery is done; just exit
+      }
+    }
+
+    /**
+     * @return false if this reader was interrupted
+     */
+    private boolean readFile(File f, byte[] buffer) {
+      long bytesRead = 0;
+      try {
+        FileInputStream fis = new FileInputStream(f);
+        try {
+          int n;
+          while ((n = fis.read(buffer)) > 0) {
+            bytesRead += n;
+            if (Thread.currentThread().isInterrupted()) {
+              return false;
+            }
+          }
+        } finally {
+          fis.close();
+        }
+      } catch (IOException e) {
+        // the file may have been deleted by recovery; recovery reports real problems
+        if (logger.isDebugEnabled()) {
+          logger.debug("Could not read ahead {}: {}", f, e.getMessage());
+        }
+      } finally {
+        stats.incRecoveryReadAheadBytes(bytesRead);
+      }
+      return true;
+    }
+  }
+}
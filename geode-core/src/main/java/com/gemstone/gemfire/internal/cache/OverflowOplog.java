@@ -26,7 +26,6 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Logger;
@@ -472,6 +471,7 @@ class OverflowOplog implements CompactableOplog, Flushable {
         this.crf.RAFClosed = true;
         this.stats.decOpenOplogs();
       }
+      unmapCrf();
       this.closed = true;
     }
     
@@ -923,6 +923,64 @@ class OverflowOplog implements CompactableOplog, Flushable {
     } // sync
   }
 
+  /**
+   * Returns a read-only mapping of the crf or null if this oplog can not be
+   * read through a mapping. The mapping is created the first time it is asked
+   * for after this oplog is done appending.
+   */
+  private OplogFileMapping getMappedCrf() throws IOException {
+    OplogFileMapping result = this.crf.mapping; // volatile read
+    if (result == null) {
+      synchronized (this.crf) {
+        result = this.crf.mapping;
+        if (result == null) {
+          if (!this.doneAppending || this.closed || this.crf.mapDisabled
+              || this.crf.bytesFlushed > Integer.MAX_VALUE) {
+            return null;
+          }
+          result = OplogFileMapping.map(this.crf.f, this.crf.bytesFlushed);
+          this.crf.mapping = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Unmaps the crf, if it is mapped, once the reads in progress are done, and
+   * keeps it from being mapped again.
+   */
+  private void unmapCrf() {
+    synchronized (this.crf) {
+      this.crf.mapDisabled = true;
+      OplogFileMapping mapping = this.crf.mapping;
+      if (mapping != null) {
+        this.crf.mapping = null;
+        mapping.unmap();
+      }
+    }
+  }
+
+  /**
+   * Reads the value from the mapping of the crf without seeking or holding the
+   * crf lock.
+   * 
+   * @return null if the value can not be read from a mapping
+   */
+  private BytesAndBits attemptMappedGet(long offsetInOplog, int valueLength,
+                                        byte userBits) throws IOException {
+    OplogFileMapping mapping = getMappedCrf();
+    if (mapping == null) {
+      return null;
+    }
+    byte[] valueBytes = mapping.read(offsetInOplog, valueLength);
+    if (valueBytes == null) {
+      return null;
+    }
+    this.stats.incOplogReads();
+    return new BytesAndBits(valueBytes, userBits);
+  }
+
   private BytesAndBits attemptWriteBufferGet(long writePosition, long readPosition,
                                              int valueLength, byte userBits) {
     BytesAndBits bb = null;
@@ -973,6 +1031,12 @@ class OverflowOplog implements CompactableOplog, Flushable {
     else {
       if (offsetInOplog == -1) return null;
       try {
+        if (getParent().getMemoryMappedReads()) {
+          bb = attemptMappedGet(offsetInOplog, valueLength, userBits);
+          if (bb != null) {
+            return bb;
+          }
+        }
         for (;;) {
           dr.getCancelCriterion().checkCancelInProgress(null);
           boolean interrupted = Thread.interrupted();
@@ -1026,6 +1090,8 @@ class OverflowOplog implements CompactableOplog, Flushable {
 
   private void deleteFile() {
     final OplogFile olf = getOLF();
+    // a mapped file can not be deleted on Windows
+    unmapCrf();
     if (this.maxOplogSize != 0) {
       this.dirHolder.decrementTotalOplogSize(this.maxOplogSize);
       this.maxOplogSize = 0;
@@ -1228,6 +1294,10 @@ class OverflowOplog implements CompactableOplog, Flushable {
     public ByteBuffer writeBuf;
     public long currSize; // HWM
     public long bytesFlushed;
+    /** read-only mapping of the file; only set once appending is done */
+    public volatile OplogFileMapping mapping;
+    /** set once the file is closed or about to be deleted so it is not mapped again */
+    public boolean mapDisabled;
   }
 
   /**
@@ -1322,7 +1392,7 @@ class OverflowOplog implements CompactableOplog, Flushable {
     return v != null && v == Boolean.TRUE;
   }
 
-  private final Lock compactorLock = new ReentrantLock();
+  private final ReentrantLock compactorLock = new ReentrantLock();
   private void lockCompactor() {
     this.compactorLock.lock();
   }
@@ -1354,6 +1424,7 @@ class OverflowOplog implements CompactableOplog, Flushable {
       boolean compactFailed = !compactor.keepCompactorRunning();
       int totalCount = 0;
       boolean didCompact = false;
+      int copiedBytes = 0;
       while ((de = getNextLiveEntry()) != null) {
         if (!compactor.keepCompactorRunning()) {
           compactFailed = true;
@@ -1408,12 +1479,19 @@ class OverflowOplog implements CompactableOplog, Flushable {
             getOplogSet().copyForwardForOverflowCompact(de, valueBytes, length, userBits);
             // the did's oplogId will now be set to the current active oplog
             didCompact = true;
+            copiedBytes = length;
           }
         } // did
         } // de
         if (didCompact) {
           totalCount++;
           getStats().endCompactionUpdate(opStart);
+          // done outside of the entry lock since it may pause
+          if (!compactor.copiedForward(copiedBytes, this.compactorLock)) {
+            // another thread wants our locks; compact the rest later
+            compactFailed = true;
+            break;
+          }
           opStart = getStats().getStatTime();
           //Asif: Check if the value byte array happens to be any of the constant
           //static byte arrays or references the value byte array of underlying RegionEntry.
@@ -156,6 +156,13 @@ public class OverflowOplogSet implements OplogSet {
     return new OverflowOplog(id, this, getDirectories()[idx], minSize);
   }
 
+  /**
+   * Returns the highest overflow oplog id this set has created.
+   */
+  final int getHighestOplogId() {
+    return this.overflowOplogId.get();
+  }
+
   final void addOverflow(OverflowOplog oo) {
     this.overflowMap.put(oo.getOplogId(), oo);
   }
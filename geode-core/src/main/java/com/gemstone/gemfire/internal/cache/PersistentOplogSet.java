@@ -21,6 +21,7 @@ import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -160,6 +161,18 @@ public class PersistentOplogSet implements OplogSet {
     return result;
   }
   
+  /**
+   * Returns the highest oplog id this set has recovered or created.
+   */
+  long getHighestOplogId() {
+    Oplog localOplog = this.child;
+    long result = this.maxRecoveredOplogId;
+    if (localOplog != null) {
+      result = Math.max(result, localOplog.getOplogId());
+    }
+    return result;
+  }
+
   /**
    * Get the oplog specified
    *
@@ -451,40 +464,59 @@ public class PersistentOplogSet implements OplogSet {
     }
     if (oplogSet.size() > 0) {
       long startOpLogRecovery = System.currentTimeMillis();
-      // first figure out all entries that have been destroyed
-      boolean latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        byteCount += oplog.recoverDrf(deletedIds,
-                                      this.alreadyRecoveredOnce.get(),
-                                      latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+      // read the files of each disk dir ahead of us while we apply them in order
+      OplogRecoveryReadAhead readAhead = OplogRecoveryReadAhead.start(parent, oplogSet, recoverValuesSync());
+      int oplogsAwaitingRecovery = oplogSet.size();
+      parent.getStats().incOplogsAwaitingRecovery(oplogsAwaitingRecovery);
+      try {
+        // first figure out all entries that have been destroyed
+        boolean latestOplog = true;
+        for (Oplog oplog: oplogSet) {
+          byteCount += oplog.recoverDrf(deletedIds,
+                                        this.alreadyRecoveredOnce.get(),
+                                        latestOplog);
+          if (readAhead != null) {
+            readAhead.drfRecovered(oplog);
+          }
+          latestOplog = false;
+          if (!this.alreadyRecoveredOnce.get()) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
         }
-      }
-      parent.incDeadRecordCount(deletedIds.size());
-      // now figure out live entries
-      latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        long startOpLogRead = parent.getStats().startOplogRead();
-        long bytesRead = oplog.recoverCrf(deletedIds,
-                                          // @todo make recoverValues per region
-                                          recoverValues(),
-                                          recoverValuesSync(),
-                                          this.alreadyRecoveredOnce.get(),
-                                          oplogsNeedingValueRecovery, 
-                                          latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+        parent.incDeadRecordCount(deletedIds.size());
+        // now figure out live entries
+        latestOplog = true;
+        for (Oplog oplog: oplogSet) {
+          long startOpLogRead = parent.getStats().startOplogRead();
+          long bytesRead = oplog.recoverCrf(deletedIds,
+                                            // @todo make recoverValues per region
+                                            recoverValues(),
+                                            recoverValuesSync(),
+                                            this.alreadyRecoveredOnce.get(),
+                                            oplogsNeedingValueRecovery, 
+                                            latestOplog);
+          if (readAhead != null) {
+            readAhead.crfRecovered(oplog);
+          }
+          latestOplog = false;
+          if (!this.alreadyRecoveredOnce.get()) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
+          byteCount += bytesRead;
+          parent.getStats().endOplogRead(startOpLogRead, bytesRead);
+          oplogsAwaitingRecovery--;
+          parent.getStats().incOplogsAwaitingRecovery(-1);
+          
+          //Callback to the disk regions to indicate the oplog is recovered
+          //Used for offline export
+          for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
+            drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+          }
         }
-        byteCount += bytesRead;
-        parent.getStats().endOplogRead(startOpLogRead, bytesRead);
-        
-        //Callback to the disk regions to indicate the oplog is recovered
-        //Used for offline export
-        for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
-          drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+      } finally {
+        parent.getStats().incOplogsAwaitingRecovery(-oplogsAwaitingRecovery);
+        if (readAhead != null) {
+          readAhead.stop();
         }
       }
       long endOpLogRecovery = System.currentTimeMillis();
@@ -1059,24 +1091,34 @@ public class PersistentOplogSet implements OplogSet {
    * @param max
    */
   public void getCompactableOplogs(List<CompactableOplog> l, int max) {
+    List<Oplog> candidates = new ArrayList<Oplog>();
     synchronized (this.oplogIdToOplog) {
-      // Sort this list so we compact the oldest first instead of the one
-      // that was
-      // compactable first.
-      // ArrayList<CompactableOplog> l = new
-      // ArrayList<CompactableOplog>(this.oplogIdToOplog.values());
-      // Collections.sort(l);
-      // Iterator<Oplog> itr = l.iterator();
-      {
-        Iterator<Oplog> itr = this.oplogIdToOplog.values().iterator();
-        while (itr.hasNext() && l.size() < max) {
-          Oplog oplog = itr.next();
-          if (oplog.needsCompaction()) {
-            l.add(oplog);
-          }
+      Iterator<Oplog> itr = this.oplogIdToOplog.values().iterator();
+      while (itr.hasNext()) {
+        Oplog oplog = itr.next();
+        if (oplog.needsCompaction()) {
+          candidates.add(oplog);
         }
       }
     }
+    if (candidates.size() > max - l.size()) {
+      // Compact the oplogs with the most garbage first since they free the most
+      // space for the least copying; ties keep the oldest first. The ratios are
+      // snapshotted since writers change them while we sort.
+      final Map<Oplog, Double> liveRatios = new HashMap<Oplog, Double>();
+      for (Oplog oplog : candidates) {
+        liveRatios.put(oplog, oplog.getLiveRatio());
+      }
+      Collections.sort(candidates, new Comparator<Oplog>() {
+        public int compare(Oplog o1, Oplog o2) {
+          return Double.compare(liveRatios.get(o1), liveRatios.get(o2));
+        }
+      });
+    }
+    Iterator<Oplog> itr = candidates.iterator();
+    while (itr.hasNext() && l.size() < max) {
+      l.add(itr.next());
+    }
   }
 
   public void scheduleForRecovery(DiskRecoveryStore drs) {
@@ -40,6 +40,12 @@ public interface ClientHandShake {
   public int getClientReadTimeout();
   
   public Version getVersion();
+
+  /**
+   * Returns true if the client asked for large message parts sent to it to
+   * be compressed.
+   */
+  public boolean isCompressionRequested();
   
   public void accept(OutputStream out, InputStream in, byte epType, int qSize,
       byte communicationMode, Principal principal) throws IOException;
@@ -46,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -73,6 +74,7 @@ import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.distributed.internal.LonerDistributionManager;
 import com.gemstone.gemfire.distributed.internal.PooledExecutorWithDMStats;
 import com.gemstone.gemfire.distributed.internal.ReplyProcessor21;
+import com.gemstone.gemfire.distributed.internal.ThreadPerTaskExecutorWithDMStats;
 import com.gemstone.gemfire.internal.SocketCreator;
 import com.gemstone.gemfire.internal.SystemTimer;
 import com.gemstone.gemfire.internal.cache.BucketAdvisor;
@@ -90,6 +92,7 @@ import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.tcp.ConnectionTable;
 import com.gemstone.gemfire.internal.util.ArrayUtils;
+import com.gemstone.gemfire.internal.util.concurrent.VirtualThreads;
 
 /**
  * Implements the acceptor thread on the bridge server. Accepts connections from
@@ -108,7 +111,7 @@ public class AcceptorImpl extends Acceptor implements Runnable
   private final int maxConnections;
   private final int maxThreads;
 
-  private final ThreadPoolExecutor pool;
+  private final ExecutorService pool;
   /**
    * A pool used to process handshakes.
    */
@@ -130,10 +133,9 @@ public class AcceptorImpl extends Acceptor implements Runnable
   private final Object syncLock = new Object();
 
   /**
-   * THE selector for the bridge server; null if no selector.
+   * The selector loops for the bridge server; null if no selector.
    */
-  private final Selector selector;
-  //private final Selector tmpSel;
+  private final SelectorLoop[] selectorLoops;
   /**
    * Used for managing direct byte buffer for client comms; null if no selector.
    */
@@ -142,14 +144,6 @@ public class AcceptorImpl extends Acceptor implements Runnable
    * Used to timeout accepted sockets that we are waiting for the handshake packet
    */
   private final SystemTimer hsTimer;
-  /**
-   * A queue used to feed register requests to the selector; null if no selector.
-   */
-  private final LinkedBlockingQueue selectorQueue;
-  /**
-   * All the objects currently registered with selector.
-   */
-  private final HashSet selectorRegistrations;
   /**
    * tcpNoDelay setting for outgoing sockets
    */
@@ -216,9 +210,6 @@ public class AcceptorImpl extends Acceptor implements Runnable
   /** The thread that runs the acceptor */
   private Thread thread = null;
 
-  /** The thread that runs the selector loop if any */
-  private Thread selectorThread = null;
-
   /**
    * Controls updates to {@link #allSCs}
    */
@@ -254,6 +245,9 @@ public class AcceptorImpl extends Acceptor implements Runnable
   
   /** The client health monitor tracking connections for this acceptor */
   private ClientHealthMonitor healthMonitor;
+
+  /** Limits the requests of each client, null if not enabled */
+  private final ClientRequestThrottle requestThrottle;
   
   /** bridge's setting of notifyBySubscription */
   private final boolean notifyBySubscription;
@@ -357,26 +351,20 @@ public class AcceptorImpl extends Acceptor implements Runnable
       this.maxThreads = tmp_maxThreads;
     }
     {
-      Selector tmp_s = null;
-      //Selector tmp2_s = null;
-      LinkedBlockingQueue tmp_q = null;
+      SelectorLoop[] tmp_loops = null;
       LinkedBlockingQueue tmp_commQ = null;
-      HashSet tmp_hs = null;
       SystemTimer tmp_timer = null;
       if (isSelector()) {
-        tmp_s = Selector.open(); // no longer catch ex to fix bug 36907
-        //tmp2_s = Selector.open(); // workaround for bug 39624
-        tmp_q = new LinkedBlockingQueue();
+        tmp_loops = new SelectorLoop[Math.max(1, SELECTOR_THREADS)];
+        for (int i = 0; i < tmp_loops.length; i++) {
+          tmp_loops[i] = new SelectorLoop();
+        }
         tmp_commQ = new LinkedBlockingQueue();
-        tmp_hs = new HashSet(512);
         tmp_timer = new SystemTimer(
             c.getDistributedSystem(), true);
       }
-      this.selector = tmp_s;
-      //this.tmpSel = tmp2_s;
-      this.selectorQueue = tmp_q;
+      this.selectorLoops = tmp_loops;
       this.commBufferQueue = tmp_commQ;
-      this.selectorRegistrations = tmp_hs;
       this.hsTimer = tmp_timer;
       this.tcpNoDelay = tcpNoDelay;
     }
@@ -528,8 +516,11 @@ public class AcceptorImpl extends Acceptor implements Runnable
     this.healthMonitor = ClientHealthMonitor.getInstance(c, maximumTimeBetweenPings,
         this.clientNotifier.getStats());
 
+    this.requestThrottle = !isGatewayReceiver && ClientRequestThrottle.isEnabled()
+        ? new ClientRequestThrottle(c.getDistributedSystem()) : null;
+
     {
-      ThreadPoolExecutor tmp_pool = null;
+      ExecutorService tmp_pool = null;
       String gName = "ServerConnection "
         //+ serverSock.getInetAddress()
         + "on port " + this.localPort;
@@ -558,6 +549,9 @@ public class AcceptorImpl extends Acceptor implements Runnable
                 }
               }
             };
+            if (!isSelector() && VirtualThreads.isEnabled()) {
+              return VirtualThreads.newThread(r, tName);
+            }
             return new Thread(socketThreadGroup, r, tName);
           }
         };
@@ -568,6 +562,11 @@ public class AcceptorImpl extends Acceptor implements Runnable
                                                    getStats().getCnxPoolHelper(),
                                                    socketThreadFactory,
                                                    Integer.MAX_VALUE);
+        } else if (VirtualThreads.isEnabled()) {
+          // a virtual thread per client connection
+          tmp_pool = new ThreadPerTaskExecutorWithDMStats(socketThreadFactory,
+                                                          this.maxConnections,
+                                                          null);
         } else {
           tmp_pool
             = new ThreadPoolExecutor(MINIMUM_MAX_CONNECTIONS,
@@ -679,6 +678,16 @@ public class AcceptorImpl extends Acceptor implements Runnable
   private final static int DEPRECATED_SELECTOR_POOL_SIZE = Integer.getInteger("BridgeServer.SELECTOR_POOL_SIZE", 16).intValue();
   private final static int HANDSHAKE_POOL_SIZE = Integer.getInteger("BridgeServer.HANDSHAKE_POOL_SIZE", 4).intValue();
 
+  /**
+   * The number of threads, each with its own selector, that wait for requests
+   * on idle client connections when max-threads is set. Connections are spread
+   * over them so that one selector does not have to watch all of them.
+   * Not final so that tests can change it.
+   */
+  static int SELECTOR_THREADS = Integer.getInteger("BridgeServer.SELECTOR_THREADS", 1).intValue();
+
+  private static final boolean WORKAROUND_SELECTOR_BUG = Boolean.getBoolean("CacheServer.NIO_SELECTOR_WORKAROUND");
+
   @Override
   public void start() throws IOException
   {
@@ -695,17 +704,17 @@ public class AcceptorImpl extends Acceptor implements Runnable
     thread.start();
     
     if (isSelector()) {
-      Runnable r = new Runnable() {
-          public void run() {
-            AcceptorImpl.this.runSelectorLoop();
-          }
-        };
-      this.selectorThread = new Thread(tg, r, "Cache Server Selector "
-                                       + this.serverSock.getInetAddress()
-                                       + ":" + this.localPort
-                                       + " local port: "
-                                       + this.serverSock.getLocalPort());
-      this.selectorThread.start();
+      for (int i = 0; i < this.selectorLoops.length; i++) {
+        String name = "Cache Server Selector "
+                      + this.serverSock.getInetAddress()
+                      + ":" + this.localPort
+                      + " local port: "
+                      + this.serverSock.getLocalPort();
+        if (this.selectorLoops.length > 1) {
+          name = name + " " + i;
+        }
+        this.selectorLoops[i].start(tg, name);
+      }
     }
     GemFireCacheImpl myCache  = (GemFireCacheImpl)cache;
     Set<PartitionedRegion> prs = myCache.getPartitionedRegions();
@@ -739,15 +748,74 @@ public class AcceptorImpl extends Acceptor implements Runnable
         return;
       }
     }
-    getSelectorQueue().offer(sc);
-    wakeupSelector();
+    getSelectorLoop(sc).register(sc);
+  }
+
+  /**
+   * Registers the given connection with its selector once the given delay has
+   * passed. Used to hold back the next request of a throttled client without
+   * holding a pool thread.
+   */
+  void registerSCLater(final ServerConnection sc, long delayNanos) {
+    SystemTimer.SystemTimerTask task = new SystemTimer.SystemTimerTask() {
+      @Override
+      public void run2() {
+        try {
+          sc.registerWithSelector();
+        } catch (IOException e) {
+          finishCon(sc);
+        }
+      }
+    };
+    try {
+      this.hsTimer.schedule(task, Math.max(1, TimeUnit.NANOSECONDS.toMillis(delayNanos)));
+    } catch (IllegalStateException e) {
+      // the timer was cancelled because we are closing
+      finishCon(sc);
+    }
   }
 
-  /** wake up the selector thread */
+  /**
+   * Returns the selector loop the given connection is registered with. A
+   * connection always uses the same loop.
+   */
+  private SelectorLoop getSelectorLoop(ServerConnection sc) {
+    int idx = (System.identityHashCode(sc) & Integer.MAX_VALUE) % this.selectorLoops.length;
+    return this.selectorLoops[idx];
+  }
+
+  /**
+   * Returns how many connections are waiting in each selector thread for
+   * their next request. For tests.
+   */
+  int[] getSelectorRegistrationCounts() {
+    int[] result = new int[this.selectorLoops.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = this.selectorLoops[i].registeredKeys;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if every selector thread has exited. For tests.
+   */
+  boolean areSelectorThreadsStopped() {
+    for (int i = 0; i < this.selectorLoops.length; i++) {
+      Thread t = this.selectorLoops[i].thread;
+      if (t != null && t.isAlive()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** wake up the selector threads */
   private void wakeupSelector() {
-    Selector s = getSelector();
-    if (s != null && s.isOpen()) {
-      this.selector.wakeup();
+    SelectorLoop[] loops = this.selectorLoops;
+    if (loops != null) {
+      for (int i = 0; i < loops.length; i++) {
+        loops[i].wakeup();
+      }
     }
   }
   
@@ -778,36 +846,6 @@ public class AcceptorImpl extends Acceptor implements Runnable
     }
   }
   
-  private void drainSelectorQueue() {
-    ServerConnection sc = (ServerConnection)this.selectorQueue.poll();
-    CancelException cce = null;
-    while (sc != null) {
-      try {
-        finishCon(sc);
-      }
-      catch (CancelException e) {
-        if (cce == null) {
-          cce = e;
-        }
-      }
-      sc = (ServerConnection)this.selectorQueue.poll();
-    }
-    Iterator it = selectorRegistrations.iterator();
-    while (it.hasNext()) {
-      try {
-        finishCon((ServerConnection)it.next());
-      }
-      catch (CancelException e) {
-        if (cce == null) {
-          cce = e;
-        }
-      }
-    } // while
-    if (cce != null) {
-      throw cce;
-    }
-  }
-
   /**
    * break any potential circularity in {@link #loadEmergencyClasses()}
    */
@@ -852,332 +890,418 @@ public class AcceptorImpl extends Acceptor implements Runnable
     }
   }
   
-  private boolean isRegisteredObjectClosed(ServerConnection sc) {
-    return sc.isClosed();
-  }
+  /**
+   * Selects the idle connections registered with it and hands the ones that
+   * have a request to read to the thread pool. An acceptor has
+   * {@link #SELECTOR_THREADS} of these, each with its own selector and thread,
+   * and spreads the connections over them.
+   */
+  private class SelectorLoop implements Runnable {
+    private final Selector selector;
+    /**
+     * A queue used to feed register requests to the selector.
+     */
+    private final LinkedBlockingQueue selectorQueue = new LinkedBlockingQueue();
+    /**
+     * All the objects currently registered with selector.
+     */
+    private final HashSet selectorRegistrations = new HashSet(512);
+    private Selector tmpSel;
+    /**
+     * Only changed by the thread of this loop. Volatile so that tests can
+     * read it.
+     */
+    private volatile int registeredKeys = 0;
+    private volatile Thread thread;
+
+    SelectorLoop() throws IOException {
+      this.selector = Selector.open(); // no longer catch ex to fix bug 36907
+    }
 
-  private int checkRegisteredKeys(int count) {
-    int result = count;
-    CancelException cce = null;
-    if (count > 0) {
-      Iterator it = this.selectorRegistrations.iterator();
-      while (it.hasNext()) {
-        ServerConnection sc = (ServerConnection)it.next();
-        if (isRegisteredObjectClosed(sc)) {
-          result--;
-          it.remove();
-          try {
-            finishCon(sc);
+    void register(ServerConnection sc) {
+      this.selectorQueue.offer(sc);
+      wakeup();
+    }
+
+    void wakeup() {
+      if (this.selector.isOpen()) {
+        this.selector.wakeup();
+      }
+    }
+
+    void start(ThreadGroup tg, String name) {
+      this.thread = new Thread(tg, this, name);
+      this.thread.start();
+    }
+
+    void closeSelector() {
+      if (this.tmpSel != null) {
+        try {
+          this.tmpSel.close();
+        } catch (IOException ignore) {
+        }
+      }
+      try {
+        wakeup();
+        this.selector.close();
+      } catch (IOException ignore) {
+      }
+      if (this.thread != null) {
+        this.thread.interrupt();
+      }
+    }
+
+    private void drain() {
+      ServerConnection sc = (ServerConnection)this.selectorQueue.poll();
+      CancelException cce = null;
+      while (sc != null) {
+        try {
+          finishCon(sc);
+        }
+        catch (CancelException e) {
+          if (cce == null) {
+            cce = e;
           }
-          catch (CancelException e) {
-            if (cce == null) {
-              cce = e;
-            }
+        }
+        sc = (ServerConnection)this.selectorQueue.poll();
+      }
+      Iterator it = selectorRegistrations.iterator();
+      while (it.hasNext()) {
+        try {
+          finishCon((ServerConnection)it.next());
+        }
+        catch (CancelException e) {
+          if (cce == null) {
+            cce = e;
           }
         }
       } // while
+      if (cce != null) {
+        throw cce;
+      }
     }
-    if (cce != null) {
-      throw cce;
-    }
-    return result;
-  }
 
-  private static final boolean WORKAROUND_SELECTOR_BUG = Boolean.getBoolean("CacheServer.NIO_SELECTOR_WORKAROUND");
-
-  private Selector tmpSel;
+    private boolean isRegisteredObjectClosed(ServerConnection sc) {
+      return sc.isClosed();
+    }
 
-  private void checkForStuckKeys() {
-    if (!WORKAROUND_SELECTOR_BUG) return;
-    if (tmpSel == null) {
-      try {
-        tmpSel = Selector.open();
-      } catch (IOException ignore) {
-        logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_COULD_NOT_CHECK_FOR_STUCK_KEYS, ignore));
-        return;
+    private int checkRegisteredKeys(int count) {
+      int result = count;
+      CancelException cce = null;
+      if (count > 0) {
+        Iterator it = this.selectorRegistrations.iterator();
+        while (it.hasNext()) {
+          ServerConnection sc = (ServerConnection)it.next();
+          if (isRegisteredObjectClosed(sc)) {
+            result--;
+            it.remove();
+            try {
+              finishCon(sc);
+            }
+            catch (CancelException e) {
+              if (cce == null) {
+                cce = e;
+              }
+            }
+          }
+        } // while
       }
-        
+      if (cce != null) {
+        throw cce;
+      }
+      return result;
     }
-    //logger.info("DEBUG: checking for stuck keys");
-    Iterator it = (new ArrayList(this.selector.keys())).iterator();
-    while (it.hasNext()) {
-      SelectionKey sk = (SelectionKey)it.next();
-      ServerConnection sc = (ServerConnection)sk.attachment();
-      if (sc == null) continue;
-      try {
-        sk.cancel();
-        this.selector.selectNow(); // clear the cancelled key
-        SelectionKey tmpsk = sc.getSelectableChannel().register(this.tmpSel, SelectionKey.OP_WRITE|SelectionKey.OP_READ);
+
+    private void checkForStuckKeys() {
+      if (!WORKAROUND_SELECTOR_BUG) return;
+      if (tmpSel == null) {
         try {
-          // it should always be writable
-          int events = this.tmpSel.selectNow();
-          if (events == 0) {
-            logger.info(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_STUCK_SELECTION_KEY_DETECTED_ON_0, sc));
-            tmpsk.cancel();
-            tmpSel.selectNow(); // clear canceled key
-            sc.registerWithSelector2(this.selector);
-          } else {
-            if (tmpsk.isValid() && tmpsk.isReadable()) {
-              //             logger.info("DEBUG detected read event on " + sc);
-              try {
+          tmpSel = Selector.open();
+        } catch (IOException ignore) {
+          logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_COULD_NOT_CHECK_FOR_STUCK_KEYS, ignore));
+          return;
+        }
+        
+      }
+      //logger.info("DEBUG: checking for stuck keys");
+      Iterator it = (new ArrayList(this.selector.keys())).iterator();
+      while (it.hasNext()) {
+        SelectionKey sk = (SelectionKey)it.next();
+        ServerConnection sc = (ServerConnection)sk.attachment();
+        if (sc == null) continue;
+        try {
+          sk.cancel();
+          this.selector.selectNow(); // clear the cancelled key
+          SelectionKey tmpsk = sc.getSelectableChannel().register(this.tmpSel, SelectionKey.OP_WRITE|SelectionKey.OP_READ);
+          try {
+            // it should always be writable
+            int events = this.tmpSel.selectNow();
+            if (events == 0) {
+              logger.info(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_STUCK_SELECTION_KEY_DETECTED_ON_0, sc));
+              tmpsk.cancel();
+              tmpSel.selectNow(); // clear canceled key
+              sc.registerWithSelector2(this.selector);
+            } else {
+              if (tmpsk.isValid() && tmpsk.isReadable()) {
+                //             logger.info("DEBUG detected read event on " + sc);
+                try {
+                  tmpsk.cancel();
+                  this.tmpSel.selectNow(); // clear canceled key
+                  this.selectorRegistrations.remove(sc);
+                  registeredKeys--;
+                  sc.makeBlocking();
+                  // we need to say we are processing a message
+                  // so that that client health monitor will not
+                  // kill us while we wait for a thread in the thread pool.
+                  // This is also be used to determine how long we are
+                  // in the thread pool queue and to cancel operations that
+                  // have waited too long in the queue.
+                  sc.setProcessingMessage();
+                } catch (ClosedChannelException ignore) {
+                  finishCon(sc);
+                  continue;
+                } catch (IOException ex) {
+                  finishCon(sc);
+                  if(isRunning()) {
+                    logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex));
+                  }
+                  continue;
+                }
+                try {
+                  AcceptorImpl.this.stats.incThreadQueueSize();
+                  AcceptorImpl.this.pool.execute(sc);
+                } catch (RejectedExecutionException rejected) {
+                  finishCon(sc);
+                  AcceptorImpl.this.stats.decThreadQueueSize();
+                  if (!isRunning()) {
+                    break;
+                  }
+                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, rejected));
+                }
+              } else if (tmpsk.isValid() && tmpsk.isWritable()) {
+                // this is expected
                 tmpsk.cancel();
                 this.tmpSel.selectNow(); // clear canceled key
-                this.selectorRegistrations.remove(sc);
-                registeredKeys--;
-                sc.makeBlocking();
-                // we need to say we are processing a message
-                // so that that client health monitor will not
-                // kill us while we wait for a thread in the thread pool.
-                // This is also be used to determine how long we are
-                // in the thread pool queue and to cancel operations that
-                // have waited too long in the queue.
-                sc.setProcessingMessage();
-              } catch (ClosedChannelException ignore) {
-                finishCon(sc);
-                continue;
-              } catch (IOException ex) {
-                finishCon(sc);
-                if(isRunning()) {
-                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex));
-                }
-                continue;
+                sc.registerWithSelector2(this.selector);
+              } else if (!tmpsk.isValid()) {
+                tmpsk.cancel();
+                this.tmpSel.selectNow(); // clear canceled key
+                sc.registerWithSelector2(this.selector);
               }
+            }
+          } catch (IOException ex) {
+            if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
+              logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex));
               try {
-                AcceptorImpl.this.stats.incThreadQueueSize();
-                AcceptorImpl.this.pool.execute(sc);
-              } catch (RejectedExecutionException rejected) {
-                finishCon(sc);
-                AcceptorImpl.this.stats.decThreadQueueSize();
-                if (!isRunning()) {
-                  break;
+                tmpsk.cancel();
+                tmpSel.selectNow(); // clear canceled key
+              } catch (IOException ex2) {
+                if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
+                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex2));
                 }
-                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, rejected));
               }
-            } else if (tmpsk.isValid() && tmpsk.isWritable()) {
-              // this is expected
-              tmpsk.cancel();
-              this.tmpSel.selectNow(); // clear canceled key
-              sc.registerWithSelector2(this.selector);
-            } else if (!tmpsk.isValid()) {
-              tmpsk.cancel();
-              this.tmpSel.selectNow(); // clear canceled key
-              sc.registerWithSelector2(this.selector);
             }
           }
+        } catch (ClosedChannelException ignore) { // fix for bug 39650
+          // just ignore this channel and try the next one
+          finishCon(sc);
+          continue;
         } catch (IOException ex) {
           if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
             logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex));
-            try {
-              tmpsk.cancel();
-              tmpSel.selectNow(); // clear canceled key
-            } catch (IOException ex2) {
-              if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
-                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex2));
-              }
-            }
           }
-        }
-      } catch (ClosedChannelException ignore) { // fix for bug 39650
-        // just ignore this channel and try the next one
-        finishCon(sc);
-        continue;
-      } catch (IOException ex) {
-        if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
-          logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, ex));
-        }
-      } catch (NullPointerException npe) { // fix bug 39644
-        if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
-          logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, npe));
+        } catch (NullPointerException npe) { // fix bug 39644
+          if (isRunning() && this.selector.isOpen() && this.tmpSel.isOpen()) {
+            logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED_EXCEPTION, npe));
+          }
         }
       }
     }
-  }
   
-  private int registeredKeys = 0;
-
-  public void runSelectorLoop() {
-    //int zeroEventsCount = 0;
-    try {
-      logger.info(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_SELECTOR_ENABLED));
-      while (this.selector.isOpen() && !Thread.currentThread().isInterrupted()) {
-        {
-          SystemFailure.checkFailure();
-//          this.cache.getDistributedSystem().getCancelCriterion().checkCancelInProgress(null);
-          if (((GemFireCacheImpl)this.cache).isClosed()) { // bug 38834
-            break; // TODO should just ask cache's CancelCriterion
-          }
-          if (this.cache.getCancelCriterion().cancelInProgress() != null) {
-            break;
-          }
-          ServerConnection sc;
-          registeredKeys = checkRegisteredKeys(registeredKeys);
-          if (registeredKeys == 0) {
-            // do blocking wait on queue until we get some guys registered
-            // with the selector
-            sc = (ServerConnection)this.selectorQueue.take();
-          } else {
-            // we already have some guys registered so just do a poll on queue
-            sc = (ServerConnection)this.selectorQueue.poll();
-          }
-          while (sc != null) {
-            try {
-              sc.registerWithSelector2(this.selector);
-              registeredKeys++;
-              this.selectorRegistrations.add(sc);
-            } catch (ClosedChannelException cce) {
-//            for bug bug 38474 
-              finishCon(sc); 
-            } catch (IOException ex) {
+    public void run() {
+      //int zeroEventsCount = 0;
+      try {
+        logger.info(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_SELECTOR_ENABLED));
+        while (this.selector.isOpen() && !Thread.currentThread().isInterrupted()) {
+          {
+            SystemFailure.checkFailure();
+  //          this.cache.getDistributedSystem().getCancelCriterion().checkCancelInProgress(null);
+            if (((GemFireCacheImpl)AcceptorImpl.this.cache).isClosed()) { // bug 38834
+              break; // TODO should just ask cache's CancelCriterion
+            }
+            if (AcceptorImpl.this.cache.getCancelCriterion().cancelInProgress() != null) {
+              break;
+            }
+            ServerConnection sc;
+            registeredKeys = checkRegisteredKeys(registeredKeys);
+            if (registeredKeys == 0) {
+              // do blocking wait on queue until we get some guys registered
+              // with the selector
+              sc = (ServerConnection)this.selectorQueue.take();
+            } else {
+              // we already have some guys registered so just do a poll on queue
+              sc = (ServerConnection)this.selectorQueue.poll();
+            }
+            while (sc != null) {
+              try {
+                sc.registerWithSelector2(this.selector);
+                registeredKeys++;
+                this.selectorRegistrations.add(sc);
+              } catch (ClosedChannelException cce) {
+  //            for bug bug 38474 
+                finishCon(sc); 
+              } catch (IOException ex) {
            
-              finishCon(sc);
-              logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING, ex));
-            } catch (RuntimeException ex) {
-              finishCon(sc);
-              logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING, ex));
+                finishCon(sc);
+                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING, ex));
+              } catch (RuntimeException ex) {
+                finishCon(sc);
+                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING, ex));
+              }
+              sc = (ServerConnection)this.selectorQueue.poll();
             }
-            sc = (ServerConnection)this.selectorQueue.poll();
           }
-        }
-        if (registeredKeys == 0) {
-          continue;
-        }
-        int events = this.selector.select();
-        // select() could have returned due to wakeup() during close of cache
-        if (this.cache.getCancelCriterion().cancelInProgress() != null) {
-          break;
-        }
-        if (events == 0) {
-//           zeroEventsCount++;
-//           if (zeroEventsCount > 0) {
-//             zeroEventsCount = 0;
-            checkForStuckKeys();
-
-//              try {
-//                this.selector.close(); // this selector is sick!
-//              } catch (IOException ignore) {
-//              }
-//              this.selector = Selector.open();
-//              {
-//                Iterator it = selectorRegistrations.iterator();
-//                while (it.hasNext()) {
-//                  ServerConnection sc = (ServerConnection)it.next();
-//                  sc.registerWithSelector2(this.selector);
-//                }
-//              }
-//             }
-//            ArrayList al = new ArrayList();
-//            Iterator keysIt = this.selector.keys().iterator();
-//            while (keysIt.hasNext()) {
-//              SelectionKey sk = (SelectionKey)keysIt.next();
-//              al.add(sk.attachment());
-//              sk.cancel();
-//            }
-//            events = this.selector.selectNow();
-//            Iterator alIt = al.iterator();
-//            while (alIt.hasNext()) {
-//              ServerConnection sc = (ServerConnection)alIt.next();
-//              sc.registerWithSelector2(this.selector);
-//            }
-//            events = this.selector.select();
-//         } else {
-//           zeroEventsCount = 0;
-        }
-        while (events > 0) {
-          int cancelCount = 0;
-          Set sk = this.selector.selectedKeys();
-          if (sk == null) {
-            // something really bad has happened I'm not even sure this is possible
-            // but lhughes so an NPE during close one time so perhaps it can happen
-            // during selector close.
-            events = 0;
+          if (registeredKeys == 0) {
+            continue;
+          }
+          int events = this.selector.select();
+          // select() could have returned due to wakeup() during close of cache
+          if (AcceptorImpl.this.cache.getCancelCriterion().cancelInProgress() != null) {
             break;
           }
-          Iterator keysIterator = sk.iterator();
-          while (keysIterator.hasNext()) {
-            SelectionKey key = (SelectionKey) keysIterator.next();
-            // Remove the key from the selector's selectedKeys
-            keysIterator.remove();
-            final ServerConnection sc = (ServerConnection)key.attachment();
-            try {
-            if (key.isValid() && key.isReadable()) {
-              // this is the only event we currently register for
+          if (events == 0) {
+  //           zeroEventsCount++;
+  //           if (zeroEventsCount > 0) {
+  //             zeroEventsCount = 0;
+              checkForStuckKeys();
+
+  //              try {
+  //                this.selector.close(); // this selector is sick!
+  //              } catch (IOException ignore) {
+  //              }
+  //              this.selector = Selector.open();
+  //              {
+  //                Iterator it = selectorRegistrations.iterator();
+  //                while (it.hasNext()) {
+  //                  ServerConnection sc = (ServerConnection)it.next();
+  //                  sc.registerWithSelector2(this.selector);
+  //                }
+  //              }
+  //             }
+  //            ArrayList al = new ArrayList();
+  //            Iterator keysIt = this.selector.keys().iterator();
+  //            while (keysIt.hasNext()) {
+  //              SelectionKey sk = (SelectionKey)keysIt.next();
+  //              al.add(sk.attachment());
+  //              sk.cancel();
+  //            }
+  //            events = this.selector.selectNow();
+  //            Iterator alIt = al.iterator();
+  //            while (alIt.hasNext()) {
+  //              ServerConnection sc = (ServerConnection)alIt.next();
+  //              sc.registerWithSelector2(this.selector);
+  //            }
+  //            events = this.selector.select();
+  //         } else {
+  //           zeroEventsCount = 0;
+          }
+          while (events > 0) {
+            int cancelCount = 0;
+            Set sk = this.selector.selectedKeys();
+            if (sk == null) {
+              // something really bad has happened I'm not even sure this is possible
+              // but lhughes so an NPE during close one time so perhaps it can happen
+              // during selector close.
+              events = 0;
+              break;
+            }
+            Iterator keysIterator = sk.iterator();
+            while (keysIterator.hasNext()) {
+              SelectionKey key = (SelectionKey) keysIterator.next();
+              // Remove the key from the selector's selectedKeys
+              keysIterator.remove();
+              final ServerConnection sc = (ServerConnection)key.attachment();
               try {
-                key.cancel();
-                this.selectorRegistrations.remove(sc);
-                registeredKeys--;
-                cancelCount++;
-                sc.makeBlocking();
-                // we need to say we are processing a message
-                // so that that client health monitor will not
-                // kill us while we wait for a thread in the thread pool.
-                // This is also be used to determine how long we are
-                // in the thread pool queue and to cancel operations that
-                // have waited too long in the queue.
-                sc.setProcessingMessage();
-              } catch (ClosedChannelException ignore) {
-                finishCon(sc);
-                continue;
-              } catch (IOException ex) {
-                finishCon(sc);
-                if(isRunning()) {
-                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, ex));
+              if (key.isValid() && key.isReadable()) {
+                // this is the only event we currently register for
+                try {
+                  key.cancel();
+                  this.selectorRegistrations.remove(sc);
+                  registeredKeys--;
+                  cancelCount++;
+                  sc.makeBlocking();
+                  // we need to say we are processing a message
+                  // so that that client health monitor will not
+                  // kill us while we wait for a thread in the thread pool.
+                  // This is also be used to determine how long we are
+                  // in the thread pool queue and to cancel operations that
+                  // have waited too long in the queue.
+                  sc.setProcessingMessage();
+                } catch (ClosedChannelException ignore) {
+                  finishCon(sc);
+                  continue;
+                } catch (IOException ex) {
+                  finishCon(sc);
+                  if(isRunning()) {
+                    logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, ex));
+                  }
+                  continue;
                 }
-                continue;
-              }
-              try {
-                AcceptorImpl.this.stats.incThreadQueueSize();
-                AcceptorImpl.this.pool.execute(sc);
-              } catch (RejectedExecutionException rejected) {
+                try {
+                  AcceptorImpl.this.stats.incThreadQueueSize();
+                  AcceptorImpl.this.pool.execute(sc);
+                } catch (RejectedExecutionException rejected) {
+                  finishCon(sc);
+                  AcceptorImpl.this.stats.decThreadQueueSize();
+                  if (!isRunning()) {
+                    break;
+                  }
+                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, rejected));
+                }
+  //             } else if (key.isValid() && key.isConnectable()) {
+  //               logger.info("DEBUG isConnectable and isValid key=" + key);
+  //               finishCon(sc);
+              } else {
                 finishCon(sc);
-                AcceptorImpl.this.stats.decThreadQueueSize();
-                if (!isRunning()) {
-                  break;
+                if (key.isValid()) {
+                  logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING_EVENT_ON_SELECTOR_KEY__0, key));
+  //            } else {
+  //                 logger.info("DEBUG !isValid key=" + key);
                 }
-                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, rejected));
               }
-//             } else if (key.isValid() && key.isConnectable()) {
-//               logger.info("DEBUG isConnectable and isValid key=" + key);
-//               finishCon(sc);
-            } else {
-              finishCon(sc);
-              if (key.isValid()) {
-                logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_IGNORING_EVENT_ON_SELECTOR_KEY__0, key));
-//            } else {
-//                 logger.info("DEBUG !isValid key=" + key);
+              } catch (CancelledKeyException ex) { // fix for bug 37739
+                finishCon(sc);
               }
             }
-            } catch (CancelledKeyException ex) { // fix for bug 37739
-              finishCon(sc);
+            if (cancelCount > 0 && this.selector.isOpen()) {
+              // we need to do a select to cause the cancel to be unregisters.
+              events = this.selector.selectNow();
+            } else {
+              events = 0;
             }
           }
-          if (cancelCount > 0 && this.selector.isOpen()) {
-            // we need to do a select to cause the cancel to be unregisters.
-            events = this.selector.selectNow();
-          } else {
-            events = 0;
-          }
         }
-      }
-    } catch (InterruptedException ex) {
-      // allow this thread to die
-      Thread.currentThread().interrupt();
-    } catch (ClosedSelectorException ex) {
-      // allow this thread to exit
-    } catch (IOException ex) {
-      logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, ex));
-    } finally {
-      try {
-        drainSelectorQueue();
-      }
-      finally {
-        // note that if this method was called by close then the
-        // following call is a noop since the first thing it does
-        // is call isRunning.
-        close(); // make sure this is called to fix bug 37749
+      } catch (InterruptedException ex) {
+        // allow this thread to die
+        Thread.currentThread().interrupt();
+      } catch (ClosedSelectorException ex) {
+        // allow this thread to exit
+      } catch (IOException ex) {
+        logger.warn(LocalizedMessage.create(LocalizedStrings.AcceptorImpl_UNEXPECTED, ex));
+      } finally {
+        try {
+          drain();
+        }
+        finally {
+          // note that if this method was called by close then the
+          // following call is a noop since the first thing it does
+          // is call isRunning.
+          close(); // make sure this is called to fix bug 37749
+        }
       }
     }
   }
-  
+
   @Override
   public int getPort()
   {
@@ -1216,12 +1340,6 @@ public class AcceptorImpl extends Acceptor implements Runnable
     }
   }
 
-  public Selector getSelector() {
-    return this.selector;
-  }
-  public BlockingQueue getSelectorQueue() {
-    return this.selectorQueue;
-  }
 
   protected boolean loggedAcceptError = false;
 
@@ -1616,19 +1734,8 @@ public class AcceptorImpl extends Acceptor implements Runnable
         crHelper.setShutdown(true); // set this before shutting down the pool
         if (isSelector()) {
           this.hsTimer.cancel();
-          if (this.tmpSel != null) {
-            try {
-              this.tmpSel.close();
-            } catch (IOException ignore) {
-            }
-          }
-          try {
-            wakeupSelector();
-            this.selector.close();
-          } catch (IOException ignore) {
-          }
-          if (this.selectorThread != null) {
-            this.selectorThread.interrupt();
+          for (int i = 0; i < this.selectorLoops.length; i++) {
+            this.selectorLoops[i].closeSelector();
           }
           this.commBufferQueue.clear();
         }
@@ -1641,6 +1748,9 @@ public class AcceptorImpl extends Acceptor implements Runnable
           this.pool.shutdownNow();
         }
         this.hsPool.shutdownNow();
+        if (this.requestThrottle != null) {
+          this.requestThrottle.close();
+        }
         this.stats.close();
         GemFireCacheImpl myCache = (GemFireCacheImpl)cache;
         if (!myCache.forcedDisconnect()) {
@@ -1818,6 +1928,14 @@ public class AcceptorImpl extends Acceptor implements Runnable
   public ConnectionListener getConnectionListener() {
     return connectionListener;
   }  
+
+  /**
+   * Returns the throttle limiting the requests of each client, or null if
+   * requests are not throttled.
+   */
+  public ClientRequestThrottle getClientRequestThrottle() {
+    return this.requestThrottle;
+  }
   
   public boolean isGatewayReceiver() {
     return this.isGatewayReceiver;
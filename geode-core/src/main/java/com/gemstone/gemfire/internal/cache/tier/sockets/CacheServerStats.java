@@ -27,6 +27,7 @@ import com.gemstone.gemfire.Statistics;
 import com.gemstone.gemfire.StatisticsFactory;
 import com.gemstone.gemfire.StatisticsType;
 import com.gemstone.gemfire.cache.server.ServerLoad;
+import com.gemstone.gemfire.distributed.internal.DistributionStats;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.distributed.internal.PoolStatHelper;
 import com.gemstone.gemfire.internal.DummyStatisticsFactory;
@@ -229,6 +230,11 @@ public class CacheServerStats implements MessageStats {
   int queueLoadId;
   int loadPerConnectionId;
   int loadPerQueueId;
+
+  int compressedPartsId;
+  int compressionInputBytesId;
+  int compressionOutputBytesId;
+  int compressionTimeId;
   
   protected StatisticsType statType; 
   
@@ -563,7 +569,19 @@ public class CacheServerStats implements MessageStats {
         f.createDoubleGauge(
                          "loadPerQueue",
                          "The estimate of how much load is added for each new connection as reported by the load probe installed in this server",
-                         "load")
+                         "load"),
+        f.createLongCounter("compressedParts",
+                         "Total number of message parts sent to clients compressed.",
+                         "parts"),
+        f.createLongCounter("compressionInputBytes",
+                         "Total number of bytes in message parts sent to clients compressed, before compression.",
+                         "bytes"),
+        f.createLongCounter("compressionOutputBytes",
+                         "Total number of bytes in message parts sent to clients compressed, after compression. Divide by compressionInputBytes for the compression ratio.",
+                         "bytes"),
+        f.createLongCounter("compressionTime",
+                         "Total time spent compressing message parts sent to clients, including parts that were sent uncompressed because they did not shrink.",
+                         "nanoseconds")
     };
     StatisticDescriptor[] alldescriptors = serverStatDescriptors;
     if (descriptiors != null) {
@@ -714,6 +732,11 @@ public class CacheServerStats implements MessageStats {
     queueLoadId = this.stats.nameToId("queueLoad");
     loadPerConnectionId = this.stats.nameToId("loadPerConnection");
     loadPerQueueId = this.stats.nameToId("loadPerQueue");
+
+    compressedPartsId = this.stats.nameToId("compressedParts");
+    compressionInputBytesId = this.stats.nameToId("compressionInputBytes");
+    compressionOutputBytesId = this.stats.nameToId("compressionOutputBytes");
+    compressionTimeId = this.stats.nameToId("compressionTime");
   }
 
   public final void incAcceptThreadsCreated() {
@@ -751,6 +774,32 @@ public class CacheServerStats implements MessageStats {
     this.stats.incInt(connectionsTimedOutId, 1);
   }
 
+  /**
+   * @param inputBytes the size of the part before compression
+   * @param outputBytes the size of the part sent, 0 if it did not shrink
+   *          and was sent uncompressed
+   */
+  public final void endCompression(long start, int inputBytes, int outputBytes) {
+    this.stats.incLong(compressionTimeId, DistributionStats.getStatTime() - start);
+    if (outputBytes > 0) {
+      this.stats.incLong(compressedPartsId, 1);
+      this.stats.incLong(compressionInputBytesId, inputBytes);
+      this.stats.incLong(compressionOutputBytesId, outputBytes);
+    }
+  }
+
+  public final long getCompressedParts() {
+    return this.stats.getLong(compressedPartsId);
+  }
+
+  public final long getCompressionInputBytes() {
+    return this.stats.getLong(compressionInputBytesId);
+  }
+
+  public final long getCompressionOutputBytes() {
+    return this.stats.getLong(compressionOutputBytesId);
+  }
+
   public final void incCurrentClientConnections()
   {
     this.stats.incInt(currentClientConnectionsId, 1);
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
+
+/**
+ * Limits the requests each client may have a cache server process so that
+ * one client flooding the server with queries or function executions gets
+ * back-pressure instead of starving the other clients.
+ * <p>
+ * Each client has a token bucket that is refilled at
+ * {@link #REQUESTS_PER_SECOND} up to {@link #REQUEST_BURST}. A request
+ * costs one token, or {@link #EXPENSIVE_REQUEST_COST} tokens for queries
+ * and function executions. A client that runs out of tokens has its
+ * requests wait until the tokens it owes have been refilled. A client owes
+ * at most {@link #MAX_WAIT_MILLIS} worth of tokens, so no request waits
+ * longer than that and is retried by the client after its read timeout.
+ * Each client may also have at most {@link #MAX_REQUESTS_IN_PROGRESS}
+ * requests being processed at once; further requests wait, in the order
+ * they arrived, for one of them to finish.
+ * <p>
+ * Waiting requests stop reading from their connection, which pushes back on
+ * the client. Without a selector they wait on their server connection
+ * thread. When the server uses a selector and a bounded thread pool
+ * (max-threads) a request is never made to wait for tokens on a pool
+ * thread. Instead the connection of a client that owes tokens, or has
+ * MAX_REQUESTS_IN_PROGRESS requests being processed, is registered with the
+ * selector again once it may go on, see {@link #getReadDelayNanos}.
+ * <p>
+ * The throttle is disabled unless REQUESTS_PER_SECOND or
+ * MAX_REQUESTS_IN_PROGRESS is set. Statistics are kept per client in
+ * {@link ClientRequestThrottleStats}.
+ *
+ * @since Geode 1.0
+ */
+public class ClientRequestThrottle {
+
+  /**
+   * The number of tokens a client's bucket is refilled with per second.
+   * Zero disables rate limiting.
+   */
+  public static final int REQUESTS_PER_SECOND = Integer.getInteger("gemfire.BridgeServer.CLIENT_REQUESTS_PER_SECOND", 0);
+
+  /**
+   * The maximum number of tokens in a client's bucket. Defaults to one
+   * second's worth.
+   */
+  public static final int REQUEST_BURST = Integer.getInteger("gemfire.BridgeServer.CLIENT_REQUEST_BURST", REQUESTS_PER_SECOND);
+
+  /**
+   * The number of tokens a query or function execution costs.
+   */
+  public static final int EXPENSIVE_REQUEST_COST = Integer.getInteger("gemfire.BridgeServer.CLIENT_EXPENSIVE_REQUEST_COST", 10);
+
+  /**
+   * The maximum number of requests of one client processed at once. Zero
+   * means no limit.
+   */
+  public static final int MAX_REQUESTS_IN_PROGRESS = Integer.getInteger("gemfire.BridgeServer.MAX_CLIENT_REQUESTS_IN_PROGRESS", 0);
+
+  /**
+   * The longest a request waits for the tokens its client owes. Should be
+   * well below the read timeout of the clients' pools.
+   */
+  public static final int MAX_WAIT_MILLIS = Integer.getInteger("gemfire.BridgeServer.CLIENT_THROTTLE_MAX_WAIT_MILLIS", 2000);
+
+  /**
+   * How long a selector connection whose client has the maximum number of
+   * requests in progress waits before it checks again.
+   */
+  private static final long IN_PROGRESS_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  private final StatisticsFactory statisticsFactory;
+  private final double tokensPerNano;
+  private final double burst;
+  private final long maxWaitNanos;
+  private final int expensiveRequestCost;
+  private final int maxRequestsInProgress;
+  private final ConcurrentMap<ClientProxyMembershipID, Client> clients = new ConcurrentHashMap<ClientProxyMembershipID, Client>();
+
+  /**
+   * Returns true if the system properties enable the throttle.
+   */
+  public static boolean isEnabled() {
+    return REQUESTS_PER_SECOND > 0 || MAX_REQUESTS_IN_PROGRESS > 0;
+  }
+
+  public ClientRequestThrottle(StatisticsFactory statisticsFactory) {
+    this(statisticsFactory, REQUESTS_PER_SECOND, REQUEST_BURST, EXPENSIVE_REQUEST_COST, MAX_REQUESTS_IN_PROGRESS,
+        MAX_WAIT_MILLIS);
+  }
+
+  ClientRequestThrottle(StatisticsFactory statisticsFactory, int requestsPerSecond, int burst,
+      int expensiveRequestCost, int maxRequestsInProgress, int maxWaitMillis) {
+    this.statisticsFactory = statisticsFactory;
+    this.tokensPerNano = Math.max(requestsPerSecond, 0) / (double)TimeUnit.SECONDS.toNanos(1);
+    this.burst = Math.max(burst, 1);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMillis, 0));
+    this.expensiveRequestCost = expensiveRequestCost;
+    this.maxRequestsInProgress = maxRequestsInProgress;
+  }
+
+  int getCost(int messageType) {
+    switch (messageType) {
+    case MessageType.QUERY:
+    case MessageType.QUERY_WITH_PARAMETERS:
+    case MessageType.EXECUTE_FUNCTION:
+    case MessageType.EXECUTE_REGION_FUNCTION:
+    case MessageType.EXECUTE_REGION_FUNCTION_SINGLE_HOP:
+      return this.expensiveRequestCost;
+    default:
+      return 1;
+    }
+  }
+
+  Client getClient(ClientProxyMembershipID proxyId) {
+    Client client = this.clients.get(proxyId);
+    if (client == null) {
+      client = new Client(new ClientRequestThrottleStats(this.statisticsFactory, proxyId.toString()),
+          this.burst, this.maxRequestsInProgress, System.nanoTime());
+      Client old = this.clients.putIfAbsent(proxyId, client);
+      if (old != null) {
+        client.close();
+        client = old;
+      }
+    }
+    return client;
+  }
+
+  /**
+   * Waits until the given client may have a request of the given type
+   * processed. {@link #requestFinished} must be called with the returned
+   * client once the request has been processed.
+   */
+  public Client requestStarted(ClientProxyMembershipID proxyId, int messageType) {
+    return requestStarted(proxyId, messageType, true);
+  }
+
+  /**
+   * Like {@link #requestStarted(ClientProxyMembershipID, int)} but if
+   * waitForTokens is false the request does not wait for the tokens its
+   * client owes. Used by selector connections, which wait for them with
+   * {@link #getReadDelayNanos} before they read their next request.
+   */
+  public Client requestStarted(ClientProxyMembershipID proxyId, int messageType, boolean waitForTokens) {
+    Client client = getClient(proxyId);
+    client.stats.incRequests();
+    long start = System.nanoTime();
+    long waitNanos = client.reserve(getCost(messageType), this.tokensPerNano, this.burst, this.maxWaitNanos, start);
+    if (!waitForTokens) {
+      waitNanos = 0;
+    }
+    boolean interrupted = false;
+    try {
+      if (waitNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (client.inProgress != null && !client.inProgress.tryAcquire()) {
+        waitNanos = 1;
+        client.inProgress.acquireUninterruptibly();
+      }
+    } finally {
+      if (waitNanos > 0) {
+        client.stats.endThrottle(System.nanoTime() - start);
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    client.stats.incRequestsInProgress();
+    return client;
+  }
+
+  /**
+   * Returns how long a selector connection of the given client should wait
+   * before it reads its next request: until the tokens the client owes have
+   * been refilled and it has fewer than MAX_REQUESTS_IN_PROGRESS requests
+   * being processed.
+   *
+   * @return the delay in nanoseconds; zero if the request can be read now
+   */
+  public long getReadDelayNanos(ClientProxyMembershipID proxyId) {
+    Client client = getClient(proxyId);
+    long delay = client.getDebtNanos(this.tokensPerNano, this.burst, System.nanoTime());
+    if (delay == 0 && client.inProgress != null && client.inProgress.availablePermits() == 0) {
+      delay = IN_PROGRESS_RETRY_NANOS;
+    }
+    if (delay > 0) {
+      client.stats.endThrottle(delay);
+    }
+    return delay;
+  }
+
+  public void requestFinished(Client client) {
+    client.stats.decRequestsInProgress();
+    if (client.inProgress != null) {
+      client.inProgress.release();
+    }
+  }
+
+  /**
+   * Forgets the given client after its last connection has closed.
+   */
+  public void clientDeparted(ClientProxyMembershipID proxyId) {
+    Client client = this.clients.remove(proxyId);
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  public void close() {
+    for (Iterator<Client> itr = this.clients.values().iterator(); itr.hasNext();) {
+      Client client = itr.next();
+      itr.remove();
+      client.close();
+    }
+  }
+
+  /**
+   * The throttling state of one client.
+   */
+  static final class Client {
+    final ClientRequestThrottleStats stats;
+    /** null if the requests in progress are not limited */
+    final Semaphore inProgress;
+    /** negative while the client owes tokens. Guarded by this. */
+    private double tokens;
+    /** Guarded by this. */
+    private long lastRefillNanos;
+
+    Client(ClientRequestThrottleStats stats, double tokens, int maxRequestsInProgress, long nowNanos) {
+      this.stats = stats;
+      this.inProgress = maxRequestsInProgress > 0 ? new Semaphore(maxRequestsInProgress, true) : null;
+      this.tokens = tokens;
+      this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Takes the given number of tokens, going into debt if there are not
+     * enough. The debt is capped at maxWaitNanos worth of tokens.
+     *
+     * @return how long to wait until the debt has been refilled
+     */
+    synchronized long reserve(int cost, double tokensPerNano, double burst, long maxWaitNanos, long nowNanos) {
+      if (tokensPerNano <= 0) {
+        return 0;
+      }
+      refill(tokensPerNano, burst, nowNanos);
+      this.tokens = Math.max(this.tokens - cost, -(maxWaitNanos * tokensPerNano));
+      return getDebtNanos(tokensPerNano);
+    }
+
+    /**
+     * Returns how long it takes until the tokens this client owes have been
+     * refilled, zero if it owes none.
+     */
+    synchronized long getDebtNanos(double tokensPerNano, double burst, long nowNanos) {
+      if (tokensPerNano <= 0) {
+        return 0;
+      }
+      refill(tokensPerNano, burst, nowNanos);
+      return getDebtNanos(tokensPerNano);
+    }
+
+    private long getDebtNanos(double tokensPerNano) {
+      return this.tokens >= 0 ? 0 : (long)(-this.tokens / tokensPerNano);
+    }
+
+    private void refill(double tokensPerNano, double burst, long nowNanos) {
+      long elapsed = nowNanos - this.lastRefillNanos;
+      if (elapsed > 0) {
+        this.tokens = Math.min(burst, this.tokens + elapsed * tokensPerNano);
+        this.lastRefillNanos = nowNanos;
+      }
+    }
+
+    void close() {
+      this.stats.close();
+    }
+  }
+}
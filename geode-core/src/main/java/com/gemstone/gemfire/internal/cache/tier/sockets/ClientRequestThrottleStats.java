@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * Class <code>ClientRequestThrottleStats</code> tracks GemFire statistics
+ * related to the requests one client sends to a cache server while a
+ * {@link ClientRequestThrottle} is in use.
+ *
+ * @since Geode 1.0
+ */
+public class ClientRequestThrottleStats {
+
+  /** The <code>StatisticsType</code> of the statistics */
+  private static final StatisticsType _type;
+
+  /** Name of the requests statistic */
+  private static final String REQUESTS = "requests";
+  /** Name of the throttled requests statistic */
+  private static final String THROTTLED_REQUESTS = "throttledRequests";
+  /** Name of the throttle time statistic */
+  private static final String THROTTLE_TIME = "throttleTime";
+  /** Name of the requests in progress statistic */
+  private static final String REQUESTS_IN_PROGRESS = "requestsInProgress";
+
+  /** Id of the requests statistic */
+  private static final int _requestsId;
+  /** Id of the throttled requests statistic */
+  private static final int _throttledRequestsId;
+  /** Id of the throttle time statistic */
+  private static final int _throttleTimeId;
+  /** Id of the requests in progress statistic */
+  private static final int _requestsInProgressId;
+
+  /**
+   * Static initializer to create and initialize the <code>StatisticsType</code>
+   */
+  static {
+    String statName = "ClientRequestThrottleStatistics";
+
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    _type = f.createType(statName, statName,
+       new StatisticDescriptor[] {
+            f.createLongCounter
+             (REQUESTS,
+              "Number of requests received from the client.",
+              "operations"),
+
+            f.createLongCounter
+             (THROTTLED_REQUESTS,
+              "Number of requests from the client that waited because the client exceeded its request rate or its requests in progress.",
+              "operations"),
+
+            f.createLongCounter
+             (THROTTLE_TIME,
+              "Total time requests from the client waited before being processed.",
+              "nanoseconds"),
+
+            f.createIntGauge
+             (REQUESTS_IN_PROGRESS,
+              "Number of requests from the client currently being processed.",
+              "operations"),
+       });
+
+    // Initialize id fields
+    _requestsId = _type.nameToId(REQUESTS);
+    _throttledRequestsId = _type.nameToId(THROTTLED_REQUESTS);
+    _throttleTimeId = _type.nameToId(THROTTLE_TIME);
+    _requestsInProgressId = _type.nameToId(REQUESTS_IN_PROGRESS);
+  }
+
+  //////////////////////  Instance Fields  //////////////////////
+
+  /** The <code>Statistics</code> instance to which most behavior is delegated */
+  private final Statistics _stats;
+
+  ///////////////////////  Constructors  ///////////////////////
+
+  /**
+   * Constructor.
+   *
+   * @param factory The <code>StatisticsFactory</code> which creates the
+   * <code>Statistics</code> instance
+   * @param name The name of the <code>Statistics</code>
+   */
+  public ClientRequestThrottleStats(StatisticsFactory factory, String name) {
+    this._stats = factory.createAtomicStatistics(_type, "clientRequestThrottleStats-" + name);
+  }
+
+  /////////////////////  Instance Methods  /////////////////////
+
+  /**
+   * Closes the <code>ClientRequestThrottleStats</code>.
+   */
+  public void close() {
+    this._stats.close();
+  }
+
+  public long getRequests() {
+    return this._stats.getLong(_requestsId);
+  }
+
+  public long getThrottledRequests() {
+    return this._stats.getLong(_throttledRequestsId);
+  }
+
+  public long getThrottleTime() {
+    return this._stats.getLong(_throttleTimeId);
+  }
+
+  public int getRequestsInProgress() {
+    return this._stats.getInt(_requestsInProgressId);
+  }
+
+  public void incRequests() {
+    this._stats.incLong(_requestsId, 1);
+  }
+
+  public void endThrottle(long nanos) {
+    this._stats.incLong(_throttledRequestsId, 1);
+    this._stats.incLong(_throttleTimeId, nanos);
+  }
+
+  public void incRequestsInProgress() {
+    this._stats.incInt(_requestsInProgressId, 1);
+  }
+
+  public void decRequestsInProgress() {
+    this._stats.incInt(_requestsInProgressId, -1);
+  }
+}
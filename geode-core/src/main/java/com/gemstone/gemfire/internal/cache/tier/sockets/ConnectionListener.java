@@ -51,4 +51,17 @@ public interface ConnectionListener {
    * Indicates that a queue was removed from this Acceptor.
    */
   void queueRemoved();
+
+  /**
+   * Indicates that a connection of this acceptor started processing a
+   * request.
+   */
+  void requestStarted();
+
+  /**
+   * Indicates that a connection of this acceptor finished processing a
+   * request.
+   * @param nanos how long it took to process the request
+   */
+  void requestFinished(long nanos);
 }
@@ -34,4 +34,10 @@ public class ConnectionListenerAdapter implements ConnectionListener {
 
   public void queueRemoved() {
   }
+
+  public void requestStarted() {
+  }
+
+  public void requestFinished(long nanos) {
+  }
 }
@@ -221,6 +221,16 @@ public class HandShake implements ClientHandShake
   /** @since 5.7 */
   private byte clientConflation = CONFLATION_DEFAULT;
 
+  /**
+   * Set in the overrides byte by clients that want large message parts
+   * compressed. Older servers only look at the conflation bits.
+   * @see MessageCompression
+   */
+  private static final byte COMPRESSION_REQUESTED = 0x10;
+
+  /** used by the server side */
+  private boolean compressionRequested;
+
   /** @since 6.0.3
    *  List of per client property override bits.
    */
@@ -312,6 +322,10 @@ public class HandShake implements ClientHandShake
     }
   }
 
+  public boolean isCompressionRequested() {
+    return this.compressionRequested;
+  }
+
   public final Version getClientVersion() {
     return this.clientVersion;
   }
@@ -429,6 +443,9 @@ public class HandShake implements ClientHandShake
       override = (byte)((override << 2) | this.clientConflation);
       */
       override = this.clientConflation;
+      if (MessageCompression.isEnabled()) {
+        override |= COMPRESSION_REQUESTED;
+      }
       this.overrides = new byte[] { override };
     }
   }
@@ -437,6 +454,7 @@ public class HandShake implements ClientHandShake
   private void setOverrides(byte[] values) {
     byte override = values[0];
     setClientConflation(((byte)(override & 0x03)));
+    this.compressionRequested = (override & COMPRESSION_REQUESTED) != 0;
     /*
     override = (byte)(override >>> 2);
     setRemoveUnresponsiveClientOverride(((byte)(override & 0x03)));
@@ -523,9 +523,13 @@ public class Message  {
         long totalPartLen = 0;
         long headerLen = 0;
         int partsToTransmit = this.numberOfParts;
+        Part[] parts = this.partsList;
+        if (this.sc != null && this.sc.isCompressingResponses()) {
+          parts = compressParts();
+        }
         
         for (int i=0; i < this.numberOfParts; i++) {
-          Part part = this.partsList[i];
+          Part part = parts[i];
           headerLen += PART_HEADER_SIZE;
           totalPartLen += part.getLength();
         }
@@ -555,7 +559,7 @@ public class Message  {
         cb.clear();
         packHeaderInfoForSending(msgLen, (securityPart != null));
         for (int i=0; i < partsToTransmit; i++) {
-          Part part = (i == this.numberOfParts) ? securityPart : partsList[i];
+          Part part = (i == this.numberOfParts) ? securityPart : parts[i];
 
           if (cb.remaining() < PART_HEADER_SIZE) {
             flushBuffer();
@@ -567,11 +571,19 @@ public class Message  {
           if (partLen <= cb.remaining()) {
             part.writeTo(cb);
           } else {
-            flushBuffer();
+            ByteBuffer direct = null;
             if (this.sockCh != null) {
-              part.writeTo(this.sockCh, cb);
+              direct = part.getDirectByteBuffer();
+            }
+            if (direct != null) {
+              flushBufferWith(direct);
             } else {
-              part.writeTo(this.os, cb);
+              flushBuffer();
+              if (this.sockCh != null) {
+                part.writeTo(this.sockCh, cb);
+              } else {
+                part.writeTo(this.os, cb);
+              }
             }
             if (this.msgStats != null) {
               this.msgStats.incSentBytes(partLen);
@@ -595,6 +607,24 @@ public class Message  {
     }
   }
 
+  /**
+   * Returns the parts to send with each part that is worth compressing
+   * replaced by a compressed copy.
+   */
+  private Part[] compressParts() {
+    Part[] result = this.partsList;
+    for (int i = 0; i < this.numberOfParts; i++) {
+      Part compressed = MessageCompression.compress(this.partsList[i], this.sc.getCacheServerStats());
+      if (compressed != null) {
+        if (result == this.partsList) {
+          result = this.partsList.clone();
+        }
+        result[i] = compressed;
+      }
+    }
+    return result;
+  }
+
   protected void flushBuffer() throws IOException {
     final ByteBuffer cb = getCommBuffer();
     if (this.sockCh != null) {
@@ -611,6 +641,26 @@ public class Message  {
     cb.clear();
   }
 
+  /**
+   * Writes the contents of the comm buffer followed by the given direct
+   * buffer to the socket channel using gathering writes. This sends a part
+   * stored off-heap without copying it and together with the headers that
+   * precede it.
+   */
+  private void flushBufferWith(ByteBuffer bb) throws IOException {
+    final ByteBuffer cb = getCommBuffer();
+    final int headerBytes = cb.position();
+    cb.flip();
+    final ByteBuffer[] bufs = new ByteBuffer[] {cb, bb};
+    do {
+      this.sockCh.write(bufs);
+    } while (bb.remaining() > 0);
+    if (this.msgStats != null) {
+      this.msgStats.incSentBytes(headerBytes);
+    }
+    cb.clear();
+  }
+
   private void read()
   throws IOException {
     clearParts();
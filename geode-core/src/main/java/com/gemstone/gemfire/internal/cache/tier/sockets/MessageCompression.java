@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.compression.Compressor;
+import com.gemstone.gemfire.compression.SnappyCompressor;
+import com.gemstone.gemfire.distributed.internal.DistributionStats;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Compression of the message parts a cache server sends to its clients,
+ * such as the chunks of getAll and query results.
+ * <p>
+ * A client started with <code>gemfire.client.compression</code> asks for
+ * compression in its handshake. A server started with the same property
+ * then compresses, with Snappy, each part of its replies to that client
+ * that is at least <code>gemfire.client.compression-threshold</code> bytes
+ * and shrinks. Older servers ignore the request and older clients never
+ * make it. Compressed parts are flagged in their type code and are
+ * decompressed when they are read.
+ *
+ * @since Geode 1.0
+ */
+public class MessageCompression {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * Whether this member asks for, or agrees to, compression.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("gemfire.client.compression");
+
+  /**
+   * The size in bytes from which a part is compressed.
+   */
+  public static final int THRESHOLD = Integer.getInteger("gemfire.client.compression-threshold", 4096).intValue();
+
+  private static volatile Compressor compressor;
+
+  private static volatile boolean unavailable;
+
+  /**
+   * Returns true if this member should ask for, or agree to, compression.
+   */
+  public static boolean isEnabled() {
+    return ENABLED && getCompressor() != null;
+  }
+
+  private static Compressor getCompressor() {
+    Compressor result = compressor;
+    if (result == null && !unavailable) {
+      try {
+        result = SnappyCompressor.getDefaultInstance();
+        compressor = result;
+      } catch (IllegalStateException e) {
+        logger.warn("Client/server message compression is disabled because Snappy is not available", e);
+        unavailable = true;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a part holding the given part compressed, or null if the part
+   * is too small, cannot be compressed without being copied from off-heap
+   * memory or does not shrink.
+   */
+  static Part compress(Part part, CacheServerStats stats) {
+    int length = part.getLength();
+    if (length < THRESHOLD) {
+      return null;
+    }
+    long start = DistributionStats.getStatTime();
+    Part result = part.compress(getCompressor());
+    if (stats != null) {
+      stats.endCompression(start, length, result == null ? 0 : result.getLength());
+    }
+    return result;
+  }
+
+  static byte[] decompress(byte[] bytes) {
+    Compressor result = getCompressor();
+    if (result == null) {
+      throw new IllegalStateException("Received a compressed message part but Snappy is not available");
+    }
+    return result.decompress(bytes);
+  }
+}
@@ -16,6 +16,7 @@
  */
 package com.gemstone.gemfire.internal.cache.tier.sockets;
 
+import com.gemstone.gemfire.compression.Compressor;
 import com.gemstone.gemfire.internal.*;
 import com.gemstone.gemfire.internal.offheap.AddressableMemoryManager;
 import com.gemstone.gemfire.internal.offheap.StoredObject;
@@ -45,6 +46,11 @@ public class Part {
    */
   private static final byte EMPTY_BYTEARRAY_CODE = 2;
   private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+  /**
+   * Set in the type code of a part whose bytes are compressed.
+   * @see MessageCompression
+   */
+  private static final byte COMPRESSED_FLAG = 0x40;
 
   /** The payload of this part.
    * Could be null, a byte[] or a HeapDataOutputStream on the send side.
@@ -56,6 +62,10 @@ public class Part {
   private byte typeCode;
 
   public void init(byte[] v, byte tc) {
+    if ((tc & COMPRESSED_FLAG) != 0) {
+      v = MessageCompression.decompress(v);
+      tc = (byte)(tc & ~COMPRESSED_FLAG);
+    }
     if (tc == EMPTY_BYTEARRAY_CODE) {
       this.part = EMPTY_BYTE_ARRAY;
     }
@@ -238,6 +248,30 @@ public class Part {
   }
 
 
+  /**
+   * Returns a part holding this part's bytes compressed by the given
+   * compressor, or null if this part is stored off-heap or does not shrink.
+   */
+  Part compress(Compressor compressor) {
+    byte[] bytes;
+    if (this.part instanceof byte[]) {
+      bytes = (byte[])this.part;
+    } else if (this.part instanceof HeapDataOutputStream) {
+      bytes = ((HeapDataOutputStream)this.part).toByteArray();
+    } else {
+      return null;
+    }
+    byte[] compressed = compressor.compress(bytes);
+    if (compressed.length >= bytes.length) {
+      return null;
+    }
+    Part result = new Part();
+    result.part = compressed;
+    result.typeCode = (byte)(this.typeCode | COMPRESSED_FLAG);
+    result.version = this.version;
+    return result;
+  }
+
   public byte[] getSerializedForm() {
     if (this.part == null) {
       return null;
@@ -273,6 +307,19 @@ public class Part {
     }
   }
   
+  /**
+   * Returns a direct ByteBuffer on the bytes of this part if they are stored
+   * off-heap, so they can be written to a socket channel without being
+   * copied. Returns null if this part is not stored off-heap or if a direct
+   * ByteBuffer can not be created for it.
+   */
+  ByteBuffer getDirectByteBuffer() {
+    if (getLength() > 0 && this.part instanceof StoredObject) {
+      return ((StoredObject) this.part).createDirectByteBuffer();
+    }
+    return null;
+  }
+
   /**
    * Write the contents of this part to the specified output stream.
    * This is only called for parts that will not fit into the commBuffer
@@ -169,6 +169,9 @@ public class ServerConnection implements Runnable {
    * Handshake reference uniquely identifying a client
    */
   private ClientHandShake handshake;
+
+  /** true if the client asked for compressed responses and this server agreed */
+  private boolean compressResponses;
   private int handShakeTimeout;
   private final Object handShakeMonitor = new Object();
   
@@ -649,9 +652,20 @@ public class ServerConnection implements Runnable {
     } else {
       this.stats.incCurrentClientConnections();
     }
+    this.compressResponses = this.communicationMode == Acceptor.CLIENT_TO_SERVER
+        && this.handshake.isCompressionRequested() && MessageCompression.isEnabled();
     return true;
   }
 
+  /**
+   * Returns true if large parts of the messages sent to the client are
+   * compressed.
+   * @see MessageCompression
+   */
+  boolean isCompressingResponses() {
+    return this.compressResponses;
+  }
+
 //  public static AuthorizeRequestPP getPostAuthorizeCallback(ClientProxyMembershipID proxyId, String cqName)
 //  {
 //    ClientUserAuths cua = proxyIdVsClientUserAuths.get(proxyId);
@@ -799,7 +813,28 @@ public class ServerConnection implements Runnable {
         if (command == null) {
           command = Default.getCommand();
         }
-        command.execute(msg, this);
+        if (msg.getMessageType() == MessageType.PING) {
+          command.execute(msg, this);
+        } else {
+          ClientRequestThrottle throttle = this.acceptor.getClientRequestThrottle();
+          ClientRequestThrottle.Client throttledClient = null;
+          if (throttle != null && this.proxyId != null) {
+            // selector connections waited for their tokens before reading
+            throttledClient = throttle.requestStarted(this.proxyId, msg.getMessageType(),
+                !getAcceptor().isSelector());
+          }
+          ConnectionListener listener = this.acceptor.getConnectionListener();
+          listener.requestStarted();
+          long start = System.nanoTime();
+          try {
+            command.execute(msg, this);
+          } finally {
+            listener.requestFinished(System.nanoTime() - start);
+            if (throttledClient != null) {
+              throttle.requestFinished(throttledClient);
+            }
+          }
+        }
       }
     }
     finally {
@@ -875,6 +910,10 @@ public class ServerConnection implements Runnable {
               getCleanupProxyIdTable().remove(this.proxyId);
               //here we can remove entry multiuser map for client
               proxyIdVsClientUserAuths.remove(this.proxyId);
+              ClientRequestThrottle throttle = this.acceptor.getClientRequestThrottle();
+              if (throttle != null) {
+                throttle.clientDeparted(this.proxyId);
+              }
               InternalDistributedMember idm = (InternalDistributedMember)this.proxyId.getDistributedMember();
             }
           }
@@ -1137,6 +1176,13 @@ public class ServerConnection implements Runnable {
       try {
         this.stats.decThreadQueueSize();
         if (!isTerminated()) {
+          long delay = getThrottleReadDelayNanos();
+          if (delay > 0) {
+            // don't hold a pool thread while the client is throttled
+            getAcceptor().registerSCLater(this, delay);
+            finishedMsg = true;
+            return;
+          }
           Message.setTLCommBuffer(getAcceptor().takeCommBuffer());
           doOneMessage();
           if (this.processMessages && !(this.crHelper.isShutdown())) {
@@ -1199,6 +1245,18 @@ public class ServerConnection implements Runnable {
     }
   }
 
+  /**
+   * Returns how long to wait before reading the next request because this
+   * connection's client is being throttled, or zero.
+   */
+  private long getThrottleReadDelayNanos() {
+    ClientRequestThrottle throttle = this.acceptor.getClientRequestThrottle();
+    if (throttle == null || this.proxyId == null || this.doHandshake) {
+      return 0;
+    }
+    return throttle.getReadDelayNanos(this.proxyId);
+  }
+
   /**
    * If registered with a selector then this will be the key we are registered with.
    */
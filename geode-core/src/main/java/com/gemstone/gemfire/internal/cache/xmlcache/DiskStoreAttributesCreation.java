@@ -64,6 +64,8 @@ public class DiskStoreAttributesCreation extends UserSpecifiedDiskStoreAttribute
     this.maxOplogSizeInBytes = attrs.getMaxOplogSizeInBytes();
     this.timeInterval = attrs.getTimeInterval();
     this.writeBufferSize = attrs.getWriteBufferSize();
+    this.memoryMappedReads = attrs.getMemoryMappedReads();
+    this.syncWrites = attrs.getSyncWrites();
     this.queueSize = attrs.getQueueSize();
     this.diskDirs = attrs.getDiskDirs();
     this.diskDirSizes = attrs.getDiskDirSizes();
@@ -22,10 +22,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
@@ -46,9 +45,27 @@ public class FreeListManager {
   private final Slab[] slabs;
   private final long totalSlabSize;
   
-  final private AtomicReferenceArray<OffHeapStoredObjectAddressStack> tinyFreeLists = new AtomicReferenceArray<OffHeapStoredObjectAddressStack>(TINY_FREE_LIST_COUNT);
-  // hugeChunkSet is sorted by chunk size in ascending order. It will only contain chunks larger than MAX_TINY.
-  private final ConcurrentSkipListSet<OffHeapStoredObject> hugeChunkSet = new ConcurrentSkipListSet<OffHeapStoredObject>();
+  /**
+   * The tiny free lists, one set per stripe. A thread allocates from and
+   * frees to the stripe it maps to (see {@link #getStripe()}) and only looks
+   * at the other stripes when its own free list for a size is empty.
+   */
+  final private AtomicReferenceArray<OffHeapStoredObjectAddressStack>[] tinyFreeLists = createTinyFreeLists();
+  /**
+   * The huge free lists. The free chunks larger than MAX_TINY are put in size classes
+   * by the highest one bit of their size (see {@link #getHugeBin(int)}) and each size
+   * class is split into HUGE_SUB_BIN_COUNT sub-bins of equal width
+   * (see {@link #getHugeSubBin(int, int)}). The list of sub-bin j of size class i
+   * is at index i*HUGE_SUB_BIN_COUNT+j.
+   * Allocating and freeing a huge chunk only locks the list of its sub-bin
+   * and does not allocate any heap memory.
+   */
+  private final OffHeapStoredObjectAddressStack[] hugeFreeLists = createHugeFreeLists();
+  /**
+   * For each huge size class, a bit per sub-bin that is set while the sub-bin's list
+   * is not empty. A bit is only changed while holding the lock of its list.
+   */
+  private final AtomicIntegerArray hugeSubBinMasks = new AtomicIntegerArray(HUGE_BIN_COUNT);
   private final AtomicLong allocatedSize = new AtomicLong(0L);
 
   private int getNearestTinyMultiple(int size) {
@@ -106,26 +123,29 @@ public class FreeListManager {
   }
   long getFreeTinyMemory() {
     long tinyFree = 0;
-    for (int i=0; i < this.tinyFreeLists.length(); i++) {
-      OffHeapStoredObjectAddressStack cl = this.tinyFreeLists.get(i);
-      if (cl != null) {
-        tinyFree += cl.computeTotalSize();
+    for (AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists: this.tinyFreeLists) {
+      for (int i=0; i < freeLists.length(); i++) {
+        OffHeapStoredObjectAddressStack cl = freeLists.get(i);
+        if (cl != null) {
+          tinyFree += cl.computeTotalSize();
+        }
       }
     }
     return tinyFree;
   }
   long getFreeHugeMemory() {
     long hugeFree = 0;
-    for (OffHeapStoredObject c: this.hugeChunkSet) {
-      hugeFree += c.getSize();
+    for (OffHeapStoredObjectAddressStack cl: this.hugeFreeLists) {
+      hugeFree += cl.computeTotalSize();
     }
     return hugeFree;
   }
 
   /**
-   * The id of the last fragment we allocated from.
+   * The id of the last fragment each stripe allocated from.
+   * Each stripe's cursor is padded out to its own cache line.
    */
-  private final AtomicInteger lastFragmentAllocation = new AtomicInteger(0);
+  private final AtomicIntegerArray lastFragmentAllocation = new AtomicIntegerArray(FREE_LIST_STRIPE_COUNT*CURSOR_PADDING);
   private final CopyOnWriteArrayList<Fragment> fragmentList;
   private final MemoryAllocatorImpl ma;
 
@@ -210,7 +230,7 @@ public class FreeListManager {
 
   private OffHeapStoredObject allocateFromFragments(int chunkSize) {
     do {
-      final int lastAllocationId = this.lastFragmentAllocation.get();
+      final int lastAllocationId = this.lastFragmentAllocation.get(getCursorIndex());
       for (int i=lastAllocationId; i < this.fragmentList.size(); i++) {
         OffHeapStoredObject result = allocateFromFragment(i, chunkSize);
         if (result != null) {
@@ -247,15 +267,17 @@ public class FreeListManager {
   }
 
   private void logHugeState(Logger lw) {
-    for (OffHeapStoredObject c: this.hugeChunkSet) {
-      lw.info("Free huge of size " + c.getSize());
+    for (OffHeapStoredObjectAddressStack cl: this.hugeFreeLists) {
+      cl.logSizes(lw, "Free huge of size ");
     }
   }
   private void logTinyState(Logger lw) {
-    for (int i=0; i < this.tinyFreeLists.length(); i++) {
-      OffHeapStoredObjectAddressStack cl = this.tinyFreeLists.get(i);
-      if (cl != null) {
-        cl.logSizes(lw, "Free tiny of size ");
+    for (AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists: this.tinyFreeLists) {
+      for (int i=0; i < freeLists.length(); i++) {
+        OffHeapStoredObjectAddressStack cl = freeLists.get(i);
+        if (cl != null) {
+          cl.logSizes(lw, "Free tiny of size ");
+        }
       }
     }
   }
@@ -301,6 +323,43 @@ public class FreeListManager {
     verifyHugeMultiple(HUGE_MULTIPLE);
   }
   public final static int MAX_TINY = TINY_MULTIPLE*TINY_FREE_LIST_COUNT;
+  /**
+   * The power of two of the smallest huge chunk size class.
+   */
+  private final static int FIRST_HUGE_BIN_SHIFT = 31 - Integer.numberOfLeadingZeros(MAX_TINY+1);
+  /**
+   * Number of free lists (size classes) kept for huge chunks.
+   * Size class i holds the free chunks whose size is at least 2^(i+FIRST_HUGE_BIN_SHIFT) bytes
+   * and less than 2^(i+FIRST_HUGE_BIN_SHIFT+1) bytes.
+   */
+  public final static int HUGE_BIN_COUNT = 31 - FIRST_HUGE_BIN_SHIFT;
+  /**
+   * Each huge size class is split into 2^HUGE_SUB_BIN_SHIFT sub-bins.
+   */
+  private final static int HUGE_SUB_BIN_SHIFT = 5;
+  final static int HUGE_SUB_BIN_COUNT = 1 << HUGE_SUB_BIN_SHIFT;
+  /**
+   * Number of stripes the tiny free lists and the fragment allocation cursor are split into.
+   * Always a power of two. Defaults to the number of available processors.
+   */
+  public final static int FREE_LIST_STRIPE_COUNT = roundUpToPowerOfTwo(Integer.getInteger("gemfire.OFF_HEAP_FREE_LIST_STRIPES", Runtime.getRuntime().availableProcessors()));
+  static {
+    verifyOffHeapFreeListStripes(FREE_LIST_STRIPE_COUNT);
+  }
+  /**
+   * When a tiny allocation has to be carved out of a fragment this many chunks
+   * of the same size are carved at once. The extra chunks are pushed on the
+   * allocating thread's stripe so that its next allocations of that size do
+   * not touch the shared fragments.
+   */
+  public final static int TINY_BATCH_SIZE = Integer.getInteger("gemfire.OFF_HEAP_TINY_BATCH_SIZE", 1);
+  static {
+    verifyTinyBatchSize(TINY_BATCH_SIZE);
+  }
+  /**
+   * The number of ints between two fragment cursors so that each one is on its own cache line.
+   */
+  private final static int CURSOR_PADDING = 16;
   
   /**
    * Return true if the two chunks have been combined into one.
@@ -470,7 +529,9 @@ public class FreeListManager {
     }
     
     int largestFragment = 0;
-    this.lastFragmentAllocation.set(0);
+    for (int i=0; i < FREE_LIST_STRIPE_COUNT; i++) {
+      this.lastFragmentAllocation.set(i*CURSOR_PADDING, 0);
+    }
     ArrayList<Fragment> tmp = new ArrayList<Fragment>();
     for (int i=sorted.size()-1; i >= 0; i--) {
       long addr = sorted.get(i);
@@ -499,6 +560,135 @@ public class FreeListManager {
     return result;
   }
 
+  /**
+   * The id of the next tiny free list that coalesceFreeChunks will take chunks from.
+   * Only accessed while synchronized on this.
+   */
+  private int coalesceCursor = 0;
+
+  /**
+   * Takes up to maxChunks free chunks off the free lists, spending at most maxNanos doing so,
+   * and turns each run of adjacent chunks into a new fragment.
+   * Chunks that are not adjacent to another chunk that was taken are put back on a free list.
+   * Unlike defragment this method does not stop concurrent allocations; only a concurrent
+   * defragment waits for it.
+   * @return the number of free chunks that were combined into new fragments
+   */
+  int coalesceFreeChunks(int maxChunks, long maxNanos) {
+    final long deadline = System.nanoTime() + maxNanos;
+    synchronized (this) {
+      removeExhaustedFragments();
+      long[] addrs = new long[maxChunks];
+      int count = takeFreeChunks(addrs, deadline);
+      Arrays.sort(addrs, 0, count);
+      int result = 0;
+      ArrayList<Fragment> newFragments = new ArrayList<Fragment>();
+      int runStart = 0;
+      while (runStart < count) {
+        long runAddr = addrs[runStart];
+        long runSize = OffHeapStoredObject.getSize(runAddr);
+        int runEnd = runStart+1;
+        while (runEnd < count && isAdjacent(runAddr, (int) runSize, addrs[runEnd])
+            && isSmallEnough(runSize + OffHeapStoredObject.getSize(addrs[runEnd]))) {
+          runSize += OffHeapStoredObject.getSize(addrs[runEnd]);
+          runEnd++;
+        }
+        if (runEnd - runStart > 1) {
+          Fragment f = createFragment(runAddr, (int) runSize);
+          if (this.validateMemoryWithFill) {
+            f.fill();
+          }
+          newFragments.add(f);
+          result += runEnd - runStart;
+        } else {
+          free(runAddr, false);
+        }
+        runStart = runEnd;
+      }
+      if (!newFragments.isEmpty()) {
+        this.fragmentList.addAll(newFragments);
+        this.ma.getStats().setFragments(this.fragmentList.size());
+        this.ma.getStats().setFragmentation(getFragmentation());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Fills addrs with chunks taken off the huge free lists and then off the tiny free lists,
+   * starting with the tiny free list the previous call stopped at.
+   * @return the number of addresses stored in addrs
+   */
+  private int takeFreeChunks(long[] addrs, long deadline) {
+    int count = 0;
+    for (int i=0; i < this.hugeFreeLists.length && count < addrs.length; i++) {
+      final int bin = i / HUGE_SUB_BIN_COUNT;
+      final OffHeapStoredObjectAddressStack list = this.hugeFreeLists[i];
+      int taken = 0;
+      synchronized (list) {
+        long addr;
+        while (count < addrs.length && (addr = list.poll()) != 0L) {
+          addrs[count++] = addr;
+          taken++;
+        }
+        if (list.isEmpty()) {
+          setHugeSubBinNonEmpty(bin, i % HUGE_SUB_BIN_COUNT, false);
+        }
+      }
+      if (taken != 0) {
+        this.ma.getStats().incHugeFreeChunks(bin, -taken);
+      }
+    }
+    final int tinyListCount = FREE_LIST_STRIPE_COUNT*TINY_FREE_LIST_COUNT;
+    for (int i=0; i < tinyListCount && count < addrs.length; i++) {
+      if ((i % 1024) == 0 && System.nanoTime() - deadline > 0) {
+        break;
+      }
+      final int listId = this.coalesceCursor;
+      this.coalesceCursor = (listId+1) % tinyListCount;
+      OffHeapStoredObjectAddressStack cl = this.tinyFreeLists[listId / TINY_FREE_LIST_COUNT].get(listId % TINY_FREE_LIST_COUNT);
+      if (cl != null) {
+        long addr;
+        while (count < addrs.length && (addr = cl.poll()) != 0L) {
+          addrs[count++] = addr;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Removes the fragments that have no free space left.
+   * Must be called while synchronized on this.
+   */
+  private void removeExhaustedFragments() {
+    ArrayList<Fragment> exhausted = new ArrayList<Fragment>();
+    for (Fragment f: this.fragmentList) {
+      if (f.freeSpace() == 0) {
+        exhausted.add(f);
+      }
+    }
+    if (!exhausted.isEmpty()) {
+      this.fragmentList.removeAll(exhausted);
+    }
+  }
+
+  /**
+   * Returns the percentage of free memory that is on the free lists
+   * instead of being available in fragments.
+   */
+  int getFreeListPercentage() {
+    long freeMemory = getFreeMemory();
+    if (freeMemory <= 0) {
+      return 0;
+    }
+    long freeListMemory = freeMemory - getFreeFragmentMemory();
+    if (freeListMemory <= 0) {
+      return 0;
+    }
+    return (int) ((freeListMemory * 100) / freeMemory);
+  }
+
   /**
    * Unit tests override this method to get better test coverage
    */
@@ -519,6 +709,22 @@ public class FreeListManager {
       throw new IllegalStateException("gemfire.OFF_HEAP_FREE_LIST_COUNT must be >= 1.");
     }
   }
+  static void verifyOffHeapFreeListStripes(int stripeCount) {
+    if (stripeCount <= 0 || stripeCount > 1024) {
+      throw new IllegalStateException("gemfire.OFF_HEAP_FREE_LIST_STRIPES must be >= 1 and <= 1024.");
+    }
+  }
+  static void verifyTinyBatchSize(int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalStateException("gemfire.OFF_HEAP_TINY_BATCH_SIZE must be >= 1.");
+    }
+  }
+  static int roundUpToPowerOfTwo(int value) {
+    if (value <= 1) {
+      return 1;
+    }
+    return Integer.highestOneBit(value-1) << 1;
+  }
   static void verifyHugeMultiple(int hugeMultiple) {
     if (hugeMultiple > 256 || hugeMultiple < 0) {
       // this restriction exists because of the dataSize field in the object header.
@@ -591,26 +797,35 @@ public class FreeListManager {
     }
   }
   private void collectFreeTinyChunks(List<LongStack> l) {
-    for (int i=0; i < this.tinyFreeLists.length(); i++) {
-      OffHeapStoredObjectAddressStack cl = this.tinyFreeLists.get(i);
-      if (cl != null) {
-        long head = cl.clear();
-        if (head != 0L) {
-          l.add(new OffHeapStoredObjectAddressStack(head));
+    for (AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists: this.tinyFreeLists) {
+      for (int i=0; i < freeLists.length(); i++) {
+        OffHeapStoredObjectAddressStack cl = freeLists.get(i);
+        if (cl != null) {
+          long head = cl.clear();
+          if (head != 0L) {
+            l.add(new OffHeapStoredObjectAddressStack(head));
+          }
         }
       }
     }
   }
   private void collectFreeHugeChunks(List<LongStack> l) {
-    OffHeapStoredObject c = this.hugeChunkSet.pollFirst();
-    OffHeapStoredObjectAddressStack result = null;
-    while (c != null) {
-      if (result == null) {
-        result = new OffHeapStoredObjectAddressStack();
-        l.add(result);
+    for (int i=0; i < this.hugeFreeLists.length; i++) {
+      final int bin = i / HUGE_SUB_BIN_COUNT;
+      final OffHeapStoredObjectAddressStack list = this.hugeFreeLists[i];
+      long head;
+      synchronized (list) {
+        head = list.clear();
+        setHugeSubBinNonEmpty(bin, i % HUGE_SUB_BIN_COUNT, false);
+      }
+      if (head != 0L) {
+        int count = 0;
+        for (long addr = head; addr != 0L; addr = OffHeapStoredObject.getNext(addr)) {
+          count++;
+        }
+        this.ma.getStats().incHugeFreeChunks(bin, -count);
+        l.add(new OffHeapStoredObjectAddressStack(head));
       }
-      result.offer(c.getAddress());
-      c = this.hugeChunkSet.pollFirst();
     }
   }
 
@@ -631,7 +846,8 @@ public class FreeListManager {
       int fragmentFreeSize = fragmentSize - oldOffset;
       if (fragmentFreeSize >= chunkSize) {
         // this fragment has room
-        int newOffset = oldOffset + chunkSize;
+        final int batchCount = getBatchCount(chunkSize, fragmentFreeSize);
+        int newOffset = oldOffset + (chunkSize*batchCount);
         int extraSize = fragmentSize - newOffset;
         if (extraSize < OffHeapStoredObject.MIN_CHUNK_SIZE) {
           // include these last few bytes of the fragment in the allocation.
@@ -643,9 +859,12 @@ public class FreeListManager {
         }
         if (fragment.allocate(oldOffset, newOffset)) {
           // We did the allocate!
-          this.lastFragmentAllocation.set(fragIdx);
+          this.lastFragmentAllocation.set(getCursorIndex(), fragIdx);
           OffHeapStoredObject result = new OffHeapStoredObject(fragment.getAddress()+oldOffset, chunkSize+extraSize);
           checkDataIntegrity(result);
+          if (batchCount > 1) {
+            freeBatch(fragment.getAddress()+oldOffset+chunkSize+extraSize, chunkSize, batchCount-1);
+          }
           return result;
         } else {
           OffHeapStoredObject result = basicAllocate(chunkSize, false);
@@ -662,10 +881,64 @@ public class FreeListManager {
   private int round(int multiple, int value) {
     return (int) ((((long)value + (multiple-1)) / multiple) * multiple);
   }
+  /**
+   * Returns how many chunks of chunkSize should be carved at once
+   * out of a fragment that has fragmentFreeSize bytes free.
+   */
+  private int getBatchCount(int chunkSize, int fragmentFreeSize) {
+    if (TINY_BATCH_SIZE == 1 || chunkSize > MAX_TINY) {
+      return 1;
+    }
+    return Math.min(TINY_BATCH_SIZE, fragmentFreeSize / chunkSize);
+  }
+  /**
+   * Pushes count chunks of chunkSize, starting at addr, on the current thread's tiny free list.
+   * The memory must have just been allocated from a fragment.
+   */
+  private void freeBatch(long addr, int chunkSize, int count) {
+    for (int i=0; i < count; i++) {
+      OffHeapStoredObject c = new OffHeapStoredObject(addr, chunkSize);
+      c.readyForFree();
+      freeTiny(addr, chunkSize);
+      addr += chunkSize;
+    }
+  }
+  /**
+   * Returns the stripe of the tiny free lists and fragment cursors
+   * used by the current thread.
+   */
+  private static int getStripe() {
+    return (int) (Thread.currentThread().getId() & (FREE_LIST_STRIPE_COUNT-1));
+  }
+  private static int getCursorIndex() {
+    return getStripe()*CURSOR_PADDING;
+  }
+  @SuppressWarnings("unchecked")
+  private static AtomicReferenceArray<OffHeapStoredObjectAddressStack>[] createTinyFreeLists() {
+    AtomicReferenceArray<OffHeapStoredObjectAddressStack>[] result = new AtomicReferenceArray[FREE_LIST_STRIPE_COUNT];
+    for (int i=0; i < result.length; i++) {
+      result[i] = new AtomicReferenceArray<OffHeapStoredObjectAddressStack>(TINY_FREE_LIST_COUNT);
+    }
+    return result;
+  }
   private OffHeapStoredObject allocateTiny(int size, boolean useFragments) {
-    return basicAllocate(getNearestTinyMultiple(size), TINY_MULTIPLE, 0, this.tinyFreeLists, useFragments);
+    final int idx = getNearestTinyMultiple(size);
+    final int stripe = getStripe();
+    // Try our own stripe first and then steal from the others
+    // before carving new memory out of the fragments.
+    for (int i=0; i < FREE_LIST_STRIPE_COUNT; i++) {
+      OffHeapStoredObject result = basicAllocate(idx, this.tinyFreeLists[(stripe+i) & (FREE_LIST_STRIPE_COUNT-1)]);
+      if (result != null) {
+        return result;
+      }
+    }
+    if (useFragments) {
+      return allocateFromFragments((idx+1)*TINY_MULTIPLE);
+    } else {
+      return null;
+    }
   }
-  private OffHeapStoredObject basicAllocate(int idx, int multiple, int offset, AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists, boolean useFragments) {
+  private OffHeapStoredObject basicAllocate(int idx, AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists) {
     OffHeapStoredObjectAddressStack clq = freeLists.get(idx);
     if (clq != null) {
       long memAddr = clq.poll();
@@ -676,58 +949,138 @@ public class FreeListManager {
         return result;
       }
     }
-    if (useFragments) {
-      return allocateFromFragments(((idx+1)*multiple)+offset);
-    } else {
-      return null;
+    return null;
+  }
+  /**
+   * Returns the huge size class that chunks of the given size are kept in.
+   */
+  static int getHugeBin(int size) {
+    assert size > MAX_TINY;
+    return (31 - Integer.numberOfLeadingZeros(size)) - FIRST_HUGE_BIN_SHIFT;
+  }
+  /**
+   * Returns the size of the smallest chunk that can be in the given huge size class.
+   */
+  static long getHugeBinMinSize(int bin) {
+    return Math.max(MAX_TINY+1, 1L << (bin+FIRST_HUGE_BIN_SHIFT));
+  }
+  /**
+   * Returns the sub-bin of the given huge size class that chunks of the given size are kept on.
+   * Every chunk on a sub-bin is smaller than every chunk on the next sub-bin.
+   */
+  static int getHugeSubBin(int size, int bin) {
+    final int shift = bin + FIRST_HUGE_BIN_SHIFT;
+    return (int) (((long) size - (1L << shift)) >>> Math.max(0, shift - HUGE_SUB_BIN_SHIFT));
+  }
+  private static OffHeapStoredObjectAddressStack[] createHugeFreeLists() {
+    OffHeapStoredObjectAddressStack[] result = new OffHeapStoredObjectAddressStack[HUGE_BIN_COUNT*HUGE_SUB_BIN_COUNT];
+    for (int i=0; i < result.length; i++) {
+      result[i] = new OffHeapStoredObjectAddressStack();
     }
+    return result;
   }
   private OffHeapStoredObject allocateHuge(int size, boolean useFragments) {
-    // sizeHolder is a fake Chunk used to search our sorted hugeChunkSet.
-    OffHeapStoredObject sizeHolder = new SearchMarker(size);
-    NavigableSet<OffHeapStoredObject> ts = this.hugeChunkSet.tailSet(sizeHolder);
-    OffHeapStoredObject result = ts.pollFirst();
-    if (result != null) {
-      if (result.getSize() - (HUGE_MULTIPLE - OffHeapStoredObject.HEADER_SIZE) < size) {
-        // close enough to the requested size; just return it.
-        checkDataIntegrity(result);
-        result.readyForAllocation();
-        return result;
-      } else {
-        this.hugeChunkSet.add(result);
-      }
+    // We round it up to the next multiple of TINY_MULTIPLE to make
+    // sure we always have chunks allocated on an 8 byte boundary.
+    final int chunkSize = round(TINY_MULTIPLE, size);
+    final int bin = getHugeBin(chunkSize);
+    final int subBin = getHugeSubBin(chunkSize, bin);
+    // The sub-bin of the requested size can also hold smaller chunks so only its top
+    // chunk is considered. Any chunk on a later sub-bin is big enough, so the first
+    // non-empty one is used and the part of its chunk that is not needed is freed.
+    // Either way no list is searched.
+    long addr = pollHuge(bin, subBin, chunkSize);
+    if (addr == 0L) {
+      addr = pollLargerHuge(bin, subBin);
+    }
+    if (addr != 0L) {
+      OffHeapStoredObject result = new OffHeapStoredObject(addr);
+      checkDataIntegrity(result);
+      splitHuge(addr, chunkSize);
+      result.readyForAllocation();
+      return result;
     }
     if (useFragments) {
-      // We round it up to the next multiple of TINY_MULTIPLE to make
-      // sure we always have chunks allocated on an 8 byte boundary.
-      return allocateFromFragments(round(TINY_MULTIPLE, size));
+      return allocateFromFragments(chunkSize);
     } else {
       return null;
     }
   }
-  
-  private void checkDataIntegrity(OffHeapStoredObject data) {
-    if (this.validateMemoryWithFill) {
-      data.validateFill();
+  /**
+   * Removes and returns the top chunk of the given sub-bin if it is at least minSize bytes,
+   * otherwise returns 0L.
+   */
+  private long pollHuge(int bin, int subBin, int minSize) {
+    final OffHeapStoredObjectAddressStack list = this.hugeFreeLists[bin*HUGE_SUB_BIN_COUNT+subBin];
+    final long addr;
+    synchronized (list) {
+      addr = list.getTopAddress();
+      if (addr == 0L || OffHeapStoredObject.getSize(addr) < minSize) {
+        return 0L;
+      }
+      list.poll();
+      if (list.isEmpty()) {
+        setHugeSubBinNonEmpty(bin, subBin, false);
+      }
     }
+    this.ma.getStats().incHugeFreeChunks(bin, -1);
+    return addr;
   }
   /**
-   * Used by the FreeListManager to easily search its
-   * ConcurrentSkipListSet. This is not a real OffHeapStoredObject
-   * but only used for searching.
+   * Removes and returns a chunk from the first non-empty sub-bin after the given one,
+   * or returns 0L if all of them are empty.
    */
-  private static class SearchMarker extends OffHeapStoredObject {
-    private final int size;
-    public SearchMarker(int size) {
-      super();
-      this.size = size;
+  private long pollLargerHuge(int bin, int subBin) {
+    int mask = this.hugeSubBinMasks.get(bin) & (-2 << subBin);
+    while (true) {
+      if (mask == 0) {
+        bin++;
+        if (bin == HUGE_BIN_COUNT) {
+          return 0L;
+        }
+        mask = this.hugeSubBinMasks.get(bin);
+        continue;
+      }
+      final int candidate = Integer.numberOfTrailingZeros(mask);
+      long addr = pollHuge(bin, candidate, 0);
+      if (addr != 0L) {
+        return addr;
+      }
+      // another thread emptied it
+      mask &= ~(1 << candidate);
     }
-    @Override
-    public int getSize() {
-      return this.size;
+  }
+  private void setHugeSubBinNonEmpty(int bin, int subBin, boolean nonEmpty) {
+    final int bit = 1 << subBin;
+    while (true) {
+      int mask = this.hugeSubBinMasks.get(bin);
+      int newMask = nonEmpty ? (mask | bit) : (mask & ~bit);
+      if (mask == newMask || this.hugeSubBinMasks.compareAndSet(bin, mask, newMask)) {
+        return;
+      }
+    }
+  }
+  /**
+   * If the free huge chunk at addr has at least HUGE_MULTIPLE bytes more than chunkSize
+   * then shrink it to chunkSize and free the rest as a chunk of its own.
+   */
+  private void splitHuge(long addr, int chunkSize) {
+    final int remainder = OffHeapStoredObject.getSize(addr) - chunkSize;
+    if (remainder < Math.max(HUGE_MULTIPLE, OffHeapStoredObject.MIN_CHUNK_SIZE)) {
+      return;
+    }
+    OffHeapStoredObject.setSize(addr, chunkSize);
+    final long remainderAddr = addr + chunkSize;
+    OffHeapStoredObject c = new OffHeapStoredObject(remainderAddr, remainder);
+    c.readyForFree();
+    free(remainderAddr, false);
+  }
+  
+  private void checkDataIntegrity(OffHeapStoredObject data) {
+    if (this.validateMemoryWithFill) {
+      data.validateFill();
     }
   }
-
   @SuppressWarnings("synthetic-access")
   public void free(long addr) {
     if (this.validateMemoryWithFill) {
@@ -754,7 +1107,7 @@ public class FreeListManager {
     }
   }
   private void freeTiny(long addr, int cSize) {
-    basicFree(addr, getNearestTinyMultiple(cSize), this.tinyFreeLists);
+    basicFree(addr, getNearestTinyMultiple(cSize), this.tinyFreeLists[getStripe()]);
   }
   private void basicFree(long addr, int idx, AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists) {
     OffHeapStoredObjectAddressStack clq = freeLists.get(idx);
@@ -777,14 +1130,21 @@ public class FreeListManager {
   }
   
   private void freeHuge(long addr, int cSize) {
-    this.hugeChunkSet.add(new OffHeapStoredObject(addr)); // TODO make this a collection of longs
+    final int bin = getHugeBin(cSize);
+    final int subBin = getHugeSubBin(cSize, bin);
+    final OffHeapStoredObjectAddressStack list = this.hugeFreeLists[bin*HUGE_SUB_BIN_COUNT+subBin];
+    synchronized (list) {
+      list.offer(addr);
+      setHugeSubBinNonEmpty(bin, subBin, true);
+    }
+    this.ma.getStats().incHugeFreeChunks(bin, 1);
   }
 
   List<MemoryBlock> getOrderedBlocks() {
     final List<MemoryBlock> value = new ArrayList<MemoryBlock>();
     addBlocksFromFragments(this.fragmentList, value); // unused fragments
     addBlocksFromChunks(getLiveChunks(), value); // used chunks
-    addBlocksFromChunks(this.hugeChunkSet, value);    // huge free chunks
+    addBlocksFromChunks(getHugeFreeChunks(), value);    // huge free chunks
     addMemoryBlocks(getTinyFreeBlocks(), value);           // tiny free chunks
     Collections.sort(value, 
         new Comparator<MemoryBlock>() {
@@ -813,15 +1173,28 @@ public class FreeListManager {
     }
   }
   
+  private List<OffHeapStoredObject> getHugeFreeChunks() {
+    final List<OffHeapStoredObject> value = new ArrayList<OffHeapStoredObject>();
+    for (OffHeapStoredObjectAddressStack cl: this.hugeFreeLists) {
+      long addr = cl.getTopAddress();
+      while (addr != 0L) {
+        value.add(new OffHeapStoredObject(addr));
+        addr = OffHeapStoredObject.getNext(addr);
+      }
+    }
+    return value;
+  }
   private List<MemoryBlock> getTinyFreeBlocks() {
     final List<MemoryBlock> value = new ArrayList<MemoryBlock>();
     final MemoryAllocatorImpl sma = this.ma;
-    for (int i = 0; i < this.tinyFreeLists.length(); i++) {
-      if (this.tinyFreeLists.get(i) == null) continue;
-      long addr = this.tinyFreeLists.get(i).getTopAddress();
-      while (addr != 0L) {
-        value.add(new MemoryBlockNode(sma, new TinyMemoryBlock(addr, i)));
-        addr = OffHeapStoredObject.getNext(addr);
+    for (AtomicReferenceArray<OffHeapStoredObjectAddressStack> freeLists: this.tinyFreeLists) {
+      for (int i = 0; i < freeLists.length(); i++) {
+        if (freeLists.get(i) == null) continue;
+        long addr = freeLists.get(i).getTopAddress();
+        while (addr != 0L) {
+          value.add(new MemoryBlockNode(sma, new TinyMemoryBlock(addr, i)));
+          addr = OffHeapStoredObject.getNext(addr);
+        }
       }
     }
     return value;
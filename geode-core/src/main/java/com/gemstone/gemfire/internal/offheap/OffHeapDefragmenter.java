@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
+
+/**
+ * Coalesces free off-heap memory in the background so that an allocation
+ * rarely has to fall back to {@link FreeListManager#defragment(int)}, which
+ * compacts all of off-heap memory while allocations wait.
+ * <p>
+ * Every interval the defragmenter checks how much of the free memory is only
+ * available on the free lists. Once that percentage reaches the threshold it
+ * runs {@link FreeListManager#coalesceFreeChunks(int, long)} in short slices,
+ * pausing between them, until the percentage drops below the threshold or a
+ * slice finds nothing left to combine.
+ * <p>
+ * The defragmenter is disabled unless gemfire.OFF_HEAP_DEFRAGMENTER_THRESHOLD
+ * is set to a percentage greater than zero.
+ */
+public class OffHeapDefragmenter implements Runnable {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The percentage of free memory on the free lists at which background defragmentation starts.
+   * Zero disables the background defragmenter.
+   */
+  public static final int THRESHOLD = Integer.getInteger("gemfire.OFF_HEAP_DEFRAGMENTER_THRESHOLD", 0);
+  /**
+   * How often, in milliseconds, the defragmenter checks whether it needs to run.
+   */
+  public static final long INTERVAL = Long.getLong("gemfire.OFF_HEAP_DEFRAGMENTER_INTERVAL", 1000);
+  /**
+   * The maximum number of free chunks a single slice takes off the free lists.
+   */
+  public static final int SLICE_CHUNKS = Integer.getInteger("gemfire.OFF_HEAP_DEFRAGMENTER_SLICE_CHUNKS", 4096);
+  /**
+   * The maximum time, in milliseconds, a single slice spends taking chunks off the free lists.
+   */
+  public static final long SLICE_TIME = Long.getLong("gemfire.OFF_HEAP_DEFRAGMENTER_SLICE_TIME", 5);
+
+  private final FreeListManager freeListManager;
+  private final int threshold;
+  private volatile boolean stopped = false;
+  private Thread thread;
+
+  OffHeapDefragmenter(FreeListManager freeListManager, int threshold) {
+    this.freeListManager = freeListManager;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Starts a background defragmenter for the given free list manager
+   * if one is enabled; otherwise returns null.
+   */
+  static OffHeapDefragmenter start(FreeListManager freeListManager) {
+    if (THRESHOLD <= 0) {
+      return null;
+    }
+    OffHeapDefragmenter result = new OffHeapDefragmenter(freeListManager, THRESHOLD);
+    Thread t = new Thread(LoggingThreadGroup.createThreadGroup("OffHeapDefragmenter", logger), result, "OffHeapDefragmenter");
+    t.setDaemon(true);
+    result.thread = t;
+    t.start();
+    return result;
+  }
+
+  /**
+   * Stops the defragmenter and waits for a slice that is in progress to finish
+   * so that the caller can safely free the slabs.
+   */
+  void stop() {
+    this.stopped = true;
+    if (this.thread != null) {
+      this.thread.interrupt();
+      try {
+        this.thread.join(INTERVAL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (!this.stopped) {
+        Thread.sleep(INTERVAL);
+        defragmentIfNeeded();
+      }
+    } catch (InterruptedException ignore) {
+      // we have been stopped
+    } catch (RuntimeException e) {
+      if (!this.stopped) {
+        logger.warn("Background off-heap defragmentation stopped because of an unexpected exception", e);
+      }
+    }
+  }
+
+  /**
+   * Runs slices of coalescing until the free list percentage is below the threshold.
+   * @return the number of free chunks that were combined
+   */
+  int defragmentIfNeeded() throws InterruptedException {
+    int result = 0;
+    while (!this.stopped && this.freeListManager.getFreeListPercentage() >= this.threshold) {
+      int combined = this.freeListManager.coalesceFreeChunks(SLICE_CHUNKS, TimeUnit.MILLISECONDS.toNanos(SLICE_TIME));
+      if (combined == 0) {
+        break;
+      }
+      result += combined;
+      if (logger.isDebugEnabled()) {
+        logger.debug("Background off-heap defragmentation combined {} free chunks", combined);
+      }
+      // give allocations that are waiting on a concurrent defragment a chance to run
+      Thread.sleep(1);
+    }
+    return result;
+  }
+}
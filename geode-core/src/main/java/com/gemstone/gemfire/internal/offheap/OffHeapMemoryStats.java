@@ -35,6 +35,10 @@ public interface OffHeapMemoryStats {
   public long startDefragmentation();
   public void endDefragmentation(long start);
   public void setFragmentation(int value);
+  /**
+   * Adds value to the number of free chunks on the huge free list with the given index.
+   */
+  public void incHugeFreeChunks(int hugeBin, int value);
   
   public long getFreeMemory();
   public long getMaxMemory();
@@ -46,6 +50,7 @@ public interface OffHeapMemoryStats {
   public int getLargestFragment();
   public int getFragmentation();
   public long getDefragmentationTime();
+  public int getHugeFreeChunks(int hugeBin);
   
   public Statistics getStats();
   public void close();
@@ -17,6 +17,9 @@
 package com.gemstone.gemfire.internal.offheap;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.gemstone.gemfire.StatisticDescriptor;
 import com.gemstone.gemfire.Statistics;
@@ -59,6 +62,7 @@ public class OffHeapStorage implements OffHeapMemoryStats {
   private static final int largestFragmentId;
   private static final int defragmentationTimeId;
   private static final int fragmentationId;
+  private static final int[] hugeFreeChunksIds;
   // NOTE!!!! When adding new stats make sure and update the initialize method on this class
   
   // creates and registers the statistics type
@@ -86,11 +90,9 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     final String objects = "objects";
     final String reads = "reads";
     final String maxMemory = "maxMemory";
+    final String hugeFreeChunks = "hugeFreeChunks";
     
-    statsType = f.createType(
-        statsTypeName,
-        statsTypeDescription,
-        new StatisticDescriptor[] {
+    List<StatisticDescriptor> descriptors = new ArrayList<StatisticDescriptor>(Arrays.asList(new StatisticDescriptor[] {
             f.createLongGauge(usedMemory, usedMemoryDesc, "bytes"),
             f.createIntCounter(defragmentations, defragmentationDesc, "defragmentations"),
             f.createLongCounter(defragmentationTime, defragmentationTimeDesc, "nanoseconds", false),
@@ -101,7 +103,17 @@ public class OffHeapStorage implements OffHeapMemoryStats {
             f.createIntGauge(objects, objectsDesc, "objects"),
             f.createLongCounter(reads, readsDesc, "operations"),
             f.createLongGauge(maxMemory, maxMemoryDesc, "bytes"),
-        }
+        }));
+    for (int i=0; i < FreeListManager.HUGE_BIN_COUNT; i++) {
+      final String hugeFreeChunksDesc = "The number of free off-heap chunks on huge free list " + i
+          + ". Chunks on this list are at least " + FreeListManager.getHugeBinMinSize(i) + " bytes.";
+      descriptors.add(f.createIntGauge(hugeFreeChunks + i, hugeFreeChunksDesc, "chunks"));
+    }
+    
+    statsType = f.createType(
+        statsTypeName,
+        statsTypeDescription,
+        descriptors.toArray(new StatisticDescriptor[descriptors.size()])
     );
     
     usedMemoryId = statsType.nameToId(usedMemory);
@@ -114,6 +126,10 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     objectsId = statsType.nameToId(objects);
     readsId = statsType.nameToId(reads);
     maxMemoryId = statsType.nameToId(maxMemory);
+    hugeFreeChunksIds = new int[FreeListManager.HUGE_BIN_COUNT];
+    for (int i=0; i < hugeFreeChunksIds.length; i++) {
+      hugeFreeChunksIds[i] = statsType.nameToId(hugeFreeChunks + i);
+    }
   }
 
   public static long parseOffHeapMemorySize(String value) {
@@ -239,7 +255,8 @@ public class OffHeapStorage implements OffHeapMemoryStats {
   
   private final Statistics stats;
   
-  private OffHeapStorage(StatisticsFactory f) {
+  // non-private for unit test access
+  OffHeapStorage(StatisticsFactory f) {
     this.stats = f.createAtomicStatistics(statsType, statsName);
   }
   
@@ -331,6 +348,16 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     this.stats.setInt(fragmentationId, value);
   }
 
+  @Override
+  public void incHugeFreeChunks(int hugeBin, int value) {
+    this.stats.incInt(hugeFreeChunksIds[hugeBin], value);
+  }
+
+  @Override
+  public int getHugeFreeChunks(int hugeBin) {
+    return this.stats.getInt(hugeFreeChunksIds[hugeBin]);
+  }
+
   @Override
   public int getFragmentation() {
     return this.stats.getInt(fragmentationId);
@@ -357,6 +384,9 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     setLargestFragment(oldStats.getLargestFragment());
     setDefragmentationTime(oldStats.getDefragmentationTime());
     setFragmentation(oldStats.getFragmentation());
+    for (int i=0; i < hugeFreeChunksIds.length; i++) {
+      this.stats.setInt(hugeFreeChunksIds[i], oldStats.getHugeFreeChunks(i));
+    }
     
     oldStats.close();
   }
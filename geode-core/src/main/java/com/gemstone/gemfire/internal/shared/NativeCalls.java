@@ -377,6 +377,46 @@ public abstract class NativeCalls {
   public boolean isOnLocalFileSystem(final String path) {
     return false;
   }
+
+  /**
+   * Advise the operating system that the given range of an open file will not
+   * be accessed again soon, so that its pages can be dropped from the file
+   * system cache. Pages that have not been written to the device yet are not
+   * dropped.
+   * 
+   * @throws UnsupportedOperationException
+   *           if the native call is not available on the current platform
+   */
+  public void dropFileCache(FileDescriptor fd, long offset, long len)
+      throws UnsupportedOperationException {
+    throw new UnsupportedOperationException(
+        "dropFileCache() not available in base implementation");
+  }
+
+  /**
+   * Get the kernel descriptor of an open {@link FileDescriptor}.
+   * 
+   * @throws UnsupportedOperationException
+   *           if the kernel descriptor could not be extracted
+   */
+  protected static int getFileKernelDescriptor(FileDescriptor fd)
+      throws UnsupportedOperationException {
+    try {
+      final Field f = getAnyField(fd.getClass(), "fd");
+      f.setAccessible(true);
+      final Object obj = f.get(fd);
+      if (obj instanceof Integer) {
+        return ((Integer)obj).intValue();
+      }
+      throw new UnsupportedOperationException();
+    } catch (UnsupportedOperationException uoe) {
+      throw uoe;
+    } catch (Exception ex) {
+      // includes the SecurityException, or its equivalent, of a JVM that
+      // does not allow access to the field
+      throw new UnsupportedOperationException(ex);
+    }
+  }
   /**
    * Set given extended socket options on a Java {@link Socket}.
    * 
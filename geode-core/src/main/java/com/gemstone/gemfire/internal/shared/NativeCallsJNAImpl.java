@@ -36,6 +36,7 @@ import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.win32.StdCallLibrary;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
@@ -439,6 +440,12 @@ public final class NativeCallsJNAImpl {
     public static native int creat64(String path, int flags)
         throws LastErrorException;
 
+    /** posix_fadvise returns error number rather than setting errno */
+    public static native int posix_fadvise64(int fd, long offset, long len,
+        int advice);
+
+    static final int POSIX_FADV_DONTNEED = 4;
+
     /**
      * {@inheritDoc}
      */
@@ -768,6 +775,16 @@ public final class NativeCallsJNAImpl {
         throw new LastErrorException(errno);
       }
     }
+
+    @Override
+    public void dropFileCache(FileDescriptor fd, long offset, long len)
+        throws UnsupportedOperationException {
+      int errno = posix_fadvise64(getFileKernelDescriptor(fd), offset, len,
+          POSIX_FADV_DONTNEED);
+      if (errno != 0) {
+        throw new UnsupportedOperationException(new LastErrorException(errno));
+      }
+    }
   }
 
   /**
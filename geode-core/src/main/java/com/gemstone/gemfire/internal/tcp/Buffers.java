@@ -18,22 +18,56 @@ package com.gemstone.gemfire.internal.tcp;
 
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.gemstone.gemfire.distributed.internal.DMStats;
-import com.gemstone.gemfire.internal.Assert;
 
 /**
- *
+ * A pool of the direct byte buffers used by connections to send and receive
+ * messages. Heap buffers are not pooled.
+ * <p>
+ * Buffer sizes are rounded up to a power of two and idle buffers are kept
+ * in one queue per size, so acquiring a buffer never has to search through
+ * buffers of other sizes and a connection whose read buffer has to grow for
+ * a large message grows it geometrically instead of once per bigger message.
+ * Buffers bigger than {@link #MAX_POOLED_BUFFER_SIZE} are allocated with
+ * their exact size and not pooled. At most {@link #MAX_POOLED_BYTES} of
+ * idle buffers are kept; buffers released beyond that are left to the
+ * garbage collector. Idle buffers are only softly referenced.
  */
 public class Buffers {
   /**
-   * A list of soft references to byte buffers.
+   * The size of the biggest buffer that is pooled.
    */
-  private static final ConcurrentLinkedQueue bufferQueue = new ConcurrentLinkedQueue();
-  
+  static final int MAX_POOLED_BUFFER_SIZE = Integer.getInteger("p2p.maxPooledBufferSize", 8 * 1024 * 1024).intValue();
+
+  /**
+   * The maximum number of bytes of idle buffers kept in the pool.
+   */
+  static final long MAX_POOLED_BYTES = Long.getLong("p2p.maxPooledBufferBytes", 256L * 1024 * 1024).longValue();
+
+  /**
+   * Queues of soft references to idle byte buffers, indexed by the log2 of
+   * their capacity.
+   */
+  private static final ConcurrentLinkedQueue<BBSoftReference>[] bufferQueues = createBufferQueues();
+
+  /**
+   * The number of bytes of buffers in bufferQueues, including buffers that
+   * have been garbage collected but not yet polled.
+   */
+  private static final AtomicLong pooledBytes = new AtomicLong();
+
+  @SuppressWarnings("unchecked")
+  private static ConcurrentLinkedQueue<BBSoftReference>[] createBufferQueues() {
+    ConcurrentLinkedQueue<BBSoftReference>[] result = new ConcurrentLinkedQueue[Integer.SIZE];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new ConcurrentLinkedQueue<BBSoftReference>();
+    }
+    return result;
+  }
+
   /**
    * Should only be called by threads that have currently acquired send permission.
    * @return a byte buffer to be used for sending on this connection.
@@ -46,51 +80,42 @@ public class Buffers {
     return acquireBuffer(size, stats, false);
   }
 
+  /**
+   * Returns a buffer whose limit is the given size. Its capacity may be
+   * bigger.
+   */
   static ByteBuffer acquireBuffer(int size, DMStats stats, boolean send) {
     ByteBuffer result;
     if (TCPConduit.useDirectBuffers) {
-      IdentityHashMap<BBSoftReference, BBSoftReference> alreadySeen = null; // keys are used like a set
-      BBSoftReference ref = (BBSoftReference)bufferQueue.poll();
-      while (ref != null) {
-        ByteBuffer bb = ref.getBB();
-        if (bb == null) {
-          // it was garbage collected
-          int refSize = ref.consumeSize();
-          if (refSize > 0) {
-            if (ref.getSend()) { // fix bug 46773
-              stats.incSenderBufferSize(-refSize, true);
-            } else {
-              stats.incReceiverBufferSize(-refSize, true);
-            }
-          }
-        } else if (bb.capacity() >= size) {
-          bb.rewind();
-          bb.limit(size);
-          return bb;
-        } else {
-          // wasn't big enough so put it back in the queue
-          Assert.assertTrue(bufferQueue.offer(ref));
-          if (alreadySeen == null) {
-            alreadySeen = new IdentityHashMap<BBSoftReference, BBSoftReference>();
-          }
-          if (alreadySeen.put(ref, ref) != null) {
-            // if it returns non-null then we have already seen this item
-            // so we have worked all the way through the queue once.
-            // So it is time to give up and allocate a new buffer.
-            break;
+      final int capacity = getPooledCapacity(size);
+      if (capacity > 0) {
+        ConcurrentLinkedQueue<BBSoftReference> queue = bufferQueues[sizeClass(capacity)];
+        BBSoftReference ref = queue.poll();
+        while (ref != null) {
+          pooledBytes.addAndGet(-ref.getSize());
+          ByteBuffer bb = ref.getBB();
+          if (bb != null) {
+            bb.rewind();
+            bb.limit(size);
+            return bb;
           }
+          // it was garbage collected
+          decBufferSize(ref.consumeSize(), ref.getSend(), stats);
+          ref = queue.poll();
         }
-        ref = (BBSoftReference)bufferQueue.poll();
+        result = ByteBuffer.allocateDirect(capacity);
+        result.limit(size);
+      } else {
+        result = ByteBuffer.allocateDirect(size);
       }
-      result = ByteBuffer.allocateDirect(size);
     } else {
       // if we are using heap buffers then don't bother with keeping them around
       result = ByteBuffer.allocate(size);
     }
     if(send) {
-      stats.incSenderBufferSize(size, TCPConduit.useDirectBuffers);
+      stats.incSenderBufferSize(result.capacity(), TCPConduit.useDirectBuffers);
     } else {
-      stats.incReceiverBufferSize(size, TCPConduit.useDirectBuffers);
+      stats.incReceiverBufferSize(result.capacity(), TCPConduit.useDirectBuffers);
     }
     return result;
   }
@@ -107,29 +132,57 @@ public class Buffers {
    * Releases a previously acquired buffer.
    */
   static void releaseBuffer(ByteBuffer bb, DMStats stats, boolean send) {
-    if (TCPConduit.useDirectBuffers) {
-      BBSoftReference bbRef = new BBSoftReference(bb, send);
-      bufferQueue.offer(bbRef);
-    } else {
-      if(send) {
-        stats.incSenderBufferSize(-bb.capacity(), false);
+    final int capacity = bb.capacity();
+    if (TCPConduit.useDirectBuffers && getPooledCapacity(capacity) == capacity) {
+      if (pooledBytes.addAndGet(capacity) <= MAX_POOLED_BYTES) {
+        bufferQueues[sizeClass(capacity)].offer(new BBSoftReference(bb, send));
+        return;
+      }
+      // the pool is full so let this one be garbage collected
+      pooledBytes.addAndGet(-capacity);
+    }
+    decBufferSize(capacity, send, stats);
+  }
+
+  private static void decBufferSize(int size, boolean send, DMStats stats) {
+    if (size > 0) {
+      if (send) { // fix bug 46773
+        stats.incSenderBufferSize(-size, TCPConduit.useDirectBuffers);
       } else {
-        stats.incReceiverBufferSize(-bb.capacity(), false);
+        stats.incReceiverBufferSize(-size, TCPConduit.useDirectBuffers);
       }
     }
   }
-  
+
+  /**
+   * Returns the capacity of a pooled buffer that can hold the given number of
+   * bytes, or 0 if such a buffer would be too big to pool.
+   */
+  static int getPooledCapacity(int size) {
+    if (size > MAX_POOLED_BUFFER_SIZE) {
+      return 0;
+    }
+    int result = Integer.highestOneBit(Math.max(size, 1));
+    if (result < size) {
+      result <<= 1;
+    }
+    return result;
+  }
+
+  private static int sizeClass(int pooledCapacity) {
+    return Integer.numberOfTrailingZeros(pooledCapacity);
+  }
+
   public static void initBufferStats(DMStats stats) { // fixes 46773
     if (TCPConduit.useDirectBuffers) {
-      @SuppressWarnings("unchecked")
-      Iterator<BBSoftReference> it = (Iterator<BBSoftReference>)bufferQueue.iterator();
-      while (it.hasNext()) {
-        BBSoftReference ref = it.next();
-        if (ref.getBB() != null) {
-          if(ref.getSend()) { // fix bug 46773
-            stats.incSenderBufferSize(ref.getSize(), true);
-          } else {
-            stats.incReceiverBufferSize(ref.getSize(), true);
+      for (ConcurrentLinkedQueue<BBSoftReference> queue : bufferQueues) {
+        for (BBSoftReference ref : queue) {
+          if (ref.getBB() != null) {
+            if(ref.getSend()) { // fix bug 46773
+              stats.incSenderBufferSize(ref.getSize(), true);
+            } else {
+              stats.incReceiverBufferSize(ref.getSize(), true);
+            }
           }
         }
       }
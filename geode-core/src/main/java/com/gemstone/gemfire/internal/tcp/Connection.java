@@ -44,6 +44,7 @@ import java.util.Map;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Logger;
 
@@ -214,8 +215,12 @@ public class Connection implements Runnable {
   /** the non-NIO output stream */
   OutputStream output;
 
-  /** output stream/channel lock */
-  private final Object outLock = new Object();
+  /**
+   * output stream/channel lock. A lock rather than a monitor so that a
+   * virtual thread blocked writing to the socket does not pin its carrier
+   * thread.
+   */
+  private final ReentrantLock outLock = new ReentrantLock();
 
   /** the ID string of the conduit (for logging) */
   String conduitIdStr;
@@ -716,7 +721,8 @@ public class Connection implements Runnable {
         nioWriteFully(getSocket().getChannel(), my_okHandshakeBuf, false, null);
       }
     } else {
-      synchronized(outLock) {
+      this.outLock.lock();
+      try {
         try {
 //          this.writerThread = Thread.currentThread();
           this.output.write(my_okHandshakeBytes, 0, my_okHandshakeBytes.length);
@@ -725,6 +731,8 @@ public class Connection implements Runnable {
         finally {
 //          this.writerThread = null;
         }
+      } finally {
+        this.outLock.unlock();
       }
     }
   }
@@ -969,7 +977,8 @@ public class Connection implements Runnable {
     lenbytes[MSG_HEADER_TYPE_OFFSET] = (byte)NORMAL_MSG_TYPE;
     lenbytes[MSG_HEADER_ID_OFFSET] = (byte)((MsgIdGenerator.NO_MSG_ID/0x100) & 0xff);
     lenbytes[MSG_HEADER_ID_OFFSET+1] = (byte)(MsgIdGenerator.NO_MSG_ID & 0xff);
-    synchronized(outLock) {
+    this.outLock.lock();
+    try {
       try {
 //        this.writerThread = Thread.currentThread();
         this.output.write(lenbytes, 0, lenbytes.length);
@@ -979,6 +988,8 @@ public class Connection implements Runnable {
       finally {
 //        this.writerThread = null;
       }
+    } finally {
+      this.outLock.unlock();
     }
   }
 
@@ -1210,6 +1221,8 @@ public class Connection implements Runnable {
     }
     if (preserveOrder && BATCH_SENDS) {
       conn.createBatchSendBuffer();
+    } else if (sharedResource && COALESCE_WRITES) {
+      conn.createWriteCoalescer();
     }
     conn.finishedConnecting = true;
     return conn;
@@ -1480,6 +1493,27 @@ public class Connection implements Runnable {
     }
   }
 
+  /**
+   * If true, messages sent on a shared connection while another thread is
+   * writing to it are coalesced into one write by that thread, see
+   * {@link WriteCoalescer}.
+   */
+  private static final boolean COALESCE_WRITES = Boolean.getBoolean("p2p.coalesceWrites");
+  /**
+   * The maximum number of bytes of messages coalesced into one write.
+   * Messages bigger than this are never coalesced.
+   */
+  protected static final int COALESCE_BUFFER_SIZE = Integer.getInteger("p2p.coalesceBufferSize", 64*1024).intValue();
+  private WriteCoalescer writeCoalescer;
+
+  private void createWriteCoalescer() {
+    // sends with old-io are not done by nioWriteFully
+    if (!this.useNIO) {
+      return;
+    }
+    this.writeCoalescer = new WriteCoalescer(COALESCE_BUFFER_SIZE, TCPConduit.useDirectBuffers);
+  }
+
   private void closeBatchBuffer() {
     if (this.batchFlusher != null) {
       this.batchFlusher.close();
@@ -2566,7 +2600,8 @@ public class Connection implements Runnable {
                             buffer.limit() - buffer.position());
         } else {
           byte[] bytesToWrite = getBytesToWrite(buffer);
-          synchronized(outLock) {
+          this.outLock.lock();
+          try {
             try {
 //              this.writerThread = Thread.currentThread();
               this.output.write(bytesToWrite);
@@ -2575,6 +2610,8 @@ public class Connection implements Runnable {
             finally {
 //              this.writerThread = null;
             }
+          } finally {
+            this.outLock.unlock();
           }
         }
       }
@@ -3157,7 +3194,8 @@ public class Connection implements Runnable {
     int retries = 0;
     int totalAmtWritten = 0;
     try {
-      synchronized (this.outLock) {
+      this.outLock.lock();
+      try {
         if (!forceAsync) {
           // check one more time while holding outLock in case a pusher was created
           if (this.asyncQueuingInProgress) {
@@ -3289,6 +3327,8 @@ public class Connection implements Runnable {
         } finally {
           channel.configureBlocking(true);
         }
+      } finally {
+        this.outLock.unlock();
       }
     } finally {
       if (socketWriteStarted) {
@@ -3322,34 +3362,91 @@ public class Connection implements Runnable {
         }
         // fall through
       }
+      final WriteCoalescer coalescer = this.writeCoalescer;
+      if (coalescer != null) {
+        WriteCoalescer.Batch offered = coalescer.offer(buffer);
+        if (offered != null) {
+          // the thread writing to the socket will send it
+          offered.await();
+          return;
+        }
+      }
       long startLock = stats.startSocketLock();
-      synchronized (this.outLock) {
+      this.outLock.lock();
+      try {
         stats.endSocketLock(startLock);
-        if (this.asyncQueuingInProgress) {
-          if (addToQueue(buffer, msg, false)) {
-            return;
-          }
-          // fall through
+        if (coalescer == null) {
+          syncWrite(channel, buffer, msg, stats);
+          return;
         }
-        do {
-          int amtWritten = 0;
-          long start = stats.startSocketWrite(true);
-          try {
-//            this.writerThread = Thread.currentThread();
-            amtWritten = channel.write(buffer);
+        coalescer.writeStarted();
+        boolean ownWritten = false;
+        boolean finished = false;
+        WriteCoalescer.Batch batch = null;
+        Exception failure = null;
+        try {
+          syncWrite(channel, buffer, msg, stats);
+          ownWritten = true;
+          while ((batch = coalescer.takeBatch()) != null) {
+            int batchBytes = batch.getBuffer().remaining();
+            syncWrite(channel, batch.getBuffer(), null, stats);
+            batch.written();
+            stats.incCoalescedWrites(batch.getMessages(), batchBytes);
           }
-          finally {
-            stats.endSocketWrite(true, start, amtWritten, 0);
-//            this.writerThread = null;
+          finished = true;
+        } catch (IOException e) {
+          failure = e;
+          if (!ownWritten) {
+            throw e;
           }
-        } while (buffer.remaining() > 0);
-      } // synchronized
+          // our own message was sent; the senders of the batch see the failure
+        } catch (ConnectionException e) {
+          failure = e;
+          if (!ownWritten) {
+            throw e;
+          }
+        } finally {
+          if (!finished) {
+            coalescer.writeFailed(batch, failure);
+          }
+        }
+      } finally {
+        this.outLock.unlock();
+      }
     }
     else {
       writeAsync(channel, buffer, forceAsync, msg, stats);
     }
   }
 
+  /**
+   * Writes the given buffer, or adds it to the async queue if queuing has
+   * started. The caller must hold outLock.
+   */
+  private void syncWrite(SocketChannel channel, ByteBuffer buffer,
+                         DistributionMessage msg, DMStats stats)
+    throws IOException, ConnectionException
+  {
+    if (this.asyncQueuingInProgress) {
+      if (addToQueue(buffer, msg, false)) {
+        return;
+      }
+      // fall through
+    }
+    do {
+      int amtWritten = 0;
+      long start = stats.startSocketWrite(true);
+      try {
+//        this.writerThread = Thread.currentThread();
+        amtWritten = channel.write(buffer);
+      }
+      finally {
+        stats.endSocketWrite(true, start, amtWritten, 0);
+//        this.writerThread = null;
+      }
+    } while (buffer.remaining() > 0);
+  }
+
   /** gets the buffer for receiving message length bytes */
   protected ByteBuffer getNIOBuffer() {
     final DMStats stats = this.owner.getConduit().stats;
@@ -31,6 +31,7 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
@@ -45,7 +46,9 @@ import com.gemstone.gemfire.SystemFailure;
 import com.gemstone.gemfire.distributed.DistributedMember;
 import com.gemstone.gemfire.distributed.DistributedSystemDisconnectedException;
 import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.DistributionManager;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
+import com.gemstone.gemfire.distributed.internal.SizeableRunnable;
 import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
 import com.gemstone.gemfire.distributed.internal.membership.MembershipManager;
 import com.gemstone.gemfire.distributed.internal.membership.gms.mgr.GMSMembershipManager;
@@ -90,6 +93,30 @@ public class ConnectionTable  {
    * and receiving acks, will be put in this map.
    */
   protected final Map orderedConnectionMap = new ConcurrentHashMap();
+
+  /**
+   * The number of shared ordered connections kept to each member for the
+   * threads that would otherwise own an ordered connection to it, that is
+   * when conserve-sockets is false. Each such thread always sends on the
+   * same one of them, so its messages stay in order, and messages of
+   * different threads interleave on them. This bounds the sockets and
+   * reader threads to this number per member instead of one per sending
+   * thread per member. Zero, the default, gives each thread its own
+   * connections.
+   * <p>
+   * The receiving member reads lanes with shared receivers, so it processes
+   * their messages like those of the shared ordered connection rather than
+   * in a reader thread per sending thread. Lanes bound resources; they do
+   * not give the receive-side parallelism of thread-owned connections.
+   */
+  static final int ORDERED_CONNECTIONS_PER_MEMBER = Integer.getInteger("p2p.ORDERED_CONNECTIONS_PER_MEMBER", 0).intValue();
+
+  /**
+   * The shared ordered connections by lane. Lane 0 is orderedConnectionMap,
+   * which is also used by threads that do not own resources. There are
+   * more lanes only if ORDERED_CONNECTIONS_PER_MEMBER is greater than one.
+   */
+  private final Map[] orderedLaneMaps;
   
   /**
    * ordered connections local to this thread.  Note that accesses to
@@ -220,6 +247,14 @@ public class ConnectionTable  {
 //       System.getProperty("p2p.bidirectional", "true").equals("true");
 
   private ConnectionTable(TCPConduit c) throws IOException {
+    this(c, ORDERED_CONNECTIONS_PER_MEMBER);
+  }
+
+  /**
+   * Creates a table that spreads shared ordered connections over the given
+   * number of lanes per member.
+   */
+  ConnectionTable(TCPConduit c, int orderedLanes) throws IOException {
     this.owner = c;
     this.idleConnTimer = (this.owner.idleConnectionTimeout != 0) 
         ? new SystemTimer(c.getDM().getSystem(), true)
@@ -227,6 +262,11 @@ public class ConnectionTable  {
     this.threadOrderedConnMap = new ThreadLocal();
     this.threadConnMaps = new ArrayList();
     this.threadConnectionMap = new ConcurrentHashMap();
+    this.orderedLaneMaps = new Map[Math.max(orderedLanes, 1)];
+    this.orderedLaneMaps[0] = this.orderedConnectionMap;
+    for (int i = 1; i < this.orderedLaneMaps.length; i++) {
+      this.orderedLaneMaps[i] = new ConcurrentHashMap();
+    }
     this.p2pReaderThreadPool = createThreadPoolForIO(c.getDM().getSystem().isShareSockets());
     this.socketCloser = new SocketCloser();
   /*  NOMUX: if (TCPConduit.useNIO) {
@@ -456,10 +496,51 @@ public class ConnectionTable  {
       long startTime, long ackTimeout, long ackSATimeout)
     throws IOException, DistributedSystemDisconnectedException
     {
-    Connection result = null;
-    
     final Map m = preserveOrder ? this.orderedConnectionMap 
         : this.unorderedConnectionMap;
+    return getSharedConnection(id, m, threadOwnsResources, preserveOrder,
+        startTime, ackTimeout, ackSATimeout);
+    }
+
+  /**
+   * Returns the shared ordered connection to the given member of the lane
+   * used by the current thread.
+   * 
+   * @see #ORDERED_CONNECTIONS_PER_MEMBER
+   */
+  private Connection getOrderedLane(DistributedMember id,
+      long startTime, long ackTimeout, long ackSATimeout)
+    throws IOException, DistributedSystemDisconnectedException
+    {
+    int lane = getOrderedLaneIndex(Thread.currentThread().getId(),
+        this.orderedLaneMaps.length);
+    return getSharedConnection(id, this.orderedLaneMaps[lane], true, true,
+        startTime, ackTimeout, ackSATimeout);
+    }
+
+  /**
+   * Returns the ordered lane used by the thread with the given id. A thread
+   * always uses the same lane so the messages it sends stay in order.
+   */
+  static int getOrderedLaneIndex(long threadId, int laneCount) {
+    return (int)(threadId % laneCount);
+  }
+
+  /** Returns the shared ordered connections of the given lane. For tests. */
+  Map getOrderedLaneMap(int lane) {
+    return this.orderedLaneMaps[lane];
+  }
+
+  /**
+   * Returns the shared connection to the given member held in the given
+   * map, creating it if needed.
+   */
+  private Connection getSharedConnection(DistributedMember id, final Map m,
+      boolean threadOwnsResources, boolean preserveOrder,
+      long startTime, long ackTimeout, long ackSATimeout)
+    throws IOException, DistributedSystemDisconnectedException
+    {
+    Connection result = null;
 
     PendingConnection pc = null; // new connection, if needed
     Object mEntry = null; // existing connection (if we don't create a new one)
@@ -474,7 +555,7 @@ public class ConnectionTable  {
         }
       }
       if (mEntry == null) {
-        pc = new PendingConnection(preserveOrder, id);
+        pc = new PendingConnection(preserveOrder, id, m);
         m.put(id, pc);
       }
     } // synchronized
@@ -671,6 +752,8 @@ public class ConnectionTable  {
     boolean threadOwnsResources = threadOwnsResources();
     if (!preserveOrder || !threadOwnsResources) {
       result = getUnorderedOrConserveSockets(id, threadOwnsResources, preserveOrder, startTime, ackTimeout, ackSATimeout);
+    } else if (this.orderedLaneMaps.length > 1) {
+      result = getOrderedLane(id, startTime, ackTimeout, ackSATimeout);
     } else {
       result = getOrderedAndOwned(id, startTime, ackTimeout, ackSATimeout);
     }
@@ -739,11 +822,14 @@ public class ConnectionTable  {
         this.idleConnTimer.cancel();
       }
     }
-    synchronized (this.orderedConnectionMap) {
-      for (Iterator it=this.orderedConnectionMap.values().iterator(); it.hasNext(); ) {
-        closeCon(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString(), it.next());
+    for (int i = 0; i < this.orderedLaneMaps.length; i++) {
+      Map m = this.orderedLaneMaps[i];
+      synchronized (m) {
+        for (Iterator it=m.values().iterator(); it.hasNext(); ) {
+          closeCon(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString(), it.next());
+        }
+        m.clear();
       }
-      this.orderedConnectionMap.clear();
     }
     synchronized (this.unorderedConnectionMap) {
       for (Iterator it=this.unorderedConnectionMap.values().iterator(); it.hasNext(); ) {
@@ -828,6 +914,13 @@ public class ConnectionTable  {
   }
   
   
+  /** Adds an accepted connection to the receivers. For tests. */
+  void addReceiver(Connection con) {
+    synchronized (this.receivers) {
+      this.receivers.add(con);
+    }
+  }
+
   protected void removeReceiver(Object con) {
     synchronized (this.receivers) {
       this.receivers.remove(con);
@@ -855,9 +948,12 @@ public class ConnectionTable  {
       return;
     }
     boolean needsRemoval = false;
-    synchronized (this.orderedConnectionMap) {
-      if (this.orderedConnectionMap.get(memberID) != null)
-        needsRemoval = true;
+    for (int i = 0; i < this.orderedLaneMaps.length && !needsRemoval; i++) {
+      Map m = this.orderedLaneMaps[i];
+      synchronized (m) {
+        if (m.get(memberID) != null)
+          needsRemoval = true;
+      }
     }
     if (!needsRemoval) {
       synchronized (this.unorderedConnectionMap) {
@@ -875,12 +971,15 @@ public class ConnectionTable  {
 
     if (needsRemoval) {
       InternalDistributedMember remoteAddress = null;
-      synchronized (this.orderedConnectionMap) {
-        Object c = this.orderedConnectionMap.remove(memberID);
-        if (c instanceof Connection) {
-          remoteAddress = ((Connection) c).getRemoteAddress();
+      for (int i = 0; i < this.orderedLaneMaps.length; i++) {
+        Map m = this.orderedLaneMaps[i];
+        synchronized (m) {
+          Object c = m.remove(memberID);
+          if (remoteAddress == null && (c instanceof Connection)) {
+            remoteAddress = ((Connection) c).getRemoteAddress();
+          }
+          closeCon(reason, c);
         }
-        closeCon(reason, c);
       }
       synchronized (this.unorderedConnectionMap) {
         Object c = this.unorderedConnectionMap.remove(memberID);
@@ -1012,9 +1111,12 @@ public class ConnectionTable  {
       return;
     }
     if (ordered) {
-      synchronized (this.orderedConnectionMap) {
-        if (this.orderedConnectionMap.get(stub) == c) {
-          closeCon(reason, this.orderedConnectionMap.remove(stub));
+      for (int i = 0; i < this.orderedLaneMaps.length; i++) {
+        Map m = this.orderedLaneMaps[i];
+        synchronized (m) {
+          if (m.get(stub) == c) {
+            closeCon(reason, m.remove(stub));
+          }
         }
       }
     } else {
@@ -1081,7 +1183,8 @@ public class ConnectionTable  {
 
   /**
    * records the current outgoing message count on all thread-owned
-   * ordered connections.  This does not synchronize or stop new connections
+   * ordered connections and on the ordered lanes, other than the first,
+   * used in their place.  This does not synchronize or stop new connections
    * from being formed or new messages from being sent
    * @since 5.1
    */
@@ -1105,6 +1208,15 @@ public class ConnectionTable  {
         }
       }
     }
+    // the first lane is the shared ordered connection that the state flush
+    // messages themselves travel on
+    for (int i = 1; i < this.orderedLaneMaps.length; i++) {
+      Object c = this.orderedLaneMaps[i].get(member);
+      if (c instanceof Connection) {
+        Connection conn = (Connection)c;
+        result.put(Long.valueOf(conn.getUniqueId()), Long.valueOf(conn.getMessagesSent()));
+      }
+    }
   }
   
   /**
@@ -1118,12 +1230,16 @@ public class ConnectionTable  {
     synchronized(receivers) {
       r = new ArrayList(receivers);
     }
+    boolean waitForSerialExecutor = false;
     for (Iterator it=r.iterator(); it.hasNext();) {
       Connection con = (Connection)it.next();
       if (!con.stopped && !con.isClosing() && !con.getOriginatedHere() && con.getPreserveOrder()
           && member.equals(con.getRemoteAddress())) {
         Long state = (Long)connectionStates.remove(Long.valueOf(con.getUniqueId()));
         if (state != null) {
+          if (con.isSharedResource()) {
+            waitForSerialExecutor = true;
+          }
           long count = state.longValue();
           while (!con.stopped && !con.isClosing() && con.getMessagesReceived() < count) {
             if (logger.isDebugEnabled()) {
@@ -1135,6 +1251,9 @@ public class ConnectionTable  {
         }
       }
     }
+    if (waitForSerialExecutor) {
+      waitForSerialExecutor(member);
+    }
     if (connectionStates.size() > 0) {
       if (logger.isDebugEnabled()) {
         StringBuffer sb = new StringBuffer(1000);
@@ -1161,6 +1280,29 @@ public class ConnectionTable  {
     return this.owner.getDM();
   }
 
+  /**
+   * Ordered lane receivers are shared receivers, which may hand their messages
+   * to the serial executor instead of processing them in the reader thread.
+   * Waits for the messages from the given member already queued on that
+   * executor to be processed.
+   */
+  private void waitForSerialExecutor(DistributedMember member) throws InterruptedException {
+    DM dm = getDM();
+    if (!(dm instanceof DistributionManager)) {
+      return;
+    }
+    final CountDownLatch processed = new CountDownLatch(1);
+    ((DistributionManager)dm).getExecutor(DistributionManager.SERIAL_EXECUTOR,
+        (InternalDistributedMember)member).execute(new SizeableRunnable(0) {
+      public void run() {
+        processed.countDown();
+      }
+    });
+    while (!processed.await(100, TimeUnit.MILLISECONDS)) {
+      this.owner.getCancelCriterion().checkCancelInProgress(null);
+    }
+  }
+
 //  public boolean isShuttingDown() {
 //    return this.owner.isShuttingDown();
 //  }
@@ -1237,12 +1379,18 @@ public class ConnectionTable  {
      * the stub we are connecting to
      */
     private final DistributedMember id;
+
+    /**
+     * the map holding this pending connection
+     */
+    private final Map map;
     
     private final Thread connectingThread;
     
-    public PendingConnection(boolean preserveOrder, DistributedMember id) {
+    public PendingConnection(boolean preserveOrder, DistributedMember id, Map map) {
       this.preserveOrder = preserveOrder;
       this.id = id;
+      this.map = map;
       this.connectingThread = Thread.currentThread();
     }
     
@@ -1280,8 +1428,7 @@ public class ConnectionTable  {
         throw new ReenteredConnectException("This thread is already trying to connect");
       }
       
-      final Map m = this.preserveOrder ? orderedConnectionMap
-          : unorderedConnectionMap;
+      final Map m = this.map;
 
       boolean severeAlertIssued = false;
       boolean suspected = false;
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the messages of threads that want to write to a shared connection
+ * while another thread is writing to it. Instead of waiting for the socket
+ * the threads copy their message into a pending batch, and the writing
+ * thread sends the whole batch with one write once it has finished its own.
+ * <p>
+ * Since a batch only builds up while a write is in progress no message waits
+ * for a timer, and an idle connection writes each message as soon as it is
+ * sent. The busier the connection the bigger the batches get, up to the
+ * given number of bytes.
+ * <p>
+ * The writing thread calls {@link #writeStarted()} once it owns the socket
+ * and then {@link #takeBatch()} after each write until it returns null,
+ * marking each batch {@link Batch#written() written} once it has been sent.
+ * While no write is in progress the pending batch is always empty, so
+ * messages sent by one thread are written in the order they were sent.
+ * <p>
+ * A thread whose message was added to a batch must call {@link Batch#await()}
+ * before it treats its message as sent. If the write of the batch fails
+ * every thread with a message in it sees the failure, just like it would
+ * have if it had written its message itself.
+ *
+ * @since Geode 1.0
+ */
+class WriteCoalescer {
+  private ByteBuffer pending;
+  /** the buffer of the batch being written */
+  private ByteBuffer writing;
+  private Batch pendingBatch = new Batch();
+  private boolean writeInProgress;
+
+  WriteCoalescer(int maxBatchBytes, boolean direct) {
+    if (direct) {
+      this.pending = ByteBuffer.allocateDirect(maxBatchBytes);
+      this.writing = ByteBuffer.allocateDirect(maxBatchBytes);
+    } else {
+      this.pending = ByteBuffer.allocate(maxBatchBytes);
+      this.writing = ByteBuffer.allocate(maxBatchBytes);
+    }
+  }
+
+  /**
+   * Copies the given message into the pending batch if another thread is
+   * writing and the batch has room for it.
+   *
+   * @return the batch the message will be written with, which the caller
+   *         must {@link Batch#await() wait} for; or null if the caller must
+   *         write the message itself
+   */
+  synchronized Batch offer(ByteBuffer message) {
+    if (!this.writeInProgress || message.remaining() > this.pending.remaining()) {
+      return null;
+    }
+    this.pending.put(message);
+    this.pendingBatch.messages++;
+    return this.pendingBatch;
+  }
+
+  /**
+   * Called by a thread that owns the socket before it writes.
+   */
+  synchronized void writeStarted() {
+    this.writeInProgress = true;
+  }
+
+  /**
+   * Returns the messages that were offered since the last batch was taken,
+   * ready to be written, or null if there are none in which case the write
+   * in progress is finished. The buffer of the returned batch may be reused
+   * once this method is called again.
+   */
+  synchronized Batch takeBatch() {
+    if (this.pending.position() == 0) {
+      this.writeInProgress = false;
+      return null;
+    }
+    ByteBuffer buffer = this.pending;
+    this.pending = this.writing;
+    this.pending.clear();
+    this.writing = buffer;
+    buffer.flip();
+    Batch batch = this.pendingBatch;
+    batch.buffer = buffer;
+    this.pendingBatch = new Batch();
+    return batch;
+  }
+
+  /**
+   * Called by the writing thread if a write failed. The given batch, if any,
+   * and the messages that have not been taken yet are failed with the given
+   * cause since the connection is no longer usable.
+   *
+   * @param inProgress the batch whose write failed, or null if no batch was
+   *          being written
+   * @param cause the reason for the failure, or null if unknown
+   */
+  void writeFailed(Batch inProgress, Exception cause) {
+    if (cause == null) {
+      cause = new IOException("Write to shared connection failed");
+    }
+    Batch notTaken;
+    synchronized (this) {
+      this.writeInProgress = false;
+      this.pending.clear();
+      notTaken = this.pendingBatch;
+      this.pendingBatch = new Batch();
+    }
+    if (inProgress != null) {
+      inProgress.failed(cause);
+    }
+    notTaken.failed(cause);
+  }
+
+  /**
+   * The messages of the threads that offered them between two calls of
+   * {@link WriteCoalescer#takeBatch()}.
+   */
+  static class Batch {
+    /** set by takeBatch; only used by the writing thread */
+    private ByteBuffer buffer;
+    /** guarded by the WriteCoalescer that created this batch */
+    private int messages;
+    private boolean done;
+    private Exception failure;
+
+    /** returns the bytes to write; only valid until the next takeBatch */
+    ByteBuffer getBuffer() {
+      return this.buffer;
+    }
+
+    /** returns the number of messages in this batch once it was taken */
+    int getMessages() {
+      return this.messages;
+    }
+
+    /** called by the writing thread once the batch has been sent */
+    synchronized void written() {
+      this.done = true;
+      notifyAll();
+    }
+
+    synchronized void failed(Exception cause) {
+      if (!this.done) {
+        this.failure = cause;
+        this.done = true;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Waits until the writing thread has sent this batch. Interrupts are
+     * deferred since the message can no longer be taken back.
+     *
+     * @throws IOException if the write of this batch failed
+     * @throws ConnectionException if the conduit stopped before this batch
+     *           was written
+     */
+    void await() throws IOException {
+      Exception cause;
+      boolean interrupted = false;
+      synchronized (this) {
+        while (!this.done) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        cause = this.failure;
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (cause instanceof ConnectionException) {
+        throw new ConnectionException(cause.getMessage(), cause);
+      }
+      if (cause != null) {
+        throw new IOException(cause.getMessage(), cause);
+      }
+    }
+  }
+}
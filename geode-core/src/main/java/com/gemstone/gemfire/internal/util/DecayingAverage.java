@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.util;
+
+/**
+ * An exponentially weighted moving average of samples, such as latencies.
+ * While no samples are recorded the average decays towards zero, halving
+ * every half life, so that one slow period is not remembered forever by
+ * something that stopped sampling because of it. Thread-safe.
+ */
+public class DecayingAverage {
+  private final double sampleWeight;
+  private final long halfLifeNanos;
+  private double average;
+  private long lastUpdateNanos;
+
+  /**
+   * @param sampleWeight the weight, between 0 and 1, of a new sample
+   * @param halfLifeNanos the time it takes the average to halve while no
+   *          samples are recorded
+   */
+  public DecayingAverage(double sampleWeight, long halfLifeNanos) {
+    this.sampleWeight = sampleWeight;
+    this.halfLifeNanos = halfLifeNanos;
+    this.lastUpdateNanos = System.nanoTime();
+  }
+
+  public synchronized void record(double sample, long nowNanos) {
+    this.average = decayed(nowNanos) * (1 - this.sampleWeight) + sample * this.sampleWeight;
+    this.lastUpdateNanos = nowNanos;
+  }
+
+  public synchronized double get(long nowNanos) {
+    return decayed(nowNanos);
+  }
+
+  private double decayed(long nowNanos) {
+    long elapsed = nowNanos - this.lastUpdateNanos;
+    if (elapsed <= 0 || this.average == 0) {
+      return this.average;
+    }
+    return this.average * Math.pow(0.5, (double)elapsed / this.halfLifeNanos);
+  }
+}
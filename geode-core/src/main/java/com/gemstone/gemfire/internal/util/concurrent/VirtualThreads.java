@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.util.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Creates virtual threads when the JVM supports them. Virtual threads are
+ * looked up by reflection since the product is compiled for Java 8.
+ * <p>
+ * Virtual threads are cheap enough to run each blocking task on a thread of
+ * its own, so pools that use them have no thread limit. They are only used
+ * if the system property <code>gemfire.useVirtualThreads</code> is true.
+ *
+ * @since Geode 1.0
+ */
+public class VirtualThreads {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * Creates unstarted virtual threads, or null if they are not available or
+   * not enabled.
+   */
+  private static final ThreadFactory factory = createFactory();
+
+  private VirtualThreads() {
+  }
+
+  private static ThreadFactory createFactory() {
+    if (!Boolean.getBoolean("gemfire.useVirtualThreads")) {
+      return null;
+    }
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      logger.warn("Virtual threads are not available in this JVM so platform threads will be used: {}", e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if virtual threads are enabled and supported by this JVM.
+   */
+  public static boolean isEnabled() {
+    return factory != null;
+  }
+
+  /**
+   * Returns a new unstarted virtual thread that runs the given task.
+   *
+   * @throws IllegalStateException if virtual threads are not enabled
+   */
+  public static Thread newThread(Runnable task, String name) {
+    if (factory == null) {
+      throw new IllegalStateException("Virtual threads are not enabled");
+    }
+    Thread result = factory.newThread(task);
+    result.setName(name);
+    return result;
+  }
+}
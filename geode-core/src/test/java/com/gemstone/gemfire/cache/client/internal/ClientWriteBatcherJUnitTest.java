@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InOrder;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ClientWriteBatcherJUnitTest {
+
+  private Region<String, String> region;
+  private ClientWriteBatcher<String, String> batcher;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setUp() {
+    this.region = mock(Region.class);
+    when(this.region.getName()).thenReturn("region");
+    when(this.region.getFullPath()).thenReturn("/region");
+    this.batcher = new ClientWriteBatcher<String, String>(this.region, null, 2, TimeUnit.MINUTES.toMillis(1));
+  }
+
+  @After
+  public void tearDown() {
+    this.batcher.close();
+  }
+
+  @Test
+  public void fullBatchIsSentAsPutAll() throws Exception {
+    CompletableFuture<Void> first = this.batcher.put("a", "1");
+    CompletableFuture<Void> second = this.batcher.put("b", "2");
+    second.get(10, TimeUnit.SECONDS);
+    assertThat(first.isDone()).isTrue();
+
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("a", "1");
+    expected.put("b", "2");
+    verify(this.region).putAll(expected);
+  }
+
+  @Test
+  public void lingeringBatchIsSent() throws Exception {
+    ClientWriteBatcher<String, String> lingering = new ClientWriteBatcher<String, String>(this.region, null, 100, 10);
+    try {
+      lingering.put("a", "1").get(10, TimeUnit.SECONDS);
+      verify(this.region).putAll(Collections.singletonMap("a", "1"));
+    } finally {
+      lingering.close();
+    }
+  }
+
+  @Test
+  public void writesOfAnotherKindSendTheBatchFirst() throws Exception {
+    this.batcher.put("a", "1");
+    this.batcher.destroy("a");
+    this.batcher.put("a", "2");
+    this.batcher.flush();
+
+    InOrder inOrder = inOrder(this.region);
+    inOrder.verify(this.region).putAll(Collections.singletonMap("a", "1"));
+    inOrder.verify(this.region).removeAll(Collections.singleton("a"));
+    inOrder.verify(this.region).putAll(Collections.singletonMap("a", "2"));
+  }
+
+  @Test
+  public void failedBatchFailsAllItsWrites() throws Exception {
+    ServerOperationException failure = new ServerOperationException("boom");
+    doThrow(failure).when(this.region).putAll(anyMap());
+    CompletableFuture<Void> first = this.batcher.put("a", "1");
+    CompletableFuture<Void> second = this.batcher.put("b", "2");
+    for (CompletableFuture<Void> result : Arrays.asList(first, second)) {
+      try {
+        result.get(10, TimeUnit.SECONDS);
+        fail("expected ExecutionException");
+      } catch (ExecutionException expected) {
+        assertThat(expected.getCause()).isSameAs(failure);
+      }
+    }
+  }
+
+  @Test
+  public void writeRoutedToAnotherServerSendsTheEarlierBatchFirst() throws Exception {
+    RoutedBatcher routed = new RoutedBatcher(this.region);
+    try {
+      routed.put("a", "1");
+      routed.server = new ServerLocation("server1", 40404);
+      routed.put("a", "2");
+      routed.put("b", "3");
+      routed.server = new ServerLocation("server2", 40404);
+      routed.destroy("a");
+      routed.flush();
+
+      InOrder inOrder = inOrder(this.region);
+      inOrder.verify(this.region).putAll(Collections.singletonMap("a", "1"));
+      Map<String, String> expected = new HashMap<String, String>();
+      expected.put("a", "2");
+      expected.put("b", "3");
+      inOrder.verify(this.region).putAll(expected);
+      inOrder.verify(this.region).removeAll(Collections.singleton("a"));
+    } finally {
+      routed.close();
+    }
+  }
+
+  @Test
+  public void flushFromWriteCallbackDoesNotDeadlock() throws Exception {
+    this.batcher.put("a", "1");
+    CompletableFuture<Void> flushed = this.batcher.put("b", "2").thenRun(new Runnable() {
+      public void run() {
+        batcher.put("c", "3");
+        batcher.flush();
+      }
+    });
+    flushed.get(10, TimeUnit.SECONDS);
+    verify(this.region, timeout(10000)).putAll(Collections.singletonMap("c", "3"));
+  }
+
+  @Test
+  public void closeFromWriteCallbackDoesNotDeadlock() throws Exception {
+    this.batcher.put("a", "1");
+    CompletableFuture<Void> closed = this.batcher.put("b", "2").thenRun(new Runnable() {
+      public void run() {
+        batcher.put("c", "3");
+        batcher.close();
+      }
+    });
+    closed.get(10, TimeUnit.SECONDS);
+    verify(this.region, timeout(10000)).putAll(Collections.singletonMap("c", "3"));
+  }
+
+  @Test
+  public void closeSendsPendingWrites() {
+    CompletableFuture<Void> result = this.batcher.put("a", "1");
+    this.batcher.close();
+    assertThat(result.isDone()).isTrue();
+    verify(this.region, timeout(10000)).putAll(Collections.singletonMap("a", "1"));
+    try {
+      this.batcher.put("b", "2");
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  /**
+   * Routes writes to whichever server the test sets, like a batcher whose
+   * bucket locations are fetched or change while it is in use.
+   */
+  private static class RoutedBatcher extends ClientWriteBatcher<String, String> {
+    volatile ServerLocation server;
+
+    RoutedBatcher(Region<String, String> region) {
+      super(region, null, 100, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Override
+    ServerLocation getServer(String key, String value, boolean destroys) {
+      return this.server;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionDestroyedException;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ConnectionPipelineJUnitTest {
+
+  private ConnectionPipeline pipeline;
+  private final List<String> reads = Collections.synchronizedList(new ArrayList<String>());
+
+  @Before
+  public void setUp() throws Exception {
+    ConnectionImpl cnx = mock(ConnectionImpl.class);
+    when(cnx.getCommBuffer()).thenReturn(ByteBuffer.allocate(1024));
+    when(cnx.getSocket()).thenReturn(mock(Socket.class));
+    this.pipeline = new ConnectionPipeline(cnx);
+  }
+
+  @Test
+  public void responsesAreReadInSendOrder() throws Exception {
+    AbstractOp first = createOp("first");
+    final AbstractOp second = createOp("second");
+    long firstTicket = this.pipeline.send(first);
+    final long secondTicket = this.pipeline.send(second);
+
+    final AtomicReference<Object> secondResult = new AtomicReference<Object>();
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          secondResult.set(pipeline.readResponse(second, secondTicket));
+        } catch (Exception e) {
+          secondResult.set(e);
+        }
+      }
+    });
+    thread.start();
+    // the second op must wait for the first response to be read
+    thread.join(500);
+    assertThat(thread.isAlive()).isTrue();
+    assertThat(this.reads).isEmpty();
+
+    assertThat(this.pipeline.readResponse(first, firstTicket)).isEqualTo("first");
+    thread.join(TimeUnit.SECONDS.toMillis(10));
+    assertThat(thread.isAlive()).isFalse();
+    assertThat(secondResult.get()).isEqualTo("second");
+    assertThat(this.reads).containsExactly("first", "second");
+  }
+
+  @Test
+  public void failedReadFailsWaitingOps() throws Exception {
+    AbstractOp first = createOp("first");
+    AbstractOp second = createOp("second");
+    doThrow(new IOException("boom")).when(first).attemptReadResponse(any(Connection.class));
+    long firstTicket = this.pipeline.send(first);
+    long secondTicket = this.pipeline.send(second);
+
+    try {
+      this.pipeline.readResponse(first, firstTicket);
+      fail("expected IOException");
+    } catch (IOException expected) {
+    }
+    try {
+      this.pipeline.readResponse(second, secondTicket);
+      fail("expected ConnectionDestroyedException");
+    } catch (ConnectionDestroyedException expected) {
+    }
+    try {
+      this.pipeline.send(createOp("third"));
+      fail("expected ConnectionDestroyedException");
+    } catch (ConnectionDestroyedException expected) {
+    }
+    assertThat(this.reads).isEmpty();
+  }
+
+  @Test
+  public void asyncResponsesAreReadByOneTask() throws Exception {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    CompletableFuture<Object> first = this.pipeline.sendAsync(createOp("first"), executor);
+    CompletableFuture<Object> second = this.pipeline.sendAsync(createOp("second"), executor);
+    assertThat(tasks).hasSize(1);
+    assertThat(first.isDone()).isFalse();
+
+    tasks.get(0).run();
+    assertThat(first.get()).isEqualTo("first");
+    assertThat(second.get()).isEqualTo("second");
+    assertThat(this.reads).containsExactly("first", "second");
+
+    // the next async op starts a new reader task
+    CompletableFuture<Object> third = this.pipeline.sendAsync(createOp("third"), executor);
+    assertThat(tasks).hasSize(2);
+    tasks.get(1).run();
+    assertThat(third.get()).isEqualTo("third");
+  }
+
+  @Test
+  public void failedAsyncReadFailsLaterAsyncOps() throws Exception {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    AbstractOp first = createOp("first");
+    doThrow(new IOException("boom")).when(first).attemptReadResponse(any(Connection.class));
+    CompletableFuture<Object> firstResult = this.pipeline.sendAsync(first, executor);
+    CompletableFuture<Object> secondResult = this.pipeline.sendAsync(createOp("second"), executor);
+    tasks.get(0).run();
+    try {
+      firstResult.get();
+      fail("expected ExecutionException");
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(IOException.class);
+    }
+    try {
+      secondResult.get();
+      fail("expected ExecutionException");
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(ConnectionDestroyedException.class);
+    }
+    assertThat(this.reads).isEmpty();
+  }
+
+  @Test
+  public void serverErrorFailsOnlyItsOp() throws Exception {
+    AbstractOp first = createFailingOp(new ServerOperationException("put failed"));
+    AbstractOp second = createOp("second");
+    long firstTicket = this.pipeline.send(first);
+    long secondTicket = this.pipeline.send(second);
+
+    try {
+      this.pipeline.readResponse(first, firstTicket);
+      fail("expected ServerOperationException");
+    } catch (ServerOperationException expected) {
+    }
+    assertThat(this.pipeline.readResponse(second, secondTicket)).isEqualTo("second");
+    AbstractOp third = createOp("third");
+    assertThat(this.pipeline.readResponse(third, this.pipeline.send(third))).isEqualTo("third");
+    assertThat(this.reads).containsExactly("second", "third");
+  }
+
+  @Test
+  public void asyncServerErrorFailsOnlyItsOp() throws Exception {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    CompletableFuture<Object> firstResult = this.pipeline.sendAsync(
+        createFailingOp(new ServerOperationException("put failed")), executor);
+    CompletableFuture<Object> secondResult = this.pipeline.sendAsync(createOp("second"), executor);
+    tasks.get(0).run();
+    try {
+      firstResult.get();
+      fail("expected ExecutionException");
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(ServerOperationException.class);
+    }
+    assertThat(secondResult.get()).isEqualTo("second");
+  }
+
+  /**
+   * Creates an op that reads its whole response and then fails processing it
+   */
+  private AbstractOp createFailingOp(final Exception failure) throws Exception {
+    AbstractOp op = mock(AbstractOp.class);
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) throws Exception {
+        ((AbstractOp)invocation.getMock()).responseRead = true;
+        throw failure;
+      }
+    }).when(op).attemptReadResponse(any(Connection.class));
+    return op;
+  }
+
+  private AbstractOp createOp(final String response) throws Exception {
+    AbstractOp op = mock(AbstractOp.class);
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        reads.add(response);
+        return response;
+      }
+    }).when(op).attemptReadResponse(any(Connection.class));
+    return op;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManagerImpl;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class EndpointJUnitTest {
+
+  @Test
+  public void latencyAwareSelectionIsOffByDefault() {
+    assertFalse(ConnectionManagerImpl.isLatencyAware());
+  }
+
+  @Test
+  public void requestsSincePreviousReadCountAsOneSample() {
+    Endpoint endpoint = new Endpoint(null, null, new ServerLocation("localhost", 40404), null, null);
+    assertEquals(0, endpoint.getLatencyNanos(), 0);
+
+    endpoint.recordLatency(1000000);
+    endpoint.recordLatency(3000000);
+    double first = endpoint.getLatencyNanos();
+    // a fifth of the 2ms mean, decayed by at most a few ms of test time
+    assertEquals(400000, first, 1000);
+
+    double second = endpoint.getLatencyNanos();
+    assertTrue(second <= first);
+    assertTrue(second > 0);
+  }
+}
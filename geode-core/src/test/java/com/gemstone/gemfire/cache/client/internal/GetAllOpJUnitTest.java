@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.client.ServerConnectivityException;
+import com.gemstone.gemfire.internal.cache.tier.sockets.VersionedObjectList;
+import com.gemstone.gemfire.internal.cache.versions.VMVersionTag;
+import com.gemstone.gemfire.internal.cache.versions.VersionTag;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class GetAllOpJUnitTest {
+
+  private Connection connection;
+  private ConnectionStats stats;
+
+  @Before
+  public void setUp() {
+    this.stats = mock(ConnectionStats.class);
+    this.connection = mock(Connection.class);
+    when(this.connection.getStats()).thenReturn(this.stats);
+  }
+
+  @Test
+  public void createOpChunksOnlyMoreKeysThanOneMessageHolds() {
+    assertThat(GetAllOp.createOp("/region", createKeys(GetAllOp.MAX_KEYS_PER_MESSAGE), null))
+        .isNotInstanceOf(GetAllOp.ChunkedGetAllOpImpl.class);
+    assertThat(GetAllOp.createOp("/region", createKeys(GetAllOp.MAX_KEYS_PER_MESSAGE + 1), null))
+        .isInstanceOf(GetAllOp.ChunkedGetAllOpImpl.class);
+  }
+
+  @Test
+  public void keysAreSentInMessagesOfAtMostKeysPerMessage() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 4);
+    op.attempt(this.connection);
+
+    assertThat(op.sentKeys).hasSize(3);
+    assertThat(op.sentKeys.get(0)).containsExactly(0, 1, 2, 3);
+    assertThat(op.sentKeys.get(1)).containsExactly(4, 5, 6, 7);
+    assertThat(op.sentKeys.get(2)).containsExactly(8, 9);
+  }
+
+  @Test
+  public void resultsAndVersionTagsAreMergedInKeyOrder() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 3);
+    VersionedObjectList result = (VersionedObjectList)op.attempt(this.connection);
+
+    assertThat(result.getKeys()).isEqualTo(createKeys(10));
+    List<Object> expectedValues = new ArrayList<Object>();
+    for (int i = 0; i < 10; i++) {
+      expectedValues.add("value" + i);
+    }
+    assertThat(result.getObjects()).isEqualTo(expectedValues);
+    List<VersionTag> tags = result.getVersionTags();
+    assertThat(tags).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(tags.get(i).getEntryVersion()).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void failedMessageFailsAttemptAndRetrySendsAllKeysAgain() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 4);
+    op.failingMessage = 1;
+    try {
+      op.attempt(this.connection);
+      fail("expected ServerConnectivityException");
+    } catch (ServerConnectivityException expected) {
+    }
+    assertThat(op.sentKeys).hasSize(2);
+
+    // the executor retries the whole op, on another connection
+    op.sentKeys.clear();
+    op.failingMessage = -1;
+    VersionedObjectList result = (VersionedObjectList)op.attempt(this.connection);
+
+    assertThat(op.sentKeys).hasSize(3);
+    assertThat(op.sentKeys.get(0)).containsExactly(0, 1, 2, 3);
+    assertThat(result.getKeys()).isEqualTo(createKeys(10));
+    assertThat(result.getVersionTags()).hasSize(10);
+  }
+
+  @Test
+  public void chunkedGetAllIsCountedOnceInStats() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 4);
+    op.attempt(this.connection);
+
+    assertThat(op.sentKeys).hasSize(3);
+    verify(this.stats, times(1)).startGetAll();
+    verify(this.stats, times(1)).endGetAllSend(anyLong(), eq(false));
+    verify(this.stats, times(1)).endGetAll(anyLong(), eq(false), eq(false));
+    assertThat(op.hasFailed()).isFalse();
+    assertThat(op.hasTimedOut()).isFalse();
+  }
+
+  @Test
+  public void failedMessageFailsTheChunkedGetAll() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 4);
+    op.failingMessage = 1;
+    try {
+      op.attempt(this.connection);
+      fail("expected ServerConnectivityException");
+    } catch (ServerConnectivityException expected) {
+    }
+
+    assertThat(op.hasFailed()).isTrue();
+    assertThat(op.hasTimedOut()).isFalse();
+    verify(this.stats, times(1)).startGetAll();
+    verify(this.stats, times(1)).endGetAll(anyLong(), eq(false), eq(true));
+  }
+
+  @Test
+  public void timedOutMessageTimesOutTheChunkedGetAll() throws Exception {
+    TestChunkedGetAllOp op = new TestChunkedGetAllOp(createKeys(10), 4);
+    op.timingOutMessage = 2;
+    try {
+      op.attempt(this.connection);
+      fail("expected SocketTimeoutException");
+    } catch (SocketTimeoutException expected) {
+    }
+
+    assertThat(op.hasFailed()).isFalse();
+    assertThat(op.hasTimedOut()).isTrue();
+    verify(this.stats, times(1)).startGetAll();
+    verify(this.stats, times(1)).endGetAll(anyLong(), eq(true), eq(false));
+  }
+
+  private static List<Object> createKeys(int count) {
+    List<Object> keys = new ArrayList<Object>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(i);
+    }
+    return keys;
+  }
+
+  /**
+   * Answers each message with a value and a version tag per key, whose entry
+   * version is the key, instead of sending it to a server.
+   */
+  private static class TestChunkedGetAllOp extends GetAllOp.ChunkedGetAllOpImpl {
+    final List<List<Object>> sentKeys = Collections.synchronizedList(new ArrayList<List<Object>>());
+    volatile int failingMessage = -1;
+    volatile int timingOutMessage = -1;
+
+    TestChunkedGetAllOp(List keys, int keysPerMessage) {
+      super("/region", keys, null, keysPerMessage);
+    }
+
+    @Override
+    GetAllOp.GetAllOpImpl createChunkOp(List keys) {
+      return new GetAllOp.GetAllChunkOpImpl("/region", keys, null) {
+        @Override
+        public Object attempt(Connection cnx) throws Exception {
+          List keys = getKeyList();
+          int message = sentKeys.size();
+          sentKeys.add(new ArrayList<Object>(keys));
+          this.failed = true;
+          this.timedOut = false;
+          if (message == failingMessage) {
+            throw new ServerConnectivityException("expected");
+          }
+          if (message == timingOutMessage) {
+            this.failed = false;
+            this.timedOut = true;
+            throw new SocketTimeoutException("expected");
+          }
+          VersionedObjectList result = new VersionedObjectList(keys.size(), true, true);
+          for (Object key : keys) {
+            VersionTag tag = new VMVersionTag();
+            tag.setEntryVersion((Integer)key);
+            result.addObject(key, "value" + key, tag);
+          }
+          this.failed = false;
+          return result;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.InterestResultPolicy;
+import com.gemstone.gemfire.cache.Operation;
+import com.gemstone.gemfire.cache.client.SubscriptionNotEnabledException;
+import com.gemstone.gemfire.internal.cache.EntryEventImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class NearCacheKeyTrackerJUnitTest {
+
+  private LocalRegion region;
+  private ScheduledExecutorService executor;
+  private NearCacheKeyTracker<Object, Object> tracker;
+
+  @Before
+  public void setUp() {
+    this.region = mock(LocalRegion.class);
+    this.executor = mock(ScheduledExecutorService.class);
+    this.tracker = new NearCacheKeyTracker<Object, Object>(this.executor, this.region);
+  }
+
+  @Test
+  public void registersKeysLoadedFromServerOnce() {
+    this.tracker.afterCreate(createEvent(Operation.LOCAL_LOAD_CREATE, "a", true));
+    this.tracker.afterCreate(createEvent(Operation.LOCAL_LOAD_CREATE, "b", true));
+    this.tracker.afterUpdate(createEvent(Operation.LOCAL_LOAD_UPDATE, "a", true));
+    verify(this.executor, times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    this.tracker.flush();
+    verify(this.region).registerInterest(eq(Arrays.asList("a", "b")), eq(InterestResultPolicy.KEYS_VALUES), eq(false), eq(false));
+
+    this.tracker.afterUpdate(createEvent(Operation.LOCAL_LOAD_UPDATE, "a", true));
+    this.tracker.flush();
+    verify(this.region, times(1)).registerInterest(any(), any(InterestResultPolicy.class), anyBoolean(), anyBoolean());
+  }
+
+  @Test
+  public void ignoresEventsNotLoadedFromServer() {
+    this.tracker.afterCreate(createEvent(Operation.CREATE, "a", true));
+    this.tracker.afterCreate(createEvent(Operation.LOCAL_LOAD_CREATE, "b", false));
+    this.tracker.flush();
+    verify(this.executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void unregistersEvictedKeys() {
+    this.tracker.afterCreate(createEvent(Operation.LOCAL_LOAD_CREATE, "a", true));
+    this.tracker.flush();
+    this.tracker.afterDestroy(createEvent(Operation.EVICT_DESTROY, "a", false));
+    this.tracker.afterDestroy(createEvent(Operation.DESTROY, "b", false));
+    this.tracker.flush();
+    verify(this.region).unregisterInterest(Collections.singletonList("a"));
+  }
+
+  @Test
+  public void invalidatesKeysThatCouldNotBeRegistered() {
+    doThrow(new SubscriptionNotEnabledException()).when(this.region)
+        .registerInterest(any(), any(InterestResultPolicy.class), anyBoolean(), anyBoolean());
+    this.tracker.afterCreate(createEvent(Operation.LOCAL_LOAD_CREATE, "a", true));
+    this.tracker.flush();
+    verify(this.region).localInvalidate("a", null);
+
+    // the next read registers the key again
+    this.tracker.afterUpdate(createEvent(Operation.LOCAL_LOAD_UPDATE, "a", true));
+    this.tracker.flush();
+    verify(this.region, times(2)).registerInterest(eq(Collections.singletonList("a")), eq(InterestResultPolicy.KEYS_VALUES), eq(false), eq(false));
+  }
+
+  @Test
+  public void interestIsChangedOnTheTrackersOwnThread() throws Exception {
+    InternalPool pool = mock(InternalPool.class);
+    when(pool.getName()).thenReturn("pool");
+    final AtomicReference<String> threadName = new AtomicReference<String>();
+    doAnswer(invocation -> {
+      threadName.set(Thread.currentThread().getName());
+      return null;
+    }).when(this.region).registerInterest(any(), any(InterestResultPolicy.class), anyBoolean(), anyBoolean());
+    NearCacheKeyTracker<Object, Object> tracker = new NearCacheKeyTracker<Object, Object>(pool);
+    try {
+      EntryEventImpl event = createEvent(Operation.LOCAL_LOAD_CREATE, "a", true);
+      when(event.getRegion()).thenReturn(this.region);
+      tracker.afterCreate(event);
+
+      verify(this.region, timeout(30000)).registerInterest(eq(Collections.singletonList("a")), eq(InterestResultPolicy.KEYS_VALUES), eq(false), eq(false));
+      assertEquals("Near Cache Interest Processor for pool pool", threadName.get());
+      verify(pool, never()).getBackgroundProcessor();
+    } finally {
+      tracker.close();
+    }
+  }
+
+  @Test
+  public void closeStopsTheInterestThread() {
+    this.tracker.close();
+    verify(this.executor).shutdown();
+  }
+
+  private EntryEventImpl createEvent(Operation op, Object key, boolean fromServer) {
+    EntryEventImpl event = mock(EntryEventImpl.class);
+    when(event.getOperation()).thenReturn(op);
+    when(event.getKey()).thenReturn(key);
+    when(event.isFromServer()).thenReturn(fromServer);
+    return event;
+  }
+}
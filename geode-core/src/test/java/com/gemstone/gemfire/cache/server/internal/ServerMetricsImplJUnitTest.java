@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.server.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ServerMetricsImplJUnitTest {
+
+  @Test
+  public void requestTimesAreNotKeptWhenNotRecording() {
+    ServerMetricsImpl metrics = new ServerMetricsImpl(800, false);
+    metrics.requestStarted();
+    assertEquals(1, metrics.getRequestsInProgress());
+    metrics.requestFinished(1000000);
+    assertEquals(0, metrics.getRequestsInProgress());
+    assertEquals(0, metrics.getAverageRequestNanos(), 0);
+  }
+
+  @Test
+  public void requestsSincePreviousReadCountAsOneSample() {
+    ServerMetricsImpl metrics = new ServerMetricsImpl(800, true);
+    metrics.requestStarted();
+    metrics.requestFinished(1000000);
+    metrics.requestStarted();
+    metrics.requestFinished(3000000);
+    double first = metrics.getAverageRequestNanos();
+    // half of the 2ms mean, decayed by at most a few ms of test time
+    assertEquals(1000000, first, 1000);
+
+    double second = metrics.getAverageRequestNanos();
+    assertTrue(second <= first);
+    assertTrue(second > 0);
+  }
+
+  @Test
+  public void latencyProbeLoadGrowsWithRequestTime() {
+    LatencyLoadProbe probe = new LatencyLoadProbe();
+    ServerMetricsImpl metrics = new ServerMetricsImpl(800, true);
+    metrics.incConnectionCount();
+    float idleLoad = probe.getLoad(metrics).getConnectionLoad();
+    assertEquals(1 / 800f, idleLoad, .0001f);
+
+    metrics.requestStarted();
+    metrics.requestFinished(LatencyLoadProbe.REFERENCE_REQUEST_MILLIS * 4000000);
+    assertTrue(probe.getLoad(metrics).getConnectionLoad() > idleLoad * 2);
+  }
+}
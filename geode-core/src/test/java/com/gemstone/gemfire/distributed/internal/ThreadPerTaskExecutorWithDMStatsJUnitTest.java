@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.distributed.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ThreadPerTaskExecutorWithDMStatsJUnitTest {
+
+  @Test
+  public void tasksBeyondMaxThreadsAreRejected() throws Exception {
+    PoolStatHelper stats = mock(PoolStatHelper.class);
+    ThreadPerTaskExecutorWithDMStats executor = new ThreadPerTaskExecutorWithDMStats(
+        Executors.defaultThreadFactory(), 1, stats);
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    verify(stats, timeout(10000)).startJob();
+    assertThat(executor.getActiveCount()).isEqualTo(1);
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+        }
+      });
+      fail("expected RejectedExecutionException");
+    } catch (RejectedExecutionException expected) {
+    }
+
+    release.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    verify(stats).endJob();
+    assertThat(executor.getActiveCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shutdownNowInterruptsRunningTasks() throws Exception {
+    ThreadPerTaskExecutorWithDMStats executor = new ThreadPerTaskExecutorWithDMStats(
+        Executors.defaultThreadFactory(), Integer.MAX_VALUE, null);
+    final CountDownLatch started = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+        } catch (InterruptedException expected) {
+        }
+      }
+    });
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.shutdownNow()).isEmpty();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.isTerminated()).isTrue();
+  }
+}
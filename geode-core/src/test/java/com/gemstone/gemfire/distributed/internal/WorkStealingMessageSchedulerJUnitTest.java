@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.distributed.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class WorkStealingMessageSchedulerJUnitTest {
+
+  private WorkStealingMessageScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    this.scheduler = new WorkStealingMessageScheduler(null, 4, null);
+  }
+
+  @After
+  public void tearDown() {
+    this.scheduler.shutdownNow();
+  }
+
+  @Test
+  public void serialLaneRunsTasksInOrder() throws Exception {
+    WorkStealingMessageScheduler.Lane lane = this.scheduler.createLane("serial", false, 1, 0, null);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    for (int i = 0; i < 1000; i++) {
+      final int value = i;
+      lane.execute(new Runnable() {
+        public void run() {
+          order.add(value);
+        }
+      });
+    }
+    lane.shutdown();
+    assertThat(lane.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(order).hasSize(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(order.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void highPriorityLaneIsNotBlockedByNormalLane() throws Exception {
+    WorkStealingMessageScheduler.Lane normal = this.scheduler.createLane("normal", false, 0, 0, null);
+    WorkStealingMessageScheduler.Lane highPriority = this.scheduler.createLane("highPriority", true, 0, 0, null);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 4; i++) {
+      normal.execute(new Runnable() {
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    final CountDownLatch ran = new CountDownLatch(1);
+    highPriority.execute(new Runnable() {
+      public void run() {
+        ran.countDown();
+      }
+    });
+    assertThat(ran.await(10, TimeUnit.SECONDS)).isTrue();
+    release.countDown();
+  }
+
+  @Test
+  public void blockedLaneDoesNotStarveOtherLane() throws Exception {
+    WorkStealingMessageScheduler.Lane blocked = this.scheduler.createLane("blocked", false, 2, 0, null);
+    WorkStealingMessageScheduler.Lane other = this.scheduler.createLane("other", false, 2, 0, null);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 8; i++) {
+      blocked.execute(new Runnable() {
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    final CountDownLatch ran = new CountDownLatch(1);
+    other.execute(new Runnable() {
+      public void run() {
+        ran.countDown();
+      }
+    });
+    assertThat(ran.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(blocked.getActiveCount()).isLessThanOrEqualTo(2);
+    release.countDown();
+    blocked.shutdown();
+    assertThat(blocked.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void boundedLaneRunsAtMostItsMaximumThreads() throws Exception {
+    WorkStealingMessageScheduler.Lane lane = this.scheduler.createLane("bounded", false, 2, 0, null);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    for (int i = 0; i < 100; i++) {
+      lane.execute(new Runnable() {
+        public void run() {
+          int now = running.incrementAndGet();
+          int max;
+          while ((max = maxRunning.get()) < now && !maxRunning.compareAndSet(max, now)) {
+          }
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+        }
+      });
+    }
+    lane.shutdown();
+    assertThat(lane.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void failingTaskDoesNotStopLane() throws Exception {
+    WorkStealingMessageScheduler.Lane lane = this.scheduler.createLane("failing", false, 1, 0, null);
+    lane.execute(new Runnable() {
+      public void run() {
+        throw new IllegalStateException("expected");
+      }
+    });
+    final CountDownLatch ran = new CountDownLatch(1);
+    lane.execute(new Runnable() {
+      public void run() {
+        ran.countDown();
+      }
+    });
+    assertThat(ran.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void shutdownLaneRejectsTasks() throws Exception {
+    WorkStealingMessageScheduler.Lane lane = this.scheduler.createLane("shutdown", false, 0, 0, null);
+    lane.shutdown();
+    assertThat(lane.isTerminated()).isTrue();
+    try {
+      lane.execute(new Runnable() {
+        public void run() {
+        }
+      });
+      fail("expected RejectedExecutionException");
+    } catch (RejectedExecutionException expected) {
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class CompactionRateLimiterJUnitTest {
+
+  @Test
+  public void unlimitedNeverPauses() {
+    CompactionRateLimiter limiter = new CompactionRateLimiter(0, 1);
+    assertThat(limiter.isLimited()).isFalse();
+    assertThat(limiter.copied(Integer.MAX_VALUE)).isEqualTo(0);
+  }
+
+  @Test
+  public void doesNotPauseBeforeChunkIsComplete() {
+    CompactionRateLimiter limiter = new CompactionRateLimiter(1, 1000);
+    assertThat(limiter.copied(999)).isEqualTo(0);
+  }
+
+  @Test
+  public void pausesToKeepCompletedChunkUnderRate() {
+    // 1000 bytes at 10000 bytes per second must take at least 100 milliseconds
+    CompactionRateLimiter limiter = new CompactionRateLimiter(10000, 1000);
+    long pause = limiter.copied(1000);
+    assertThat(pause).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(90));
+    assertThat(pause).isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
+  @Test
+  public void nextChunkStartsAfterPause() {
+    CompactionRateLimiter limiter = new CompactionRateLimiter(10000, 1000);
+    long first = limiter.copied(1000);
+    // the second chunk is copied right away, so it needs its full pause
+    // on top of whatever is left of the first one
+    long second = limiter.copied(1000);
+    assertThat(second).isGreaterThan(first);
+  }
+}
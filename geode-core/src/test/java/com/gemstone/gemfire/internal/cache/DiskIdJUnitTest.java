@@ -219,6 +219,67 @@ public class DiskIdJUnitTest {
         DiskId.isInstanceofOverflowOnlyWithLongOffset(diskId));
   }
 
+  /**
+   * Tests that a packed DiskId keeps the oplog id, offset and user bits it
+   * stores in one long independent of each other
+   */
+  @Test
+  public void testPackedDiskIdFields() {
+    DiskId did = new DiskId.PackedPersistence();
+    byte userBits = EntryBits.setSerialized((byte)0, true);
+    userBits = EntryBits.setWithVersions(userBits, true);
+    did.setUserBits(userBits);
+    did.setOffsetInOplog(Integer.MAX_VALUE);
+    did.setOplogId(-DiskId.MAX_PACKED_OPLOG_ID);
+    assertEquals(userBits, did.getUserBits());
+    assertEquals(Integer.MAX_VALUE, did.getOffsetInOplog());
+    assertEquals(-DiskId.MAX_PACKED_OPLOG_ID, did.getOplogId());
+
+    assertEquals(-DiskId.MAX_PACKED_OPLOG_ID, did.setOplogId(7));
+    did.setOffsetInOplog(1024);
+    did.setUserBits((byte)0);
+    assertEquals(7, did.getOplogId());
+    assertEquals(1024, did.getOffsetInOplog());
+    assertEquals(0, did.getUserBits());
+  }
+
+  /**
+   * Tests that a packed DiskId reads back the -1 offset used to mark an
+   * entry with no value on disk
+   */
+  @Test
+  public void testPackedDiskIdNegativeOffset() {
+    DiskId did = new DiskId.PackedOverflowOnly();
+    did.setOplogId(3);
+    did.setOffsetInOplog(-1);
+    assertEquals(-1, did.getOffsetInOplog());
+    assertEquals(3, did.getOplogId());
+
+    did = new DiskId.PackedPersistence();
+    did.setOffsetInOplog(-1);
+    did.setOplogId(-5);
+    assertEquals(-1, did.getOffsetInOplog());
+    assertEquals(-5, did.getOplogId());
+  }
+
+  /**
+   * Tests that packed DiskIds are only created when asked for and only while
+   * oplog ids leave room for the oplogs packed DiskIds move to later
+   */
+  @Test
+  public void testPackedDiskIdsStopAtOplogIdLimit() {
+    assertTrue(DiskId.canUsePackedDiskIds(1024, 0));
+    assertTrue(DiskId.canUsePackedDiskIds(1024, DiskId.PACKED_OPLOG_ID_LIMIT));
+    assertFalse(DiskId.canUsePackedDiskIds(1024, DiskId.PACKED_OPLOG_ID_LIMIT + 1));
+    assertFalse(DiskId.canUsePackedDiskIds(4096, 0));
+    assertTrue(DiskId.PACKED_OPLOG_ID_LIMIT < DiskId.MAX_PACKED_OPLOG_ID);
+
+    assertTrue(DiskId.createDiskId(1024, true, true, true) instanceof DiskId.PackedIntOffsetDiskId);
+    assertFalse(DiskId.createDiskId(1024, true, true, false) instanceof DiskId.PackedIntOffsetDiskId);
+    assertFalse(DiskId.createDiskId(1024, true, true) instanceof DiskId.PackedIntOffsetDiskId);
+    assertFalse(DiskId.createDiskId(4096, false, true, true) instanceof DiskId.PackedIntOffsetDiskId);
+  }
+
   private DiskId getDiskId() {
     return DiskId.createDiskId(1024, true /* is persistence type*/, true);
   }
@@ -91,6 +91,8 @@ public class DiskStoreFactoryJUnitTest
     assertEquals(DiskStoreFactory.DEFAULT_TIME_INTERVAL, ds.getTimeInterval());
     assertEquals(DiskStoreFactory.DEFAULT_WRITE_BUFFER_SIZE, ds.getWriteBufferSize());
     assertEquals(DiskStoreFactory.DEFAULT_QUEUE_SIZE, ds.getQueueSize());
+    assertEquals(DiskStoreFactory.DEFAULT_MEMORY_MAPPED_READS, ds.getMemoryMappedReads());
+    assertEquals(DiskStoreFactory.DEFAULT_SYNC_WRITES, ds.getSyncWrites());
     if (!Arrays.equals(DiskStoreFactory.DEFAULT_DISK_DIRS, ds.getDiskDirs())) {
       fail("expected=" + Arrays.toString(DiskStoreFactory.DEFAULT_DISK_DIRS)
            + " had=" + Arrays.toString(ds.getDiskDirs()));
@@ -113,6 +115,8 @@ public class DiskStoreFactoryJUnitTest
       .setTimeInterval(DiskStoreFactory.DEFAULT_TIME_INTERVAL+1)
       .setWriteBufferSize(DiskStoreFactory.DEFAULT_WRITE_BUFFER_SIZE+1)
       .setQueueSize(DiskStoreFactory.DEFAULT_QUEUE_SIZE+1)
+      .setMemoryMappedReads(!DiskStoreFactory.DEFAULT_MEMORY_MAPPED_READS)
+      .setSyncWrites(!DiskStoreFactory.DEFAULT_SYNC_WRITES)
       .create(name);
     assertEquals(!DiskStoreFactory.DEFAULT_AUTO_COMPACT, ds.getAutoCompact());
     assertEquals(DiskStoreFactory.DEFAULT_COMPACTION_THRESHOLD/2, ds.getCompactionThreshold());
@@ -121,6 +125,70 @@ public class DiskStoreFactoryJUnitTest
     assertEquals(DiskStoreFactory.DEFAULT_TIME_INTERVAL+1, ds.getTimeInterval());
     assertEquals(DiskStoreFactory.DEFAULT_WRITE_BUFFER_SIZE+1, ds.getWriteBufferSize());
     assertEquals(DiskStoreFactory.DEFAULT_QUEUE_SIZE+1, ds.getQueueSize());
+    assertEquals(!DiskStoreFactory.DEFAULT_MEMORY_MAPPED_READS, ds.getMemoryMappedReads());
+    assertEquals(!DiskStoreFactory.DEFAULT_SYNC_WRITES, ds.getSyncWrites());
+  }
+
+  @Test
+  public void testSyncWrites() {
+    DiskStoreFactory dsf = cache.createDiskStoreFactory();
+    String name = "testSyncWrites";
+    DiskStore ds = dsf
+      .setSyncWrites(true)
+      .create(name);
+    assertEquals(true, ds.getSyncWrites());
+
+    Region<Integer, String> region = cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+      .setDiskStoreName(name)
+      .create("region");
+    for (int i = 0; i < 10; i++) {
+      region.put(i, "value" + i);
+    }
+    region.close();
+    region = cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+      .setDiskStoreName(name)
+      .create("region");
+    for (int i = 0; i < 10; i++) {
+      assertEquals("value" + i, region.get(i));
+    }
+    region.close();
+    ds.destroy();
+  }
+
+  @Test
+  public void testMemoryMappedReads() {
+    DiskStoreFactory dsf = cache.createDiskStoreFactory();
+    String name = "testMemoryMappedReads";
+    DiskStore ds = dsf
+      .setMemoryMappedReads(true)
+      .create(name);
+    assertEquals(true, ds.getMemoryMappedReads());
+
+    Region<Integer, String> region = cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+      .setDiskStoreName(name)
+      .setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(1, EvictionAction.OVERFLOW_TO_DISK))
+      .create("region");
+    for (int i = 0; i < 100; i++) {
+      region.put(i, "value" + i);
+    }
+    // values faulted in from a rolled oplog are read through its mapping
+    ds.forceRoll();
+    for (int i = 0; i < 100; i++) {
+      assertEquals("value" + i, region.get(i));
+    }
+    List<OplogFileMapping> mappings = new ArrayList<OplogFileMapping>();
+    for (Oplog oplog : ((DiskStoreImpl) ds).persistentOplogs.getAllOplogs()) {
+      if (oplog != null && oplog.getCrfMapping() != null) {
+        mappings.add(oplog.getCrfMapping());
+      }
+    }
+    assertFalse(mappings.isEmpty());
+    region.close();
+    ds.destroy();
+    // closing the oplogs unmaps their crfs
+    for (OplogFileMapping mapping : mappings) {
+      assertTrue(mapping.isUnmapped());
+    }
   }
 
   @Test
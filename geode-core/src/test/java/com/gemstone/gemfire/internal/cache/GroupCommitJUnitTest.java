@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class GroupCommitJUnitTest {
+
+  /** sequence number of the last record "buffered" */
+  private final AtomicLong lastSeq = new AtomicLong();
+  /** highest sequence number flushed so far */
+  private final AtomicLong flushedSeq = new AtomicLong();
+  private final AtomicInteger flushes = new AtomicInteger();
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+  private final List<Long> commitStarts = Collections.synchronizedList(new ArrayList<Long>());
+  private final AtomicLong clock = new AtomicLong();
+  private volatile CountDownLatch flushStarted = new CountDownLatch(0);
+  private volatile CountDownLatch releaseFlush = new CountDownLatch(0);
+  private volatile RuntimeException flushFailure;
+  /** writers that returned before their record was flushed */
+  private final List<Long> earlyReturns = Collections.synchronizedList(new ArrayList<Long>());
+
+  private final GroupCommit groupCommit = new GroupCommit() {
+    @Override
+    protected long getLastSeq() {
+      return lastSeq.get();
+    }
+
+    @Override
+    protected void flush() {
+      long seq = lastSeq.get();
+      flushStarted.countDown();
+      try {
+        releaseFlush.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      RuntimeException failure = flushFailure;
+      if (failure != null) {
+        flushFailure = null;
+        throw failure;
+      }
+      flushes.incrementAndGet();
+      flushedSeq.set(seq);
+    }
+
+    @Override
+    protected long startCommit() {
+      return clock.incrementAndGet();
+    }
+
+    @Override
+    protected void committed(long start, int batchSize) {
+      commitStarts.add(start);
+      batchSizes.add(batchSize);
+    }
+  };
+
+  @Test
+  public void recordIsFlushedBeforeWriterReturns() {
+    long seq = this.lastSeq.incrementAndGet();
+    this.groupCommit.await(seq);
+    assertThat(this.flushedSeq.get()).isGreaterThanOrEqualTo(seq);
+    assertThat(this.flushes.get()).isEqualTo(1);
+    assertThat(this.batchSizes).containsExactly(1);
+
+    // already committed, so no further flush
+    this.groupCommit.await(seq);
+    assertThat(this.flushes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void writersArrivingDuringFlushAreBatched() throws Exception {
+    this.flushStarted = new CountDownLatch(1);
+    this.releaseFlush = new CountDownLatch(1);
+    Thread leader = startWriter(this.lastSeq.incrementAndGet());
+    assertThat(this.flushStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    List<Thread> followers = new ArrayList<Thread>();
+    for (int i = 0; i < 5; i++) {
+      followers.add(startWriter(this.lastSeq.incrementAndGet()));
+    }
+    // the followers wait for the leader's flush
+    Thread.sleep(100);
+    for (Thread follower : followers) {
+      assertThat(follower.isAlive()).isTrue();
+    }
+
+    this.releaseFlush.countDown();
+    leader.join(10000);
+    assertThat(leader.isAlive()).isFalse();
+    for (Thread follower : followers) {
+      follower.join(10000);
+      assertThat(follower.isAlive()).isFalse();
+    }
+    assertThat(this.flushes.get()).isEqualTo(2);
+    assertThat(this.batchSizes).containsExactly(1, 5);
+    // each leader reports the start time it took before its own flush
+    assertThat(this.commitStarts).containsExactly(1L, 2L);
+    assertThat(this.flushedSeq.get()).isEqualTo(6);
+    assertThat(this.earlyReturns).isEmpty();
+  }
+
+  @Test
+  public void failedFlushIsRetriedByNextWriter() throws Exception {
+    this.flushFailure = new IllegalStateException("disk full");
+    long seq = this.lastSeq.incrementAndGet();
+    try {
+      this.groupCommit.await(seq);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    assertThat(this.flushes.get()).isEqualTo(0);
+    assertThat(this.batchSizes).isEmpty();
+
+    this.groupCommit.await(seq);
+    assertThat(this.flushedSeq.get()).isEqualTo(seq);
+    assertThat(this.batchSizes).containsExactly(1);
+  }
+
+  private Thread startWriter(final long seq) {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        groupCommit.await(seq);
+        if (flushedSeq.get() < seq) {
+          earlyReturns.add(seq);
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+import com.jayway.awaitility.Awaitility;
+
+/**
+ * Tests that a throttled compactor gives up its locks to other threads and
+ * later finishes the oplog it was compacting.
+ */
+@Category(IntegrationTest.class)
+public class OplogCompactorYieldJUnitTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Cache cache;
+  private long savedBytesPerSecond;
+  private int savedChunkBytes;
+
+  @Before
+  public void setUp() {
+    this.savedBytesPerSecond = CompactionRateLimiter.BYTES_PER_SECOND;
+    this.savedChunkBytes = CompactionRateLimiter.CHUNK_BYTES;
+    Properties props = new Properties();
+    props.setProperty("mcast-port", "0");
+    props.setProperty("locators", "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() {
+    CompactionRateLimiter.BYTES_PER_SECOND = this.savedBytesPerSecond;
+    CompactionRateLimiter.CHUNK_BYTES = this.savedChunkBytes;
+    this.cache.close();
+  }
+
+  @Test
+  public void partlyCompactedOplogIsCompactedAgain() throws Exception {
+    // every value copied forward pauses the compactor for a very long time
+    CompactionRateLimiter.BYTES_PER_SECOND = 1;
+    CompactionRateLimiter.CHUNK_BYTES = 1;
+    final DiskStoreImpl ds = (DiskStoreImpl) this.cache.createDiskStoreFactory()
+        .setDiskDirs(new File[] {this.temporaryFolder.getRoot()})
+        .setAutoCompact(true)
+        .setCompactionThreshold(100)
+        .create("yield");
+    Region<Integer, byte[]> compacted = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.REPLICATE_PERSISTENT)
+        .setDiskStoreName("yield").create("compacted");
+    Region<Integer, byte[]> cleared = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.REPLICATE_PERSISTENT)
+        .setDiskStoreName("yield").create("cleared");
+    for (int i = 0; i < 20; i++) {
+      compacted.put(i, new byte[1024]);
+    }
+    cleared.put(0, new byte[1]);
+    final long oplogId = ds.persistentOplogs.getChild().getOplogId();
+
+    ds.forceRoll();
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> ds.getStats().getCompactedBytes() > 0);
+    long copiedBeforeYield = ds.getStats().getCompactedBytes();
+    CompactionRateLimiter.BYTES_PER_SECOND = 0;
+
+    // clear waits for the compactor lock, so the paused compactor gives it up
+    // with most of the oplog still to copy
+    cleared.clear();
+    assertThat(copiedBeforeYield).isLessThan(20 * 1024);
+
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> ds.persistentOplogs.getChild(oplogId) == null);
+    assertThat(ds.getStats().getCompactedBytes()).isGreaterThanOrEqualTo(20 * 1024);
+    for (int i = 0; i < 20; i++) {
+      assertThat(compacted.get(i)).hasSize(1024);
+    }
+  }
+}
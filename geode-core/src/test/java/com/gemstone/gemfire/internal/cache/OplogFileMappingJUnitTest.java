@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class OplogFileMappingJUnitTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void readsMappedBytes() throws IOException {
+    OplogFileMapping mapping = OplogFileMapping.map(createFile(100), 100);
+    try {
+      byte[] bytes = mapping.read(10, 5);
+      assertThat(bytes).containsExactly(new byte[] {10, 11, 12, 13, 14});
+      assertThat(mapping.read(95, 10)).isNull();
+      assertThat(mapping.read(-1, 10)).isNull();
+    } finally {
+      mapping.unmap();
+    }
+  }
+
+  @Test
+  public void unmappedMappingIsNotRead() throws IOException {
+    OplogFileMapping mapping = OplogFileMapping.map(createFile(100), 100);
+    assertThat(mapping.isUnmapped()).isFalse();
+    mapping.unmap();
+    assertThat(mapping.isUnmapped()).isTrue();
+    assertThat(mapping.read(0, 10)).isNull();
+    // unmapping twice is harmless
+    mapping.unmap();
+  }
+
+  @Test
+  public void unmappedFileCanBeDeleted() throws IOException {
+    File file = createFile(100);
+    OplogFileMapping mapping = OplogFileMapping.map(file, 100);
+    assertThat(mapping.read(0, 100)).hasSize(100);
+    mapping.unmap();
+    assertThat(file.delete()).isTrue();
+  }
+
+  private File createFile(int size) throws IOException {
+    File file = this.temporaryFolder.newFile();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      byte[] bytes = new byte[size];
+      for (int i = 0; i < size; i++) {
+        bytes[i] = (byte) i;
+      }
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+}
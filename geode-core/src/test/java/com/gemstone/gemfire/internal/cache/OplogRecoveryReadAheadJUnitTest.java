@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class OplogRecoveryReadAheadJUnitTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private DiskStoreStats stats;
+
+  @Before
+  public void setUp() {
+    this.stats = mock(DiskStoreStats.class);
+  }
+
+  @Test
+  public void readsFilesOfEachDirectory() throws IOException {
+    OplogRecoveryReadAhead readAhead = new OplogRecoveryReadAhead(this.stats);
+    readAhead.addFile(0, createFile(100));
+    readAhead.addFile(1, createFile(200));
+    readAhead.addFile(0, createFile(1000));
+    readAhead.addFile(1, null);
+    readAhead.addFile(1, createFile(2000));
+    readAhead.startThreads("testStore");
+    try {
+      verify(this.stats, timeout(10000)).incRecoveryReadAheadBytes(100);
+      verify(this.stats, timeout(10000)).incRecoveryReadAheadBytes(1000);
+      verify(this.stats, timeout(10000)).incRecoveryReadAheadBytes(200);
+      verify(this.stats, timeout(10000)).incRecoveryReadAheadBytes(2000);
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+  @Test
+  public void readerWaitsForRecoveryToCatchUp() throws IOException {
+    OplogRecoveryReadAhead readAhead = new OplogRecoveryReadAhead(this.stats);
+    for (int i = 0; i < OplogRecoveryReadAhead.READ_AHEAD_FILES; i++) {
+      readAhead.addFile(0, createFile(10));
+    }
+    readAhead.addFile(0, createFile(20));
+    readAhead.startThreads("testStore");
+    try {
+      verify(this.stats, timeout(10000).times(OplogRecoveryReadAhead.READ_AHEAD_FILES)).incRecoveryReadAheadBytes(10);
+      verify(this.stats, after(500).never()).incRecoveryReadAheadBytes(20);
+      readAhead.fileRecovered(0);
+      verify(this.stats, timeout(10000)).incRecoveryReadAheadBytes(20);
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+  @Test
+  public void stopsReaderThatIsWaitingForRecovery() throws IOException {
+    OplogRecoveryReadAhead readAhead = new OplogRecoveryReadAhead(this.stats);
+    for (int i = 0; i < OplogRecoveryReadAhead.READ_AHEAD_FILES + 1; i++) {
+      readAhead.addFile(0, createFile(10));
+    }
+    readAhead.startThreads("testStore");
+    readAhead.fileRecovered(0);
+    readAhead.stop();
+  }
+
+  @Test
+  public void startReturnsNullWithoutOplogs() {
+    DiskStoreImpl parent = mock(DiskStoreImpl.class);
+    when(parent.getStats()).thenReturn(this.stats);
+    assertThat(OplogRecoveryReadAhead.start(parent, Collections.<Oplog>emptyList(), false)).isNull();
+  }
+
+  private File createFile(int size) throws IOException {
+    File f = this.temporaryFolder.newFile();
+    FileOutputStream fos = new FileOutputStream(f);
+    try {
+      fos.write(new byte[size]);
+    } finally {
+      fos.close();
+    }
+    return f;
+  }
+}
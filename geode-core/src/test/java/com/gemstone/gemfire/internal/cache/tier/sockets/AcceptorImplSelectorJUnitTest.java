@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.client.PoolManager;
+import com.gemstone.gemfire.cache.client.internal.ClearOp;
+import com.gemstone.gemfire.cache.client.internal.Connection;
+import com.gemstone.gemfire.cache.client.internal.PoolImpl;
+import com.gemstone.gemfire.cache.server.CacheServer;
+import com.gemstone.gemfire.internal.AvailablePort;
+import com.gemstone.gemfire.internal.cache.CacheServerImpl;
+import com.gemstone.gemfire.internal.cache.EventID;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+import com.jayway.awaitility.Awaitility;
+
+/**
+ * Tests a cache server whose idle client connections are watched by several
+ * selector threads.
+ */
+@Category(IntegrationTest.class)
+public class AcceptorImplSelectorJUnitTest {
+
+  private static final int SELECTOR_THREADS = 2;
+  private static final int MAX_CONNECTIONS = 64;
+
+  private int savedSelectorThreads;
+  private Cache cache;
+  private Region<String, String> region;
+  private CacheServer server;
+  private PoolImpl pool;
+
+  @Before
+  public void setUp() throws Exception {
+    this.savedSelectorThreads = AcceptorImpl.SELECTOR_THREADS;
+    AcceptorImpl.SELECTOR_THREADS = SELECTOR_THREADS;
+    Properties props = new Properties();
+    props.setProperty("mcast-port", "0");
+    props.setProperty("locators", "");
+    this.cache = new CacheFactory(props).create();
+    this.region = this.cache.<String, String>createRegionFactory(RegionShortcut.REPLICATE).create("region");
+    this.server = this.cache.addCacheServer();
+    this.server.setPort(AvailablePort.getRandomAvailablePort(AvailablePort.SOCKET));
+    this.server.setMaxThreads(2);
+    this.server.start();
+    this.pool = (PoolImpl)PoolManager.createFactory()
+        .addServer("localhost", this.server.getPort())
+        .setMinConnections(0)
+        .setPingInterval(10000)
+        .create("selectorPool");
+  }
+
+  @After
+  public void tearDown() {
+    AcceptorImpl.SELECTOR_THREADS = this.savedSelectorThreads;
+    this.cache.close();
+  }
+
+  @Test
+  public void connectionsOfEverySelectorThreadAreServed() throws Exception {
+    final AcceptorImpl acceptor = ((CacheServerImpl)this.server).getAcceptor();
+    assertThat(acceptor.isSelector()).isTrue();
+    assertThat(acceptor.getSelectorRegistrationCounts()).hasSize(SELECTOR_THREADS);
+
+    // connections are spread over the selector threads by their identity
+    // hash, so open them until every selector thread watches one
+    final List<Connection> connections = new ArrayList<Connection>();
+    while (!everySelectorThreadWatches(acceptor, 1)) {
+      if (connections.size() == MAX_CONNECTIONS) {
+        fail("selector registrations " + Arrays.toString(acceptor.getSelectorRegistrationCounts())
+            + " after opening " + MAX_CONNECTIONS + " connections");
+      }
+      connections.add(this.pool.acquireConnection());
+      Awaitility.await().atMost(30, TimeUnit.SECONDS)
+          .until(() -> allConnectionsAreRegistered(acceptor, connections.size()));
+    }
+
+    for (int request = 0; request < 3; request++) {
+      for (Connection cnx : connections) {
+        this.region.put("key", "value");
+        ClearOp.execute(cnx, this.pool, this.region.getFullPath(),
+            new EventID(this.cache.getDistributedSystem()), null);
+        assertThat(this.region).isEmpty();
+      }
+      // a connection leaves its selector while its request is processed and
+      // comes back to the same one after the reply
+      Awaitility.await().atMost(30, TimeUnit.SECONDS)
+          .until(() -> allConnectionsAreRegistered(acceptor, connections.size()));
+      assertThat(everySelectorThreadWatches(acceptor, 1)).isTrue();
+    }
+
+    this.server.stop();
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> acceptor.areSelectorThreadsStopped());
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> acceptor.getClientServerCnxCount() == 0);
+  }
+
+  /**
+   * Returns true if every open client connection, which includes the given
+   * number opened by the test, waits in a selector thread
+   */
+  private static boolean allConnectionsAreRegistered(AcceptorImpl acceptor, int connections) {
+    int open = acceptor.getClientServerCnxCount();
+    return open >= connections && sum(acceptor.getSelectorRegistrationCounts()) == open;
+  }
+
+  private static boolean everySelectorThreadWatches(AcceptorImpl acceptor, int connections) {
+    for (int count : acceptor.getSelectorRegistrationCounts()) {
+      if (count < connections) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int sum(int[] counts) {
+    int result = 0;
+    for (int count : counts) {
+      result += count;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ClientRequestThrottleJUnitTest {
+
+  private Statistics statistics;
+  private StatisticsFactory factory;
+
+  @Before
+  public void setUp() {
+    this.statistics = mock(Statistics.class);
+    this.factory = mock(StatisticsFactory.class);
+    when(this.factory.createAtomicStatistics(any(StatisticsType.class), anyString())).thenReturn(this.statistics);
+  }
+
+  @Test
+  public void queriesAndFunctionsCostMore() {
+    ClientRequestThrottle throttle = new ClientRequestThrottle(this.factory, 100, 100, 10, 0, 2000);
+    assertThat(throttle.getCost(MessageType.REQUEST)).isEqualTo(1);
+    assertThat(throttle.getCost(MessageType.QUERY)).isEqualTo(10);
+    assertThat(throttle.getCost(MessageType.EXECUTE_REGION_FUNCTION)).isEqualTo(10);
+  }
+
+  @Test
+  public void requestsWaitOnceBurstIsUsed() {
+    long second = TimeUnit.SECONDS.toNanos(1);
+    double tokensPerNano = 10 / (double)second;
+    ClientRequestThrottle.Client client = new ClientRequestThrottle.Client(
+        new ClientRequestThrottleStats(this.factory, "client"), 10, 0, 0);
+    assertThat(client.reserve(10, tokensPerNano, 10, Long.MAX_VALUE, 0)).isEqualTo(0);
+    // owes five tokens, which take half a second to refill
+    assertThat(client.reserve(5, tokensPerNano, 10, Long.MAX_VALUE, 0)).isCloseTo(second / 2, within(1L));
+    // a second later the debt is paid and five tokens are back
+    assertThat(client.reserve(5, tokensPerNano, 10, Long.MAX_VALUE, second)).isEqualTo(0);
+  }
+
+  @Test
+  public void refillIsCappedAtBurst() {
+    long second = TimeUnit.SECONDS.toNanos(1);
+    double tokensPerNano = 10 / (double)second;
+    ClientRequestThrottle.Client client = new ClientRequestThrottle.Client(
+        new ClientRequestThrottleStats(this.factory, "client"), 10, 0, 0);
+    assertThat(client.reserve(10, tokensPerNano, 10, Long.MAX_VALUE, 100 * second)).isEqualTo(0);
+    assertThat(client.reserve(1, tokensPerNano, 10, Long.MAX_VALUE, 100 * second)).isGreaterThan(0);
+  }
+
+  @Test
+  public void debtIsCappedAtMaxWait() {
+    long second = TimeUnit.SECONDS.toNanos(1);
+    double tokensPerNano = 10 / (double)second;
+    ClientRequestThrottle.Client client = new ClientRequestThrottle.Client(
+        new ClientRequestThrottleStats(this.factory, "client"), 0, 0, 0);
+    for (int i = 0; i < 100; i++) {
+      assertThat(client.reserve(10, tokensPerNano, 10, second, 0)).isLessThanOrEqualTo(second);
+    }
+    // the debt is paid a second later no matter how many requests were made
+    assertThat(client.getDebtNanos(tokensPerNano, 10, second)).isEqualTo(0);
+  }
+
+  @Test
+  public void selectorRequestsDoNotWaitForTokens() {
+    ClientRequestThrottle throttle = new ClientRequestThrottle(this.factory, 1, 1, 10, 0, 60000);
+    ClientProxyMembershipID proxyId = new ClientProxyMembershipID(new InternalDistributedMember("localhost", 40404));
+    long start = System.nanoTime();
+    throttle.requestFinished(throttle.requestStarted(proxyId, MessageType.QUERY, false));
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    // the client now owes nine tokens so its next request is not read yet
+    assertThat(throttle.getReadDelayNanos(proxyId)).isGreaterThan(TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  public void readIsDelayedWhileMaxRequestsAreInProgress() {
+    ClientRequestThrottle throttle = new ClientRequestThrottle(this.factory, 0, 0, 10, 1, 2000);
+    ClientProxyMembershipID proxyId = new ClientProxyMembershipID(new InternalDistributedMember("localhost", 40404));
+    assertThat(throttle.getReadDelayNanos(proxyId)).isEqualTo(0);
+    ClientRequestThrottle.Client client = throttle.requestStarted(proxyId, MessageType.REQUEST, false);
+    assertThat(throttle.getReadDelayNanos(proxyId)).isGreaterThan(0);
+    throttle.requestFinished(client);
+    assertThat(throttle.getReadDelayNanos(proxyId)).isEqualTo(0);
+  }
+
+  @Test
+  public void requestsInProgressAreLimited() {
+    ClientRequestThrottle throttle = new ClientRequestThrottle(this.factory, 0, 0, 10, 1, 2000);
+    ClientProxyMembershipID proxyId = new ClientProxyMembershipID(new InternalDistributedMember("localhost", 40404));
+    ClientRequestThrottle.Client client = throttle.requestStarted(proxyId, MessageType.REQUEST);
+    assertThat(client.inProgress.availablePermits()).isEqualTo(0);
+    throttle.requestFinished(client);
+    assertThat(client.inProgress.availablePermits()).isEqualTo(1);
+  }
+
+  @Test
+  public void departedClientStatsAreClosed() {
+    ClientRequestThrottle throttle = new ClientRequestThrottle(this.factory, 10, 10, 10, 0, 2000);
+    ClientProxyMembershipID proxyId = new ClientProxyMembershipID(new InternalDistributedMember("localhost", 40404));
+    throttle.requestFinished(throttle.requestStarted(proxyId, MessageType.REQUEST));
+    throttle.clientDeparted(proxyId);
+    verify(this.statistics, times(1)).close();
+    assertThat(throttle.getClient(proxyId)).isNotNull();
+  }
+}
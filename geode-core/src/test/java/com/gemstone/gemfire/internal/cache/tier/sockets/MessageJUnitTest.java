@@ -21,10 +21,13 @@ import static org.mockito.Mockito.*;
 
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.test.junit.categories.UnitTest;
@@ -102,6 +105,37 @@ public class MessageJUnitTest {
     }
   }
 
+  @Test
+  public void directPartIsWrittenWithGatheringWrite() throws Exception {
+    SocketChannel mockChannel = mock(SocketChannel.class);
+    when(mockChannel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenAnswer(new Answer<Long>() {
+      public Long answer(InvocationOnMock invocation) {
+        ByteBuffer[] bufs = (ByteBuffer[])invocation.getArguments()[0];
+        long written = 0;
+        for (ByteBuffer bb : bufs) {
+          written += bb.remaining();
+          bb.position(bb.limit());
+        }
+        return written;
+      }
+    });
+    Socket channelSocket = mock(Socket.class);
+    when(channelSocket.getChannel()).thenReturn(mockChannel);
+    Message msg = new Message(1, Version.CURRENT);
+    msg.setComms(mockServerConnection, channelSocket, msgBuffer, mockStats);
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(2000);
+    Part mockPart = mock(Part.class);
+    when(mockPart.getLength()).thenReturn(2000);
+    when(mockPart.getDirectByteBuffer()).thenReturn(direct);
+    msg.setParts(new Part[] {mockPart});
+    msg.send();
+
+    assertEquals(0, direct.remaining());
+    verify(mockChannel, never()).write(any(ByteBuffer.class));
+    verify(mockStats).incSentBytes(2000);
+  }
+
   // TODO many more tests are needed
 
 }
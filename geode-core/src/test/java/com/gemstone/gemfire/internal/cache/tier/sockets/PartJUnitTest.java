@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.compression.SnappyCompressor;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class PartJUnitTest {
+
+  @Test
+  public void compressedPartIsDecompressedWhenRead() throws Exception {
+    byte[] bytes = new byte[10000];
+    Arrays.fill(bytes, (byte)7);
+    Part part = new Part();
+    part.setPartState(bytes, false);
+
+    Part compressed = part.compress(SnappyCompressor.getDefaultInstance());
+    assertThat(compressed).isNotNull();
+    assertThat(compressed.getLength()).isLessThan(bytes.length);
+
+    Part received = new Part();
+    received.init(compressed.getSerializedForm(), compressed.getTypeCode());
+    assertThat(received.isBytes()).isTrue();
+    assertThat((byte[])received.getObject()).isEqualTo(bytes);
+  }
+
+  @Test
+  public void partThatDoesNotShrinkIsNotCompressed() {
+    byte[] bytes = new byte[] { 1, 2, 3, 4 };
+    Part part = new Part();
+    part.setPartState(bytes, true);
+    assertThat(part.compress(SnappyCompressor.getDefaultInstance())).isNull();
+  }
+}
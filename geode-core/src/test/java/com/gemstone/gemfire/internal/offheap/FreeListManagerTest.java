@@ -197,7 +197,124 @@ public class FreeListManagerTest {
     
     assertThat(this.freeListManager.getFreeTinyMemory()).isEqualTo(computeExpectedSize(dataSize)+computeExpectedSize(dataSize2));
   }
-   
+
+  @Test
+  public void tinyChunkFreedByAnotherThreadIsReused() throws Exception {
+    setUpSingleSlabManager();
+    int dataSize = 10;
+
+    final OffHeapStoredObject c = this.freeListManager.allocate(dataSize);
+    Thread freeingThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        OffHeapStoredObject.release(c.getAddress(), freeListManager);
+      }
+    });
+    freeingThread.start();
+    freeingThread.join();
+    assertThat(this.freeListManager.getFreeTinyMemory()).isEqualTo(computeExpectedSize(dataSize));
+
+    OffHeapStoredObject c2 = this.freeListManager.allocate(dataSize);
+
+    assertThat(c2.getAddress()).isEqualTo(c.getAddress());
+    assertThat(this.freeListManager.getFreeTinyMemory()).isZero();
+  }
+
+  @Test
+  public void hugeChunkIsReusedFromItsSizeClass() {
+    setUpSingleSlabManager();
+    int dataSize = FreeListManager.MAX_TINY*2;
+
+    OffHeapStoredObject c = this.freeListManager.allocate(dataSize);
+    int bin = FreeListManager.getHugeBin(c.getSize());
+    OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+
+    verify(this.stats).incHugeFreeChunks(bin, 1);
+    assertThat(this.freeListManager.getFreeHugeMemory()).isEqualTo(c.getSize());
+
+    OffHeapStoredObject c2 = this.freeListManager.allocate(dataSize);
+
+    verify(this.stats).incHugeFreeChunks(bin, -1);
+    assertThat(c2.getAddress()).isEqualTo(c.getAddress());
+    assertThat(this.freeListManager.getFreeHugeMemory()).isZero();
+  }
+
+  @Test
+  public void hugeBinsCoverAllHugeSizes() {
+    assertThat(FreeListManager.getHugeBin(FreeListManager.MAX_TINY+1)).isZero();
+    assertThat(FreeListManager.getHugeBin(Integer.MAX_VALUE)).isEqualTo(FreeListManager.HUGE_BIN_COUNT-1);
+    assertThat(FreeListManager.getHugeBinMinSize(0)).isEqualTo(FreeListManager.MAX_TINY+1);
+  }
+
+  @Test
+  public void hugeSubBinsCoverTheirSizeClass() {
+    int lastBin = FreeListManager.HUGE_BIN_COUNT-1;
+    assertThat(FreeListManager.getHugeSubBin(FreeListManager.MAX_TINY+1, 0)).isZero();
+    assertThat(FreeListManager.getHugeSubBin(Integer.MAX_VALUE, lastBin)).isEqualTo(FreeListManager.HUGE_SUB_BIN_COUNT-1);
+    int firstSize = (int) FreeListManager.getHugeBinMinSize(lastBin);
+    int width = firstSize / FreeListManager.HUGE_SUB_BIN_COUNT;
+    assertThat(FreeListManager.getHugeSubBin(firstSize+width-1, lastBin)).isZero();
+    assertThat(FreeListManager.getHugeSubBin(firstSize+width, lastBin)).isEqualTo(1);
+  }
+
+  @Test
+  public void largerHugeChunkIsSplit() {
+    setUpSingleSlabManager();
+
+    OffHeapStoredObject c = this.freeListManager.allocate(FreeListManager.MAX_TINY*8);
+    int cSize = c.getSize();
+    OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+    OffHeapStoredObject c2 = this.freeListManager.allocate(FreeListManager.MAX_TINY*2);
+
+    assertThat(c2.getAddress()).isEqualTo(c.getAddress());
+    assertThat(c2.getSize()).isLessThan(FreeListManager.MAX_TINY*2 + FreeListManager.HUGE_MULTIPLE);
+    assertThat(this.freeListManager.getFreeHugeMemory()).isEqualTo(cSize - c2.getSize());
+
+    OffHeapStoredObject c3 = this.freeListManager.allocate(FreeListManager.MAX_TINY*2);
+
+    assertThat(c3.getAddress()).isEqualTo(c2.getAddress() + c2.getSize());
+  }
+
+  @Test
+  public void coalesceFreeChunksTurnsAdjacentChunksIntoFragment() {
+    setUpSingleSlabManager();
+    OffHeapStoredObject c1 = this.freeListManager.allocate(24);
+    OffHeapStoredObject c2 = this.freeListManager.allocate(24);
+    OffHeapStoredObject c3 = this.freeListManager.allocate(24);
+    OffHeapStoredObject c4 = this.freeListManager.allocate(24);
+    OffHeapStoredObject.release(c1.getAddress(), this.freeListManager);
+    OffHeapStoredObject.release(c2.getAddress(), this.freeListManager);
+    OffHeapStoredObject.release(c4.getAddress(), this.freeListManager);
+    int fragmentCount = this.freeListManager.getFragmentList().size();
+
+    assertThat(this.freeListManager.coalesceFreeChunks(100, Long.MAX_VALUE/2)).isEqualTo(2);
+
+    assertThat(this.freeListManager.getFragmentList()).hasSize(fragmentCount+1);
+    Fragment f = this.freeListManager.getFragmentList().get(fragmentCount);
+    assertThat(f.getAddress()).isEqualTo(c1.getAddress());
+    assertThat(f.getSize()).isEqualTo(c1.getSize()+c2.getSize());
+    assertThat(this.freeListManager.getFreeTinyMemory()).isEqualTo(c4.getSize());
+    assertThat(c3.getRefCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void coalesceFreeChunksWithNoFreeChunksReturnsZero() {
+    setUpSingleSlabManager();
+    this.freeListManager.allocate(24);
+
+    assertThat(this.freeListManager.coalesceFreeChunks(100, Long.MAX_VALUE/2)).isZero();
+    assertThat(this.freeListManager.getFreeListPercentage()).isZero();
+  }
+
+  @Test
+  public void roundUpToPowerOfTwo() {
+    assertThat(FreeListManager.roundUpToPowerOfTwo(0)).isEqualTo(1);
+    assertThat(FreeListManager.roundUpToPowerOfTwo(1)).isEqualTo(1);
+    assertThat(FreeListManager.roundUpToPowerOfTwo(3)).isEqualTo(4);
+    assertThat(FreeListManager.roundUpToPowerOfTwo(8)).isEqualTo(8);
+    assertThat(FreeListManager.roundUpToPowerOfTwo(33)).isEqualTo(64);
+  }
+
   @Test
   public void freeHugeMemoryDefault() {
     setUpSingleSlabManager();
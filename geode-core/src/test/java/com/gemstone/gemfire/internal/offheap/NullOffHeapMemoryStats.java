@@ -91,6 +91,13 @@ public class NullOffHeapMemoryStats implements OffHeapMemoryStats {
     return 0;
   }
   @Override
+  public void incHugeFreeChunks(int hugeBin, int value) {
+  }
+  @Override
+  public int getHugeFreeChunks(int hugeBin) {
+    return 0;
+  }
+  @Override
   public Statistics getStats() {
     return null;
   }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.LocalStatisticsFactory;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class OffHeapDefragmenterJUnitTest {
+
+  private final FreeListManager freeListManager = mock(FreeListManager.class);
+
+  @Test
+  public void doesNothingBelowThreshold() throws Exception {
+    when(this.freeListManager.getFreeListPercentage()).thenReturn(10);
+    OffHeapDefragmenter defragmenter = new OffHeapDefragmenter(this.freeListManager, 20);
+
+    assertThat(defragmenter.defragmentIfNeeded()).isZero();
+    verify(this.freeListManager, never()).coalesceFreeChunks(anyInt(), anyLong());
+  }
+
+  @Test
+  public void coalescesUntilBelowThreshold() throws Exception {
+    when(this.freeListManager.getFreeListPercentage()).thenReturn(50, 30, 10);
+    when(this.freeListManager.coalesceFreeChunks(anyInt(), anyLong())).thenReturn(3, 4);
+    OffHeapDefragmenter defragmenter = new OffHeapDefragmenter(this.freeListManager, 20);
+
+    assertThat(defragmenter.defragmentIfNeeded()).isEqualTo(7);
+    verify(this.freeListManager, times(2)).coalesceFreeChunks(anyInt(), anyLong());
+  }
+
+  @Test
+  public void stopsWhenNothingCanBeCombined() throws Exception {
+    when(this.freeListManager.getFreeListPercentage()).thenReturn(50);
+    when(this.freeListManager.coalesceFreeChunks(anyInt(), anyLong())).thenReturn(0);
+    OffHeapDefragmenter defragmenter = new OffHeapDefragmenter(this.freeListManager, 20);
+
+    assertThat(defragmenter.defragmentIfNeeded()).isZero();
+    verify(this.freeListManager, times(1)).coalesceFreeChunks(anyInt(), anyLong());
+  }
+
+  @Test
+  public void coalescesHugeChunksFromEverySubBin() throws Exception {
+    OffHeapStorage stats = new OffHeapStorage(new LocalStatisticsFactory(null));
+    MemoryAllocatorImpl ma = mock(MemoryAllocatorImpl.class);
+    when(ma.getStats()).thenReturn(stats);
+    FreeListManager realFreeListManager = new FreeListManager(ma, new Slab[] {new SlabImpl(1024*1024*8)});
+    try {
+      // the first size is kept on a late sub-bin of the first huge size class
+      int[] sizes = {FreeListManager.MAX_TINY*7/4, FreeListManager.MAX_TINY*2, FreeListManager.MAX_TINY*3, FreeListManager.MAX_TINY*4};
+      long[] addrs = new long[sizes.length];
+      for (int i=0; i < sizes.length; i++) {
+        addrs[i] = realFreeListManager.allocate(sizes[i]).getAddress();
+      }
+      for (long addr : addrs) {
+        OffHeapStoredObject.release(addr, realFreeListManager);
+      }
+      assertThat(realFreeListManager.getFreeHugeMemory()).isPositive();
+
+      OffHeapDefragmenter defragmenter = new OffHeapDefragmenter(realFreeListManager, 0);
+
+      assertThat(defragmenter.defragmentIfNeeded()).isEqualTo(sizes.length);
+      assertThat(realFreeListManager.getFreeHugeMemory()).isZero();
+      for (int bin=0; bin < FreeListManager.HUGE_BIN_COUNT; bin++) {
+        assertThat(stats.getHugeFreeChunks(bin)).isZero();
+      }
+    } finally {
+      realFreeListManager.freeSlabs();
+      stats.close();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.distributed.internal.DMStats;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class BuffersJUnitTest {
+
+  private boolean originalUseDirectBuffers;
+  private DMStats stats;
+
+  @Before
+  public void setUp() {
+    this.originalUseDirectBuffers = TCPConduit.useDirectBuffers;
+    TCPConduit.useDirectBuffers = true;
+    this.stats = mock(DMStats.class);
+  }
+
+  @After
+  public void tearDown() {
+    TCPConduit.useDirectBuffers = this.originalUseDirectBuffers;
+  }
+
+  @Test
+  public void pooledCapacityIsRoundedUpToPowerOfTwo() {
+    assertThat(Buffers.getPooledCapacity(1)).isEqualTo(1);
+    assertThat(Buffers.getPooledCapacity(4096)).isEqualTo(4096);
+    assertThat(Buffers.getPooledCapacity(4097)).isEqualTo(8192);
+    assertThat(Buffers.getPooledCapacity(Buffers.MAX_POOLED_BUFFER_SIZE + 1)).isEqualTo(0);
+  }
+
+  @Test
+  public void releasedBufferIsReusedForSameSizeClass() {
+    ByteBuffer first = Buffers.acquireReceiveBuffer(5000, this.stats);
+    assertThat(first.isDirect()).isTrue();
+    assertThat(first.capacity()).isEqualTo(8192);
+    assertThat(first.limit()).isEqualTo(5000);
+    verify(this.stats).incReceiverBufferSize(8192, true);
+    Buffers.releaseReceiveBuffer(first, this.stats);
+
+    ByteBuffer second = Buffers.acquireReceiveBuffer(7000, this.stats);
+    assertThat(second).isSameAs(first);
+    assertThat(second.position()).isEqualTo(0);
+    assertThat(second.limit()).isEqualTo(7000);
+    Buffers.releaseReceiveBuffer(second, this.stats);
+  }
+
+  @Test
+  public void hugeBuffersAreNotPooled() {
+    int size = Buffers.MAX_POOLED_BUFFER_SIZE + 1;
+    ByteBuffer buffer = Buffers.acquireSenderBuffer(size, this.stats);
+    assertThat(buffer.capacity()).isEqualTo(size);
+    Buffers.releaseSenderBuffer(buffer, this.stats);
+    verify(this.stats).incSenderBufferSize(-size, true);
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.distributed.DistributedMember;
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests the shared ordered connection lanes of {@link ConnectionTable}.
+ */
+@Category(UnitTest.class)
+public class ConnectionTableJUnitTest {
+
+  private static final int LANES = 4;
+
+  private ConnectionTable table;
+  private DistributedMember member;
+  private Connection[] laneConnections;
+
+  @Before
+  public void setUp() throws Exception {
+    InternalDistributedSystem system = mock(InternalDistributedSystem.class);
+    when(system.threadOwnsResources()).thenReturn(true);
+    when(system.isShareSockets()).thenReturn(false);
+    DM dm = mock(DM.class);
+    when(dm.getSystem()).thenReturn(system);
+    TCPConduit conduit = mock(TCPConduit.class);
+    conduit.idleConnectionTimeout = 0;
+    when(conduit.getDM()).thenReturn(dm);
+
+    this.table = new ConnectionTable(conduit, LANES);
+    this.member = mock(DistributedMember.class);
+    this.laneConnections = new Connection[LANES];
+    for (int i = 0; i < LANES; i++) {
+      this.laneConnections[i] = createOrderedConnection();
+      this.table.getOrderedLaneMap(i).put(this.member, this.laneConnections[i]);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    this.table.close();
+  }
+
+  @Test
+  public void threadAlwaysUsesTheSameLane() {
+    for (long threadId = 0; threadId < 100; threadId++) {
+      int lane = ConnectionTable.getOrderedLaneIndex(threadId, LANES);
+      assertThat(lane).isBetween(0, LANES - 1);
+      assertThat(ConnectionTable.getOrderedLaneIndex(threadId, LANES)).isEqualTo(lane);
+    }
+  }
+
+  @Test
+  public void consecutiveThreadsAreSpreadOverAllLanes() {
+    Set<Integer> lanes = new HashSet<Integer>();
+    for (long threadId = 1000; threadId < 1000 + LANES; threadId++) {
+      lanes.add(ConnectionTable.getOrderedLaneIndex(threadId, LANES));
+    }
+    assertThat(lanes).hasSize(LANES);
+  }
+
+  @Test
+  public void senderGetsTheConnectionOfItsLane() throws Exception {
+    Connection expected = this.laneConnections[
+        ConnectionTable.getOrderedLaneIndex(Thread.currentThread().getId(), LANES)];
+
+    // every message of this sender goes through one connection so they
+    // are delivered in the order they were sent
+    for (int i = 0; i < 10; i++) {
+      assertThat(this.table.get(this.member, true, 0, 0, 0)).isSameAs(expected);
+    }
+  }
+
+  @Test
+  public void sendersOnOtherThreadsGetTheConnectionOfTheirLane() throws Exception {
+    for (int i = 0; i < LANES * 2; i++) {
+      final AtomicReference<Object> result = new AtomicReference<Object>();
+      Thread sender = new Thread(new Runnable() {
+        public void run() {
+          try {
+            result.set(table.get(member, true, 0, 0, 0));
+          } catch (Exception e) {
+            result.set(e);
+          }
+        }
+      });
+      sender.start();
+      sender.join();
+
+      int lane = ConnectionTable.getOrderedLaneIndex(sender.getId(), LANES);
+      assertThat(result.get()).isSameAs(this.laneConnections[lane]);
+    }
+  }
+
+  @Test
+  public void removeEndpointClosesTheConnectionsOfEveryLane() {
+    DistributedMember other = mock(DistributedMember.class);
+    Connection otherConnection = createOrderedConnection();
+    this.table.getOrderedLaneMap(1).put(other, otherConnection);
+
+    this.table.removeEndpoint(this.member, "departed", false);
+
+    for (int i = 0; i < LANES; i++) {
+      verify(this.laneConnections[i]).closePartialConnect("departed", false);
+      assertThat(this.table.getOrderedLaneMap(i).containsKey(this.member)).isFalse();
+    }
+    verify(otherConnection, never()).closePartialConnect(anyString(), anyBoolean());
+    assertThat(this.table.getOrderedLaneMap(1).get(other)).isSameAs(otherConnection);
+  }
+
+  @Test
+  public void removeSharedConnectionOnlyRemovesThatConnection() {
+    this.table.removeSharedConnection("closed", this.member, true, this.laneConnections[2]);
+
+    verify(this.laneConnections[2]).closePartialConnect("closed", false);
+    assertThat(this.table.getOrderedLaneMap(2).containsKey(this.member)).isFalse();
+    for (int i = 0; i < LANES; i++) {
+      if (i != 2) {
+        verify(this.laneConnections[i], never()).closePartialConnect(anyString(), anyBoolean());
+        assertThat(this.table.getOrderedLaneMap(i).get(this.member)).isSameAs(this.laneConnections[i]);
+      }
+    }
+  }
+
+  @Test
+  public void closeClosesTheConnectionsOfEveryLane() {
+    this.table.close();
+
+    for (int i = 0; i < LANES; i++) {
+      verify(this.laneConnections[i]).closePartialConnect(anyString(), eq(false));
+      assertThat(this.table.getOrderedLaneMap(i)).isEmpty();
+    }
+  }
+
+  @Test
+  public void connectionStateIncludesMessagesSentOnLanes() {
+    for (int i = 0; i < LANES; i++) {
+      when(this.laneConnections[i].getUniqueId()).thenReturn(100L + i);
+      when(this.laneConnections[i].getMessagesSent()).thenReturn(10L * i);
+    }
+    Map<Long, Long> state = new HashMap<Long, Long>();
+
+    this.table.getThreadOwnedOrderedConnectionState(this.member, state);
+
+    // lane 0 carries the state flush messages themselves
+    assertThat(state).hasSize(LANES - 1);
+    for (int i = 1; i < LANES; i++) {
+      assertThat(state.get(100L + i)).isEqualTo(10L * i);
+    }
+  }
+
+  @Test
+  public void waitForConnectionStateWaitsForReceivedMessages() throws Exception {
+    InternalDistributedMember sender = mock(InternalDistributedMember.class);
+    Connection receiver = mock(Connection.class);
+    receiver.stopped = false;
+    receiver.remoteAddr = sender;
+    when(receiver.getOriginatedHere()).thenReturn(false);
+    when(receiver.getPreserveOrder()).thenReturn(true);
+    when(receiver.getUniqueId()).thenReturn(101L);
+    when(receiver.getMessagesReceived()).thenReturn(3L, 5L, 7L);
+    this.table.addReceiver(receiver);
+    Map<Long, Long> state = new HashMap<Long, Long>();
+    state.put(101L, 7L);
+
+    this.table.waitForThreadOwnedOrderedConnectionState(sender, state);
+
+    assertThat(state).isEmpty();
+    verify(receiver, atLeast(3)).getMessagesReceived();
+  }
+
+  private static Connection createOrderedConnection() {
+    Connection connection = mock(Connection.class);
+    connection.connected = true;
+    connection.preserveOrder = true;
+    return connection;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class WriteCoalescerJUnitTest {
+
+  private final WriteCoalescer coalescer = new WriteCoalescer(8, false);
+
+  @Test
+  public void messagesAreNotCoalescedWithoutWriteInProgress() {
+    ByteBuffer message = message(1, 2);
+    assertThat(this.coalescer.offer(message)).isNull();
+    assertThat(message.remaining()).isEqualTo(2);
+  }
+
+  @Test
+  public void messagesOfferedDuringWriteAreBatched() throws Exception {
+    this.coalescer.writeStarted();
+    WriteCoalescer.Batch first = this.coalescer.offer(message(1, 2));
+    assertThat(first).isNotNull();
+    assertThat(this.coalescer.offer(message(3))).isSameAs(first);
+
+    WriteCoalescer.Batch batch = this.coalescer.takeBatch();
+    assertThat(batch).isSameAs(first);
+    assertThat(bytes(batch.getBuffer())).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(batch.getMessages()).isEqualTo(2);
+    batch.written();
+    first.await();
+
+    WriteCoalescer.Batch second = this.coalescer.offer(message(4));
+    assertThat(second).isNotNull().isNotSameAs(first);
+    batch = this.coalescer.takeBatch();
+    assertThat(bytes(batch.getBuffer())).isEqualTo(new byte[] {4});
+    assertThat(batch.getMessages()).isEqualTo(1);
+    batch.written();
+
+    assertThat(this.coalescer.takeBatch()).isNull();
+    assertThat(this.coalescer.offer(message(5))).isNull();
+  }
+
+  @Test
+  public void messagesThatDoNotFitAreNotCoalesced() {
+    this.coalescer.writeStarted();
+    assertThat(this.coalescer.offer(message(1, 2, 3, 4, 5, 6))).isNotNull();
+    assertThat(this.coalescer.offer(message(7, 8, 9))).isNull();
+    assertThat(this.coalescer.offer(message(7, 8))).isNotNull();
+    assertThat(this.coalescer.takeBatch().getBuffer().remaining()).isEqualTo(8);
+  }
+
+  @Test
+  public void failedWriteDropsPendingMessages() {
+    this.coalescer.writeStarted();
+    this.coalescer.offer(message(1));
+    this.coalescer.writeFailed(null, new IOException("broken pipe"));
+    assertThat(this.coalescer.offer(message(2))).isNull();
+    this.coalescer.writeStarted();
+    assertThat(this.coalescer.takeBatch()).isNull();
+  }
+
+  @Test
+  public void failedBatchWriteIsSeenByEverySenderInTheBatch() throws Exception {
+    this.coalescer.writeStarted();
+    final WriteCoalescer.Batch inProgress = this.coalescer.offer(message(1));
+    assertThat(this.coalescer.takeBatch()).isSameAs(inProgress);
+    final WriteCoalescer.Batch notTaken = this.coalescer.offer(message(2));
+
+    final AtomicReference<Throwable> seen = new AtomicReference<Throwable>();
+    Thread sender = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          inProgress.await();
+        } catch (IOException e) {
+          seen.set(e);
+        }
+      }
+    });
+    sender.start();
+
+    IOException cause = new IOException("broken pipe");
+    this.coalescer.writeFailed(inProgress, cause);
+    sender.join(10000);
+
+    assertThat(sender.isAlive()).isFalse();
+    assertThat(seen.get()).isInstanceOf(IOException.class).hasCause(cause);
+    try {
+      notTaken.await();
+      fail("expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected).hasCause(cause);
+    }
+  }
+
+  @Test
+  public void writtenBatchIsNotFailedLater() throws Exception {
+    this.coalescer.writeStarted();
+    this.coalescer.offer(message(1));
+    WriteCoalescer.Batch batch = this.coalescer.takeBatch();
+    batch.written();
+    this.coalescer.writeFailed(batch, new IOException("broken pipe"));
+    batch.await();
+  }
+
+  @Test
+  public void conduitStopIsRethrownAsConnectionException() throws Exception {
+    this.coalescer.writeStarted();
+    WriteCoalescer.Batch batch = this.coalescer.offer(message(1));
+    this.coalescer.writeFailed(null, new ConnectionException("stopped"));
+    try {
+      batch.await();
+      fail("expected ConnectionException");
+    } catch (ConnectionException expected) {
+      assertThat(expected).hasMessage("stopped");
+    }
+  }
+
+  private static ByteBuffer message(int... values) {
+    ByteBuffer result = ByteBuffer.allocate(values.length);
+    for (int value : values) {
+      result.put((byte)value);
+    }
+    result.flip();
+    return result;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] result = new byte[buffer.remaining()];
+    buffer.get(result);
+    return result;
+  }
+}
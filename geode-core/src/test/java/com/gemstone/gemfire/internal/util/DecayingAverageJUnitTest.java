@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class DecayingAverageJUnitTest {
+
+  @Test
+  public void samplesAreWeighted() {
+    DecayingAverage average = new DecayingAverage(0.5, Long.MAX_VALUE);
+    long now = System.nanoTime();
+    average.record(100, now);
+    assertThat(average.get(now)).isCloseTo(50, within(0.001));
+    average.record(100, now);
+    assertThat(average.get(now)).isCloseTo(75, within(0.001));
+  }
+
+  @Test
+  public void averageHalvesEveryHalfLife() {
+    DecayingAverage average = new DecayingAverage(1, 1000);
+    long now = System.nanoTime();
+    average.record(80, now);
+    assertThat(average.get(now + 1000)).isCloseTo(40, within(0.001));
+    assertThat(average.get(now + 2000)).isCloseTo(20, within(0.001));
+  }
+}